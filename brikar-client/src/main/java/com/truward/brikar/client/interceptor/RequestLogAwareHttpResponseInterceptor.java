@@ -1,6 +1,8 @@
 package com.truward.brikar.client.interceptor;
 
 import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
 import com.truward.brikar.common.log.lapse.SimpleLapse;
 import com.truward.brikar.common.tracking.TrackingHttpHeaderNames;
 import org.apache.http.Header;
@@ -53,6 +55,7 @@ public final class RequestLogAwareHttpResponseInterceptor implements HttpRespons
     lapse.setProperty(LogUtil.RESPONSE_CODE, code);
     lapse.setProperty(LogUtil.RESPONSE_REQUEST_VECTOR, responseRequestVector);
 
+    LatencyHistogramRegistry.getDefault().record(LatencyHistogram.Kind.CLIENT_CALL, lapse, code);
     LogUtil.propagateOrLogInfo(lapse, log);
   }
 }
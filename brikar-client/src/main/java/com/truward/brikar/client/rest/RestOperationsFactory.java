@@ -37,10 +37,10 @@ public final class RestOperationsFactory implements DisposableBean, AutoCloseabl
    * Since this class is intended to be used mostly for interacting with brikar services, this TTL
    * setting should be set keeping in mind default 'keep alive' settings in brikar-server module.
    *
-   * Since we're using jetty and default jetty's TTL is defined to 200000 - see _maxIdleTime in
-   * org.eclipse.jetty.server.AbstractConnector class.
+   * Since we're using jetty and brikar server closes idle connections after 90000 milliseconds by default - see
+   * <code>brikar.settings.connector.idleTimeoutMillis</code> property in StandardLauncher.
    *
-   * We're picking slightly smaller value here to use jetty's resources in the most efficient way.
+   * We're picking smaller value here, so that client always closes keep-alive connection before server does.
    */
   public static final long DEFAULT_CONNECTION_TTL = 60000L;
 
@@ -2,6 +2,7 @@ package com.truward.brikar.common.executor;
 
 import com.truward.brikar.common.log.LogUtil;
 import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.ResourceUsage;
 import org.slf4j.MDC;
 
 /**
@@ -59,5 +60,34 @@ public enum StandardThreadParametersBinder implements ThreadParametersBinder {
 
       LogUtil.setLocalMetricsCollection(null);
     }
+  },
+
+  /**
+   * Accounts CPU time and allocated bytes of the task to the resource usage of the submitting thread,
+   * see also {@link ResourceUsage}.
+   */
+  RESOURCE_USAGE {
+    @Override
+    public Object getLocalObject() {
+      return ResourceUsage.getLocal();
+    }
+
+    @Override
+    public void setLocalObject(Object tag) {
+      if (tag == null) {
+        return;
+      }
+
+      ((ResourceUsage) tag).attach();
+    }
+
+    @Override
+    public void unsetLocalObject(Object tag) {
+      if (tag == null) {
+        return;
+      }
+
+      ((ResourceUsage) tag).detach();
+    }
   }
 }
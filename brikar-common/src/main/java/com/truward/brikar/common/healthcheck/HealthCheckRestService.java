@@ -17,6 +17,11 @@ public interface HealthCheckRestService {
    */
   String OK = "OK";
 
+  /**
+   * String, that {@link #checkHealth()} returns when server is shutting down and should not receive new requests.
+   */
+  String DRAINING = "DRAINING";
+
   @RequestMapping(value = "/health", method = RequestMethod.POST)
   @ResponseBody
   String checkHealth();
@@ -0,0 +1,26 @@
+package com.truward.brikar.common.log;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tells <code>brikar-processor</code> annotation processor to generate a subclass of the annotated class, that logs
+ * lapses of its {@link LogLapse} methods without aspects and proxies. Subclass is put in the same package and named
+ * after the annotated class with <code>_LapseLogging</code> suffix, e.g. <code>UserServiceImpl_LapseLogging</code>
+ * or <code>Outer_Inner_LapseLogging</code> for a nested class.
+ * <p>
+ * Generated subclass should be instantiated instead of the annotated class. Calls of the annotated methods,
+ * including calls from the other methods of the same object, are recorded as if they were made through
+ * {@link com.truward.brikar.common.log.aspect.StandardLapseLoggerAspect}, see also
+ * {@link com.truward.brikar.common.log.lapse.LapseLogging}. Instances of the generated subclass should not be
+ * proxied by the lapse logger aspect, as their calls would be recorded twice.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateLapseLogging {
+}
@@ -1,5 +1,6 @@
 package com.truward.brikar.common.log;
 
+import com.truward.brikar.common.log.metric.AsyncMetricsSink;
 import com.truward.brikar.common.log.metric.Metrics;
 import com.truward.brikar.common.log.metric.MetricsCollection;
 import com.truward.brikar.common.log.metric.StandardMetricsCollection;
@@ -57,8 +58,18 @@ public final class LogUtil {
    */
   public static final String REQUEST_VECTOR = "RV";
 
+  /**
+   * A name, under which the name of the thread, that recorded metrics, is known as one of the logger attributes,
+   * when metrics are written by the other thread, see {@link AsyncMetricsSink}.
+   *
+   * See also {@link org.slf4j.MDC}.
+   */
+  public static final String ORIGINATING_THREAD = "thread";
+
   private static final ThreadLocal<MetricsCollection> METRICS_COLLECTION = new ThreadLocal<>();
 
+  private static volatile AsyncMetricsSink metricsSink;
+
   /**
    * Maximum size of request vector.
    */
@@ -82,14 +93,40 @@ public final class LogUtil {
     METRICS_COLLECTION.set(value);
   }
 
+  /**
+   * @return Sink, that writes metrics asynchronously, or null if metrics are written by the calling threads
+   */
+  @Nullable
+  public static AsyncMetricsSink getMetricsSink() {
+    return metricsSink;
+  }
+
+  /**
+   * Installs sink, that writes metrics, logged by {@link #logInfo(MetricsCollection, Logger)}, asynchronously.
+   *
+   * @param sink Metrics sink or null, if metrics should be written by the calling threads
+   */
+  public static void setMetricsSink(@Nullable AsyncMetricsSink sink) {
+    metricsSink = sink;
+  }
+
   public static void logInfo(Metrics metrics, Logger log) {
     final MetricsCollection metricsCollection = new StandardMetricsCollection();
     metricsCollection.add(metrics);
-    log.info(metricsCollection.toString());
+    logInfo(metricsCollection, log);
   }
 
   public static void logInfo(MetricsCollection metricsCollection, Logger log) {
-    log.info(metricsCollection.toString());
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+
+    final AsyncMetricsSink sink = metricsSink;
+    if (sink != null) {
+      sink.offer(log, metricsCollection);
+    } else {
+      log.info(metricsCollection.toString());
+    }
   }
 
   public static void logAndResetLocalMetricsCollection(Logger log, @Nullable MetricsCollection newMetricsCollection) {
@@ -194,6 +231,50 @@ public final class LogUtil {
    */
   public static final String TIME_DELTA = "tDelta";
 
+  /**
+   * A name of the attribute, corresponding to time spent (in microseconds), measured with a monotonic clock.
+   * Recorded along with {@link #TIME_DELTA} by the lapse logger aspects.
+   */
+  public static final String TIME_DELTA_MICROS = "tMicros";
+
+  /**
+   * A name of the attribute, corresponding to time, that request spent waiting in the server queue before
+   * its processing started (in milliseconds).
+   */
+  public static final String QUEUE_TIME = "tQueue";
+
+  /**
+   * A name of the attribute, corresponding to CPU time, consumed by the operation (in microseconds).
+   */
+  public static final String CPU_TIME = "cpuMicros";
+
+  /**
+   * A name of the attribute, corresponding to number of bytes, allocated by the operation.
+   */
+  public static final String ALLOCATED_BYTES = "allocBytes";
+
+  /**
+   * A name of the attribute, corresponding to the collapsed stack samples of a slow operation, see
+   * {@link com.truward.brikar.common.log.watchdog.SlowCallWatchdog}.
+   */
+  public static final String STACK_SAMPLES = "stacks";
+
+  /**
+   * A name of the attribute, corresponding to ID of the span, that has child spans within the same metric entry.
+   */
+  public static final String SPAN_ID = "span";
+
+  /**
+   * A name of the attribute, corresponding to ID of the parent span within the same metric entry.
+   */
+  public static final String PARENT_SPAN_ID = "parent";
+
+  /**
+   * A name of the attribute, corresponding to time between start of the parent span and start of the operation
+   * (in milliseconds).
+   */
+  public static final String START_OFFSET = "tOffset";
+
   /**
    * A name of an optional attribute which indicates whether or not operation failed.
    * Usually recorded as one of the metric attributes.
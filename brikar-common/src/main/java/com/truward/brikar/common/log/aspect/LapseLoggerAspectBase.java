@@ -1,8 +1,14 @@
 package com.truward.brikar.common.log.aspect;
 
 import com.truward.brikar.common.log.LogLapse;
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.lapse.MonotonicTimeSource;
 import com.truward.brikar.common.log.lapse.SimpleLapse;
 import com.truward.brikar.common.log.metric.Metrics;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.ResourceUsage;
+import com.truward.brikar.common.log.watchdog.SlowCallWatchdog;
 import com.truward.time.TimeSource;
 import com.truward.time.support.StandardTimeSource;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -10,20 +16,32 @@ import org.aspectj.lang.Signature;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Base class for lapse logging aspects.
+ * <p>
+ * Start time of the call is taken from the time source, whereas its duration is measured with the elapsed time
+ * source, which is monotonic and has nanosecond precision by default, and is recorded in microseconds.
+ * Operation names, inferred from the method signatures, are resolved once per method. Calls are tracked by the
+ * default {@link SlowCallWatchdog}.
+ * </p>
  *
  * @author Alexander Shabanov
  */
 @ParametersAreNonnullByDefault
 public abstract class LapseLoggerAspectBase {
 
+  private final ConcurrentMap<Method, String> operationNames = new ConcurrentHashMap<>();
   private TimeSource timeSource = StandardTimeSource.INSTANCE;
+  private TimeSource elapsedTimeSource = MonotonicTimeSource.INSTANCE;
+  private boolean resourceUsageEnabled;
 
   public final void setTimeSource(TimeSource timeSource) {
     this.timeSource = requireNonNull(timeSource);
@@ -33,50 +51,125 @@ public abstract class LapseLoggerAspectBase {
     return timeSource;
   }
 
-  protected final Object invokeAndLog(ProceedingJoinPoint jp, LogLapse logLapse) throws Throwable {
-    final SimpleLapse lapse = new SimpleLapse();
+  /**
+   * Sets time source, used to measure duration of the calls, {@link MonotonicTimeSource} is used by default.
+   *
+   * @param elapsedTimeSource Monotonic time source
+   */
+  public final void setElapsedTimeSource(TimeSource elapsedTimeSource) {
+    this.elapsedTimeSource = requireNonNull(elapsedTimeSource);
+  }
 
-    lapse.setStartTime(getTimeSource());
+  public final TimeSource getElapsedTimeSource() {
+    return elapsedTimeSource;
+  }
+
+  /**
+   * Enables recording of CPU time and allocated bytes of the calling thread, see also {@link ResourceUsage}.
+   *
+   * @param resourceUsageEnabled True, if resource usage should be recorded
+   */
+  public final void setResourceUsageEnabled(boolean resourceUsageEnabled) {
+    this.resourceUsageEnabled = resourceUsageEnabled;
+  }
 
-    String place = logLapse.value();
-    if (!StringUtils.hasLength(place)) {
-      // no text in annotation value - fallback to signature name
-      place = getPlaceFromJoinPoint(jp);
+  public final boolean isResourceUsageEnabled() {
+    return resourceUsageEnabled;
+  }
+
+  protected final Object invokeAndLog(ProceedingJoinPoint jp, LogLapse logLapse) throws Throwable {
+    final String operation = getOperation(jp, logLapse);
+    final SimpleLapse lapse = new SimpleLapse()
+        .setOperation(operation)
+        .setStartTime(timeSource);
+
+    // nested calls and calls to the other services become children of this call
+    final MetricsCollection metricsCollection = LogUtil.getLocalMetricsCollection();
+    if (metricsCollection != null) {
+      metricsCollection.openSpan(lapse);
     }
-    lapse.setOperation(place);
 
+    final long startCpuTime = resourceUsageEnabled ? ResourceUsage.getCurrentThreadCpuTime() : -1L;
+    final long startAllocatedBytes = resourceUsageEnabled ? ResourceUsage.getCurrentThreadAllocatedBytes() : -1L;
+    final SlowCallWatchdog watchdog = SlowCallWatchdog.getDefault();
+    watchdog.enter(operation, lapse);
+    final long startElapsedTime = elapsedTimeSource.currentTime();
+    boolean failed = true;
     try {
       final Object result = jp.proceed();
-
-      lapse.setEndTime(getTimeSource());
-      lapse.setFailed(false);
-
+      failed = false;
       return result;
-    } catch (Exception e) {
+    } finally {
       // record end of call time and write lapse
-      lapse.setEndTime(getTimeSource());
-      lapse.setFailed(true);
+      final long timeDeltaMicros = elapsedTimeSource.getTimeUnit()
+          .toMicros(elapsedTimeSource.currentTime() - startElapsedTime);
+      lapse.setEndTime(lapse.getStartTime() + timeDeltaMicros / 1000L)
+          .setTimeDeltaMicros(timeDeltaMicros)
+          .setFailed(failed);
+      watchdog.exit(lapse);
+
+      if (resourceUsageEnabled) {
+        ResourceUsage.setProperties(lapse,
+            startCpuTime >= 0L ? ResourceUsage.getCurrentThreadCpuTime() - startCpuTime : -1L,
+            startAllocatedBytes >= 0L ? ResourceUsage.getCurrentThreadAllocatedBytes() - startAllocatedBytes : -1L);
+      }
+      LatencyHistogramRegistry.getDefault().record(lapse);
+      recordMetrics(metricsCollection, lapse);
+    }
+  }
 
-      throw e;
-    } finally {
-      logMetrics(lapse);
+  /**
+   * Records metrics of each call. If there is a local metrics collection, the span, opened for the call once it
+   * started, is closed, so that the call is logged along with the request, otherwise metrics are passed to
+   * {@link #logMetrics(Metrics)}.
+   * <p>
+   * Subclasses may override this method to observe every call, they should call this method to have the span
+   * closed.
+   * </p>
+   *
+   * @param metricsCollection Local metrics collection, that has been present when the call started, if any
+   * @param metrics Metrics to record
+   */
+  protected void recordMetrics(@Nullable MetricsCollection metricsCollection, Metrics metrics) {
+    if (metricsCollection != null) {
+      metricsCollection.closeSpan(metrics);
+    } else {
+      logMetrics(metrics);
     }
   }
 
+  /**
+   * Records metrics of the call, made when there was no local metrics collection, see also
+   * {@link #recordMetrics(MetricsCollection, Metrics)}.
+   *
+   * @param metrics Metrics to record
+   */
   protected abstract void logMetrics(Metrics metrics);
 
   //
   // Private
   //
 
-  private static String getPlaceFromJoinPoint(ProceedingJoinPoint jp) {
+  private String getOperation(ProceedingJoinPoint jp, LogLapse logLapse) {
+    final String place = logLapse.value();
+    if (StringUtils.hasLength(place)) {
+      return place;
+    }
+
+    // no text in annotation value - fallback to signature name
     final Signature signature = jp.getSignature();
-    if (signature instanceof MethodSignature) {
-      final Method method = ((MethodSignature) signature).getMethod();
-      return method.getDeclaringClass().getSimpleName() + '.' + method.getName();
+    if (!(signature instanceof MethodSignature)) {
+      // fallback to generic name
+      return signature.getName();
     }
 
-    // fallback to generic name
-    return jp.getSignature().getName();
+    // get is tried first as computeIfAbsent locks even if the value is present
+    final Method method = ((MethodSignature) signature).getMethod();
+    final String operation = operationNames.get(method);
+    if (operation != null) {
+      return operation;
+    }
+    return operationNames.computeIfAbsent(method,
+        m -> m.getDeclaringClass().getSimpleName() + '.' + m.getName());
   }
 }
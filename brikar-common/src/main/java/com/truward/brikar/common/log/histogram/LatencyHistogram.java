@@ -0,0 +1,382 @@
+package com.truward.brikar.common.log.histogram;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram of a single operation, that keeps measurements of the last few minutes.
+ * <p>
+ * Measurements are put to log-linear buckets, similar to the ones of HdrHistogram: values below
+ * {@link #SUB_BUCKET_COUNT} are counted exactly, each subsequent power of two range is split into
+ * {@link #SUB_BUCKET_COUNT} equal buckets, so that relative error of reported percentiles never exceeds
+ * <code>1/{@link #SUB_BUCKET_COUNT}</code>. Values above {@link #MAX_VALUE} are counted as {@link #MAX_VALUE}.
+ * </p>
+ * <p>
+ * Measurements are accumulated in per-minute slots, recording is lock-free, except for the first measurement
+ * of each minute, that clears the slot of the minute, that went out of the longest window.
+ * A few measurements, recorded concurrently with the slot rotation, may be lost.
+ * </p>
+ * <p>
+ * Histogram also keeps cumulative counters since its creation, that are suitable for the monitoring systems,
+ * that compute rates on their own, such as Prometheus: measurements by power of two ranges, see
+ * {@link #getCumulativeCount(int)}, number of measurements by response code and number of failures.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class LatencyHistogram {
+
+  /**
+   * Kind of the measured operation.
+   */
+  public enum Kind {
+    /**
+     * Request, served by this process.
+     */
+    REQUEST,
+
+    /**
+     * Call to the other service.
+     */
+    CLIENT_CALL,
+
+    /**
+     * Method, annotated with {@link com.truward.brikar.common.log.LogLapse}, or arbitrary operation.
+     */
+    METHOD
+  }
+
+  /**
+   * Number of buckets per power of two range.
+   */
+  public static final int SUB_BUCKET_COUNT = 16;
+
+  /**
+   * Maximum value, that can be recorded, in milliseconds, which is a little more than 4.5 hours.
+   */
+  public static final long MAX_VALUE = (1L << 24) - 1L;
+
+  /**
+   * Longest window, supported by {@link #getSnapshot(long, int)}, in minutes.
+   */
+  public static final int MAX_WINDOW_MINUTES = 15;
+
+  /**
+   * Number of the cumulative power of two ranges, range <code>i</code> holds values from
+   * <code>2<sup>i - 1</sup></code> to <code>2<sup>i</sup> - 1</code>, range zero holds zero values.
+   */
+  public static final int CUMULATIVE_RANGE_COUNT = 64 - Long.numberOfLeadingZeros(MAX_VALUE) + 1;
+
+  /**
+   * Lowest response code, counted by {@link #getResponseCodeCount(int)}.
+   */
+  public static final int MIN_RESPONSE_CODE = 100;
+
+  /**
+   * Highest response code, counted by {@link #getResponseCodeCount(int)}.
+   */
+  public static final int MAX_RESPONSE_CODE = 599;
+
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKET_COUNT);
+  private static final int BUCKET_COUNT = getBucketIndex(MAX_VALUE) + 1;
+
+  // extra values, kept after the buckets of each slot
+  private static final int SUM_INDEX = BUCKET_COUNT;
+  private static final int MAX_INDEX = BUCKET_COUNT + 1;
+
+  // one more slot, than the longest window, is needed to cover the current, not yet completed, minute
+  private static final int SLOT_COUNT = MAX_WINDOW_MINUTES + 1;
+
+  private final Kind kind;
+  private final String operation;
+  private final Slot[] slots = new Slot[SLOT_COUNT];
+
+  // cumulative counts by power of two ranges followed by the sum of all the measurements
+  private final AtomicLongArray cumulativeCounts = new AtomicLongArray(CUMULATIVE_RANGE_COUNT + 1);
+  private final AtomicLongArray responseCodeCounts;
+  private final AtomicLong failedCount = new AtomicLong();
+
+  public LatencyHistogram(@Nonnull Kind kind, @Nonnull String operation) {
+    this.kind = Objects.requireNonNull(kind, "kind");
+    this.operation = Objects.requireNonNull(operation, "operation");
+    for (int i = 0; i < SLOT_COUNT; ++i) {
+      slots[i] = new Slot();
+    }
+    this.responseCodeCounts = kind != Kind.METHOD ?
+        new AtomicLongArray(MAX_RESPONSE_CODE - MIN_RESPONSE_CODE + 1) : null;
+  }
+
+  public LatencyHistogram(@Nonnull String operation) {
+    this(Kind.METHOD, operation);
+  }
+
+  @Nonnull
+  public Kind getKind() {
+    return kind;
+  }
+
+  @Nonnull
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * Records a single measurement.
+   *
+   * @param minute Current minute, i.e. current time in milliseconds divided by 60000
+   * @param value Measured value in milliseconds, negative values are ignored
+   */
+  public void record(long minute, long value) {
+    record(minute, value, -1, false);
+  }
+
+  /**
+   * Records a single measurement along with its outcome.
+   *
+   * @param minute Current minute, i.e. current time in milliseconds divided by 60000
+   * @param value Measured value in milliseconds, negative values are ignored
+   * @param responseCode Response code or negative value, if operation has no response code
+   * @param failed True, if operation failed
+   */
+  public void record(long minute, long value, int responseCode, boolean failed) {
+    if (value < 0L) {
+      return;
+    }
+    if (value > MAX_VALUE) {
+      value = MAX_VALUE;
+    }
+
+    cumulativeCounts.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+    cumulativeCounts.addAndGet(CUMULATIVE_RANGE_COUNT, value);
+    if (responseCodeCounts != null && responseCode >= MIN_RESPONSE_CODE && responseCode <= MAX_RESPONSE_CODE) {
+      responseCodeCounts.incrementAndGet(responseCode - MIN_RESPONSE_CODE);
+    }
+    if (failed) {
+      failedCount.incrementAndGet();
+    }
+
+    final Slot slot = getSlot(minute);
+    if (slot == null) {
+      return; // measurement is too old
+    }
+
+    final AtomicLongArray counts = slot.counts;
+    counts.incrementAndGet(getBucketIndex(value));
+    counts.addAndGet(SUM_INDEX, value);
+    for (;;) {
+      final long max = counts.get(MAX_INDEX);
+      if (value <= max || counts.compareAndSet(MAX_INDEX, max, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns measurements of the given number of the whole minutes, preceding the current one,
+   * and of the current minute.
+   *
+   * @param minute Current minute, i.e. current time in milliseconds divided by 60000
+   * @param windowMinutes Window length in minutes, from 1 to {@link #MAX_WINDOW_MINUTES}
+   * @return Snapshot of measurements
+   */
+  @Nonnull
+  public Snapshot getSnapshot(long minute, int windowMinutes) {
+    if (windowMinutes <= 0 || windowMinutes > MAX_WINDOW_MINUTES) {
+      throw new IllegalArgumentException("windowMinutes");
+    }
+
+    final long[] counts = new long[BUCKET_COUNT];
+    long sum = 0L;
+    long max = 0L;
+    for (final Slot slot : slots) {
+      final long slotMinute = slot.minute;
+      if (slotMinute > minute || slotMinute < minute - windowMinutes) {
+        continue;
+      }
+
+      for (int i = 0; i < BUCKET_COUNT; ++i) {
+        counts[i] += slot.counts.get(i);
+      }
+      sum += slot.counts.get(SUM_INDEX);
+      max = Math.max(max, slot.counts.get(MAX_INDEX));
+    }
+
+    return new Snapshot(kind, operation, counts, sum, max);
+  }
+
+  /**
+   * @param range Power of two range from zero to {@link #CUMULATIVE_RANGE_COUNT} - 1
+   * @return Number of measurements within the given range since creation of this histogram
+   */
+  public long getCumulativeCount(int range) {
+    if (range < 0 || range >= CUMULATIVE_RANGE_COUNT) {
+      throw new IllegalArgumentException("range");
+    }
+    return cumulativeCounts.get(range);
+  }
+
+  /**
+   * @param range Power of two range from zero to {@link #CUMULATIVE_RANGE_COUNT} - 1
+   * @return Highest value of the given range
+   */
+  public static long getCumulativeRangeHighestValue(int range) {
+    return (1L << range) - 1L;
+  }
+
+  /**
+   * @return Sum of all the measurements since creation of this histogram in milliseconds
+   */
+  public long getCumulativeSum() {
+    return cumulativeCounts.get(CUMULATIVE_RANGE_COUNT);
+  }
+
+  /**
+   * @param responseCode Response code
+   * @return Number of measurements with the given response code since creation of this histogram
+   */
+  public long getResponseCodeCount(int responseCode) {
+    if (responseCodeCounts == null || responseCode < MIN_RESPONSE_CODE || responseCode > MAX_RESPONSE_CODE) {
+      return 0L;
+    }
+    return responseCodeCounts.get(responseCode - MIN_RESPONSE_CODE);
+  }
+
+  /**
+   * @return Number of failed operations since creation of this histogram
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{kind=" + kind + ", operation='" + operation + "'}";
+  }
+
+  /**
+   * Immutable set of measurements, accumulated by the histogram within certain time window.
+   */
+  public static final class Snapshot {
+    private final Kind kind;
+    private final String operation;
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(Kind kind, String operation, long[] counts, long sum, long max) {
+      this.kind = kind;
+      this.operation = operation;
+      this.counts = counts;
+      this.sum = sum;
+      this.max = max;
+
+      long total = 0L;
+      for (final long bucketCount : counts) {
+        total += bucketCount;
+      }
+      this.count = total;
+    }
+
+    @Nonnull
+    public Kind getKind() {
+      return kind;
+    }
+
+    @Nonnull
+    public String getOperation() {
+      return operation;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public double getMean() {
+      return count > 0L ? ((double) sum) / count : 0.0;
+    }
+
+    /**
+     * Returns value, that is greater or equal than the given share of measurements.
+     * Reported value is the highest value of the corresponding bucket, but never exceeds the maximum
+     * measured value.
+     *
+     * @param percentile Share of measurements in <code>[0, 100]</code> range, e.g. <code>99.9</code>
+     * @return Value at the given percentile or zero if there are no measurements
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (percentile < 0.0 || percentile > 100.0) {
+        throw new IllegalArgumentException("percentile");
+      }
+      if (count == 0L) {
+        return 0L;
+      }
+
+      final long rank = Math.max(1L, (long) Math.ceil(percentile * count / 100.0));
+      long accumulated = 0L;
+      for (int i = 0; i < counts.length; ++i) {
+        accumulated += counts[i];
+        if (accumulated >= rank) {
+          return Math.min(getBucketHighestValue(i), max);
+        }
+      }
+      return max;
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private Slot getSlot(long minute) {
+    final Slot slot = slots[(int) (minute % SLOT_COUNT)];
+    final long slotMinute = slot.minute;
+    if (slotMinute == minute) {
+      return slot;
+    }
+    if (slotMinute > minute) {
+      return null;
+    }
+
+    synchronized (slot) {
+      if (slot.minute < minute) {
+        for (int i = 0; i < slot.counts.length(); ++i) {
+          slot.counts.set(i, 0L);
+        }
+        slot.minute = minute;
+      }
+    }
+    return slot.minute == minute ? slot : null;
+  }
+
+  static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+  }
+
+  static long getBucketHighestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    final long lowestValue = ((long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1)))) << shift;
+    return lowestValue + (1L << shift) - 1L;
+  }
+
+  private static final class Slot {
+    final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT + 2);
+    volatile long minute = Long.MIN_VALUE;
+  }
+}
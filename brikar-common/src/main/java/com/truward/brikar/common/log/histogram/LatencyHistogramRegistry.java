@@ -0,0 +1,200 @@
+package com.truward.brikar.common.log.histogram;
+
+import com.truward.brikar.common.log.lapse.Lapse;
+import com.truward.time.TimeSource;
+import com.truward.time.support.StandardTimeSource;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of latency histograms by operation name, fed by the lapses of the served requests, calls to the other
+ * services and methods, annotated with {@link com.truward.brikar.common.log.LogLapse}.
+ * <p>
+ * Histograms are kept separately for each {@link LatencyHistogram.Kind}. Number of tracked operations of each kind
+ * is limited, so that operations with unbounded number of names (e.g. calls to the URLs with IDs in them) don't
+ * exhaust memory, measurements of the operations, that don't fit, are recorded under {@link #OTHER_OPERATION} name.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class LatencyHistogramRegistry {
+
+  /**
+   * Default limit of the tracked operations of each kind.
+   */
+  public static final int DEFAULT_MAX_OPERATIONS = 256;
+
+  /**
+   * Name of the histogram, that accumulates measurements of the operations, that didn't fit into the registry.
+   */
+  public static final String OTHER_OPERATION = "_other";
+
+  private static volatile LatencyHistogramRegistry defaultRegistry =
+      new LatencyHistogramRegistry(DEFAULT_MAX_OPERATIONS, StandardTimeSource.INSTANCE);
+
+  private final int maxOperations;
+  private final TimeSource timeSource;
+  private final Map<LatencyHistogram.Kind, ConcurrentMap<String, LatencyHistogram>> histograms =
+      new EnumMap<>(LatencyHistogram.Kind.class);
+  private volatile boolean enabled = true;
+
+  public LatencyHistogramRegistry(int maxOperations, TimeSource timeSource) {
+    if (maxOperations <= 0) {
+      throw new IllegalArgumentException("maxOperations");
+    }
+
+    this.maxOperations = maxOperations;
+    this.timeSource = Objects.requireNonNull(timeSource, "timeSource");
+    for (final LatencyHistogram.Kind kind : LatencyHistogram.Kind.values()) {
+      histograms.put(kind, new ConcurrentHashMap<>());
+    }
+  }
+
+  /**
+   * @return Registry, that is fed by the standard lapse producers
+   */
+  @Nonnull
+  public static LatencyHistogramRegistry getDefault() {
+    return defaultRegistry;
+  }
+
+  public static void setDefault(LatencyHistogramRegistry registry) {
+    defaultRegistry = Objects.requireNonNull(registry, "registry");
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getMaxOperations() {
+    return maxOperations;
+  }
+
+  /**
+   * Records duration of the completed method lapse, lapses without start or end time are ignored.
+   *
+   * @param lapse Completed lapse
+   */
+  public void record(Lapse lapse) {
+    record(LatencyHistogram.Kind.METHOD, lapse, -1);
+  }
+
+  /**
+   * Records duration of the completed lapse, lapses without start or end time are ignored.
+   *
+   * @param kind Kind of the operation
+   * @param lapse Completed lapse
+   * @param responseCode Response code or negative value, if operation has no response code
+   */
+  public void record(LatencyHistogram.Kind kind, Lapse lapse, int responseCode) {
+    final long startTime = lapse.getStartTime();
+    final long endTime = lapse.getEndTime();
+    if (startTime >= 0L && endTime >= startTime) {
+      record(kind, lapse.getOperation(), endTime - startTime, responseCode, lapse.isFailed());
+    }
+  }
+
+  /**
+   * Records a single measurement of the given method or arbitrary operation.
+   *
+   * @param operation Operation name
+   * @param timeDelta Operation duration in milliseconds
+   */
+  public void record(String operation, long timeDelta) {
+    record(LatencyHistogram.Kind.METHOD, operation, timeDelta, -1, false);
+  }
+
+  /**
+   * Records a single measurement of the given operation.
+   *
+   * @param kind Kind of the operation
+   * @param operation Operation name
+   * @param timeDelta Operation duration in milliseconds
+   * @param responseCode Response code or negative value, if operation has no response code
+   * @param failed True, if operation failed
+   */
+  public void record(LatencyHistogram.Kind kind, String operation, long timeDelta, int responseCode, boolean failed) {
+    if (!enabled) {
+      return;
+    }
+
+    getHistogram(kind, operation).record(getCurrentMinute(), timeDelta, responseCode, failed);
+  }
+
+  /**
+   * Returns histograms of the given kind. Returned collection is a live view, that is not copied, so
+   * histograms, added while iterating over it, may or may not be visited.
+   *
+   * @param kind Kind of the operations
+   * @return Histograms of the given kind
+   */
+  @Nonnull
+  public Collection<LatencyHistogram> getHistograms(LatencyHistogram.Kind kind) {
+    return Collections.unmodifiableCollection(histograms.get(kind).values());
+  }
+
+  /**
+   * Returns snapshots of all the operations, sorted by kind and operation name.
+   *
+   * @param windowMinutes Window length in minutes, from 1 to {@link LatencyHistogram#MAX_WINDOW_MINUTES}
+   * @return Snapshots of the operations, that have measurements within the given window
+   */
+  @Nonnull
+  public List<LatencyHistogram.Snapshot> getSnapshots(int windowMinutes) {
+    final long minute = getCurrentMinute();
+    final List<LatencyHistogram.Snapshot> result = new ArrayList<>();
+    for (final ConcurrentMap<String, LatencyHistogram> kindHistograms : histograms.values()) {
+      for (final LatencyHistogram histogram : kindHistograms.values()) {
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot(minute, windowMinutes);
+        if (snapshot.getCount() > 0L) {
+          result.add(snapshot);
+        }
+      }
+    }
+
+    result.sort(Comparator.comparing(LatencyHistogram.Snapshot::getKind)
+        .thenComparing(LatencyHistogram.Snapshot::getOperation));
+    return Collections.unmodifiableList(result);
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogramRegistry{maxOperations=" + maxOperations + ", enabled=" + enabled + '}';
+  }
+
+  //
+  // Private
+  //
+
+  private LatencyHistogram getHistogram(LatencyHistogram.Kind kind, String operation) {
+    final ConcurrentMap<String, LatencyHistogram> kindHistograms = histograms.get(kind);
+    final LatencyHistogram histogram = kindHistograms.get(operation);
+    if (histogram != null) {
+      return histogram;
+    }
+
+    // size is checked before insertion, so that limit can be slightly exceeded under contention
+    final String name = kindHistograms.size() < maxOperations ? operation : OTHER_OPERATION;
+    return kindHistograms.computeIfAbsent(name, key -> new LatencyHistogram(kind, key));
+  }
+
+  private long getCurrentMinute() {
+    return timeSource.getTimeUnit().toMinutes(timeSource.currentTime());
+  }
+}
@@ -0,0 +1,87 @@
+package com.truward.brikar.common.log.lapse;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.watchdog.SlowCallWatchdog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Support for the code, generated for classes, annotated with
+ * {@link com.truward.brikar.common.log.GenerateLapseLogging}. Generated methods look as follows:
+ * <pre>
+ * final MetricsCollection metricsCollection = LogUtil.getLocalMetricsCollection();
+ * final SimpleLapse lapse = LapseLogging.open(metricsCollection, "UserService.getUser");
+ * final long startNanos = System.nanoTime();
+ * boolean failed = true;
+ * try {
+ *   final User result = super.getUser(id);
+ *   failed = false;
+ *   return result;
+ * } finally {
+ *   LapseLogging.close(metricsCollection, lapse, startNanos, failed);
+ * }
+ * </pre>
+ * Lapses are recorded in the same way as they are recorded by
+ * {@link com.truward.brikar.common.log.aspect.StandardLapseLoggerAspect}: they become spans of the local metrics
+ * collection or are logged by <code>BrikarLapseLogger</code> logger, if there is no local metrics collection.
+ * Calls are tracked by the default {@link SlowCallWatchdog}.
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class LapseLogging {
+  private LapseLogging() {}
+
+  private static final Logger LOG = LoggerFactory.getLogger("BrikarLapseLogger");
+
+  /**
+   * Starts recording of the call.
+   *
+   * @param metricsCollection Local metrics collection, see {@link LogUtil#getLocalMetricsCollection()}
+   * @param operation Operation name
+   * @return New lapse
+   */
+  @Nonnull
+  public static SimpleLapse open(@Nullable MetricsCollection metricsCollection, String operation) {
+    final SimpleLapse lapse = new SimpleLapse().setOperation(operation).setStartTime(System.currentTimeMillis());
+    // nested calls and calls to the other services become children of this call
+    if (metricsCollection != null) {
+      metricsCollection.openSpan(lapse);
+    }
+    SlowCallWatchdog.getDefault().enter(operation, lapse);
+    return lapse;
+  }
+
+  /**
+   * Completes recording of the call.
+   *
+   * @param metricsCollection Local metrics collection, passed to {@link #open(MetricsCollection, String)}
+   * @param lapse Lapse, returned by {@link #open(MetricsCollection, String)}
+   * @param startNanos Value of {@link System#nanoTime()} at the start of the call
+   * @param failed True, if call has thrown an exception
+   */
+  public static void close(@Nullable MetricsCollection metricsCollection,
+                           SimpleLapse lapse,
+                           long startNanos,
+                           boolean failed) {
+    final long timeDeltaMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    lapse.setEndTime(lapse.getStartTime() + timeDeltaMicros / 1000L)
+        .setTimeDeltaMicros(timeDeltaMicros)
+        .setFailed(failed);
+    SlowCallWatchdog.getDefault().exit(lapse);
+
+    LatencyHistogramRegistry.getDefault().record(lapse);
+    if (metricsCollection != null) {
+      metricsCollection.closeSpan(lapse);
+    } else {
+      LogUtil.propagateOrLogInfo(lapse, LOG);
+    }
+  }
+}
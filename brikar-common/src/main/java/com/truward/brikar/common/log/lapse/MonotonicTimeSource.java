@@ -0,0 +1,27 @@
+package com.truward.brikar.common.log.lapse;
+
+import com.truward.time.TimeSource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time source, backed by {@link System#nanoTime()}. Its values are only meaningful as a difference between two
+ * readings, so it should be used to measure elapsed time, not to get current time.
+ *
+ * @author Alexander Shabanov
+ */
+public final class MonotonicTimeSource implements TimeSource {
+  public static final MonotonicTimeSource INSTANCE = new MonotonicTimeSource();
+
+  private MonotonicTimeSource() {}
+
+  @Override
+  public long currentTime() {
+    return System.nanoTime();
+  }
+
+  @Override
+  public TimeUnit getTimeUnit() {
+    return TimeUnit.NANOSECONDS;
+  }
+}
@@ -6,20 +6,33 @@ import com.truward.time.TimeSource;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
+ * Lapse with arbitrary extra properties. Numeric and boolean properties are kept as primitives and rendered
+ * without intermediate strings, properties are rendered in the order of their first assignment.
+ *
  * @author Alexander Shabanov
  */
 public final class SimpleLapse implements Lapse {
+  private static final int INITIAL_PROPERTY_CAPACITY = 4;
+  private static final byte TYPE_STRING = 0;
+  private static final byte TYPE_LONG = 1;
+  private static final byte TYPE_BOOLEAN = 2;
+
   private String operation = LogUtil.UNKNOWN_VALUE;
   private long startTime = -1L;
   private long endTime = -1L;
+  private long timeDeltaMicros = -1L;
   private boolean failed;
   private int count = -1;
-  private Map<String, String> extraProperties = Collections.emptyMap();
+
+  // extra properties, arrays are allocated once first property is set
+  private String[] propertyNames;
+  private String[] stringValues;
+  private long[] longValues;
+  private byte[] propertyTypes;
+  private int propertyCount;
 
   public SimpleLapse setOperation(@Nonnull String value) {
     this.operation = value;
@@ -44,6 +57,21 @@ public final class SimpleLapse implements Lapse {
     return setEndTime(timeSource.getTimeUnit().toMillis(timeSource.currentTime()));
   }
 
+  /**
+   * Sets time spent in microseconds, measured with a monotonic clock. Negative value means it has not been measured.
+   *
+   * @param value Time spent in microseconds
+   * @return This instance
+   */
+  public SimpleLapse setTimeDeltaMicros(long value) {
+    this.timeDeltaMicros = value;
+    return this;
+  }
+
+  public long getTimeDeltaMicros() {
+    return timeDeltaMicros;
+  }
+
   public SimpleLapse setFailed(boolean failed) {
     this.failed = failed;
     return this;
@@ -59,23 +87,19 @@ public final class SimpleLapse implements Lapse {
   }
 
   public SimpleLapse setProperty(String name, String value) {
-    if (extraProperties.isEmpty()) {
-      extraProperties = new HashMap<>();
-    }
-    extraProperties.put(name, value);
-    return this;
+    return setProperty(name, TYPE_STRING, value, 0L);
   }
 
   public SimpleLapse setProperty(String name, int value) {
-    return setProperty(name, Integer.toString(value));
+    return setProperty(name, TYPE_LONG, null, value);
   }
 
   public SimpleLapse setProperty(String name, long value) {
-    return setProperty(name, Long.toString(value));
+    return setProperty(name, TYPE_LONG, null, value);
   }
 
   public SimpleLapse setProperty(String name, boolean value) {
-    return setProperty(name, Boolean.toString(value));
+    return setProperty(name, TYPE_BOOLEAN, null, value ? 1L : 0L);
   }
 
   @Override
@@ -111,15 +135,69 @@ public final class SimpleLapse implements Lapse {
         Metrics.appendPositiveValueOrSkip(appendable, true, LogUtil.TIME_DELTA, endTime - startTime);
       }
     }
+    if (timeDeltaMicros >= 0L) {
+      Metrics.appendValue(appendable, true, LogUtil.TIME_DELTA_MICROS, timeDeltaMicros);
+    }
 
     Metrics.appendPositiveValueOrSkip(appendable, true, LogUtil.COUNT, getCount());
     Metrics.appendTrueValueOrSkip(appendable, true, LogUtil.FAILED, isFailed());
 
-    if (extraProperties.isEmpty()) {
-      return;
+    for (int i = 0; i < propertyCount; ++i) {
+      switch (propertyTypes[i]) {
+        case TYPE_LONG:
+          Metrics.appendValue(appendable, true, propertyNames[i], longValues[i]);
+          break;
+        case TYPE_BOOLEAN:
+          Metrics.appendValue(appendable, true, propertyNames[i], longValues[i] != 0L);
+          break;
+        default:
+          Metrics.appendValue(appendable, true, propertyNames[i], stringValues[i]);
+      }
     }
-    for (final Map.Entry<String, String> extraPropEntry : extraProperties.entrySet()) {
-      Metrics.appendValue(appendable, true, extraPropEntry.getKey(), extraPropEntry.getValue());
+  }
+
+  //
+  // Private
+  //
+
+  private SimpleLapse setProperty(String name, byte type, String stringValue, long longValue) {
+    int index = indexOfProperty(name);
+    if (index < 0) {
+      if (propertyNames == null) {
+        propertyNames = new String[INITIAL_PROPERTY_CAPACITY];
+        stringValues = new String[INITIAL_PROPERTY_CAPACITY];
+        longValues = new long[INITIAL_PROPERTY_CAPACITY];
+        propertyTypes = new byte[INITIAL_PROPERTY_CAPACITY];
+      } else if (propertyCount == propertyNames.length) {
+        final int newLength = propertyCount * 2;
+        propertyNames = Arrays.copyOf(propertyNames, newLength);
+        stringValues = Arrays.copyOf(stringValues, newLength);
+        longValues = Arrays.copyOf(longValues, newLength);
+        propertyTypes = Arrays.copyOf(propertyTypes, newLength);
+      }
+
+      index = propertyCount++;
+      propertyNames[index] = name;
+    }
+
+    propertyTypes[index] = type;
+    stringValues[index] = stringValue;
+    longValues[index] = longValue;
+    return this;
+  }
+
+  private int indexOfProperty(String name) {
+    // property names are usually constants, so identity check is tried first
+    for (int i = 0; i < propertyCount; ++i) {
+      if (propertyNames[i] == name) {
+        return i;
+      }
+    }
+    for (int i = 0; i < propertyCount; ++i) {
+      if (propertyNames[i].equals(name)) {
+        return i;
+      }
     }
+    return -1;
   }
 }
@@ -0,0 +1,272 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sink, that writes metrics to the logs asynchronously, so that formatting of metric entries and log I/O don't add
+ * up to the latency of the calling threads.
+ * <p>
+ * Calling threads put metrics to the bounded lock-free ring buffer along with a copy of their {@link MDC} context,
+ * a single background thread takes them in batches, formats and writes them to the associated loggers.
+ * Since log entries are created by the background thread, the name of the calling thread is put to the MDC context
+ * as {@link LogUtil#ORIGINATING_THREAD} attribute.
+ * When buffer is full, metrics are either dropped and counted or the calling thread waits for the free space,
+ * see {@link OverflowPolicy}.
+ * </p>
+ * <p>
+ * Sink is used by {@link LogUtil#logInfo(MetricsCollection, Logger)} once installed, see
+ * {@link LogUtil#setMetricsSink(AsyncMetricsSink)}.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class AsyncMetricsSink implements AutoCloseable {
+
+  /**
+   * Operation name, under which sink metrics are reported.
+   */
+  public static final String OPERATION = "AsyncMetricsSink";
+
+  public static final String QUEUED = "queued";
+  public static final String WRITTEN = "written";
+  public static final String DROPPED = "dropped";
+
+  /**
+   * Tells what to do with the metrics, that don't fit into the buffer.
+   */
+  public enum OverflowPolicy {
+    /**
+     * Drop metrics and count them, see {@link #DROPPED}.
+     */
+    DROP,
+
+    /**
+     * Block the calling thread until there is a free space in the buffer.
+     */
+    BLOCK
+  }
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+  private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+
+  private final AtomicReferenceArray<Entry> buffer;
+  private final int mask;
+  private final int batchSize;
+  private final OverflowPolicy overflowPolicy;
+
+  // position of the next entry to put, advanced by the calling threads
+  private final AtomicLong tail = new AtomicLong();
+  // position of the next entry to take, advanced by the writer thread only
+  private volatile long head;
+  private volatile boolean idle;
+  private volatile boolean closed;
+
+  private final AtomicLong writtenCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final Thread writerThread;
+
+  /**
+   * Creates sink and starts its writer thread.
+   *
+   * @param bufferSize Buffer size, rounded up to the nearest power of two
+   * @param batchSize Maximum number of entries, written in one batch
+   * @param overflowPolicy Overflow policy
+   */
+  public AsyncMetricsSink(int bufferSize, int batchSize, OverflowPolicy overflowPolicy) {
+    if (bufferSize <= 0 || bufferSize > (1 << 30)) {
+      throw new IllegalArgumentException("bufferSize");
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize");
+    }
+
+    final int capacity = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+    this.buffer = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+    this.batchSize = batchSize;
+    this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+
+    this.writerThread = new Thread(this::writeLoop, "BrikarMetricsWriter");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  public int getCapacity() {
+    return buffer.length();
+  }
+
+  @Nonnull
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * @return Number of metrics, waiting to be written
+   */
+  public long getQueueSize() {
+    return Math.max(0L, tail.get() - head);
+  }
+
+  /**
+   * Puts metrics collection to the buffer. Metrics collection should not be modified after this call.
+   *
+   * @param log Logger, that should be used to write metrics
+   * @param metricsCollection Metrics collection to write
+   * @return True, if metrics have been accepted, false if they have been dropped
+   */
+  public boolean offer(Logger log, MetricsCollection metricsCollection) {
+    final Entry entry = new Entry(log, metricsCollection, MDC.getCopyOfContextMap(),
+        Thread.currentThread().getName());
+
+    for (;;) {
+      if (closed) {
+        droppedCount.incrementAndGet();
+        return false;
+      }
+
+      final long position = tail.get();
+      if (position - head >= buffer.length()) {
+        if (overflowPolicy == OverflowPolicy.DROP) {
+          droppedCount.incrementAndGet();
+          return false;
+        }
+
+        LockSupport.unpark(writerThread);
+        LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        continue;
+      }
+
+      if (tail.compareAndSet(position, position + 1L)) {
+        buffer.lazySet((int) position & mask, entry);
+        break;
+      }
+    }
+
+    if (idle) {
+      LockSupport.unpark(writerThread);
+    }
+    return true;
+  }
+
+  /**
+   * Returns sink state as a metrics entry. Counters are reported as deltas since the previous call to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(QUEUED, getQueueSize())
+        .setProperty(WRITTEN, writtenCount.getAndSet(0L))
+        .setProperty(DROPPED, droppedCount.getAndSet(0L));
+  }
+
+  /**
+   * Stops accepting new metrics and waits until buffered metrics are written.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "AsyncMetricsSink{capacity=" + getCapacity() + ", batchSize=" + batchSize +
+        ", overflowPolicy=" + overflowPolicy + '}';
+  }
+
+  //
+  // Private
+  //
+
+  private void writeLoop() {
+    for (;;) {
+      if (writeBatch() > 0) {
+        continue;
+      }
+
+      if (tail.get() != head) {
+        // an entry has been claimed, but hasn't been put yet
+        Thread.yield();
+        continue;
+      }
+
+      if (closed) {
+        return;
+      }
+
+      idle = true;
+      if (tail.get() == head && !closed) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      }
+      idle = false;
+    }
+  }
+
+  private int writeBatch() {
+    long position = head;
+    int count = 0;
+    for (; count < batchSize; ++count, ++position) {
+      final int index = (int) position & mask;
+      final Entry entry = buffer.get(index);
+      if (entry == null) {
+        break;
+      }
+
+      buffer.lazySet(index, null);
+      head = position + 1L;
+      write(entry);
+    }
+
+    return count;
+  }
+
+  private void write(Entry entry) {
+    try {
+      if (entry.context != null) {
+        MDC.setContextMap(entry.context);
+      }
+      MDC.put(LogUtil.ORIGINATING_THREAD, entry.threadName);
+      entry.log.info(entry.metricsCollection.toString());
+      writtenCount.incrementAndGet();
+    } catch (RuntimeException e) {
+      entry.log.error("Unable to write metrics", e);
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  private static final class Entry {
+    final Logger log;
+    final MetricsCollection metricsCollection;
+    final Map<String, String> context;
+    final String threadName;
+
+    Entry(Logger log, MetricsCollection metricsCollection, Map<String, String> context, String threadName) {
+      this.log = log;
+      this.metricsCollection = metricsCollection;
+      this.context = context;
+      this.threadName = threadName;
+    }
+  }
+}
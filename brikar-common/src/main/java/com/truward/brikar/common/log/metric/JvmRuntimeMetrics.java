@@ -0,0 +1,164 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+
+import javax.annotation.Nonnull;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of JVM runtime metrics, such as heap usage, garbage collections, threads, class loading, process CPU usage
+ * and direct buffers, that should be polled periodically, e.g. by {@link PeriodicMetricsReporter}. Each poll
+ * produces a single {@link LogUtil#METRIC_ENTRY} record, e.g.
+ * <pre>
+ * op=JvmRuntime, heapUsed=104857600, heapCommitted=268435456, heapMax=1073741824, nonHeapUsed=52428800,
+ * gcCount=3, gcTime=41, threads=42, daemonThreads=38, loadedClasses=8042, unloadedClasses=0,
+ * cpuMicros=1250000, cpuPercent=12, directBuffers=16, directUsed=1048576, mappedUsed=0
+ * </pre>
+ * Garbage collection counts and times (in milliseconds), summed over all the collectors, as well as CPU time, consumed
+ * by the process (in microseconds), and its share of all the processors are accounted since the previous poll,
+ * so that spikes of request latency can be lined up with garbage collections. Metrics, that JVM doesn't support,
+ * are skipped.
+ * <p>
+ * All the values are read from the counters, that JVM maintains anyway, none of them requires a safepoint or
+ * a thread dump, so polling is cheap. Instances are not thread safe, they should be polled by one thread at a time.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class JvmRuntimeMetrics {
+
+  /**
+   * Operation name, under which JVM runtime metrics are reported.
+   */
+  public static final String OPERATION = "JvmRuntime";
+
+  public static final String HEAP_USED = "heapUsed";
+  public static final String HEAP_COMMITTED = "heapCommitted";
+  public static final String HEAP_MAX = "heapMax";
+  public static final String NON_HEAP_USED = "nonHeapUsed";
+  public static final String GC_COUNT = "gcCount";
+  public static final String GC_TIME = "gcTime";
+  public static final String THREADS = "threads";
+  public static final String DAEMON_THREADS = "daemonThreads";
+  public static final String LOADED_CLASSES = "loadedClasses";
+  public static final String UNLOADED_CLASSES = "unloadedClasses";
+  public static final String CPU_PERCENT = "cpuPercent";
+  public static final String DIRECT_BUFFERS = "directBuffers";
+  public static final String DIRECT_USED = "directUsed";
+  public static final String MAPPED_USED = "mappedUsed";
+
+  private static final String DIRECT_POOL = "direct";
+  private static final String MAPPED_POOL = "mapped";
+
+  private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+  private final List<GarbageCollectorMXBean> garbageCollectorMXBeans = ManagementFactory.getGarbageCollectorMXBeans();
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final ClassLoadingMXBean classLoadingMXBean = ManagementFactory.getClassLoadingMXBean();
+  private final OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+  private final List<BufferPoolMXBean> bufferPoolMXBeans =
+      ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+
+  private long lastGcCount;
+  private long lastGcTime;
+  private long lastUnloadedClasses;
+  private long lastCpuTime;
+  private long lastPollTime;
+
+  public JvmRuntimeMetrics() {
+    // start accounting from now on, so that the first poll reports values since creation of this instance
+    lastGcCount = getGcCount();
+    lastGcTime = getGcTime();
+    lastUnloadedClasses = classLoadingMXBean.getUnloadedClassCount();
+    lastCpuTime = getProcessCpuTime();
+    lastPollTime = System.nanoTime();
+  }
+
+  /**
+   * @return Current JVM runtime metrics
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    final SimpleLapse result = new SimpleLapse().setOperation(OPERATION);
+
+    final MemoryUsage heapUsage = memoryMXBean.getHeapMemoryUsage();
+    result.setProperty(HEAP_USED, heapUsage.getUsed())
+        .setProperty(HEAP_COMMITTED, heapUsage.getCommitted());
+    if (heapUsage.getMax() >= 0L) {
+      result.setProperty(HEAP_MAX, heapUsage.getMax());
+    }
+    result.setProperty(NON_HEAP_USED, memoryMXBean.getNonHeapMemoryUsage().getUsed());
+
+    final long gcCount = getGcCount();
+    final long gcTime = getGcTime();
+    result.setProperty(GC_COUNT, gcCount - lastGcCount)
+        .setProperty(GC_TIME, gcTime - lastGcTime);
+    lastGcCount = gcCount;
+    lastGcTime = gcTime;
+
+    final long unloadedClasses = classLoadingMXBean.getUnloadedClassCount();
+    result.setProperty(THREADS, threadMXBean.getThreadCount())
+        .setProperty(DAEMON_THREADS, threadMXBean.getDaemonThreadCount())
+        .setProperty(LOADED_CLASSES, classLoadingMXBean.getLoadedClassCount())
+        .setProperty(UNLOADED_CLASSES, unloadedClasses - lastUnloadedClasses);
+    lastUnloadedClasses = unloadedClasses;
+
+    final long cpuTime = getProcessCpuTime();
+    final long pollTime = System.nanoTime();
+    if (cpuTime >= 0L && lastCpuTime >= 0L) {
+      final long cpuTimeDelta = cpuTime - lastCpuTime;
+      result.setProperty(LogUtil.CPU_TIME, TimeUnit.NANOSECONDS.toMicros(cpuTimeDelta));
+      final long capacity = (pollTime - lastPollTime) * operatingSystemMXBean.getAvailableProcessors();
+      if (capacity > 0L) {
+        result.setProperty(CPU_PERCENT, Math.round(100.0 * cpuTimeDelta / capacity));
+      }
+    }
+    lastCpuTime = cpuTime;
+    lastPollTime = pollTime;
+
+    for (final BufferPoolMXBean bufferPool : bufferPoolMXBeans) {
+      if (DIRECT_POOL.equals(bufferPool.getName())) {
+        result.setProperty(DIRECT_BUFFERS, bufferPool.getCount())
+            .setProperty(DIRECT_USED, bufferPool.getMemoryUsed());
+      } else if (MAPPED_POOL.equals(bufferPool.getName())) {
+        result.setProperty(MAPPED_USED, bufferPool.getMemoryUsed());
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Private
+  //
+
+  private long getGcCount() {
+    long result = 0L;
+    for (final GarbageCollectorMXBean garbageCollector : garbageCollectorMXBeans) {
+      result += Math.max(garbageCollector.getCollectionCount(), 0L); // negative value means count is undefined
+    }
+    return result;
+  }
+
+  private long getGcTime() {
+    long result = 0L;
+    for (final GarbageCollectorMXBean garbageCollector : garbageCollectorMXBeans) {
+      result += Math.max(garbageCollector.getCollectionTime(), 0L); // negative value means time is undefined
+    }
+    return result;
+  }
+
+  private long getProcessCpuTime() {
+    return operatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean ?
+        ((com.sun.management.OperatingSystemMXBean) operatingSystemMXBean).getProcessCpuTime() : -1L;
+  }
+}
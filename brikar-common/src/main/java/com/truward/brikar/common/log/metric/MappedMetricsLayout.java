@@ -0,0 +1,100 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the memory-mapped metrics file, written by {@link MappedMetricsSink}.
+ * <p>
+ * File starts with a header of {@link #HEADER_SIZE} bytes, followed by slots of {@link #SLOT_SIZE} bytes each.
+ * Slots are allocated in order, total number of slots and number of allocated slots are kept in the header.
+ * All the numbers are written in {@link #BYTE_ORDER}, longs are aligned on 8 bytes, so that readers never see
+ * torn values.
+ * </p>
+ * <p>
+ * Header:
+ * </p>
+ * <ul>
+ *   <li>{@link #MAGIC_OFFSET} - int, {@link #MAGIC}</li>
+ *   <li>{@link #VERSION_OFFSET} - int, {@link #VERSION}</li>
+ *   <li>{@link #PID_OFFSET} - long, ID of the writer process</li>
+ *   <li>{@link #START_TIME_OFFSET} - long, writer start time in milliseconds</li>
+ *   <li>{@link #UPDATE_TIME_OFFSET} - long, time of the last update in milliseconds</li>
+ *   <li>{@link #SLOT_COUNT_OFFSET} - int, total number of slots</li>
+ *   <li>{@link #USED_SLOT_COUNT_OFFSET} - int, number of allocated slots</li>
+ *   <li>{@link #CLOSED_OFFSET} - int, 1 if writer has been closed</li>
+ * </ul>
+ * <p>
+ * Slot:
+ * </p>
+ * <ul>
+ *   <li>{@link #SLOT_TYPE_OFFSET} - int, {@link #TYPE_GAUGE} or {@link #TYPE_HISTOGRAM}</li>
+ *   <li>{@link #SLOT_KIND_OFFSET} - int, ordinal of {@link LatencyHistogram.Kind} for histograms, -1 otherwise</li>
+ *   <li>{@link #SLOT_NAME_LENGTH_OFFSET} - int, length of the name in bytes</li>
+ *   <li>{@link #SLOT_NAME_OFFSET} - name in UTF-8, up to {@link #MAX_NAME_LENGTH} bytes</li>
+ *   <li>{@link #SLOT_VALUE_OFFSET} - long, gauge value or number of measurements</li>
+ *   <li>{@link #SLOT_SUM_OFFSET} - long, sum of the measurements in milliseconds</li>
+ *   <li>{@link #SLOT_FAILED_OFFSET} - long, number of failures</li>
+ *   <li>{@link #SLOT_RANGES_OFFSET} - longs, number of measurements by power of two ranges,
+ *   see {@link LatencyHistogram#getCumulativeCount(int)}</li>
+ *   <li>{@link #SLOT_RESPONSE_CLASSES_OFFSET} - longs, number of 1xx, 2xx, 3xx, 4xx and 5xx responses</li>
+ * </ul>
+ *
+ * @author Alexander Shabanov
+ */
+public final class MappedMetricsLayout {
+  private MappedMetricsLayout() {}
+
+  public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  /**
+   * "BMET" in ASCII.
+   */
+  public static final int MAGIC = 0x424d4554;
+  public static final int VERSION = 1;
+
+  public static final int MAGIC_OFFSET = 0;
+  public static final int VERSION_OFFSET = 4;
+  public static final int PID_OFFSET = 8;
+  public static final int START_TIME_OFFSET = 16;
+  public static final int UPDATE_TIME_OFFSET = 24;
+  public static final int SLOT_COUNT_OFFSET = 32;
+  public static final int USED_SLOT_COUNT_OFFSET = 36;
+  public static final int CLOSED_OFFSET = 40;
+  public static final int HEADER_SIZE = 64;
+
+  public static final int TYPE_GAUGE = 1;
+  public static final int TYPE_HISTOGRAM = 2;
+
+  public static final int MAX_NAME_LENGTH = 128;
+  public static final int RANGE_COUNT = LatencyHistogram.CUMULATIVE_RANGE_COUNT;
+  public static final int RESPONSE_CLASS_COUNT = 5;
+
+  public static final int SLOT_TYPE_OFFSET = 0;
+  public static final int SLOT_KIND_OFFSET = 4;
+  public static final int SLOT_NAME_LENGTH_OFFSET = 8;
+  public static final int SLOT_NAME_OFFSET = 16;
+  public static final int SLOT_VALUE_OFFSET = SLOT_NAME_OFFSET + MAX_NAME_LENGTH;
+  public static final int SLOT_SUM_OFFSET = SLOT_VALUE_OFFSET + 8;
+  public static final int SLOT_FAILED_OFFSET = SLOT_SUM_OFFSET + 8;
+  public static final int SLOT_RANGES_OFFSET = SLOT_FAILED_OFFSET + 8;
+  public static final int SLOT_RESPONSE_CLASSES_OFFSET = SLOT_RANGES_OFFSET + RANGE_COUNT * 8;
+  public static final int SLOT_SIZE = 512;
+
+  /**
+   * @param slot Slot index
+   * @return Offset of the slot from the beginning of the file
+   */
+  public static int getSlotOffset(int slot) {
+    return HEADER_SIZE + slot * SLOT_SIZE;
+  }
+
+  /**
+   * @param slotCount Number of slots
+   * @return Size of the file with the given number of slots
+   */
+  public static int getFileSize(int slotCount) {
+    return getSlotOffset(slotCount);
+  }
+}
@@ -0,0 +1,315 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Sink, that publishes metrics to the memory-mapped file with a fixed layout, see {@link MappedMetricsLayout},
+ * so that sidecar processes on the same host can poll many services cheaply, without HTTP calls or log parsing.
+ * <p>
+ * Request threads never touch the file: latency histograms of the given {@link LatencyHistogramRegistry} and
+ * registered gauges are copied to the file by a single daemon thread with the given period. Values are written
+ * with plain aligned writes, which is enough as there is only one writer.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class MappedMetricsSink implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(MappedMetricsSink.class);
+
+  private final File file;
+  private final int slotCount;
+  private final MappedByteBuffer buffer;
+  private final LatencyHistogramRegistry registry;
+  private final CopyOnWriteArrayList<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+  // accessed by the publishing thread only
+  private final Map<LatencyHistogram.Kind, Map<String, Integer>> histogramSlots =
+      new EnumMap<>(LatencyHistogram.Kind.class);
+  private final Map<String, Integer> gaugeSlots = new HashMap<>();
+  private int usedSlotCount;
+  private boolean overflowReported;
+
+  private ScheduledExecutorService executor;
+
+  /**
+   * Creates the file and maps it to memory. Existing file is atomically replaced by the new one, so that readers,
+   * which still map the file of the previous process, keep reading its last values until they map the new file.
+   *
+   * @param file File to write metrics to, usually on tmpfs, e.g. in <code>/dev/shm</code>
+   * @param slotCount Maximum number of histograms and gauges, that can be published
+   * @param registry Registry, which histograms should be published
+   * @throws IOException On I/O error
+   */
+  public MappedMetricsSink(File file, int slotCount, LatencyHistogramRegistry registry) throws IOException {
+    if (slotCount <= 0) {
+      throw new IllegalArgumentException("slotCount");
+    }
+
+    this.file = Objects.requireNonNull(file, "file");
+    this.slotCount = slotCount;
+    this.registry = Objects.requireNonNull(registry, "registry");
+    for (final LatencyHistogram.Kind kind : LatencyHistogram.Kind.values()) {
+      histogramSlots.put(kind, new HashMap<>());
+    }
+
+    // file of the previous process may still be mapped by the readers, so it is replaced rather than truncated
+    final File directory = file.getAbsoluteFile().getParentFile();
+    final File tempFile = File.createTempFile('.' + file.getName() + '.', ".tmp", directory);
+    try {
+      final int size = MappedMetricsLayout.getFileSize(slotCount);
+      try (final RandomAccessFile randomAccessFile = new RandomAccessFile(tempFile, "rw")) {
+        randomAccessFile.setLength(size);
+        this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, size);
+      }
+      buffer.order(MappedMetricsLayout.BYTE_ORDER);
+
+      final long now = System.currentTimeMillis();
+      buffer.putInt(MappedMetricsLayout.VERSION_OFFSET, MappedMetricsLayout.VERSION);
+      buffer.putLong(MappedMetricsLayout.PID_OFFSET, getProcessId());
+      buffer.putLong(MappedMetricsLayout.START_TIME_OFFSET, now);
+      buffer.putLong(MappedMetricsLayout.UPDATE_TIME_OFFSET, now);
+      buffer.putInt(MappedMetricsLayout.SLOT_COUNT_OFFSET, slotCount);
+      buffer.putInt(MappedMetricsLayout.MAGIC_OFFSET, MappedMetricsLayout.MAGIC);
+
+      replace(tempFile, file);
+    } finally {
+      if (tempFile.exists() && !tempFile.delete()) {
+        LOG.warn("Unable to delete {}", tempFile);
+      }
+    }
+  }
+
+  @Nonnull
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Registers gauge, that is published along with the histograms.
+   *
+   * @param name Gauge name, e.g. <code>threadPool.qtp1.threads</code>
+   * @param supplier Gauge value supplier, it is called by the publishing thread and should never block
+   * @return This instance
+   */
+  public MappedMetricsSink addGauge(String name, LongSupplier supplier) {
+    gauges.add(new Gauge(name, supplier));
+    return this;
+  }
+
+  /**
+   * Starts publishing thread.
+   *
+   * @param periodMillis Time between two subsequent updates of the file
+   */
+  public synchronized void start(long periodMillis) {
+    if (periodMillis <= 0L) {
+      throw new IllegalArgumentException("periodMillis");
+    }
+    if (executor != null) {
+      throw new IllegalStateException("Sink has already been started");
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "BrikarMappedMetrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleAtFixedRate(this::publishSafely, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Copies current values of the histograms and gauges to the file. Should be called by one thread at a time,
+   * publishing thread calls it periodically once sink is started.
+   */
+  public synchronized void publish() {
+    for (final LatencyHistogram.Kind kind : LatencyHistogram.Kind.values()) {
+      for (final LatencyHistogram histogram : registry.getHistograms(kind)) {
+        final int offset = getSlotOffset(histogramSlots.get(kind), MappedMetricsLayout.TYPE_HISTOGRAM,
+            kind.ordinal(), histogram.getOperation());
+        if (offset >= 0) {
+          writeHistogram(offset, histogram);
+        }
+      }
+    }
+
+    for (final Gauge gauge : gauges) {
+      final int offset = getSlotOffset(gaugeSlots, MappedMetricsLayout.TYPE_GAUGE, -1, gauge.name);
+      if (offset >= 0) {
+        buffer.putLong(offset + MappedMetricsLayout.SLOT_VALUE_OFFSET, gauge.supplier.getAsLong());
+      }
+    }
+
+    buffer.putLong(MappedMetricsLayout.UPDATE_TIME_OFFSET, System.currentTimeMillis());
+  }
+
+  /**
+   * Stops publishing thread, publishes the final values and marks file as closed.
+   */
+  @Override
+  public void close() {
+    final ScheduledExecutorService currentExecutor;
+    synchronized (this) {
+      currentExecutor = executor;
+      executor = null;
+    }
+
+    if (currentExecutor != null) {
+      currentExecutor.shutdown();
+      try {
+        currentExecutor.awaitTermination(1L, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    publishSafely();
+    synchronized (this) {
+      buffer.putInt(MappedMetricsLayout.CLOSED_OFFSET, 1);
+      buffer.force();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MappedMetricsSink{file=" + file + ", slotCount=" + slotCount + '}';
+  }
+
+  //
+  // Private
+  //
+
+  private static void replace(File source, File target) throws IOException {
+    try {
+      Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      // unlink target first, so that it is not truncated in place
+      Files.deleteIfExists(target.toPath());
+      Files.move(source.toPath(), target.toPath());
+    }
+  }
+
+  private void publishSafely() {
+    try {
+      publish();
+    } catch (RuntimeException e) {
+      LOG.error("Unable to publish metrics to {}", file, e);
+    }
+  }
+
+  private int getSlotOffset(Map<String, Integer> slots, int type, int kind, String name) {
+    final Integer slot = slots.get(name);
+    if (slot != null) {
+      return MappedMetricsLayout.getSlotOffset(slot);
+    }
+
+    if (usedSlotCount >= slotCount) {
+      if (!overflowReported) {
+        overflowReported = true;
+        LOG.warn("No free slots in {} to publish {}, increase number of slots", file, name);
+      }
+      return -1;
+    }
+
+    final int newSlot = usedSlotCount++;
+    final int offset = MappedMetricsLayout.getSlotOffset(newSlot);
+    final byte[] nameBytes = truncate(name.getBytes(StandardCharsets.UTF_8));
+    buffer.putInt(offset + MappedMetricsLayout.SLOT_KIND_OFFSET, kind);
+    buffer.putInt(offset + MappedMetricsLayout.SLOT_NAME_LENGTH_OFFSET, nameBytes.length);
+    for (int i = 0; i < nameBytes.length; ++i) {
+      buffer.put(offset + MappedMetricsLayout.SLOT_NAME_OFFSET + i, nameBytes[i]);
+    }
+    buffer.putInt(offset + MappedMetricsLayout.SLOT_TYPE_OFFSET, type);
+    // slot becomes visible to the readers once it is fully initialized
+    buffer.putInt(MappedMetricsLayout.USED_SLOT_COUNT_OFFSET, usedSlotCount);
+
+    slots.put(name, newSlot);
+    return offset;
+  }
+
+  private void writeHistogram(int offset, LatencyHistogram histogram) {
+    long count = 0L;
+    for (int i = 0; i < MappedMetricsLayout.RANGE_COUNT; ++i) {
+      final long rangeCount = histogram.getCumulativeCount(i);
+      buffer.putLong(offset + MappedMetricsLayout.SLOT_RANGES_OFFSET + i * 8, rangeCount);
+      count += rangeCount;
+    }
+    buffer.putLong(offset + MappedMetricsLayout.SLOT_SUM_OFFSET, histogram.getCumulativeSum());
+    buffer.putLong(offset + MappedMetricsLayout.SLOT_FAILED_OFFSET, histogram.getFailedCount());
+
+    if (histogram.getKind() != LatencyHistogram.Kind.METHOD) {
+      for (int responseClass = 0; responseClass < MappedMetricsLayout.RESPONSE_CLASS_COUNT; ++responseClass) {
+        final int firstCode = (responseClass + 1) * 100;
+        long classCount = 0L;
+        for (int code = firstCode; code < firstCode + 100; ++code) {
+          classCount += histogram.getResponseCodeCount(code);
+        }
+        buffer.putLong(offset + MappedMetricsLayout.SLOT_RESPONSE_CLASSES_OFFSET + responseClass * 8, classCount);
+      }
+    }
+
+    buffer.putLong(offset + MappedMetricsLayout.SLOT_VALUE_OFFSET, count);
+  }
+
+  private static byte[] truncate(byte[] nameBytes) {
+    if (nameBytes.length <= MappedMetricsLayout.MAX_NAME_LENGTH) {
+      return nameBytes;
+    }
+
+    // don't cut multibyte UTF-8 sequence in the middle
+    int length = MappedMetricsLayout.MAX_NAME_LENGTH;
+    while (length > 0 && (nameBytes[length] & 0xc0) == 0x80) {
+      --length;
+    }
+    final byte[] result = new byte[length];
+    System.arraycopy(nameBytes, 0, result, 0, length);
+    return result;
+  }
+
+  private static long getProcessId() {
+    // runtime name is pid@hostname for HotSpot based JVMs
+    final String name = ManagementFactory.getRuntimeMXBean().getName();
+    final int index = name.indexOf('@');
+    try {
+      return Long.parseLong(index > 0 ? name.substring(0, index) : name);
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  private static final class Gauge {
+    final String name;
+    final LongSupplier supplier;
+
+    Gauge(String name, LongSupplier supplier) {
+      this.name = Objects.requireNonNull(name, "name");
+      this.supplier = Objects.requireNonNull(supplier, "supplier");
+    }
+  }
+}
@@ -20,19 +20,38 @@ public interface Metrics {
     if (next) {
       appendable.append(", ");
     }
-    appendable.append(name).append("=").append(value);
+    appendable.append(name).append('=').append(value);
   }
 
   static void appendValue(Appendable appendable, boolean next, String name, boolean value) throws IOException {
-    appendValue(appendable, next, name, Boolean.toString(value));
+    appendValue(appendable, next, name, value ? "true" : "false");
   }
 
   static void appendValue(Appendable appendable, boolean next, String name, long value) throws IOException {
-    appendValue(appendable, next, name, Long.toString(value));
+    if (next) {
+      appendable.append(", ");
+    }
+    appendable.append(name).append('=');
+    appendLong(appendable, value);
   }
 
   static void appendValue(Appendable appendable, boolean next, String name, int value) throws IOException {
-    appendValue(appendable, next, name, Integer.toString(value));
+    appendValue(appendable, next, name, (long) value);
+  }
+
+  /**
+   * Appends decimal representation of the given number, string builders get it without intermediate strings.
+   *
+   * @param appendable Target appendable
+   * @param value Value to append
+   * @throws IOException On I/O error
+   */
+  static void appendLong(Appendable appendable, long value) throws IOException {
+    if (appendable instanceof StringBuilder) {
+      ((StringBuilder) appendable).append(value);
+    } else {
+      appendable.append(Long.toString(value));
+    }
   }
 
   //
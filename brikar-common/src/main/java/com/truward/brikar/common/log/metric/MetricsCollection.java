@@ -10,6 +10,30 @@ public interface MetricsCollection {
 
   void add(Metrics metrics);
 
+  /**
+   * Opens a span for the given metrics, which are usually the lapse of a call, that is about to start.
+   * Metrics and spans, added by the calling thread while this span is open, become children of this span.
+   * Span metrics are recorded once span is closed, see {@link #closeSpan(Metrics)}.
+   * <p>
+   * Collections, that don't support spans, ignore this call.
+   * </p>
+   *
+   * @param metrics Metrics of the span, that will be recorded once span is closed
+   */
+  default void openSpan(Metrics metrics) {
+    // spans are not supported by default
+  }
+
+  /**
+   * Closes span, previously opened by {@link #openSpan(Metrics)}, and records its metrics.
+   * Collections, that don't support spans, just add the given metrics.
+   *
+   * @param metrics Metrics of the span, the same object, that has been passed to {@link #openSpan(Metrics)}
+   */
+  default void closeSpan(Metrics metrics) {
+    add(metrics);
+  }
+
   /**
    * {@inheritDoc}
    * @return Produces metric string that can be used in log statement
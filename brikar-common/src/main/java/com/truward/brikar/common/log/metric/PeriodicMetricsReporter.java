@@ -0,0 +1,88 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.LogUtil;
+import org.slf4j.Logger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Reporter, that periodically writes metrics produced by the registered sources to the given logger.
+ * Each source is polled once per reporting period and each non-null result is written as a separate
+ * {@link LogUtil#METRIC_ENTRY} record.
+ * <p>
+ * Reporting is done on a single daemon thread, so sources should be cheap to poll and should never block.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class PeriodicMetricsReporter implements AutoCloseable {
+  private final Logger log;
+  private final long periodMillis;
+  private final List<Supplier<? extends Metrics>> sources = new CopyOnWriteArrayList<>();
+  private ScheduledExecutorService executor;
+
+  public PeriodicMetricsReporter(Logger log, long periodMillis) {
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException("periodMillis");
+    }
+
+    this.log = Objects.requireNonNull(log, "log");
+    this.periodMillis = periodMillis;
+  }
+
+  /**
+   * Registers metrics source. Source may return null, in which case nothing will be reported for it.
+   *
+   * @param source Metrics source
+   * @return This instance for chaining
+   */
+  public PeriodicMetricsReporter addSource(Supplier<? extends Metrics> source) {
+    sources.add(Objects.requireNonNull(source, "source"));
+    return this;
+  }
+
+  public synchronized void start() {
+    if (executor != null) {
+      throw new IllegalStateException("Reporter has already been started");
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "BrikarMetricsReporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleAtFixedRate(this::report, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Polls all the registered sources and writes their metrics immediately.
+   */
+  public void report() {
+    for (final Supplier<? extends Metrics> source : sources) {
+      try {
+        final Metrics metrics = source.get();
+        if (metrics != null) {
+          LogUtil.logInfo(metrics, log);
+        }
+      } catch (RuntimeException e) {
+        log.error("Unable to report metrics from source={}", source, e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+}
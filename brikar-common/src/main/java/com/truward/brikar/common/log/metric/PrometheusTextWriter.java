@@ -0,0 +1,273 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * Writer of metrics in Prometheus text exposition format, version 0.0.4, which is also understood by
+ * OpenMetrics scrapers.
+ * <p>
+ * Samples are written to the underlying writer as they are read from the histograms, nothing is copied or
+ * accumulated in between, so the cost of the scrape is proportional to the size of the output.
+ * Samples of the same metric family should be written right after its header, see
+ * {@link #writeHeader(String, String, String)}.
+ * </p>
+ * <p>
+ * Latency histograms are exposed in seconds with buckets, that correspond to the power of two ranges of
+ * {@link LatencyHistogram}, see {@link LatencyHistogram#getCumulativeCount(int)}.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class PrometheusTextWriter {
+
+  /**
+   * Content type of the Prometheus text exposition format.
+   */
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  public static final String TYPE_COUNTER = "counter";
+  public static final String TYPE_GAUGE = "gauge";
+  public static final String TYPE_HISTOGRAM = "histogram";
+
+  // bucket bounds in seconds, the last range is reported as +Inf bucket
+  private static final String[] BUCKET_BOUNDS = new String[LatencyHistogram.CUMULATIVE_RANGE_COUNT - 1];
+
+  static {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < BUCKET_BOUNDS.length; ++i) {
+      builder.setLength(0);
+      appendMillisAsSeconds(builder, LatencyHistogram.getCumulativeRangeHighestValue(i));
+      BUCKET_BOUNDS[i] = builder.toString();
+    }
+  }
+
+  private final Writer writer;
+  private final StringBuilder numberBuilder = new StringBuilder(24);
+
+  public PrometheusTextWriter(Writer writer) {
+    this.writer = Objects.requireNonNull(writer, "writer");
+  }
+
+  /**
+   * Writes header of the metric family.
+   *
+   * @param name Metric name, e.g. <code>brikar_requests_total</code>
+   * @param type Metric type, e.g. {@link #TYPE_COUNTER}
+   * @param help Metric description
+   * @return This instance
+   * @throws IOException On I/O error
+   */
+  public PrometheusTextWriter writeHeader(String name, String type, String help) throws IOException {
+    writer.write("# HELP ");
+    writer.write(name);
+    writer.write(' ');
+    writer.write(help);
+    writer.write("\n# TYPE ");
+    writer.write(name);
+    writer.write(' ');
+    writer.write(type);
+    writer.write('\n');
+    return this;
+  }
+
+  /**
+   * Writes a single sample with an optional label.
+   *
+   * @param name Metric name
+   * @param labelName Label name or null
+   * @param labelValue Label value, ignored if label name is null
+   * @param value Sample value
+   * @return This instance
+   * @throws IOException On I/O error
+   */
+  public PrometheusTextWriter writeSample(String name,
+                                          @Nullable String labelName,
+                                          @Nullable String labelValue,
+                                          long value) throws IOException {
+    writer.write(name);
+    if (labelName != null) {
+      writer.write('{');
+      writeLabel(labelName, labelValue);
+      writer.write('}');
+    }
+    writer.write(' ');
+    writer.write(Long.toString(value));
+    writer.write('\n');
+    return this;
+  }
+
+  /**
+   * Writes latency histograms as a single metric family of {@link #TYPE_HISTOGRAM} type, histograms without
+   * measurements are skipped.
+   *
+   * @param histograms Histograms to write
+   * @param name Metric name, e.g. <code>brikar_request_duration_seconds</code>
+   * @param help Metric description
+   * @param labelName Name of the label, that holds operation name
+   * @throws IOException On I/O error
+   */
+  public void writeLatencyHistograms(Iterable<LatencyHistogram> histograms,
+                                     String name,
+                                     String help,
+                                     String labelName) throws IOException {
+    writeHeader(name, TYPE_HISTOGRAM, help);
+    for (final LatencyHistogram histogram : histograms) {
+      // histograms are read without synchronization, so sum may be slightly off under load
+      final long sum = histogram.getCumulativeSum();
+      long count = 0L;
+      for (int i = 0; i < LatencyHistogram.CUMULATIVE_RANGE_COUNT; ++i) {
+        count += histogram.getCumulativeCount(i);
+      }
+      if (count == 0L) {
+        continue;
+      }
+
+      // buckets are read once again, measurements, recorded in between, are cut off to keep buckets monotonic
+      long accumulated = 0L;
+      for (int i = 0; i < BUCKET_BOUNDS.length; ++i) {
+        accumulated += histogram.getCumulativeCount(i);
+        writeBucket(name, labelName, histogram.getOperation(), BUCKET_BOUNDS[i], Math.min(accumulated, count));
+      }
+      writeBucket(name, labelName, histogram.getOperation(), "+Inf", count);
+
+      writeSeriesName(name, "_sum", labelName, histogram.getOperation());
+      writeMillisAsSeconds(sum);
+      writer.write('\n');
+      writeSeriesName(name, "_count", labelName, histogram.getOperation());
+      writer.write(Long.toString(count));
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Writes number of measurements by response code as a single metric family of {@link #TYPE_COUNTER} type.
+   *
+   * @param histograms Histograms to write
+   * @param name Metric name, e.g. <code>brikar_requests_total</code>
+   * @param help Metric description
+   * @param labelName Name of the label, that holds operation name
+   * @throws IOException On I/O error
+   */
+  public void writeResponseCodeCounts(Iterable<LatencyHistogram> histograms,
+                                      String name,
+                                      String help,
+                                      String labelName) throws IOException {
+    writeHeader(name, TYPE_COUNTER, help);
+    for (final LatencyHistogram histogram : histograms) {
+      for (int code = LatencyHistogram.MIN_RESPONSE_CODE; code <= LatencyHistogram.MAX_RESPONSE_CODE; ++code) {
+        final long count = histogram.getResponseCodeCount(code);
+        if (count == 0L) {
+          continue;
+        }
+
+        writer.write(name);
+        writer.write('{');
+        writeLabel(labelName, histogram.getOperation());
+        writer.write(',');
+        writeLabel("code", Integer.toString(code));
+        writer.write("} ");
+        writer.write(Long.toString(count));
+        writer.write('\n');
+      }
+    }
+  }
+
+  /**
+   * Writes number of failures as a single metric family of {@link #TYPE_COUNTER} type.
+   *
+   * @param histograms Histograms to write
+   * @param name Metric name, e.g. <code>brikar_method_failures_total</code>
+   * @param help Metric description
+   * @param labelName Name of the label, that holds operation name
+   * @throws IOException On I/O error
+   */
+  public void writeFailedCounts(Iterable<LatencyHistogram> histograms,
+                                String name,
+                                String help,
+                                String labelName) throws IOException {
+    writeHeader(name, TYPE_COUNTER, help);
+    for (final LatencyHistogram histogram : histograms) {
+      final long count = histogram.getFailedCount();
+      if (count > 0L) {
+        writeSample(name, labelName, histogram.getOperation(), count);
+      }
+    }
+  }
+
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  //
+  // Private
+  //
+
+  private void writeBucket(String name, String labelName, String operation, String bound, long count)
+      throws IOException {
+    writer.write(name);
+    writer.write("_bucket{");
+    writeLabel(labelName, operation);
+    writer.write(',');
+    writeLabel("le", bound);
+    writer.write("} ");
+    writer.write(Long.toString(count));
+    writer.write('\n');
+  }
+
+  private void writeSeriesName(String name, String suffix, String labelName, String operation) throws IOException {
+    writer.write(name);
+    writer.write(suffix);
+    writer.write('{');
+    writeLabel(labelName, operation);
+    writer.write("} ");
+  }
+
+  private void writeLabel(String labelName, @Nullable String labelValue) throws IOException {
+    writer.write(labelName);
+    writer.write("=\"");
+    if (labelValue != null) {
+      for (int i = 0; i < labelValue.length(); ++i) {
+        final char ch = labelValue.charAt(i);
+        switch (ch) {
+          case '\\':
+            writer.write("\\\\");
+            break;
+          case '"':
+            writer.write("\\\"");
+            break;
+          case '\n':
+            writer.write("\\n");
+            break;
+          default:
+            writer.write(ch);
+        }
+      }
+    }
+    writer.write('"');
+  }
+
+  private void writeMillisAsSeconds(long millis) throws IOException {
+    numberBuilder.setLength(0);
+    appendMillisAsSeconds(numberBuilder, millis);
+    writer.append(numberBuilder);
+  }
+
+  private static void appendMillisAsSeconds(StringBuilder builder, long millis) {
+    final long fraction = millis % 1000L;
+    builder.append(millis / 1000L).append('.');
+    if (fraction < 100L) {
+      builder.append('0');
+    }
+    if (fraction < 10L) {
+      builder.append('0');
+    }
+    builder.append(fraction);
+  }
+}
@@ -0,0 +1,192 @@
+package com.truward.brikar.common.log.metric;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates CPU time and allocated bytes, consumed by the threads, that process certain operation,
+ * usually a request. Resources are accounted using per-thread counters of {@link ThreadMXBean}, so accounting
+ * works only if JVM supports these counters, which is the case for HotSpot based JVMs.
+ * <p>
+ * Resource usage is accounted for a thread while it is attached to that thread, see {@link #attach()} and
+ * {@link #detach()}. Use {@link com.truward.brikar.common.executor.StandardThreadParametersBinder#RESOURCE_USAGE}
+ * to account resources, consumed by the tasks, submitted to the other threads.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class ResourceUsage {
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported(THREAD_MX_BEAN);
+  private static final boolean ALLOCATED_BYTES_SUPPORTED = isAllocatedBytesSupported(THREAD_MX_BEAN);
+
+  private static final ThreadLocal<Binding> CURRENT_BINDING = new ThreadLocal<>();
+
+  private final AtomicLong cpuTime = new AtomicLong();
+  private final AtomicLong allocatedBytes = new AtomicLong();
+
+  /**
+   * @return True, if JVM is capable of measuring CPU time or allocated bytes of the thread
+   */
+  public static boolean isSupported() {
+    return CPU_TIME_SUPPORTED || ALLOCATED_BYTES_SUPPORTED;
+  }
+
+  /**
+   * @return CPU time of the current thread in nanoseconds or negative value if it can't be measured
+   */
+  public static long getCurrentThreadCpuTime() {
+    return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1L;
+  }
+
+  /**
+   * @return Total number of bytes, allocated by the current thread, or negative value if it can't be measured
+   */
+  public static long getCurrentThreadAllocatedBytes() {
+    return ALLOCATED_BYTES_SUPPORTED ?
+        ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId()) :
+        -1L;
+  }
+
+  /**
+   * @return Resource usage, attached to the current thread or null
+   */
+  @Nullable
+  public static ResourceUsage getLocal() {
+    final Binding binding = CURRENT_BINDING.get();
+    return binding != null ? binding.usage : null;
+  }
+
+  /**
+   * Attaches this resource usage to the current thread and starts accounting resources, consumed by this thread.
+   * Nested calls are allowed, resources are accounted once the outermost {@link #detach()} is called.
+   */
+  public void attach() {
+    final Binding binding = CURRENT_BINDING.get();
+    if (binding != null && binding.usage == this) {
+      ++binding.depth;
+      return;
+    }
+
+    CURRENT_BINDING.set(new Binding(this, binding));
+  }
+
+  /**
+   * Adds resources, consumed by the current thread since the corresponding call to {@link #attach()}, and detaches
+   * this resource usage from the current thread. Does nothing if this resource usage is not attached.
+   */
+  public void detach() {
+    final Binding binding = CURRENT_BINDING.get();
+    if (binding == null || binding.usage != this) {
+      return;
+    }
+    if (binding.depth > 0) {
+      --binding.depth;
+      return;
+    }
+
+    add(getCurrentThreadCpuTime() - binding.startCpuTime,
+        getCurrentThreadAllocatedBytes() - binding.startAllocatedBytes);
+    if (binding.previous != null) {
+      CURRENT_BINDING.set(binding.previous);
+    } else {
+      CURRENT_BINDING.remove();
+    }
+  }
+
+  /**
+   * @return Accounted CPU time in nanoseconds or negative value if it can't be measured
+   */
+  public long getCpuTime() {
+    return CPU_TIME_SUPPORTED ? cpuTime.get() : -1L;
+  }
+
+  /**
+   * @return Accounted number of allocated bytes or negative value if it can't be measured
+   */
+  public long getAllocatedBytes() {
+    return ALLOCATED_BYTES_SUPPORTED ? allocatedBytes.get() : -1L;
+  }
+
+  /**
+   * Puts accounted resources to the given lapse, see also {@link LogUtil#CPU_TIME} and {@link LogUtil#ALLOCATED_BYTES}.
+   *
+   * @param lapse Lapse to update
+   */
+  public void setProperties(@Nonnull SimpleLapse lapse) {
+    setProperties(lapse, getCpuTime(), getAllocatedBytes());
+  }
+
+  /**
+   * Puts given measurements to the lapse, negative values are skipped.
+   *
+   * @param lapse Lapse to update
+   * @param cpuTime CPU time in nanoseconds
+   * @param allocatedBytes Number of allocated bytes
+   */
+  public static void setProperties(@Nonnull SimpleLapse lapse, long cpuTime, long allocatedBytes) {
+    if (cpuTime >= 0L) {
+      lapse.setProperty(LogUtil.CPU_TIME, TimeUnit.NANOSECONDS.toMicros(cpuTime));
+    }
+    if (allocatedBytes >= 0L) {
+      lapse.setProperty(LogUtil.ALLOCATED_BYTES, allocatedBytes);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceUsage{cpuTime=" + getCpuTime() + ", allocatedBytes=" + getAllocatedBytes() + '}';
+  }
+
+  //
+  // Private
+  //
+
+  private void add(long cpuTimeDelta, long allocatedBytesDelta) {
+    if (cpuTimeDelta > 0L) {
+      cpuTime.addAndGet(cpuTimeDelta);
+    }
+    if (allocatedBytesDelta > 0L) {
+      allocatedBytes.addAndGet(allocatedBytesDelta);
+    }
+  }
+
+  private static boolean isCpuTimeSupported(ThreadMXBean bean) {
+    try {
+      return bean.isCurrentThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled();
+    } catch (UnsupportedOperationException ignored) {
+      return false;
+    }
+  }
+
+  private static boolean isAllocatedBytesSupported(ThreadMXBean bean) {
+    try {
+      return bean instanceof com.sun.management.ThreadMXBean &&
+          ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported() &&
+          ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+    } catch (LinkageError | UnsupportedOperationException ignored) {
+      // non-HotSpot JVM
+      return false;
+    }
+  }
+
+  private static final class Binding {
+    final ResourceUsage usage;
+    final Binding previous;
+    final long startCpuTime = getCurrentThreadCpuTime();
+    final long startAllocatedBytes = getCurrentThreadAllocatedBytes();
+    int depth;
+
+    Binding(ResourceUsage usage, Binding previous) {
+      this.usage = usage;
+      this.previous = previous;
+    }
+  }
+}
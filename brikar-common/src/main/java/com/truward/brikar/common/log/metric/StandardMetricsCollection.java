@@ -1,31 +1,121 @@
 package com.truward.brikar.common.log.metric;
 
 import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.Lapse;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
 
 /**
+ * Metrics collection, that arranges metrics into a tree of spans.
+ * <p>
+ * Metrics and spans, added by the thread, that has an open span, become children of the innermost open span
+ * of that thread. Metrics and spans, added by the other threads (e.g. by the tasks, that carry this collection
+ * over to the other threads), become children of the root span, if it is still open. Spans are kept in the
+ * order of their opening, so that each parent precedes its children, and rendered in one metric entry.
+ * Entries of the spans, that have children, contain {@link LogUtil#SPAN_ID}; entries of the child spans
+ * contain {@link LogUtil#PARENT_SPAN_ID} and start offset relative to the parent, see {@link LogUtil#START_OFFSET}.
+ * Entries of open spans are not rendered.
+ * </p>
+ * <p>
+ * Metrics are rendered into a string builder, that is reused by the rendering thread, so that rendering
+ * allocates nothing but the resultant string, see also {@link #appendTo(StringBuilder)}.
+ * </p>
+ *
  * @author Alexander Shabanov
  */
 @ParametersAreNonnullByDefault
 public final class StandardMetricsCollection implements MetricsCollection {
-  private final List<Metrics> metricsList = new CopyOnWriteArrayList<>();
+  private static final int NO_SPAN = -1;
+  private static final int INITIAL_CAPACITY = 4;
+  private static final byte FLAG_OPEN = 1;
+  private static final byte FLAG_HAS_CHILDREN = 2;
+
+  // builders, that are bigger than this, are not reused to avoid retaining too much memory
+  private static final int MAX_REUSED_BUILDER_CAPACITY = 16384;
+  private static final ThreadLocal<StringBuilder> RENDER_BUILDER = new ThreadLocal<>();
+
+  private Metrics[] entries = new Metrics[INITIAL_CAPACITY];
+  private int[] parents = new int[INITIAL_CAPACITY];
+  private byte[] flags = new byte[INITIAL_CAPACITY];
+  private int size;
+  private int rootSpan = NO_SPAN;
+
+  // most recently opened span, that is still open, open spans are linked in the reverse order of their opening
+  private OpenSpan lastOpenSpan;
+
+  @Override
+  public synchronized void add(Metrics metrics) {
+    append(metrics, getCurrentSpan(Thread.currentThread()), false);
+  }
 
   @Override
-  public void add(Metrics metrics) {
-    metricsList.add(metrics);
+  public synchronized void openSpan(Metrics metrics) {
+    final Thread thread = Thread.currentThread();
+    final int parent = getCurrentSpan(thread);
+    final int index = append(metrics, parent, true);
+    if (parent == NO_SPAN) {
+      rootSpan = index;
+    }
+    lastOpenSpan = new OpenSpan(index, thread, lastOpenSpan);
+  }
+
+  @Override
+  public synchronized void closeSpan(Metrics metrics) {
+    // span might have been opened by the other thread, e.g. when asynchronous request completes
+    for (OpenSpan span = lastOpenSpan, next = null; span != null; next = span, span = span.previous) {
+      if (entries[span.index] == metrics) {
+        close(span.index);
+        if (next != null) {
+          next.previous = span.previous;
+        } else {
+          lastOpenSpan = span.previous;
+        }
+        return;
+      }
+    }
+
+    // span is not open - record metrics as they are
+    add(metrics);
   }
 
   @Override
   public String toString() {
-    final StringBuilder builder = new StringBuilder(10 + metricsList.size() * 100);
+    // builder is taken out of the thread local while in use, so that nested rendering gets its own builder
+    StringBuilder builder = RENDER_BUILDER.get();
+    if (builder != null) {
+      RENDER_BUILDER.set(null);
+      builder.setLength(0);
+    } else {
+      builder = new StringBuilder(10 + size * 100);
+    }
+
+    try {
+      appendTo(builder);
+      return builder.toString();
+    } finally {
+      if (builder.capacity() <= MAX_REUSED_BUILDER_CAPACITY) {
+        RENDER_BUILDER.set(builder);
+      }
+    }
+  }
+
+  /**
+   * Renders metric entry, the same one, that is returned by {@link #toString()}, into the given builder.
+   *
+   * @param builder Target string builder
+   */
+  public synchronized void appendTo(StringBuilder builder) {
     builder.append(LogUtil.METRIC_ENTRY);
 
     boolean next = false;
-    for (final Metrics metrics : metricsList) {
+    for (int i = 0; i < size; ++i) {
+      final byte entryFlags = flags[i];
+      if ((entryFlags & FLAG_OPEN) != 0) {
+        continue;
+      }
+
       if (next) {
         builder.append(System.lineSeparator()).append('\t');
       } else {
@@ -34,13 +124,83 @@ public final class StandardMetricsCollection implements MetricsCollection {
       }
 
       try {
-        metrics.appendTo(builder);
+        entries[i].appendTo(builder);
+        appendSpan(builder, i, (entryFlags & FLAG_HAS_CHILDREN) != 0);
       } catch (IOException e) {
         // suppress error - should never happen
         builder.append("Internal Error: ").append(e.getMessage());
       }
     }
+  }
+
+  //
+  // Private
+  //
 
-    return builder.toString();
+  private int getCurrentSpan(Thread thread) {
+    for (OpenSpan span = lastOpenSpan; span != null; span = span.previous) {
+      if (span.thread == thread) {
+        return span.index;
+      }
+    }
+    return rootSpan;
+  }
+
+  private int append(Metrics metrics, int parent, boolean isOpen) {
+    if (size == entries.length) {
+      final int newLength = size * 2;
+      entries = Arrays.copyOf(entries, newLength);
+      parents = Arrays.copyOf(parents, newLength);
+      flags = Arrays.copyOf(flags, newLength);
+    }
+
+    entries[size] = metrics;
+    parents[size] = parent;
+    flags[size] = isOpen ? FLAG_OPEN : 0;
+    if (parent != NO_SPAN) {
+      flags[parent] |= FLAG_HAS_CHILDREN;
+    }
+    return size++;
+  }
+
+  private void close(int index) {
+    flags[index] &= ~FLAG_OPEN;
+    if (index == rootSpan) {
+      rootSpan = NO_SPAN;
+    }
+  }
+
+  private void appendSpan(StringBuilder builder, int index, boolean hasChildren) throws IOException {
+    if (hasChildren) {
+      Metrics.appendValue(builder, true, LogUtil.SPAN_ID, index);
+    }
+
+    final int parent = parents[index];
+    if (parent == NO_SPAN) {
+      return;
+    }
+    Metrics.appendValue(builder, true, LogUtil.PARENT_SPAN_ID, parent);
+
+    final Metrics parentMetrics = entries[parent];
+    final Metrics metrics = entries[index];
+    if (parentMetrics instanceof Lapse && metrics instanceof Lapse) {
+      final long parentStartTime = ((Lapse) parentMetrics).getStartTime();
+      final long startTime = ((Lapse) metrics).getStartTime();
+      if (parentStartTime >= 0L && startTime >= 0L) {
+        Metrics.appendValue(builder, true, LogUtil.START_OFFSET, startTime - parentStartTime);
+      }
+    }
+  }
+
+  private static final class OpenSpan {
+    final int index;
+    final Thread thread;
+    OpenSpan previous;
+
+    OpenSpan(int index, Thread thread, OpenSpan previous) {
+      this.index = index;
+      this.thread = thread;
+      this.previous = previous;
+    }
   }
 }
@@ -0,0 +1,426 @@
+package com.truward.brikar.common.log.watchdog;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watchdog, that tracks calls, which are in progress, and samples stack of the calling thread once the call takes
+ * longer than the slow call threshold of its operation.
+ * <p>
+ * Calls are tracked by {@link #enter(String, SimpleLapse)} and {@link #exit(SimpleLapse)}, which should be called
+ * by the calling thread, they only push and pop an entry of the thread-local call chain. Chains of all the threads
+ * are scanned by the watchdog thread once per period, stack of the thread is taken at most once per period and only
+ * if one of its calls is overdue, no more than the given number of samples is taken for each call.
+ * </p>
+ * <p>
+ * Samples are attached to the lapse of the call by {@link #exit(SimpleLapse)} as {@link LogUtil#STACK_SAMPLES}
+ * attribute in collapsed form: innermost frames of each stack are written from the outermost one to the innermost
+ * one as <code>Class.method</code> separated by <code>;</code>, identical stacks are written once followed by
+ * <code>*</code> and number of samples, distinct stacks are separated by <code>|</code>, for example:
+ * <code>stacks=ReportController.getReport;ReportDao.query;SocketInputStream.read*3</code>.
+ * </p>
+ * <p>
+ * Slow call threshold of the operation is the one of the longest operation prefix in the given thresholds,
+ * so that <code>GET_/api/reports</code> applies to all the requests to <code>/api/reports</code> resources and
+ * <code>ReportDao.</code> applies to all the methods of <code>ReportDao</code>.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class SlowCallWatchdog implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(SlowCallWatchdog.class);
+
+  /**
+   * Operation name, under which watchdog metrics are reported.
+   */
+  public static final String OPERATION = "SlowCallWatchdog";
+
+  public static final String SLOW_CALLS = "slowCalls";
+  public static final String THREADS = "threads";
+
+  /**
+   * Default maximum number of stack samples of a call.
+   */
+  public static final int DEFAULT_MAX_SAMPLES = 3;
+
+  /**
+   * Default maximum number of the innermost frames of a stack sample.
+   */
+  public static final int DEFAULT_MAX_DEPTH = 32;
+
+  private static final SlowCallWatchdog DISABLED = new SlowCallWatchdog();
+
+  private static volatile SlowCallWatchdog defaultWatchdog = DISABLED;
+
+  private final boolean enabled;
+  private final long thresholdNanos;
+  private final Map<String, Long> operationThresholds;
+  private final int maxSamples;
+  private final int maxDepth;
+  private final Queue<ThreadState> threadStates = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<ThreadState> localThreadState = ThreadLocal.withInitial(this::createThreadState);
+  private final AtomicLong slowCallCount = new AtomicLong();
+  private ScheduledExecutorService executor;
+
+  /**
+   * Creates slow call watchdog.
+   *
+   * @param thresholdMillis Default slow call threshold in milliseconds, zero or negative value means no threshold
+   * @param operationThresholds Slow call thresholds in milliseconds by operation name prefix,
+   *                            e.g. <code>GET_/api/reports</code> or <code>ReportDao.</code>
+   * @param maxSamples Maximum number of stack samples of a call
+   * @param maxDepth Maximum number of the innermost frames of a stack sample
+   */
+  public SlowCallWatchdog(long thresholdMillis,
+                          Map<String, Long> operationThresholds,
+                          int maxSamples,
+                          int maxDepth) {
+    if (maxSamples <= 0) {
+      throw new IllegalArgumentException("maxSamples");
+    }
+    if (maxDepth <= 0) {
+      throw new IllegalArgumentException("maxDepth");
+    }
+
+    this.enabled = true;
+    this.thresholdNanos = toThresholdNanos(thresholdMillis);
+    final Map<String, Long> thresholds = new HashMap<>();
+    for (final Map.Entry<String, Long> entry : Objects.requireNonNull(operationThresholds, "operationThresholds")
+        .entrySet()) {
+      thresholds.put(entry.getKey(), toThresholdNanos(entry.getValue()));
+    }
+    this.operationThresholds = Collections.unmodifiableMap(thresholds);
+    this.maxSamples = maxSamples;
+    this.maxDepth = maxDepth;
+  }
+
+  private SlowCallWatchdog() {
+    this.enabled = false;
+    this.thresholdNanos = Long.MAX_VALUE;
+    this.operationThresholds = Collections.emptyMap();
+    this.maxSamples = 0;
+    this.maxDepth = 0;
+  }
+
+  /**
+   * @return Watchdog, that is used by the standard lapse producers, it does nothing unless replaced
+   */
+  @Nonnull
+  public static SlowCallWatchdog getDefault() {
+    return defaultWatchdog;
+  }
+
+  /**
+   * Sets watchdog, that is used by the standard lapse producers.
+   *
+   * @param watchdog Watchdog or null, if calls should not be tracked
+   */
+  public static void setDefault(@Nullable SlowCallWatchdog watchdog) {
+    defaultWatchdog = watchdog != null ? watchdog : DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return Number of calls, which stacks have been sampled since the previous call of this method, and number of
+   *         threads, which calls are tracked
+   */
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(SLOW_CALLS, slowCallCount.getAndSet(0L))
+        .setProperty(THREADS, threadStates.size());
+  }
+
+  /**
+   * Starts tracking of the call, made by the current thread.
+   *
+   * @param operation Operation name, used to find slow call threshold
+   * @param lapse Lapse of the call, stack samples are attached to it
+   */
+  public void enter(String operation, SimpleLapse lapse) {
+    if (!enabled) {
+      return;
+    }
+
+    final ThreadState state = localThreadState.get();
+    state.top = new Call(operation, lapse, System.nanoTime(), state.top);
+  }
+
+  /**
+   * Completes tracking of the call, made by the current thread, and attaches stack samples, if any, to its lapse.
+   * Does nothing if the given lapse doesn't belong to the innermost tracked call.
+   *
+   * @param lapse Lapse, passed to {@link #enter(String, SimpleLapse)}
+   */
+  public void exit(SimpleLapse lapse) {
+    if (!enabled) {
+      return;
+    }
+
+    final ThreadState state = localThreadState.get();
+    final Call call = state.top;
+    if (call == null || call.lapse != lapse) {
+      return;
+    }
+
+    state.top = call.parent;
+    call.done = true;
+    if (call.sampled) {
+      // watchdog thread either has added its samples already or sees that call is done
+      final String samples;
+      synchronized (call) {
+        samples = call.samples != null ? collapse(call.samples) : null;
+      }
+      if (samples != null) {
+        lapse.setProperty(LogUtil.STACK_SAMPLES, samples);
+      }
+    }
+  }
+
+  /**
+   * Starts watchdog thread.
+   *
+   * @param periodMillis Time between two subsequent scans of the tracked calls, which is also the minimal time
+   *                     between two stack samples of a call
+   */
+  public synchronized void start(long periodMillis) {
+    if (periodMillis <= 0L) {
+      throw new IllegalArgumentException("periodMillis");
+    }
+    if (!enabled) {
+      throw new IllegalStateException("Disabled watchdog can't be started");
+    }
+    if (executor != null) {
+      throw new IllegalStateException("Watchdog has already been started");
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "BrikarSlowCallWatchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleAtFixedRate(this::scanSafely, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Samples stacks of the threads, which calls are overdue. Should be called by one thread at a time, watchdog
+   * thread calls it periodically once watchdog is started.
+   */
+  public synchronized void scan() {
+    final long now = System.nanoTime();
+    for (final Iterator<ThreadState> it = threadStates.iterator(); it.hasNext();) {
+      final ThreadState state = it.next();
+      final Thread thread = state.thread.get();
+      if (thread == null || !thread.isAlive()) {
+        it.remove();
+        continue;
+      }
+
+      String sample = null;
+      for (Call call = state.top; call != null; call = call.parent) {
+        if (call.done || call.sampleCount >= maxSamples) {
+          continue;
+        }
+        if (call.thresholdNanos < 0L) {
+          call.thresholdNanos = getThresholdNanos(call.operation);
+        }
+        if (now - call.startNanos < call.thresholdNanos) {
+          continue;
+        }
+
+        if (sample == null) {
+          sample = toCollapsedStack(thread.getStackTrace());
+          if (sample.isEmpty()) {
+            break; // thread has just terminated
+          }
+        }
+        if (call.sampleCount == 0) {
+          slowCallCount.incrementAndGet();
+        }
+        ++call.sampleCount;
+        call.sampled = true;
+        synchronized (call) {
+          if (!call.done) {
+            if (call.samples == null) {
+              call.samples = new ArrayList<>(maxSamples);
+            }
+            call.samples.add(sample);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops watchdog thread, calls, which are still in progress, remain tracked.
+   */
+  @Override
+  public void close() {
+    final ScheduledExecutorService currentExecutor;
+    synchronized (this) {
+      currentExecutor = executor;
+      executor = null;
+    }
+
+    if (currentExecutor != null) {
+      currentExecutor.shutdown();
+      try {
+        currentExecutor.awaitTermination(1L, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SlowCallWatchdog{" +
+        "enabled=" + enabled +
+        ", thresholdMillis=" + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) +
+        ", operationThresholds=" + operationThresholds.size() +
+        ", maxSamples=" + maxSamples +
+        ", maxDepth=" + maxDepth +
+        '}';
+  }
+
+  //
+  // Private
+  //
+
+  private ThreadState createThreadState() {
+    final ThreadState result = new ThreadState(Thread.currentThread());
+    threadStates.add(result);
+    return result;
+  }
+
+  private void scanSafely() {
+    try {
+      scan();
+    } catch (RuntimeException e) {
+      LOG.error("Unable to sample stacks of the slow calls", e);
+    }
+  }
+
+  private long getThresholdNanos(String operation) {
+    long result = thresholdNanos;
+    int prefixLength = -1;
+    for (final Map.Entry<String, Long> entry : operationThresholds.entrySet()) {
+      final String prefix = entry.getKey();
+      if (prefix.length() > prefixLength && operation.startsWith(prefix)) {
+        result = entry.getValue();
+        prefixLength = prefix.length();
+      }
+    }
+    return result;
+  }
+
+  private String toCollapsedStack(StackTraceElement[] stack) {
+    final StringBuilder builder = new StringBuilder(40 * Math.min(stack.length, maxDepth));
+    for (int i = Math.min(stack.length, maxDepth) - 1; i >= 0; --i) {
+      if (builder.length() > 0) {
+        builder.append(';');
+      }
+
+      final String className = stack[i].getClassName();
+      appendFrameName(builder, className, className.lastIndexOf('.') + 1);
+      builder.append('.');
+      final String methodName = stack[i].getMethodName();
+      appendFrameName(builder, methodName, 0);
+    }
+    return builder.toString();
+  }
+
+  private static void appendFrameName(StringBuilder builder, String name, int start) {
+    for (int i = start; i < name.length(); ++i) {
+      final char ch = name.charAt(i);
+      switch (ch) {
+        // separators of the collapsed stacks and metric values
+        case ' ': case ',': case '=': case ';': case '|': case '*':
+          builder.append('_');
+          break;
+        default:
+          builder.append(ch);
+      }
+    }
+  }
+
+  private static String collapse(List<String> samples) {
+    final Map<String, Integer> counts = new LinkedHashMap<>();
+    for (final String sample : samples) {
+      counts.merge(sample, 1, Integer::sum);
+    }
+
+    final StringBuilder builder = new StringBuilder();
+    for (final Map.Entry<String, Integer> entry : counts.entrySet()) {
+      if (builder.length() > 0) {
+        builder.append('|');
+      }
+      builder.append(entry.getKey());
+      if (entry.getValue() > 1) {
+        builder.append('*').append(entry.getValue());
+      }
+    }
+    return builder.toString();
+  }
+
+  private static long toThresholdNanos(long thresholdMillis) {
+    return thresholdMillis > 0L ? TimeUnit.MILLISECONDS.toNanos(thresholdMillis) : Long.MAX_VALUE;
+  }
+
+  private static final class ThreadState {
+    final WeakReference<Thread> thread;
+    volatile Call top;
+
+    ThreadState(Thread thread) {
+      this.thread = new WeakReference<>(thread);
+    }
+  }
+
+  private static final class Call {
+    final String operation;
+    final SimpleLapse lapse;
+    final long startNanos;
+    final Call parent;
+    List<String> samples; // guarded by this
+
+    // accessed by watchdog thread only
+    long thresholdNanos = -1L;
+    int sampleCount;
+
+    volatile boolean sampled;
+    volatile boolean done;
+
+    Call(String operation, SimpleLapse lapse, long startNanos, @Nullable Call parent) {
+      this.operation = operation;
+      this.lapse = lapse;
+      this.startNanos = startNanos;
+      this.parent = parent;
+    }
+  }
+}
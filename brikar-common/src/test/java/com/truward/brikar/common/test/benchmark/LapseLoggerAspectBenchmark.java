@@ -0,0 +1,130 @@
+package com.truward.brikar.common.test.benchmark;
+
+import com.truward.brikar.common.log.LogLapse;
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.aspect.StandardLapseLoggerAspect;
+import com.truward.brikar.common.log.lapse.LapseLogging;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cost of a bare call with the cost of the same call, made through
+ * {@link StandardLapseLoggerAspect}: with operation name, given in {@link LogLapse} annotation and inferred from
+ * the method signature. Spring AOP proxy without the aspect is measured as well to separate proxy overhead from
+ * the cost of the aspect itself. Subclass, equivalent to the one, generated by <code>brikar-processor</code> for
+ * classes, annotated with {@link com.truward.brikar.common.log.GenerateLapseLogging}, is measured for comparison.
+ * <p>
+ * Aspect writes lapses to the disabled logger, so that only recording of the lapse is measured, generated code
+ * writes them to <code>BrikarLapseLogger</code>, which should be disabled while running this benchmark.
+ * </p>
+ * <p>
+ * Run {@link #main(String[])} to see bytes allocated per call, reported as <code>gc.alloc.rate.norm</code>.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LapseLoggerAspectBenchmark {
+  private final UserService bareService = new DefaultUserService();
+  private UserService proxiedService;
+  private UserService loggedService;
+  private final UserService generatedService = new GeneratedUserService();
+  private int id;
+
+  @Setup
+  public void setUp() {
+    proxiedService = new AspectJProxyFactory(bareService).getProxy();
+
+    final AspectJProxyFactory proxyFactory = new AspectJProxyFactory(bareService);
+    proxyFactory.addAspect(new StandardLapseLoggerAspect());
+    loggedService = proxyFactory.getProxy();
+  }
+
+  @Benchmark
+  public int bareCall() {
+    return bareService.getUser(++id);
+  }
+
+  @Benchmark
+  public int proxiedCall() {
+    return proxiedService.getUser(++id);
+  }
+
+  @Benchmark
+  public int namedLapse() {
+    return loggedService.getUser(++id);
+  }
+
+  @Benchmark
+  public int inferredLapse() {
+    return loggedService.getProfile(++id);
+  }
+
+  @Benchmark
+  public int generatedLapse() {
+    return generatedService.getUser(++id);
+  }
+
+  public interface UserService {
+    int getUser(int id);
+
+    int getProfile(int id);
+  }
+
+  public static class DefaultUserService implements UserService {
+
+    @LogLapse("UserService.getUser")
+    @Override
+    public int getUser(int id) {
+      return id * 31;
+    }
+
+    @LogLapse
+    @Override
+    public int getProfile(int id) {
+      return id * 17;
+    }
+  }
+
+  /**
+   * Same code as the one, generated by <code>brikar-processor</code>.
+   */
+  public static final class GeneratedUserService extends DefaultUserService {
+    private static final String OPERATION_0 = "UserService.getUser";
+
+    @Override
+    public int getUser(int id) {
+      final MetricsCollection metricsCollection = LogUtil.getLocalMetricsCollection();
+      final SimpleLapse lapse = LapseLogging.open(metricsCollection, OPERATION_0);
+      final long startNanos = System.nanoTime();
+      boolean failed = true;
+      try {
+        final int result = super.getUser(id);
+        failed = false;
+        return result;
+      } finally {
+        LapseLogging.close(metricsCollection, lapse, startNanos, failed);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(LapseLoggerAspectBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+}
@@ -0,0 +1,70 @@
+package com.truward.brikar.common.test.benchmark;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.StandardMetricsCollection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time and memory, needed to record and render metrics of a typical request: request lapse with
+ * a nested call lapse and an outgoing client call lapse.
+ * <p>
+ * Run {@link #main(String[])} to see bytes allocated per request, reported as <code>gc.alloc.rate.norm</code>.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsRenderingBenchmark {
+  private long startTime = 1479457245360L;
+
+  @Benchmark
+  public String renderRequestMetrics() {
+    final long requestStartTime = ++startTime;
+    final MetricsCollection metricsCollection = new StandardMetricsCollection();
+
+    final SimpleLapse requestLapse = new SimpleLapse().setStartTime(requestStartTime);
+    metricsCollection.openSpan(requestLapse);
+
+    final SimpleLapse callLapse = new SimpleLapse().setOperation("UserService.getUser").setStartTime(requestStartTime + 1L);
+    metricsCollection.openSpan(callLapse);
+    metricsCollection.add(new SimpleLapse()
+        .setOperation("/api/profiles/42")
+        .setStartTime(requestStartTime + 2L)
+        .setEndTime(requestStartTime + 37L)
+        .setProperty(LogUtil.VERB, "GET")
+        .setProperty(LogUtil.RESPONSE_CODE, 200)
+        .setProperty(LogUtil.RESPONSE_REQUEST_VECTOR, "O1jah9BuYnSbiV"));
+    metricsCollection.closeSpan(callLapse.setEndTime(requestStartTime + 40L));
+
+    requestLapse
+        .setOperation("GET_/api/users/{id}")
+        .setEndTime(requestStartTime + 42L)
+        .setProperty(LogUtil.VERB, "GET")
+        .setProperty(LogUtil.RESPONSE_CODE, 200)
+        .setProperty(LogUtil.URL, "/api/users/42")
+        .setProperty(LogUtil.QUEUE_TIME, 3L);
+    metricsCollection.closeSpan(requestLapse);
+
+    return metricsCollection.toString();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(MetricsRenderingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+}
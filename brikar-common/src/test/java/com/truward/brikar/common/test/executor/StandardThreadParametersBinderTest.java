@@ -4,6 +4,7 @@ import com.truward.brikar.common.executor.StandardThreadParametersBinder;
 import com.truward.brikar.common.executor.ThreadLocalPropagatingTaskExecutor;
 import com.truward.brikar.common.log.LogUtil;
 import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.ResourceUsage;
 import com.truward.brikar.common.test.util.TestLoggerProvider;
 import org.junit.After;
 import org.junit.Before;
@@ -13,12 +14,15 @@ import org.slf4j.MDC;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Future;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Integration tests for standard thread parameters binder.
@@ -68,4 +72,36 @@ public final class StandardThreadParametersBinderTest {
     assertTrue(rawContents.contains("@metric1 op=ReturnOne, cnt=1"));
     assertTrue(rawContents.contains(requestVector));
   }
+
+  @Test
+  public void shouldAccountResourceUsageOfSubmittedTasks() throws Exception {
+    // Given:
+    final AsyncTaskExecutor executor = new ThreadLocalPropagatingTaskExecutor(
+        new SimpleAsyncTaskExecutor("ResourceUsageTest-thread"),
+        Collections.singletonList(StandardThreadParametersBinder.RESOURCE_USAGE));
+    final ResourceUsage resourceUsage = new ResourceUsage();
+    assumeTrue(ResourceUsage.isSupported());
+
+    // When:
+    final Future<Integer> future;
+    resourceUsage.attach();
+    try {
+      future = executor.submit(() -> {
+        assertSame(resourceUsage, ResourceUsage.getLocal());
+        final List<byte[]> garbage = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+          garbage.add(new byte[1024]);
+        }
+        return garbage.size();
+      });
+      assertEquals(Integer.valueOf(100), future.get());
+    } finally {
+      resourceUsage.detach();
+    }
+
+    // Then:
+    assertNull(ResourceUsage.getLocal());
+    final long allocatedBytes = resourceUsage.getAllocatedBytes();
+    assertTrue("allocatedBytes=" + allocatedBytes, allocatedBytes < 0L || allocatedBytes >= 100L * 1024L);
+  }
 }
@@ -0,0 +1,127 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.AsyncMetricsSink;
+import com.truward.brikar.common.log.metric.Metrics;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.StandardMetricsCollection;
+import com.truward.brikar.common.test.util.TestLoggerProvider;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AsyncMetricsSink}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class AsyncMetricsSinkTest {
+  private final TestLoggerProvider loggerProvider = new TestLoggerProvider();
+
+  @After
+  public void destroyLogger() {
+    LogUtil.setMetricsSink(null);
+    loggerProvider.destroy();
+  }
+
+  @Test
+  public void shouldWriteMetricsWithContextOfCallingThread() {
+    // Given:
+    final AsyncMetricsSink sink = new AsyncMetricsSink(16, 4, AsyncMetricsSink.OverflowPolicy.DROP);
+    LogUtil.setMetricsSink(sink);
+
+    // When:
+    MDC.put(LogUtil.REQUEST_VECTOR, "rv1");
+    try {
+      for (int i = 0; i < 10; ++i) {
+        LogUtil.logInfo(new SimpleLapse().setOperation("Op" + i), loggerProvider.getLogger());
+      }
+    } finally {
+      MDC.remove(LogUtil.REQUEST_VECTOR);
+    }
+    sink.close();
+
+    // Then:
+    final String logContent = loggerProvider.getRawLogContents();
+    for (int i = 0; i < 10; ++i) {
+      assertTrue(logContent, logContent.contains("@metric1 op=Op" + i));
+    }
+    assertTrue(logContent, logContent.contains("RV=rv1"));
+    assertTrue(logContent, logContent.contains("[BrikarMetricsWriter]"));
+    assertTrue(logContent, logContent.contains(LogUtil.ORIGINATING_THREAD + "=" + Thread.currentThread().getName()));
+    assertTrue(toString(sink.getMetrics()).contains("written=10"));
+  }
+
+  @Test
+  public void shouldDropMetricsOnOverflow() throws InterruptedException {
+    // Given:
+    final AsyncMetricsSink sink = new AsyncMetricsSink(1, 1, AsyncMetricsSink.OverflowPolicy.DROP);
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final MetricsCollection blockingCollection = new MetricsCollection() {
+      @Override
+      public void add(Metrics metrics) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String toString() {
+        writing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return LogUtil.METRIC_ENTRY;
+      }
+    };
+
+    // When:
+    assertTrue(sink.offer(loggerProvider.getLogger(), blockingCollection));
+    assertTrue(writing.await(1L, TimeUnit.SECONDS));
+    final boolean second = sink.offer(loggerProvider.getLogger(), new StandardMetricsCollection());
+    final boolean third = sink.offer(loggerProvider.getLogger(), new StandardMetricsCollection());
+    release.countDown();
+    sink.close();
+
+    // Then:
+    assertTrue(second);
+    assertFalse(third);
+    final String metrics = toString(sink.getMetrics());
+    assertTrue(metrics, metrics.contains("written=2"));
+    assertTrue(metrics, metrics.contains("dropped=1"));
+  }
+
+  @Test
+  public void shouldRejectMetricsAfterClose() {
+    // Given:
+    final AsyncMetricsSink sink = new AsyncMetricsSink(16, 4, AsyncMetricsSink.OverflowPolicy.BLOCK);
+
+    // When:
+    sink.close();
+
+    // Then:
+    assertFalse(sink.offer(loggerProvider.getLogger(), new StandardMetricsCollection()));
+  }
+
+  //
+  // Private
+  //
+
+  private static String toString(Metrics metrics) {
+    final StringBuilder builder = new StringBuilder();
+    try {
+      metrics.appendTo(builder);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return builder.toString();
+  }
+}
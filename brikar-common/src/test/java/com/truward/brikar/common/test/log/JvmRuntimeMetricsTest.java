@@ -0,0 +1,90 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.metric.JvmRuntimeMetrics;
+import com.truward.brikar.common.log.metric.Metrics;
+import com.truward.brikar.common.log.metric.PeriodicMetricsReporter;
+import com.truward.brikar.common.test.util.TestLoggerProvider;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link JvmRuntimeMetrics}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class JvmRuntimeMetricsTest {
+  private final TestLoggerProvider loggerProvider = new TestLoggerProvider();
+
+  @After
+  public void destroyLogger() {
+    loggerProvider.destroy();
+  }
+
+  @Test
+  public void shouldReportRuntimeMetricsInOneEntry() {
+    // Given:
+    final JvmRuntimeMetrics jvmRuntimeMetrics = new JvmRuntimeMetrics();
+    final PeriodicMetricsReporter reporter = new PeriodicMetricsReporter(loggerProvider.getLogger(), 1000L)
+        .addSource(jvmRuntimeMetrics::getMetrics);
+
+    // When:
+    reporter.report();
+
+    // Then:
+    final String logContent = loggerProvider.getRawLogContents().trim();
+    final int start = logContent.indexOf("@metric1 op=JvmRuntime, heapUsed=");
+    assertTrue(logContent, start >= 0);
+    assertEquals(logContent, -1, logContent.indexOf("@metric1", start + 1));
+
+    final Map<String, String> values = parseValues(logContent.substring(start));
+    for (final String key : new String[] { JvmRuntimeMetrics.HEAP_USED, JvmRuntimeMetrics.HEAP_COMMITTED,
+        JvmRuntimeMetrics.NON_HEAP_USED, JvmRuntimeMetrics.GC_COUNT, JvmRuntimeMetrics.GC_TIME,
+        JvmRuntimeMetrics.THREADS, JvmRuntimeMetrics.DAEMON_THREADS, JvmRuntimeMetrics.LOADED_CLASSES,
+        JvmRuntimeMetrics.UNLOADED_CLASSES, JvmRuntimeMetrics.DIRECT_BUFFERS, JvmRuntimeMetrics.DIRECT_USED }) {
+      assertTrue(logContent, values.containsKey(key));
+      assertTrue(logContent, Long.parseLong(values.get(key)) >= 0L);
+    }
+    assertTrue(logContent, Long.parseLong(values.get(JvmRuntimeMetrics.THREADS)) > 0L);
+  }
+
+  @Test
+  public void shouldReportGarbageCollectionsSincePreviousPoll() throws IOException {
+    // Given:
+    final JvmRuntimeMetrics jvmRuntimeMetrics = new JvmRuntimeMetrics();
+    System.gc();
+
+    // When:
+    final Map<String, String> first = parseValues(render(jvmRuntimeMetrics.getMetrics()));
+    final Map<String, String> second = parseValues(render(jvmRuntimeMetrics.getMetrics()));
+
+    // Then:
+    assertTrue(first.toString(), Long.parseLong(first.get(JvmRuntimeMetrics.GC_COUNT)) > 0L);
+    assertEquals(second.toString(), "0", second.get(JvmRuntimeMetrics.GC_COUNT));
+    assertEquals(second.toString(), "0", second.get(JvmRuntimeMetrics.GC_TIME));
+  }
+
+  //
+  // Private
+  //
+
+  private static String render(Metrics metrics) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    metrics.appendTo(builder);
+    return builder.toString();
+  }
+
+  private static Map<String, String> parseValues(String metrics) {
+    final Map<String, String> result = new HashMap<>();
+    for (final String entry : metrics.split(", ")) {
+      final int separator = entry.indexOf('=');
+      result.put(entry.substring(0, separator).replace("@metric1 ", ""), entry.substring(separator + 1));
+    }
+    return result;
+  }
+}
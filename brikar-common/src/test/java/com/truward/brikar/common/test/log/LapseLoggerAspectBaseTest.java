@@ -0,0 +1,88 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.LogLapse;
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.aspect.LapseLoggerAspectBase;
+import com.truward.brikar.common.log.metric.Metrics;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link LapseLoggerAspectBase}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class LapseLoggerAspectBaseTest {
+  private final RecordingAspect aspect = new RecordingAspect();
+
+  @After
+  public void resetMetricsCollection() {
+    LogUtil.setLocalMetricsCollection(null);
+  }
+
+  @Test
+  public void shouldRecordCallsWithinMetricsCollection() throws Throwable {
+    // Given:
+    final MetricsCollection metricsCollection = LogUtil.getOrCreateLocalMetricsCollection();
+
+    // When:
+    final Object result = aspect.invoke("Op1");
+
+    // Then:
+    assertEquals("result", result);
+    assertEquals(1, aspect.recorded.size());
+    assertSame(metricsCollection, aspect.recordedCollections.get(0));
+    assertTrue(aspect.logged.isEmpty());
+    assertTrue(metricsCollection.toString(), metricsCollection.toString().contains("op=Op1"));
+  }
+
+  @Test
+  public void shouldLogCallsWithoutMetricsCollection() throws Throwable {
+    // When:
+    aspect.invoke("Op2");
+
+    // Then:
+    assertEquals(1, aspect.recorded.size());
+    assertNull(aspect.recordedCollections.get(0));
+    assertEquals(aspect.recorded, aspect.logged);
+  }
+
+  //
+  // Private
+  //
+
+  private static final class RecordingAspect extends LapseLoggerAspectBase {
+    final List<Metrics> recorded = new ArrayList<>();
+    final List<MetricsCollection> recordedCollections = new ArrayList<>();
+    final List<Metrics> logged = new ArrayList<>();
+
+    Object invoke(String operation) throws Throwable {
+      final ProceedingJoinPoint jp = mock(ProceedingJoinPoint.class);
+      when(jp.proceed()).thenReturn("result");
+      final LogLapse logLapse = mock(LogLapse.class);
+      when(logLapse.value()).thenReturn(operation);
+      return invokeAndLog(jp, logLapse);
+    }
+
+    @Override
+    protected void recordMetrics(MetricsCollection metricsCollection, Metrics metrics) {
+      recorded.add(metrics);
+      recordedCollections.add(metricsCollection);
+      super.recordMetrics(metricsCollection, metrics);
+    }
+
+    @Override
+    protected void logMetrics(Metrics metrics) {
+      logged.add(metrics);
+    }
+  }
+}
@@ -25,7 +25,8 @@ import static org.mockito.Mockito.when;
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "/spring/LapseLoggerAspectTest-context.xml")
 public final class LapseLoggerAspectTest {
-  @Resource TimeSource timeSource;
+  @Resource(name = "test.timeSource") TimeSource timeSource;
+  @Resource(name = "test.elapsedTimeSource") TimeSource elapsedTimeSource;
   @Resource(name = "test.mock.calcService") CalcService mockCalcService;
   @Resource(name = "test.real.calcService") CalcService realCalcService;
   @Resource(name = "test.real.calcService2") CalcService realCalcService2;
@@ -34,9 +35,10 @@ public final class LapseLoggerAspectTest {
 
   @Before
   public void initMocks() {
-    reset(mockCalcService);
+    reset(mockCalcService, elapsedTimeSource);
 
     when(timeSource.getTimeUnit()).thenReturn(TimeUnit.MILLISECONDS);
+    when(elapsedTimeSource.getTimeUnit()).thenReturn(TimeUnit.NANOSECONDS);
     loggerProvider.reset();
 
     LogUtil.setLocalMetricsCollection(null);
@@ -46,9 +48,10 @@ public final class LapseLoggerAspectTest {
   @Test
   public void shouldLogMetricEntry() {
     // Given:
-    when(timeSource.currentTime())
-        .thenReturn(1000L) // 1st time
-        .thenReturn(1200L); // 2nd time
+    when(timeSource.currentTime()).thenReturn(1000L);
+    when(elapsedTimeSource.currentTime())
+        .thenReturn(5000000L) // 1st time
+        .thenReturn(205000000L); // 2nd time
     when(mockCalcService.add(1, 2)).thenReturn(3);
 
     // When:
@@ -59,15 +62,16 @@ public final class LapseLoggerAspectTest {
     final String logContent = loggerProvider.getRawLogContents();
     assertTrue(
         "Actual content doesn't contain expected metric entry: " + logContent,
-        logContent.endsWith("@metric1 op=CalcService.plus, tStart=1000, tDelta=200" + sep));
+        logContent.endsWith("@metric1 op=CalcService.plus, tStart=1000, tDelta=200, tMicros=200000" + sep));
   }
 
   @Test
   public void shouldLogFailedOperation() {
     // Given:
-    when(timeSource.currentTime())
-        .thenReturn(1000L) // 1st time
-        .thenReturn(1001L); // 2nd time
+    when(timeSource.currentTime()).thenReturn(1000L);
+    when(elapsedTimeSource.currentTime())
+        .thenReturn(5000000L) // 1st time
+        .thenReturn(6000000L); // 2nd time
     when(mockCalcService.add(1, 2)).thenThrow(new IllegalArgumentException());
 
     // When:
@@ -80,7 +84,7 @@ public final class LapseLoggerAspectTest {
 
     // Then:
     final String logContent = loggerProvider.getRawLogContents();
-    assertTrue(logContent.endsWith("@metric1 op=CalcService.plus, tStart=1000, tDelta=1, failed=true" + sep));
+    assertTrue(logContent.endsWith("@metric1 op=CalcService.plus, tStart=1000, tDelta=1, tMicros=1000, failed=true" + sep));
   }
 
   @Test
@@ -99,6 +103,25 @@ public final class LapseLoggerAspectTest {
     assertTrue(logContent.isEmpty());
   }
 
+  @Test
+  public void shouldLogSubMillisecondTime() {
+    // Given:
+    when(timeSource.currentTime()).thenReturn(1000L);
+    when(elapsedTimeSource.currentTime())
+        .thenReturn(5000000L) // 1st time
+        .thenReturn(5250700L); // 2nd time
+    when(mockCalcService.add(1, 2)).thenReturn(3);
+
+    // When:
+    realCalcService.add(1, 2);
+
+    // Then:
+    final String logContent = loggerProvider.getRawLogContents();
+    assertTrue(
+        "Actual content doesn't contain expected metric entry: " + logContent,
+        logContent.endsWith("@metric1 op=CalcService.plus, tStart=1000, tDelta=0, tMicros=250" + sep));
+  }
+
   @Test
   public void shouldInferPlace() {
     // Given:
@@ -106,18 +129,20 @@ public final class LapseLoggerAspectTest {
 
     // When:
     realCalcService.foo();
+    realCalcService.foo();
 
     // Then:
     final String logContent = loggerProvider.getRawLogContents();
-    assertTrue(logContent.contains("op=CalcService.foo"));
+    assertEquals(2, logContent.split("op=CalcService.foo", -1).length - 1);
   }
 
   @Test
   public void shouldChainMetrics() {
     // Given:
-    when(timeSource.currentTime())
-        .thenReturn(1000L) // 1st time
-        .thenReturn(1200L); // 2nd time
+    when(timeSource.currentTime()).thenReturn(1000L);
+    when(elapsedTimeSource.currentTime())
+        .thenReturn(5000000L) // 1st time
+        .thenReturn(205000000L); // 2nd time
     when(mockCalcService.add(1, 2)).thenReturn(3);
 
     // When:
@@ -136,6 +161,6 @@ public final class LapseLoggerAspectTest {
     assertTrue(
         "Actual content doesn't contain expected metric entry: " + logContent,
         logContent.endsWith("@metric1 op=TopLevel, tStart=900, tDelta=400" + sep +
-            "\top=CalcService.plus, tStart=1000, tDelta=200" + sep));
+            "\top=CalcService.plus, tStart=1000, tDelta=200, tMicros=200000" + sep));
   }
 }
@@ -0,0 +1,155 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.time.TimeSource;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LatencyHistogram} and {@link LatencyHistogramRegistry}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class LatencyHistogramTest {
+
+  @Test
+  public void shouldReportPercentiles() {
+    // Given:
+    final LatencyHistogram histogram = new LatencyHistogram("op");
+
+    // When:
+    for (int i = 1; i <= 1000; ++i) {
+      histogram.record(10L, i);
+    }
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot(10L, 1);
+
+    // Then:
+    assertEquals(1000L, snapshot.getCount());
+    assertEquals(1000L, snapshot.getMax());
+    assertEquals(500.5, snapshot.getMean(), 0.001);
+    assertWithinBucket(500L, snapshot.getValueAtPercentile(50.0));
+    assertWithinBucket(990L, snapshot.getValueAtPercentile(99.0));
+    assertEquals(1L, snapshot.getValueAtPercentile(0.0));
+    assertEquals(1000L, snapshot.getValueAtPercentile(100.0));
+  }
+
+  @Test
+  public void shouldCountSmallValuesExactly() {
+    // Given:
+    final LatencyHistogram histogram = new LatencyHistogram("op");
+
+    // When:
+    histogram.record(1L, 3L);
+    histogram.record(1L, 3L);
+    histogram.record(1L, 7L);
+
+    // Then:
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot(1L, 1);
+    assertEquals(3L, snapshot.getValueAtPercentile(50.0));
+    assertEquals(7L, snapshot.getValueAtPercentile(90.0));
+  }
+
+  @Test
+  public void shouldKeepMeasurementsWithinWindow() {
+    // Given:
+    final LatencyHistogram histogram = new LatencyHistogram("op");
+
+    // When:
+    histogram.record(100L, 10L);
+    histogram.record(104L, 20L);
+    histogram.record(110L, 30L);
+
+    // Then:
+    assertEquals(1L, histogram.getSnapshot(110L, 1).getCount());
+    assertEquals(2L, histogram.getSnapshot(110L, 6).getCount());
+    assertEquals(3L, histogram.getSnapshot(110L, 15).getCount());
+    assertEquals(0L, histogram.getSnapshot(130L, 15).getCount());
+  }
+
+  @Test
+  public void shouldRotateSlots() {
+    // Given:
+    final LatencyHistogram histogram = new LatencyHistogram("op");
+    histogram.record(100L, 10L);
+
+    // When: same slot is reused by the later minute
+    histogram.record(116L, 20L);
+
+    // Then:
+    final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot(116L, 15);
+    assertEquals(1L, snapshot.getCount());
+    assertEquals(20L, snapshot.getMax());
+  }
+
+  @Test
+  public void shouldRecordLapses() {
+    // Given:
+    final MutableTimeSource timeSource = new MutableTimeSource();
+    final LatencyHistogramRegistry registry = new LatencyHistogramRegistry(2, timeSource);
+
+    // When:
+    registry.record(new SimpleLapse().setOperation("a").setStartTime(1000L).setEndTime(1005L));
+    registry.record(new SimpleLapse().setOperation("b").setStartTime(1000L).setEndTime(1010L));
+    registry.record(new SimpleLapse().setOperation("c").setStartTime(1000L).setEndTime(1015L));
+    registry.record(new SimpleLapse().setOperation("a")); // no time - ignored
+    timeSource.time += TimeUnit.MINUTES.toMillis(3L);
+    registry.record("a", 7L);
+
+    // Then:
+    final List<LatencyHistogram.Snapshot> lastMinute = registry.getSnapshots(1);
+    assertEquals(1, lastMinute.size());
+    assertEquals("a", lastMinute.get(0).getOperation());
+    assertEquals(7L, lastMinute.get(0).getMax());
+
+    final List<LatencyHistogram.Snapshot> snapshots = registry.getSnapshots(5);
+    assertEquals(3, snapshots.size());
+    assertEquals(LatencyHistogramRegistry.OTHER_OPERATION, snapshots.get(0).getOperation());
+    assertEquals(15L, snapshots.get(0).getMax());
+    assertEquals("a", snapshots.get(1).getOperation());
+    assertEquals(2L, snapshots.get(1).getCount());
+    assertEquals("b", snapshots.get(2).getOperation());
+  }
+
+  @Test
+  public void shouldNotRecordIfDisabled() {
+    // Given:
+    final LatencyHistogramRegistry registry = new LatencyHistogramRegistry(2, new MutableTimeSource());
+    registry.setEnabled(false);
+
+    // When:
+    registry.record("a", 7L);
+
+    // Then:
+    assertTrue(registry.getSnapshots(1).isEmpty());
+  }
+
+  //
+  // Private
+  //
+
+  private static void assertWithinBucket(long expected, long actual) {
+    assertTrue("expected=" + expected + ", actual=" + actual,
+        actual >= expected && actual - expected <= expected / LatencyHistogram.SUB_BUCKET_COUNT);
+  }
+
+  private static final class MutableTimeSource implements TimeSource {
+    long time = TimeUnit.DAYS.toMillis(17000L);
+
+    @Override
+    public long currentTime() {
+      return time;
+    }
+
+    @Override
+    public TimeUnit getTimeUnit() {
+      return TimeUnit.MILLISECONDS;
+    }
+  }
+}
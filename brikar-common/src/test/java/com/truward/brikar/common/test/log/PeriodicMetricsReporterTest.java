@@ -0,0 +1,64 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.PeriodicMetricsReporter;
+import com.truward.brikar.common.test.util.TestLoggerProvider;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PeriodicMetricsReporter}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class PeriodicMetricsReporterTest {
+  private final TestLoggerProvider loggerProvider = new TestLoggerProvider();
+  private final String sep = System.lineSeparator();
+
+  @After
+  public void destroyLogger() {
+    loggerProvider.destroy();
+  }
+
+  @Test
+  public void shouldReportAllSources() {
+    // Given:
+    final PeriodicMetricsReporter reporter = new PeriodicMetricsReporter(loggerProvider.getLogger(), 1000L)
+        .addSource(() -> new SimpleLapse().setOperation("First").setCount(1))
+        .addSource(() -> null)
+        .addSource(() -> new SimpleLapse().setOperation("Second").setCount(2));
+
+    // When:
+    reporter.report();
+
+    // Then:
+    final String logContent = loggerProvider.getRawLogContents();
+    assertTrue(logContent, logContent.contains("@metric1 op=First, cnt=1" + sep));
+    assertTrue(logContent, logContent.endsWith("@metric1 op=Second, cnt=2" + sep));
+  }
+
+  @Test
+  public void shouldContinueReportingIfSourceFails() {
+    // Given:
+    final PeriodicMetricsReporter reporter = new PeriodicMetricsReporter(loggerProvider.getLogger(), 1000L)
+        .addSource(() -> {
+          throw new IllegalStateException();
+        })
+        .addSource(() -> new SimpleLapse().setOperation("Second"));
+
+    // When:
+    reporter.report();
+
+    // Then:
+    final String logContent = loggerProvider.getRawLogContents();
+    assertTrue(logContent, logContent.contains("Unable to report metrics"));
+    assertTrue(logContent, logContent.endsWith("@metric1 op=Second" + sep));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectNonPositivePeriod() {
+    new PeriodicMetricsReporter(loggerProvider.getLogger(), 0L);
+  }
+}
@@ -0,0 +1,92 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.metric.PrometheusTextWriter;
+import com.truward.time.support.StandardTimeSource;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PrometheusTextWriter}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class PrometheusTextWriterTest {
+
+  @Test
+  public void shouldWriteHistograms() throws IOException {
+    // Given:
+    final LatencyHistogramRegistry registry = new LatencyHistogramRegistry(10, StandardTimeSource.INSTANCE);
+    registry.record(LatencyHistogram.Kind.REQUEST, "GET_/api/users/{id}", 5L, 200, false);
+    registry.record(LatencyHistogram.Kind.REQUEST, "GET_/api/users/{id}", 1500L, 200, false);
+    registry.record(LatencyHistogram.Kind.REQUEST, "GET_/api/users/{id}", 3L, 404, false);
+
+    // When:
+    final String text = write(writer -> writer.writeLatencyHistograms(
+        registry.getHistograms(LatencyHistogram.Kind.REQUEST), "brikar_request_duration_seconds", "Time.", "op"));
+
+    // Then:
+    final String bucket = "brikar_request_duration_seconds_bucket{op=\"GET_/api/users/{id}\",le=";
+    assertTrue(text, text.startsWith("# HELP brikar_request_duration_seconds Time.\n" +
+        "# TYPE brikar_request_duration_seconds histogram\n"));
+    assertTrue(text, text.contains(bucket + "\"0.001\"} 0\n"));
+    assertTrue(text, text.contains(bucket + "\"0.003\"} 1\n"));
+    assertTrue(text, text.contains(bucket + "\"0.007\"} 2\n"));
+    assertTrue(text, text.contains(bucket + "\"1.023\"} 2\n"));
+    assertTrue(text, text.contains(bucket + "\"2.047\"} 3\n"));
+    assertTrue(text, text.contains(bucket + "\"+Inf\"} 3\n"));
+    assertTrue(text, text.contains("brikar_request_duration_seconds_sum{op=\"GET_/api/users/{id}\"} 1.508\n"));
+    assertTrue(text, text.contains("brikar_request_duration_seconds_count{op=\"GET_/api/users/{id}\"} 3\n"));
+  }
+
+  @Test
+  public void shouldWriteCounters() throws IOException {
+    // Given:
+    final LatencyHistogramRegistry registry = new LatencyHistogramRegistry(10, StandardTimeSource.INSTANCE);
+    registry.record(LatencyHistogram.Kind.CLIENT_CALL, "/api/users/1", 5L, 200, false);
+    registry.record(LatencyHistogram.Kind.CLIENT_CALL, "/api/users/1", 7L, 200, false);
+    registry.record(LatencyHistogram.Kind.CLIENT_CALL, "/api/users/1", 3L, 503, false);
+    registry.record(LatencyHistogram.Kind.METHOD, "UserService.getUser", 3L, -1, true);
+    registry.record(LatencyHistogram.Kind.METHOD, "UserService.\"quoted\"", 3L, -1, false);
+
+    // When:
+    final String text = write(writer -> {
+      writer.writeResponseCodeCounts(registry.getHistograms(LatencyHistogram.Kind.CLIENT_CALL),
+          "brikar_client_calls_total", "Calls.", "uri");
+      writer.writeFailedCounts(registry.getHistograms(LatencyHistogram.Kind.METHOD),
+          "brikar_method_failures_total", "Failures.", "op");
+      writer.writeLatencyHistograms(registry.getHistograms(LatencyHistogram.Kind.METHOD),
+          "brikar_method_duration_seconds", "Time.", "op");
+    });
+
+    // Then:
+    assertTrue(text, text.contains("# TYPE brikar_client_calls_total counter\n"));
+    assertTrue(text, text.contains("brikar_client_calls_total{uri=\"/api/users/1\",code=\"200\"} 2\n"));
+    assertTrue(text, text.contains("brikar_client_calls_total{uri=\"/api/users/1\",code=\"503\"} 1\n"));
+    assertTrue(text, text.contains("brikar_method_failures_total{op=\"UserService.getUser\"} 1\n"));
+    assertFalse(text, text.contains("brikar_method_failures_total{op=\"UserService.\\\"quoted\\\"\"}"));
+    assertTrue(text, text.contains("brikar_method_duration_seconds_count{op=\"UserService.\\\"quoted\\\"\"} 1\n"));
+  }
+
+  //
+  // Private
+  //
+
+  private interface WriterAction {
+    void apply(PrometheusTextWriter writer) throws IOException;
+  }
+
+  private static String write(WriterAction action) throws IOException {
+    final StringWriter stringWriter = new StringWriter();
+    final PrometheusTextWriter writer = new PrometheusTextWriter(stringWriter);
+    action.apply(writer);
+    writer.flush();
+    return stringWriter.toString();
+  }
+}
@@ -32,7 +32,8 @@ import static org.mockito.Mockito.*;
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "/spring/PropagateLoggerAspectTest-context.xml")
 public class PropagateLapseLoggerAspectTest {
-  @Resource TimeSource timeSource;
+  @Resource(name = "test.timeSource") TimeSource timeSource;
+  @Resource(name = "test.elapsedTimeSource") TimeSource elapsedTimeSource;
   @Resource AsyncTaskExecutor taskExecutor;
   @Resource(name = "test.mock.calcService") CalcService mockCalcService;
   @Resource(name = "test.real.calcService") CalcService realCalcService;
@@ -41,9 +42,10 @@ public class PropagateLapseLoggerAspectTest {
 
   @Before
   public void initMocks() {
-    reset(mockCalcService, timeSource);
+    reset(mockCalcService, timeSource, elapsedTimeSource);
 
     when(timeSource.getTimeUnit()).thenReturn(TimeUnit.MILLISECONDS);
+    when(elapsedTimeSource.getTimeUnit()).thenReturn(TimeUnit.NANOSECONDS);
 
     metricsCollection = new TestMetricsCollection();
     LogUtil.setLocalMetricsCollection(metricsCollection);
@@ -57,9 +59,10 @@ public class PropagateLapseLoggerAspectTest {
   @Test
   public void shouldLogMetricEntry() {
     // Given:
-    when(timeSource.currentTime())
-        .thenReturn(1000L) // 1st time
-        .thenReturn(1200L); // 2nd time
+    when(timeSource.currentTime()).thenReturn(1000L);
+    when(elapsedTimeSource.currentTime())
+        .thenReturn(5000000L) // 1st time
+        .thenReturn(205000000L); // 2nd time
     when(mockCalcService.add(1, 2)).thenReturn(3);
 
     // When:
@@ -70,6 +73,7 @@ public class PropagateLapseLoggerAspectTest {
     final SimpleLapse lapse = metricsCollection.expectOneEntry(SimpleLapse.class);
     assertEquals(1000, lapse.getStartTime());
     assertEquals(1200, lapse.getEndTime());
+    assertEquals(200000, lapse.getTimeDeltaMicros());
     assertEquals("CalcService.plus", lapse.getOperation());
   }
 
@@ -85,15 +89,16 @@ public class PropagateLapseLoggerAspectTest {
     // Then:
     assertEquals(3, result);
     assertEquals(Collections.emptyList(), metricsCollection.metricsList);
-    verifyZeroInteractions(timeSource);
+    verifyZeroInteractions(timeSource, elapsedTimeSource);
   }
 
   @Test
   public void shouldPropagateMetricsInMultithreadedEnvironment() throws ExecutionException, InterruptedException {
     // Given:
-    when(timeSource.currentTime())
-        .thenReturn(1000L) // 1st time
-        .thenReturn(1200L); // 2nd time
+    when(timeSource.currentTime()).thenReturn(1000L);
+    when(elapsedTimeSource.currentTime())
+        .thenReturn(5000000L) // 1st time
+        .thenReturn(205000000L); // 2nd time
     when(mockCalcService.add(1, 2)).thenReturn(3);
     final long masterThreadId = Thread.currentThread().getId();
 
@@ -113,6 +118,7 @@ public class PropagateLapseLoggerAspectTest {
     final SimpleLapse lapse = metricsCollection.expectOneEntry(SimpleLapse.class);
     assertEquals(1000, lapse.getStartTime());
     assertEquals(1200, lapse.getEndTime());
+    assertEquals(200000, lapse.getTimeDeltaMicros());
     assertEquals("CalcService.plus", lapse.getOperation());
   }
 
@@ -0,0 +1,35 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link SimpleLapse}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class SimpleLapseTest {
+
+  @Test
+  public void shouldRenderPropertiesInOrderOfAssignment() throws IOException {
+    // Given:
+    final SimpleLapse lapse = new SimpleLapse().setOperation("op1").setStartTime(1000L).setEndTime(1010L);
+
+    // When:
+    lapse.setProperty("str", "a")
+        .setProperty("int", 1)
+        .setProperty("long", -2L)
+        .setProperty("bool", true)
+        .setProperty("extra", "b")
+        .setProperty(new String("int"), 3); // same name, different instance
+
+    // Then:
+    final StringBuilder builder = new StringBuilder();
+    lapse.appendTo(builder);
+    assertEquals("op=op1, tStart=1000, tDelta=10, str=a, int=3, long=-2, bool=true, extra=b", builder.toString());
+  }
+}
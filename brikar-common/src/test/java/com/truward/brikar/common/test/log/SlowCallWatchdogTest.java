@@ -0,0 +1,185 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.watchdog.SlowCallWatchdog;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SlowCallWatchdog}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class SlowCallWatchdogTest {
+
+  @Test
+  public void shouldAttachStackSamplesOfSlowCall() throws Exception {
+    // Given:
+    final SlowCallWatchdog watchdog = new SlowCallWatchdog(1L, Collections.emptyMap(), 3, 64);
+    final SimpleLapse lapse = new SimpleLapse().setOperation("ReportDao.query");
+    final BlockedCall call = new BlockedCall(watchdog, lapse);
+
+    // When:
+    call.awaitEntered();
+    watchdog.scan();
+    watchdog.scan();
+    call.release();
+
+    // Then:
+    final String metrics = toString(lapse);
+    assertTrue(metrics, metrics.contains(", stacks="));
+    assertTrue(metrics, metrics.contains(";SlowCallWatchdogTest$BlockedCall.blockingCall;CountDownLatch.await;"));
+    assertTrue(metrics, metrics.endsWith("*2"));
+    assertFalse(metrics, metrics.substring(metrics.indexOf("stacks=")).contains(" "));
+    assertEquals(1L, getSlowCalls(watchdog));
+  }
+
+  @Test
+  public void shouldNotSampleFastCall() throws IOException {
+    // Given:
+    final SlowCallWatchdog watchdog = new SlowCallWatchdog(60000L, Collections.emptyMap(), 3, 64);
+    final SimpleLapse lapse = new SimpleLapse().setOperation("ReportDao.query");
+
+    // When:
+    watchdog.enter(lapse.getOperation(), lapse);
+    watchdog.scan();
+    watchdog.exit(lapse);
+
+    // Then:
+    assertEquals("op=ReportDao.query", toString(lapse));
+    assertEquals(0L, getSlowCalls(watchdog));
+  }
+
+  @Test
+  public void shouldUseThresholdOfLongestOperationPrefix() throws Exception {
+    // Given:
+    final Map<String, Long> thresholds = new HashMap<>();
+    thresholds.put("Report", 60000L);
+    thresholds.put("ReportDao.", 1L);
+    final SlowCallWatchdog watchdog = new SlowCallWatchdog(0L, thresholds, 3, 64);
+    final SimpleLapse outerLapse = new SimpleLapse().setOperation("ReportService.getReport");
+    final SimpleLapse innerLapse = new SimpleLapse().setOperation("ReportDao.query");
+    final BlockedCall call = new BlockedCall(watchdog, outerLapse, innerLapse);
+
+    // When:
+    call.awaitEntered();
+    watchdog.scan();
+    call.release();
+
+    // Then:
+    assertEquals("op=ReportService.getReport", toString(outerLapse));
+    final String innerMetrics = toString(innerLapse);
+    assertTrue(innerMetrics, innerMetrics.contains(", stacks="));
+    assertFalse(innerMetrics, innerMetrics.contains("*"));
+  }
+
+  @Test
+  public void shouldLimitNumberOfSamples() throws Exception {
+    // Given:
+    final SlowCallWatchdog watchdog = new SlowCallWatchdog(1L, Collections.emptyMap(), 2, 64);
+    final SimpleLapse lapse = new SimpleLapse().setOperation("ReportDao.query");
+    final BlockedCall call = new BlockedCall(watchdog, lapse);
+
+    // When:
+    call.awaitEntered();
+    for (int i = 0; i < 5; ++i) {
+      watchdog.scan();
+    }
+    call.release();
+
+    // Then:
+    final String metrics = toString(lapse);
+    assertTrue(metrics, metrics.endsWith("*2"));
+  }
+
+  @Test
+  public void shouldIgnoreCallsByDefault() throws IOException {
+    // Given:
+    final SlowCallWatchdog watchdog = SlowCallWatchdog.getDefault();
+    final SimpleLapse lapse = new SimpleLapse().setOperation("ReportDao.query");
+
+    // When:
+    watchdog.enter(lapse.getOperation(), lapse);
+    watchdog.exit(lapse);
+
+    // Then:
+    assertFalse(watchdog.isEnabled());
+    assertEquals("op=ReportDao.query", toString(lapse));
+  }
+
+  //
+  // Private
+  //
+
+  private static String toString(SimpleLapse lapse) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    lapse.appendTo(builder);
+    return builder.toString();
+  }
+
+  private static long getSlowCalls(SlowCallWatchdog watchdog) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    watchdog.getMetrics().appendTo(builder);
+    final String metrics = builder.toString();
+    final int start = metrics.indexOf(SlowCallWatchdog.SLOW_CALLS + '=') + SlowCallWatchdog.SLOW_CALLS.length() + 1;
+    return Long.parseLong(metrics.substring(start, metrics.indexOf(',', start)));
+  }
+
+  /**
+   * Thread, that makes nested calls and blocks in the innermost one until released.
+   */
+  private static final class BlockedCall extends Thread {
+    private final SlowCallWatchdog watchdog;
+    private final SimpleLapse[] lapses;
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    BlockedCall(SlowCallWatchdog watchdog, SimpleLapse... lapses) {
+      this.watchdog = watchdog;
+      this.lapses = lapses;
+      setDaemon(true);
+      start();
+    }
+
+    @Override
+    public void run() {
+      for (final SimpleLapse lapse : lapses) {
+        watchdog.enter(lapse.getOperation(), lapse);
+      }
+      try {
+        blockingCall();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        for (int i = lapses.length - 1; i >= 0; --i) {
+          watchdog.exit(lapses[i]);
+        }
+      }
+    }
+
+    void awaitEntered() throws InterruptedException {
+      assertTrue(entered.await(10L, TimeUnit.SECONDS));
+      Thread.sleep(10L); // let calls become slow and thread block on the latch
+    }
+
+    void release() throws InterruptedException {
+      released.countDown();
+      join(10000L);
+    }
+
+    private void blockingCall() throws InterruptedException {
+      entered.countDown();
+      released.await();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.truward.brikar.common.test.log;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.StandardMetricsCollection;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link StandardMetricsCollection}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class StandardMetricsCollectionTest {
+  private final String sep = System.lineSeparator();
+
+  @Test
+  public void shouldRenderFlatMetrics() {
+    // Given:
+    final StandardMetricsCollection collection = new StandardMetricsCollection();
+
+    // When:
+    collection.add(new SimpleLapse().setOperation("first").setStartTime(1000L).setEndTime(1100L));
+    collection.add(new SimpleLapse().setOperation("second").setStartTime(1100L).setEndTime(1150L));
+
+    // Then:
+    assertEquals("@metric1 op=first, tStart=1000, tDelta=100" + sep +
+        "\top=second, tStart=1100, tDelta=50", collection.toString());
+  }
+
+  @Test
+  public void shouldRenderSpanTree() {
+    // Given:
+    final StandardMetricsCollection collection = new StandardMetricsCollection();
+    final SimpleLapse request = new SimpleLapse().setOperation("request").setStartTime(1000L);
+    final SimpleLapse call = new SimpleLapse().setOperation("call").setStartTime(1010L);
+
+    // When:
+    collection.openSpan(request);
+    collection.openSpan(call);
+    collection.add(new SimpleLapse().setOperation("client").setStartTime(1020L).setEndTime(1070L));
+    collection.closeSpan(call.setEndTime(1080L));
+    collection.add(new SimpleLapse().setOperation("other").setStartTime(1085L).setEndTime(1090L));
+    collection.closeSpan(request.setEndTime(1100L));
+
+    // Then:
+    assertEquals("@metric1 op=request, tStart=1000, tDelta=100, span=0" + sep +
+        "\top=call, tStart=1010, tDelta=70, span=1, parent=0, tOffset=10" + sep +
+        "\top=client, tStart=1020, tDelta=50, parent=1, tOffset=10" + sep +
+        "\top=other, tStart=1085, tDelta=5, parent=0, tOffset=85", collection.toString());
+  }
+
+  @Test
+  public void shouldNotRenderOpenSpan() {
+    // Given:
+    final StandardMetricsCollection collection = new StandardMetricsCollection();
+
+    // When:
+    collection.openSpan(new SimpleLapse().setOperation("request"));
+
+    // Then:
+    assertEquals("@metric1", collection.toString());
+  }
+
+  @Test
+  public void shouldAttachMetricsOfOtherThreadsToRootSpan() throws InterruptedException {
+    // Given:
+    final StandardMetricsCollection collection = new StandardMetricsCollection();
+    final SimpleLapse request = new SimpleLapse().setOperation("request").setStartTime(1000L);
+    collection.openSpan(request);
+
+    // When:
+    final Thread thread = new Thread(() -> {
+      final SimpleLapse task = new SimpleLapse().setOperation("task").setStartTime(1005L);
+      collection.openSpan(task);
+      collection.closeSpan(task.setEndTime(1010L));
+    });
+    thread.start();
+    thread.join();
+    final Thread completionThread = new Thread(() -> collection.closeSpan(request.setEndTime(1020L)));
+    completionThread.start();
+    completionThread.join();
+    collection.add(new SimpleLapse().setOperation("after"));
+
+    // Then:
+    assertEquals("@metric1 op=request, tStart=1000, tDelta=20, span=0" + sep +
+        "\top=task, tStart=1005, tDelta=5, parent=0, tOffset=5" + sep +
+        "\top=after", collection.toString());
+  }
+}
@@ -112,6 +112,8 @@ public final class LogMessageProcessor {
       final Object value;
       if (LogUtil.TIME_DELTA.equals(key)) {
         value = Long.parseLong(entry.getValue());
+      } else if (LogUtil.TIME_DELTA_MICROS.equals(key)) {
+        value = Long.parseLong(entry.getValue());
       } else if (LogUtil.START_TIME.equals(key)) {
         value = Long.parseLong(entry.getValue());
       } else if (LogUtil.COUNT.equals(key)) {
@@ -0,0 +1,379 @@
+package com.truward.brikar.maintenance.metric;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.metric.MappedMetricsLayout;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reader of the memory-mapped metrics files, written by {@link com.truward.brikar.common.log.metric.MappedMetricsSink}.
+ * File is mapped once, so subsequent reads just copy values from the shared memory and check whether the file has
+ * been replaced by the restarted service, in which case the new file is mapped.
+ * <p>
+ * Can be run as a standalone tool, that prints metrics of the given files or of all the <code>*.metrics</code>
+ * files in the given directories, optionally every given number of seconds:
+ * <code>java -cp ... MappedMetricsReader [--interval=seconds] path...</code>
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class MappedMetricsReader implements AutoCloseable {
+
+  /**
+   * Extension of the files, picked up by the standalone tool from the directories.
+   */
+  public static final String FILE_EXTENSION = ".metrics";
+
+  private final File file;
+  private MappedByteBuffer buffer;
+  private Object fileKey;
+
+  public MappedMetricsReader(File file) throws IOException {
+    this.file = Objects.requireNonNull(file, "file");
+    map();
+  }
+
+  @Nonnull
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return Current values of the file
+   */
+  @Nonnull
+  public Snapshot read() {
+    remapIfReplaced();
+
+    final int slotCount = Math.min(buffer.getInt(MappedMetricsLayout.SLOT_COUNT_OFFSET),
+        (buffer.capacity() - MappedMetricsLayout.HEADER_SIZE) / MappedMetricsLayout.SLOT_SIZE);
+    final int usedSlotCount = Math.min(buffer.getInt(MappedMetricsLayout.USED_SLOT_COUNT_OFFSET), slotCount);
+
+    final List<Entry> entries = new ArrayList<>(usedSlotCount);
+    for (int slot = 0; slot < usedSlotCount; ++slot) {
+      final Entry entry = readEntry(MappedMetricsLayout.getSlotOffset(slot));
+      if (entry != null) {
+        entries.add(entry);
+      }
+    }
+
+    return new Snapshot(
+        buffer.getLong(MappedMetricsLayout.PID_OFFSET),
+        buffer.getLong(MappedMetricsLayout.START_TIME_OFFSET),
+        buffer.getLong(MappedMetricsLayout.UPDATE_TIME_OFFSET),
+        buffer.getInt(MappedMetricsLayout.CLOSED_OFFSET) != 0,
+        Collections.unmodifiableList(entries));
+  }
+
+  @Override
+  public void close() {
+    // mapping is released once buffer is garbage collected
+  }
+
+  /**
+   * Values of the metrics file at certain moment of time.
+   */
+  public static final class Snapshot {
+    private final long pid;
+    private final long startTime;
+    private final long updateTime;
+    private final boolean closed;
+    private final List<Entry> entries;
+
+    Snapshot(long pid, long startTime, long updateTime, boolean closed, List<Entry> entries) {
+      this.pid = pid;
+      this.startTime = startTime;
+      this.updateTime = updateTime;
+      this.closed = closed;
+      this.entries = entries;
+    }
+
+    public long getPid() {
+      return pid;
+    }
+
+    public long getStartTime() {
+      return startTime;
+    }
+
+    public long getUpdateTime() {
+      return updateTime;
+    }
+
+    public boolean isClosed() {
+      return closed;
+    }
+
+    @Nonnull
+    public List<Entry> getEntries() {
+      return entries;
+    }
+  }
+
+  /**
+   * Single gauge or histogram.
+   */
+  public static final class Entry {
+    private final String name;
+    private final LatencyHistogram.Kind kind;
+    private final long value;
+    private final long sum;
+    private final long failed;
+    private final long[] ranges;
+    private final long[] responseClasses;
+
+    Entry(String name,
+          @Nullable LatencyHistogram.Kind kind,
+          long value,
+          long sum,
+          long failed,
+          long[] ranges,
+          long[] responseClasses) {
+      this.name = name;
+      this.kind = kind;
+      this.value = value;
+      this.sum = sum;
+      this.failed = failed;
+      this.ranges = ranges;
+      this.responseClasses = responseClasses;
+    }
+
+    @Nonnull
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return Kind of the histogram or null for gauges
+     */
+    @Nullable
+    public LatencyHistogram.Kind getKind() {
+      return kind;
+    }
+
+    public boolean isHistogram() {
+      return kind != null;
+    }
+
+    /**
+     * @return Gauge value or number of measurements of the histogram
+     */
+    public long getValue() {
+      return value;
+    }
+
+    public long getSum() {
+      return sum;
+    }
+
+    public long getFailed() {
+      return failed;
+    }
+
+    /**
+     * @param responseClass Response class from 1 to 5, e.g. 5 for 5xx responses
+     * @return Number of responses of the given class
+     */
+    public long getResponseCount(int responseClass) {
+      return responseClasses[responseClass - 1];
+    }
+
+    /**
+     * @param percentile Share of measurements in <code>[0, 100]</code> range
+     * @return Highest value of the power of two range, that holds measurement at the given percentile
+     */
+    public long getValueAtPercentile(double percentile) {
+      long count = 0L;
+      for (final long rangeCount : ranges) {
+        count += rangeCount;
+      }
+      if (count == 0L) {
+        return 0L;
+      }
+
+      final long rank = Math.max(1L, (long) Math.ceil(percentile * count / 100.0));
+      long accumulated = 0L;
+      for (int i = 0; i < ranges.length; ++i) {
+        accumulated += ranges[i];
+        if (accumulated >= rank) {
+          return LatencyHistogram.getCumulativeRangeHighestValue(i);
+        }
+      }
+      return LatencyHistogram.MAX_VALUE;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    long intervalMillis = 0L;
+    final List<File> files = new ArrayList<>();
+    for (final String arg : args) {
+      if (arg.startsWith("--interval=")) {
+        intervalMillis = Long.parseLong(arg.substring("--interval=".length())) * 1000L;
+        continue;
+      }
+
+      final File file = new File(arg);
+      final File[] children = file.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+      if (children != null) {
+        Collections.addAll(files, children);
+      } else {
+        files.add(file);
+      }
+    }
+
+    if (files.isEmpty()) {
+      System.err.println("Usage: MappedMetricsReader [--interval=seconds] path...");
+      System.exit(1);
+      return;
+    }
+
+    final List<MappedMetricsReader> readers = new ArrayList<>(files.size());
+    for (final File file : files) {
+      try {
+        readers.add(new MappedMetricsReader(file));
+      } catch (IOException e) {
+        System.err.println("Skipping " + file + ": " + e.getMessage());
+      }
+    }
+
+    for (;;) {
+      for (final MappedMetricsReader reader : readers) {
+        print(reader.getFile(), reader.read(), System.out);
+      }
+      if (intervalMillis <= 0L) {
+        return;
+      }
+      Thread.sleep(intervalMillis);
+    }
+  }
+
+  /**
+   * Prints snapshot in a human readable form.
+   *
+   * @param file Metrics file
+   * @param snapshot Snapshot of the file
+   * @param out Output stream
+   */
+  public static void print(File file, Snapshot snapshot, PrintStream out) {
+    out.println(file + " pid=" + snapshot.getPid() + ", updated=" + new Date(snapshot.getUpdateTime()) +
+        (snapshot.isClosed() ? ", closed" : ""));
+    for (final Entry entry : snapshot.getEntries()) {
+      if (!entry.isHistogram()) {
+        out.println("  " + entry.getName() + " = " + entry.getValue());
+        continue;
+      }
+
+      out.println("  " + entry.getKind() + ' ' + entry.getName() +
+          " count=" + entry.getValue() +
+          ", sum=" + entry.getSum() +
+          ", failed=" + entry.getFailed() +
+          ", 5xx=" + entry.getResponseCount(5) +
+          ", p50<=" + entry.getValueAtPercentile(50.0) +
+          ", p99<=" + entry.getValueAtPercentile(99.0));
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void map() throws IOException {
+    // file identity is taken before mapping, so that file, replaced in between, is mapped again on the next read
+    final Object newFileKey = getFileKey(file);
+    final MappedByteBuffer newBuffer;
+    try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      newBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, randomAccessFile.length());
+    }
+    newBuffer.order(MappedMetricsLayout.BYTE_ORDER);
+
+    if (newBuffer.capacity() < MappedMetricsLayout.HEADER_SIZE ||
+        newBuffer.getInt(MappedMetricsLayout.MAGIC_OFFSET) != MappedMetricsLayout.MAGIC) {
+      throw new IOException("Not a metrics file: " + file);
+    }
+    final int version = newBuffer.getInt(MappedMetricsLayout.VERSION_OFFSET);
+    if (version != MappedMetricsLayout.VERSION) {
+      throw new IOException("Unsupported metrics file version " + version + ": " + file);
+    }
+
+    this.buffer = newBuffer;
+    this.fileKey = newFileKey;
+  }
+
+  private void remapIfReplaced() {
+    try {
+      final Object currentFileKey = getFileKey(file);
+      if (currentFileKey != null ? currentFileKey.equals(fileKey) :
+          buffer.getInt(MappedMetricsLayout.CLOSED_OFFSET) == 0) {
+        return; // same file or, if file identity is not available, file of the process, that is still running
+      }
+
+      map();
+    } catch (IOException ignored) {
+      // file is being replaced, keep reading the previous one
+    }
+  }
+
+  @Nullable
+  private static Object getFileKey(File file) throws IOException {
+    return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+  }
+
+  @Nullable
+  private Entry readEntry(int offset) {
+    final int type = buffer.getInt(offset + MappedMetricsLayout.SLOT_TYPE_OFFSET);
+    final int nameLength = buffer.getInt(offset + MappedMetricsLayout.SLOT_NAME_LENGTH_OFFSET);
+    if (nameLength < 0 || nameLength > MappedMetricsLayout.MAX_NAME_LENGTH) {
+      return null; // slot is being initialized
+    }
+
+    final byte[] nameBytes = new byte[nameLength];
+    for (int i = 0; i < nameLength; ++i) {
+      nameBytes[i] = buffer.get(offset + MappedMetricsLayout.SLOT_NAME_OFFSET + i);
+    }
+    final String name = new String(nameBytes, StandardCharsets.UTF_8);
+    final long value = buffer.getLong(offset + MappedMetricsLayout.SLOT_VALUE_OFFSET);
+
+    if (type == MappedMetricsLayout.TYPE_GAUGE) {
+      return new Entry(name, null, value, 0L, 0L, new long[0], new long[MappedMetricsLayout.RESPONSE_CLASS_COUNT]);
+    }
+    if (type != MappedMetricsLayout.TYPE_HISTOGRAM) {
+      return null;
+    }
+
+    final int kind = buffer.getInt(offset + MappedMetricsLayout.SLOT_KIND_OFFSET);
+    final LatencyHistogram.Kind[] kinds = LatencyHistogram.Kind.values();
+    final long[] ranges = new long[MappedMetricsLayout.RANGE_COUNT];
+    for (int i = 0; i < ranges.length; ++i) {
+      ranges[i] = buffer.getLong(offset + MappedMetricsLayout.SLOT_RANGES_OFFSET + i * 8);
+    }
+    final long[] responseClasses = new long[MappedMetricsLayout.RESPONSE_CLASS_COUNT];
+    for (int i = 0; i < responseClasses.length; ++i) {
+      responseClasses[i] = buffer.getLong(offset + MappedMetricsLayout.SLOT_RESPONSE_CLASSES_OFFSET + i * 8);
+    }
+
+    return new Entry(name,
+        kind >= 0 && kind < kinds.length ? kinds[kind] : LatencyHistogram.Kind.METHOD,
+        value,
+        buffer.getLong(offset + MappedMetricsLayout.SLOT_SUM_OFFSET),
+        buffer.getLong(offset + MappedMetricsLayout.SLOT_FAILED_OFFSET),
+        ranges,
+        responseClasses);
+  }
+}
@@ -31,6 +31,10 @@ public final class LineParsingTest {
       "rid=KhnHxNK/BbLbaiH4 " +
       "[learn.LogProducerMain.main()] @metric1 tDelta=545, op=UserService.getUserById";
 
+  private static final String MSG6 = "2015-07-24 23:22:20,748 INFO BrikarMetricsLogger  " +
+      "[BrikarMetricsReporter] @metric1 op=JvmRuntime, heapUsed=104857600, heapCommitted=268435456, " +
+      "gcCount=3, gcTime=41, threads=42, cpuMicros=1250000, cpuPercent=12, directUsed=1048576";
+
   private final LogMessageProcessor processor = new LogMessageProcessor();
 
   @Test
@@ -102,4 +106,17 @@ public final class LineParsingTest {
     assertEquals(20L, logMessage.getAttributes().get(LogUtil.TIME_DELTA));
     assertEquals(1000L, logMessage.getAttributes().get(LogUtil.START_TIME));
   }
+
+  @Test
+  public void shouldMatchJvmRuntimeMetrics() {
+    final LogMessage logMessage = processor.parse(MSG6, NullLogMessage.INSTANCE);
+    assertFalse(logMessage.isNull());
+    assertEquals(Severity.INFO, logMessage.getSeverity());
+
+    assertEquals("JvmRuntime", logMessage.getAttributes().get(LogUtil.OPERATION));
+    assertEquals("104857600", logMessage.getAttributes().get("heapUsed"));
+    assertEquals("3", logMessage.getAttributes().get("gcCount"));
+    assertEquals("41", logMessage.getAttributes().get("gcTime"));
+    assertEquals("1048576", logMessage.getAttributes().get("directUsed"));
+  }
 }
@@ -0,0 +1,148 @@
+package com.truward.brikar.maintenance.metric;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.metric.MappedMetricsSink;
+import com.truward.time.support.StandardTimeSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MappedMetricsReader}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class MappedMetricsReaderTest {
+  private File file;
+  private LatencyHistogramRegistry registry;
+
+  @Before
+  public void init() throws IOException {
+    file = File.createTempFile("brikar", MappedMetricsReader.FILE_EXTENSION);
+    registry = new LatencyHistogramRegistry(10, StandardTimeSource.INSTANCE);
+  }
+
+  @After
+  public void cleanup() {
+    assertTrue(file.delete());
+  }
+
+  @Test
+  public void shouldReadPublishedMetrics() throws IOException {
+    // Given:
+    final AtomicLong inFlight = new AtomicLong(3L);
+    registry.record(LatencyHistogram.Kind.REQUEST, "GET_/api/users/{id}", 5L, 200, false);
+    registry.record(LatencyHistogram.Kind.REQUEST, "GET_/api/users/{id}", 1500L, 503, false);
+    registry.record(LatencyHistogram.Kind.METHOD, "UserService.getUser", 3L, -1, true);
+
+    try (final MappedMetricsSink sink = new MappedMetricsSink(file, 16, registry)) {
+      sink.addGauge("inFlightRequests", inFlight::get);
+      sink.publish();
+
+      // When:
+      final MappedMetricsReader reader = new MappedMetricsReader(file);
+      final MappedMetricsReader.Snapshot first = reader.read();
+      inFlight.set(7L);
+      registry.record(LatencyHistogram.Kind.REQUEST, "GET_/api/users/{id}", 2L, 200, false);
+      sink.publish();
+      final MappedMetricsReader.Snapshot second = reader.read();
+
+      // Then:
+      assertFalse(first.isClosed());
+      final Map<String, MappedMetricsReader.Entry> firstEntries = toMap(first.getEntries());
+      assertEquals(3, firstEntries.size());
+      assertEquals(3L, firstEntries.get("inFlightRequests").getValue());
+      assertNull(firstEntries.get("inFlightRequests").getKind());
+
+      final MappedMetricsReader.Entry request = firstEntries.get("GET_/api/users/{id}");
+      assertEquals(LatencyHistogram.Kind.REQUEST, request.getKind());
+      assertEquals(2L, request.getValue());
+      assertEquals(1505L, request.getSum());
+      assertEquals(1L, request.getResponseCount(2));
+      assertEquals(1L, request.getResponseCount(5));
+      assertEquals(7L, request.getValueAtPercentile(50.0));
+      assertEquals(2047L, request.getValueAtPercentile(99.0));
+
+      final MappedMetricsReader.Entry method = firstEntries.get("UserService.getUser");
+      assertEquals(LatencyHistogram.Kind.METHOD, method.getKind());
+      assertEquals(1L, method.getFailed());
+
+      final Map<String, MappedMetricsReader.Entry> secondEntries = toMap(second.getEntries());
+      assertEquals(7L, secondEntries.get("inFlightRequests").getValue());
+      assertEquals(3L, secondEntries.get("GET_/api/users/{id}").getValue());
+    }
+
+    assertTrue(new MappedMetricsReader(file).read().isClosed());
+  }
+
+  @Test
+  public void shouldSkipMetricsThatDoNotFit() throws IOException {
+    // Given:
+    registry.record(LatencyHistogram.Kind.METHOD, "A.a", 1L, -1, false);
+    registry.record(LatencyHistogram.Kind.METHOD, "B.b", 1L, -1, false);
+
+    // When:
+    try (final MappedMetricsSink sink = new MappedMetricsSink(file, 1, registry)) {
+      sink.addGauge("inFlightRequests", () -> 1L);
+      sink.publish();
+    }
+
+    // Then:
+    assertEquals(1, new MappedMetricsReader(file).read().getEntries().size());
+  }
+
+  @Test
+  public void shouldMapFileOfRestartedProcess() throws IOException {
+    // Given:
+    final MappedMetricsReader reader;
+    try (final MappedMetricsSink sink = new MappedMetricsSink(file, 16, registry)) {
+      sink.addGauge("previousGauge", () -> 1L);
+      sink.publish();
+      reader = new MappedMetricsReader(file);
+      assertEquals(1, reader.read().getEntries().size());
+    }
+
+    // When:
+    try (final MappedMetricsSink sink = new MappedMetricsSink(file, 16, registry)) {
+      sink.addGauge("currentGauge", () -> 2L);
+      sink.publish();
+      final MappedMetricsReader.Snapshot snapshot = reader.read();
+
+      // Then:
+      assertFalse(snapshot.isClosed());
+      assertEquals(1, snapshot.getEntries().size());
+      assertEquals("currentGauge", snapshot.getEntries().get(0).getName());
+      assertEquals(2L, snapshot.getEntries().get(0).getValue());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldRejectUnknownFile() throws IOException {
+    new MappedMetricsReader(file);
+  }
+
+  //
+  // Private
+  //
+
+  private static Map<String, MappedMetricsReader.Entry> toMap(List<MappedMetricsReader.Entry> entries) {
+    final Map<String, MappedMetricsReader.Entry> result = new HashMap<>();
+    for (final MappedMetricsReader.Entry entry : entries) {
+      result.put(entry.getName(), entry);
+    }
+    return result;
+  }
+}
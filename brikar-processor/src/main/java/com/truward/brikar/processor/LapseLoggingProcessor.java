@@ -0,0 +1,374 @@
+package com.truward.brikar.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor, that generates subclasses of the classes, annotated with
+ * <code>com.truward.brikar.common.log.GenerateLapseLogging</code>. Generated subclass overrides each method,
+ * annotated with <code>com.truward.brikar.common.log.LogLapse</code>, and records its lapse by means of
+ * <code>com.truward.brikar.common.log.lapse.LapseLogging</code>.
+ * <p>
+ * Operation names are the same as the ones, recorded by the lapse logger aspect: annotation value or the simple
+ * name of the interface, that declares the method, followed by the method name. Simple name of the class is used
+ * if method is not declared in any of the interfaces.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@SupportedAnnotationTypes(LapseLoggingProcessor.GENERATE_LAPSE_LOGGING)
+public final class LapseLoggingProcessor extends AbstractProcessor {
+  static final String GENERATE_LAPSE_LOGGING = "com.truward.brikar.common.log.GenerateLapseLogging";
+  static final String LOG_LAPSE = "com.truward.brikar.common.log.LogLapse";
+
+  /**
+   * Suffix of the generated class names.
+   */
+  public static final String SUFFIX = "_LapseLogging";
+
+  private static final String LAPSE_LOGGING = "com.truward.brikar.common.log.lapse.LapseLogging";
+  private static final String LOG_UTIL = "com.truward.brikar.common.log.LogUtil";
+  private static final String METRICS_COLLECTION = "com.truward.brikar.common.log.metric.MetricsCollection";
+  private static final String SIMPLE_LAPSE = "com.truward.brikar.common.log.lapse.SimpleLapse";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (final TypeElement annotation : annotations) {
+      for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() != ElementKind.CLASS) {
+          error(element, "@GenerateLapseLogging can only be applied to classes");
+          continue;
+        }
+        generate((TypeElement) element);
+      }
+    }
+    return true;
+  }
+
+  //
+  // Private
+  //
+
+  private void generate(TypeElement type) {
+    final Set<Modifier> modifiers = type.getModifiers();
+    if (modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.ABSTRACT) ||
+        modifiers.contains(Modifier.PRIVATE)) {
+      error(type, "Class, annotated with @GenerateLapseLogging, should not be final, abstract or private");
+      return;
+    }
+    if (type.getNestingKind() != NestingKind.TOP_LEVEL &&
+        (type.getNestingKind() != NestingKind.MEMBER || !modifiers.contains(Modifier.STATIC))) {
+      error(type, "Nested class, annotated with @GenerateLapseLogging, should be static");
+      return;
+    }
+
+    final List<ExecutableElement> constructors = new ArrayList<>();
+    for (final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (!constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        constructors.add(constructor);
+      }
+    }
+    if (constructors.isEmpty()) {
+      error(type, "Class, annotated with @GenerateLapseLogging, should have non-private constructor");
+      return;
+    }
+
+    final List<ExecutableElement> methods = new ArrayList<>();
+    boolean valid = true;
+    for (final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      if (getLogLapse(method) == null) {
+        continue;
+      }
+
+      final Set<Modifier> methodModifiers = method.getModifiers();
+      if (methodModifiers.contains(Modifier.PRIVATE) || methodModifiers.contains(Modifier.STATIC) ||
+          methodModifiers.contains(Modifier.FINAL) || methodModifiers.contains(Modifier.ABSTRACT)) {
+        error(method, "Method, annotated with @LogLapse, should not be private, static, final or abstract " +
+            "to be overridden in the generated subclass");
+        valid = false;
+        continue;
+      }
+      methods.add(method);
+    }
+    if (!valid) {
+      return;
+    }
+    if (methods.isEmpty()) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Class, annotated with @GenerateLapseLogging, has no @LogLapse methods", type);
+    }
+
+    final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+    final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    final String name = getGeneratedName(type);
+    final String qualifiedName = packageName.isEmpty() ? name : packageName + '.' + name;
+
+    final StringBuilder source = new StringBuilder(4096);
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    final String generatedAnnotation = getGeneratedAnnotation();
+    if (generatedAnnotation != null) {
+      source.append('@').append(generatedAnnotation).append("(\"").append(LapseLoggingProcessor.class.getName())
+          .append("\")\n");
+    }
+    if (modifiers.contains(Modifier.PUBLIC)) {
+      source.append("public ");
+    }
+    source.append("class ").append(name);
+    appendTypeParameters(source, type.getTypeParameters());
+    source.append(" extends ").append(type.getQualifiedName());
+    if (!type.getTypeParameters().isEmpty()) {
+      source.append('<');
+      for (int i = 0; i < type.getTypeParameters().size(); ++i) {
+        source.append(i > 0 ? ", " : "").append(type.getTypeParameters().get(i).getSimpleName());
+      }
+      source.append('>');
+    }
+    source.append(" {\n");
+
+    for (int i = 0; i < methods.size(); ++i) {
+      source.append("  private static final String OPERATION_").append(i).append(" = \"")
+          .append(escape(getOperation(type, methods.get(i)))).append("\";\n");
+    }
+
+    for (final ExecutableElement constructor : constructors) {
+      source.append('\n');
+      appendSignature(source, constructor, name);
+      source.append("    super(");
+      appendArguments(source, constructor);
+      source.append(");\n  }\n");
+    }
+
+    for (int i = 0; i < methods.size(); ++i) {
+      appendMethod(source, methods.get(i), "OPERATION_" + i);
+    }
+    source.append("}\n");
+
+    try (final Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+      writer.write(source.toString());
+    } catch (IOException e) {
+      error(type, "Unable to write " + qualifiedName + ": " + e.getMessage());
+    }
+  }
+
+  private void appendMethod(StringBuilder source, ExecutableElement method, String operationConstant) {
+    final boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+
+    source.append("\n  @Override\n");
+    appendSignature(source, method, method.getSimpleName().toString());
+    source
+        .append("    final ").append(METRICS_COLLECTION).append(" metricsCollection$ = ")
+        .append(LOG_UTIL).append(".getLocalMetricsCollection();\n")
+        .append("    final ").append(SIMPLE_LAPSE).append(" lapse$ = ")
+        .append(LAPSE_LOGGING).append(".open(metricsCollection$, ").append(operationConstant).append(");\n")
+        .append("    final long startNanos$ = System.nanoTime();\n")
+        .append("    boolean failed$ = true;\n")
+        .append("    try {\n")
+        .append("      ");
+    if (!isVoid) {
+      source.append("final ").append(method.getReturnType()).append(" result$ = ");
+    }
+    source.append("super.").append(method.getSimpleName()).append('(');
+    appendArguments(source, method);
+    source.append(");\n")
+        .append("      failed$ = false;\n");
+    if (!isVoid) {
+      source.append("      return result$;\n");
+    }
+    source
+        .append("    } finally {\n")
+        .append("      ").append(LAPSE_LOGGING)
+        .append(".close(metricsCollection$, lapse$, startNanos$, failed$);\n")
+        .append("    }\n")
+        .append("  }\n");
+  }
+
+  private static void appendSignature(StringBuilder source, ExecutableElement executable, String name) {
+    source.append("  ");
+    if (executable.getModifiers().contains(Modifier.PUBLIC)) {
+      source.append("public ");
+    } else if (executable.getModifiers().contains(Modifier.PROTECTED)) {
+      source.append("protected ");
+    }
+    if (!executable.getTypeParameters().isEmpty()) {
+      appendTypeParameters(source, executable.getTypeParameters());
+      source.append(' ');
+    }
+    if (executable.getKind() == ElementKind.METHOD) {
+      source.append(executable.getReturnType()).append(' ');
+    }
+    source.append(name).append('(');
+
+    final List<? extends VariableElement> parameters = executable.getParameters();
+    for (int i = 0; i < parameters.size(); ++i) {
+      final VariableElement parameter = parameters.get(i);
+      source.append(i > 0 ? ", " : "").append("final ");
+      final TypeMirror parameterType = parameter.asType();
+      if (executable.isVarArgs() && i == parameters.size() - 1 && parameterType.getKind() == TypeKind.ARRAY) {
+        final String arrayType = parameterType.toString();
+        source.append(arrayType, 0, arrayType.length() - 2).append("...");
+      } else {
+        source.append(parameterType);
+      }
+      source.append(' ').append(parameter.getSimpleName());
+    }
+    source.append(')');
+
+    final List<? extends TypeMirror> thrownTypes = executable.getThrownTypes();
+    for (int i = 0; i < thrownTypes.size(); ++i) {
+      source.append(i > 0 ? ", " : " throws ").append(thrownTypes.get(i));
+    }
+    source.append(" {\n");
+  }
+
+  private static void appendArguments(StringBuilder source, ExecutableElement executable) {
+    final List<? extends VariableElement> parameters = executable.getParameters();
+    for (int i = 0; i < parameters.size(); ++i) {
+      source.append(i > 0 ? ", " : "").append(parameters.get(i).getSimpleName());
+    }
+  }
+
+  private static void appendTypeParameters(StringBuilder source, List<? extends TypeParameterElement> parameters) {
+    if (parameters.isEmpty()) {
+      return;
+    }
+
+    source.append('<');
+    for (int i = 0; i < parameters.size(); ++i) {
+      final TypeParameterElement parameter = parameters.get(i);
+      source.append(i > 0 ? ", " : "").append(parameter.getSimpleName());
+      final List<? extends TypeMirror> bounds = parameter.getBounds();
+      if (bounds.size() == 1 && Object.class.getName().equals(bounds.get(0).toString())) {
+        continue;
+      }
+      for (int j = 0; j < bounds.size(); ++j) {
+        source.append(j > 0 ? " & " : " extends ").append(bounds.get(j));
+      }
+    }
+    source.append('>');
+  }
+
+  private String getOperation(TypeElement type, ExecutableElement method) {
+    final AnnotationMirror logLapse = getLogLapse(method);
+    if (logLapse != null) {
+      for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+          logLapse.getElementValues().entrySet()) {
+        if (entry.getKey().getSimpleName().contentEquals("value")) {
+          final String value = String.valueOf(entry.getValue().getValue());
+          if (!value.isEmpty()) {
+            return value;
+          }
+        }
+      }
+    }
+
+    // lapse logger aspect uses name of the proxied interface
+    final TypeElement declaringType = findDeclaringInterface(type, method);
+    return (declaringType != null ? declaringType : type).getSimpleName() + "." + method.getSimpleName();
+  }
+
+  private TypeElement findDeclaringInterface(TypeElement type, ExecutableElement method) {
+    final Deque<TypeElement> queue = new ArrayDeque<>();
+    final Set<String> visited = new HashSet<>();
+    for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+      queue.add(current);
+    }
+
+    while (!queue.isEmpty()) {
+      final TypeElement current = queue.poll();
+      if (current.getKind() == ElementKind.INTERFACE) {
+        for (final ExecutableElement candidate : ElementFilter.methodsIn(current.getEnclosedElements())) {
+          if (processingEnv.getElementUtils().overrides(method, candidate, type)) {
+            return current;
+          }
+        }
+      }
+
+      for (final TypeMirror interfaceType : current.getInterfaces()) {
+        final TypeElement interfaceElement = (TypeElement) ((DeclaredType) interfaceType).asElement();
+        if (visited.add(interfaceElement.getQualifiedName().toString())) {
+          queue.add(interfaceElement);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static TypeElement getSuperclass(TypeElement type) {
+    final TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    return (TypeElement) ((DeclaredType) superclass).asElement();
+  }
+
+  private static AnnotationMirror getLogLapse(Element element) {
+    for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      final TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(LOG_LAPSE)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static String getGeneratedName(TypeElement type) {
+    final StringBuilder name = new StringBuilder(type.getSimpleName());
+    for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement;
+         enclosing = enclosing.getEnclosingElement()) {
+      name.insert(0, '_').insert(0, enclosing.getSimpleName());
+    }
+    return name.append(SUFFIX).toString();
+  }
+
+  private String getGeneratedAnnotation() {
+    // annotation has been moved to javax.annotation.processing in Java 9
+    for (final String name : new String[] {"javax.annotation.processing.Generated", "javax.annotation.Generated"}) {
+      if (processingEnv.getElementUtils().getTypeElement(name) != null) {
+        return name;
+      }
+    }
+    return null;
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+}
@@ -0,0 +1,201 @@
+package com.truward.brikar.processor.test;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.metric.StandardMetricsCollection;
+import com.truward.brikar.processor.LapseLoggingProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LapseLoggingProcessor}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class LapseLoggingProcessorTest {
+  private static final String GREETER = "package sample;\n" +
+      "public interface Greeter {\n" +
+      "  String greet(String name) throws java.io.IOException;\n" +
+      "}\n";
+
+  private static final String DEFAULT_GREETER = "package sample;\n" +
+      "import com.truward.brikar.common.log.GenerateLapseLogging;\n" +
+      "import com.truward.brikar.common.log.LogLapse;\n" +
+      "@GenerateLapseLogging\n" +
+      "public class DefaultGreeter implements Greeter {\n" +
+      "  private final String greeting;\n" +
+      "  public DefaultGreeter(String greeting) { this.greeting = greeting; }\n" +
+      "  @LogLapse public String greet(String name) throws java.io.IOException {\n" +
+      "    if (name.isEmpty()) throw new java.io.IOException(\"empty\");\n" +
+      "    return format(name);\n" +
+      "  }\n" +
+      "  @LogLapse(\"Greeter.format\") protected String format(String name) { return greeting + \", \" + name; }\n" +
+      "  @LogLapse <T extends Comparable<T>> T max(T... values) { return java.util.Collections.max(" +
+      "java.util.Arrays.asList(values)); }\n" +
+      "  public void run() {}\n" +
+      "}\n";
+
+  private Path directory;
+
+  @Before
+  public void init() throws IOException {
+    directory = Files.createTempDirectory("brikar-processor");
+    LogUtil.setLocalMetricsCollection(null);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    LogUtil.setLocalMetricsCollection(null);
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void shouldRecordLapsesOfAnnotatedMethods() throws Exception {
+    // Given:
+    final DiagnosticCollector<JavaFileObject> diagnostics = compile(
+        source("sample.Greeter", GREETER), source("sample.DefaultGreeter", DEFAULT_GREETER));
+    assertEquals(diagnostics.getDiagnostics().toString(), 0, countErrors(diagnostics));
+
+    final StandardMetricsCollection metricsCollection = new StandardMetricsCollection();
+
+    // When:
+    final Object result;
+    try (final URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toUri().toURL()},
+        getClass().getClassLoader())) {
+      final Object greeter = classLoader.loadClass("sample.DefaultGreeter" + LapseLoggingProcessor.SUFFIX)
+          .getConstructor(String.class).newInstance("Hello");
+      LogUtil.setLocalMetricsCollection(metricsCollection);
+      result = classLoader.loadClass("sample.Greeter").getMethod("greet", String.class).invoke(greeter, "Bob");
+    }
+
+    // Then:
+    assertEquals("Hello, Bob", result);
+    final String metrics = metricsCollection.toString();
+    assertTrue(metrics, metrics.startsWith("@metric1 op=Greeter.greet, tStart="));
+    assertTrue(metrics, metrics.contains("op=Greeter.format, tStart="));
+    assertTrue(metrics, metrics.contains(", tMicros="));
+    assertFalse(metrics, metrics.contains("failed=true"));
+  }
+
+  @Test
+  public void shouldRecordFailedCall() throws Exception {
+    // Given:
+    compile(source("sample.Greeter", GREETER), source("sample.DefaultGreeter", DEFAULT_GREETER));
+    final StandardMetricsCollection metricsCollection = new StandardMetricsCollection();
+
+    // When:
+    try (final URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toUri().toURL()},
+        getClass().getClassLoader())) {
+      final Object greeter = classLoader.loadClass("sample.DefaultGreeter" + LapseLoggingProcessor.SUFFIX)
+          .getConstructor(String.class).newInstance("Hello");
+      LogUtil.setLocalMetricsCollection(metricsCollection);
+      try {
+        classLoader.loadClass("sample.Greeter").getMethod("greet", String.class).invoke(greeter, "");
+      } catch (InvocationTargetException e) {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+
+    // Then:
+    final String metrics = metricsCollection.toString();
+    assertTrue(metrics, metrics.startsWith("@metric1 op=Greeter.greet, tStart="));
+    assertTrue(metrics, metrics.contains(", failed=true"));
+  }
+
+  @Test
+  public void shouldRejectFinalClass() throws IOException {
+    // Given:
+    final String finalGreeter = "package sample;\n" +
+        "@com.truward.brikar.common.log.GenerateLapseLogging\n" +
+        "public final class FinalGreeter {\n" +
+        "  @com.truward.brikar.common.log.LogLapse public String greet() { return \"Hi\"; }\n" +
+        "}\n";
+
+    // When:
+    final DiagnosticCollector<JavaFileObject> diagnostics = compile(source("sample.FinalGreeter", finalGreeter));
+
+    // Then:
+    assertEquals(diagnostics.getDiagnostics().toString(), 1, countErrors(diagnostics));
+  }
+
+  @Test
+  public void shouldRejectPrivateMethod() throws IOException {
+    // Given:
+    final String privateGreeter = "package sample;\n" +
+        "@com.truward.brikar.common.log.GenerateLapseLogging\n" +
+        "public class PrivateGreeter {\n" +
+        "  @com.truward.brikar.common.log.LogLapse private String greet() { return \"Hi\"; }\n" +
+        "}\n";
+
+    // When:
+    final DiagnosticCollector<JavaFileObject> diagnostics = compile(source("sample.PrivateGreeter", privateGreeter));
+
+    // Then:
+    assertEquals(diagnostics.getDiagnostics().toString(), 1, countErrors(diagnostics));
+  }
+
+  //
+  // Private
+  //
+
+  private DiagnosticCollector<JavaFileObject> compile(JavaFileObject... sources) {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    final List<String> options = new ArrayList<>(Arrays.asList(
+        "-d", directory.toString(),
+        "-s", directory.toString(),
+        "-classpath", System.getProperty("java.class.path") + File.pathSeparator + directory));
+
+    final JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+        Arrays.asList(sources));
+    task.setProcessors(Collections.singletonList(new LapseLoggingProcessor()));
+    task.call();
+    return diagnostics;
+  }
+
+  private static int countErrors(DiagnosticCollector<JavaFileObject> diagnostics) {
+    int result = 0;
+    for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        ++result;
+      }
+    }
+    return result;
+  }
+
+  private static JavaFileObject source(String className, String content) {
+    return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') +
+        JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return content;
+      }
+    };
+  }
+}
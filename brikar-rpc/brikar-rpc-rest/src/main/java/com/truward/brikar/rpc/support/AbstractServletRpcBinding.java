@@ -5,6 +5,7 @@ import com.truward.brikar.rpc.RpcMethod;
 import com.truward.brikar.rpc.ServletRpcBinding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.http.*;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -14,23 +15,39 @@ import org.springframework.http.server.ServletServerHttpResponse;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Abstract base class for RPC bindings.
+ * <p>
+ * RPC methods may return {@link CompletionStage}, in this case the request is processed asynchronously, if
+ * it is supported by the servlet container, and response is written once result becomes available.
+ * MDC context of the calling thread is restored while the response is written.
+ * If result doesn't become available within async timeout, see {@link #setAsyncTimeoutMillis(long)},
+ * the request completes with 503 status code and the result, that comes later, is discarded.
+ * </p>
  */
 public abstract class AbstractServletRpcBinding implements ServletRpcBinding {
   public static final String DEFAULT_SERVICE_NAME = "default";
+  public static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = 30000L;
 
   protected final Logger log = LoggerFactory.getLogger(getClass());
 
   private final List<HttpMessageConverter<?>> messageConverters;
   private String serviceName = DEFAULT_SERVICE_NAME;
+  private long asyncTimeoutMillis = DEFAULT_ASYNC_TIMEOUT_MILLIS;
 
   public AbstractServletRpcBinding(List<HttpMessageConverter<?>> messageConverters) {
     Objects.requireNonNull(messageConverters, "messageConverters");
@@ -56,6 +73,19 @@ public abstract class AbstractServletRpcBinding implements ServletRpcBinding {
     return serviceName;
   }
 
+  /**
+   * Sets time, given to the asynchronous RPC methods to produce the result.
+   *
+   * @param asyncTimeoutMillis Async timeout in milliseconds, zero or negative value means no timeout
+   */
+  public final void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+    this.asyncTimeoutMillis = asyncTimeoutMillis;
+  }
+
+  public final long getAsyncTimeoutMillis() {
+    return asyncTimeoutMillis;
+  }
+
   @Override
   public final void process(@Nullable String urlMethodPath,
                             @Nonnull HttpServletRequest request,
@@ -97,7 +127,21 @@ public abstract class AbstractServletRpcBinding implements ServletRpcBinding {
 
     // actually call that method
     try {
-      final Object result = rpcMethod.call(arg1);
+      Object result = rpcMethod.call(arg1);
+      if (result instanceof CompletionStage) {
+        final CompletionStage<?> stage = (CompletionStage<?>) result;
+        if (request.isAsyncSupported()) {
+          // release current thread and write response once result is available
+          processAsync(stage, rpcMethod, acceptType, request, response);
+          return;
+        }
+
+        try {
+          result = stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+          throw unwrapCompletionException(e);
+        }
+      }
 
       // write response
       write(acceptType, rpcMethod.getOutputType(), result,
@@ -148,6 +192,62 @@ public abstract class AbstractServletRpcBinding implements ServletRpcBinding {
   // Private
   //
 
+  private void processAsync(CompletionStage<?> stage,
+                            RpcMethod rpcMethod,
+                            MediaType acceptType,
+                            HttpServletRequest request,
+                            HttpServletResponse response) {
+    final Map<String, String> context = MDC.getCopyOfContextMap();
+    final AsyncContext asyncContext = request.startAsync(request, response);
+    asyncContext.setTimeout(asyncTimeoutMillis);
+
+    // only one of result callback and async listener writes the response and completes the request
+    final AtomicBoolean responded = new AtomicBoolean();
+    asyncContext.addListener(new ErrorAsyncListener(responded, rpcMethod, acceptType, response));
+
+    stage.whenComplete((result, error) -> {
+      if (!responded.compareAndSet(false, true)) {
+        log.debug("Discarding result of RPC method={}, request already completed", rpcMethod.getName());
+        return;
+      }
+
+      final Map<String, String> previousContext = MDC.getCopyOfContextMap();
+      setMdcContext(context);
+      try {
+        if (error != null) {
+          mapException(unwrapCompletionException(error), acceptType, response);
+        } else {
+          write(acceptType, rpcMethod.getOutputType(), result, new ServletServerHttpResponse(response));
+        }
+      } catch (Exception e) {
+        log.error("Unable to write result of RPC method={}", rpcMethod.getName(), e);
+      } finally {
+        asyncContext.complete();
+        setMdcContext(previousContext);
+      }
+    });
+  }
+
+  private static void setMdcContext(@Nullable Map<String, String> context) {
+    if (context != null) {
+      MDC.setContextMap(context);
+    } else {
+      MDC.clear();
+    }
+  }
+
+  private static Exception unwrapCompletionException(Throwable error) {
+    Throwable cause = error;
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+
+    if (cause instanceof Exception) {
+      return (Exception) cause;
+    }
+    return new IllegalStateException("Error while invoking RPC method", cause);
+  }
+
   @SuppressWarnings("unchecked")
   private Object read(MediaType mediaType, Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
     for (final HttpMessageConverter<?> messageConverter : messageConverters) {
@@ -186,4 +286,57 @@ public abstract class AbstractServletRpcBinding implements ServletRpcBinding {
       return null;
     }
   }
+
+  private final class ErrorAsyncListener implements AsyncListener {
+    private final AtomicBoolean responded;
+    private final RpcMethod rpcMethod;
+    private final MediaType acceptType;
+    private final HttpServletResponse response;
+
+    ErrorAsyncListener(AtomicBoolean responded,
+                       RpcMethod rpcMethod,
+                       MediaType acceptType,
+                       HttpServletResponse response) {
+      this.responded = responded;
+      this.rpcMethod = rpcMethod;
+      this.acceptType = acceptType;
+      this.response = response;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+      log.warn("RPC method={} timed out", rpcMethod.getName());
+      respond(event, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Timed out");
+    }
+
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+      log.error("Error while processing RPC method={}", rpcMethod.getName(), event.getThrowable());
+      respond(event, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error");
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      // do nothing
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // do nothing
+    }
+
+    private void respond(AsyncEvent event, int statusCode, String description) throws IOException {
+      if (!responded.compareAndSet(false, true)) {
+        return; // result callback is writing the response
+      }
+
+      try {
+        if (!response.isCommitted()) {
+          sendError(acceptType, response, statusCode, description);
+        }
+      } finally {
+        event.getAsyncContext().complete();
+      }
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package com.truward.brikar.rpc.support;
 
 import com.truward.brikar.rpc.RpcMethod;
+import org.springframework.core.ResolvableType;
 import org.springframework.http.converter.HttpMessageConverter;
 
 import javax.annotation.Nullable;
@@ -8,6 +9,7 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Exposes service proxy in a form of RPC.
@@ -85,6 +87,7 @@ public class ServiceInterfaceServletRpcBinding extends AbstractServletRpcBinding
     private final Method method;
     private final Object serviceProxy;
     private final Class<?> inputType;
+    private final Class<?> outputType;
 
     public ReflectionRpcMethod(Method method, Object serviceProxy) {
       this.method = method;
@@ -94,6 +97,17 @@ public class ServiceInterfaceServletRpcBinding extends AbstractServletRpcBinding
         throw new IllegalStateException("Only input one parameter supported, offending method=" + method);
       }
       this.inputType = method.getParameterTypes()[0];
+
+      // async methods return completion stage of the actual output type
+      final ResolvableType returnType = ResolvableType.forMethodReturnType(method);
+      if (CompletionStage.class.isAssignableFrom(returnType.resolve())) {
+        this.outputType = returnType.as(CompletionStage.class).resolveGeneric(0);
+        if (this.outputType == null) {
+          throw new IllegalStateException("Unable to resolve output type of method=" + method);
+        }
+      } else {
+        this.outputType = returnType.resolve();
+      }
     }
 
     @Override
@@ -114,7 +128,7 @@ public class ServiceInterfaceServletRpcBinding extends AbstractServletRpcBinding
 
     @Override
     public Class<?> getOutputType() {
-      return method.getReturnType();
+      return outputType;
     }
 
     @Nullable
@@ -1,6 +1,7 @@
 package com.truward.brikar.rpc.support;
 
 import com.truward.brikar.error.model.ErrorV1;
+import com.truward.brikar.rpc.RpcMethod;
 import com.truward.brikar.rpc.ServletRpcBinding;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,19 +11,25 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.util.StreamUtils;
 
 import javax.annotation.Generated;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link ServiceInterfaceServletRpcBinding}.
@@ -116,6 +123,92 @@ public final class ServiceInterfaceServletRpcBindingTest {
     assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
   }
 
+  @Test
+  public void shouldProcessAsyncMethod() throws Exception {
+    // Given:
+    final MockHttpServletRequest request = new MockHttpServletRequest("POST", "http://localhost:9001/Service");
+    request.setAsyncSupported(true);
+    request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    request.setContent(("Baz,test").getBytes(StandardCharsets.UTF_8));
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    // When:
+    rpcBinding.process("getParAsync", request, response);
+    final boolean asyncStarted = request.isAsyncStarted();
+    defaultService.getAsyncResult().complete(new Par().setProp("Par+test"));
+
+    // Then:
+    assertTrue(asyncStarted);
+    assertEquals("Par,Par+test", response.getContentAsString());
+  }
+
+  @Test
+  public void shouldSetAsyncTimeout() throws Exception {
+    // Given:
+    final MockHttpServletRequest request = new MockHttpServletRequest("POST", "http://localhost:9001/Service");
+    request.setAsyncSupported(true);
+    request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    request.setContent(("Baz,test").getBytes(StandardCharsets.UTF_8));
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    ((ServiceInterfaceServletRpcBinding) rpcBinding).setAsyncTimeoutMillis(1500L);
+
+    // When:
+    rpcBinding.process("getParAsync", request, response);
+
+    // Then:
+    assertEquals(1500L, request.getAsyncContext().getTimeout());
+  }
+
+  @Test
+  public void shouldSendServiceUnavailableOnAsyncTimeout() throws Exception {
+    // Given:
+    final MockHttpServletRequest request = new MockHttpServletRequest("POST", "http://localhost:9001/Service");
+    request.setAsyncSupported(true);
+    request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    request.setContent(("Baz,test").getBytes(StandardCharsets.UTF_8));
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    rpcBinding.process("getParAsync", request, response);
+    final MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+
+    // When:
+    for (final AsyncListener listener : asyncContext.getListeners()) {
+      listener.onTimeout(new AsyncEvent(asyncContext, request, response));
+    }
+    defaultService.getAsyncResult().complete(new Par().setProp("Par+test"));
+
+    // Then:
+    assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+    assertEquals("Timed out", response.getContentAsString());
+  }
+
+  @Test
+  public void shouldMapAsyncMethodException() throws Exception {
+    // Given:
+    final MockHttpServletRequest request = new MockHttpServletRequest("POST", "http://localhost:9001/Service");
+    request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    request.setContent(("Baz,test").getBytes(StandardCharsets.UTF_8));
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    defaultService.getAsyncResult().completeExceptionally(new UnsupportedOperationException());
+
+    // When:
+    rpcBinding.process("getParAsync", request, response);
+
+    // Then:
+    assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+  }
+
+  @Test
+  public void shouldResolveAsyncMethodOutputType() {
+    for (final RpcMethod method : rpcBinding.getExposedMethods()) {
+      if (method.getName().equals("getParAsync")) {
+        assertEquals(Par.class, method.getOutputType());
+        return;
+      }
+    }
+
+    fail("No getParAsync method");
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void shouldFailToInferSingleServiceInterface() {
     new ServiceInterfaceServletRpcBinding(Collections.singletonList(new TestHttpMessageConverter()),
@@ -161,10 +254,13 @@ public final class ServiceInterfaceServletRpcBindingTest {
     @Generated("test") Baz getBaz(Par par);
 
     @Generated("test") Par getPar(Baz baz);
+
+    @Generated("test") CompletableFuture<Par> getParAsync(Baz baz);
   }
 
   private static final class DefaultService implements DerivedService {
     private List<String> messages = new ArrayList<>();
+    private final CompletableFuture<Par> asyncResult = new CompletableFuture<>();
 
     @Override
     public Baz getBaz(Par par) {
@@ -176,6 +272,11 @@ public final class ServiceInterfaceServletRpcBindingTest {
       return recordLast(new Par().setProp("Par+" + baz.getProp()));
     }
 
+    @Override
+    public CompletableFuture<Par> getParAsync(Baz baz) {
+      return asyncResult;
+    }
+
     @Override
     public Foo getFoo(Bar bar) {
       return recordLast(new Foo().setProp("Foo+" + bar.getProp()));
@@ -186,6 +287,10 @@ public final class ServiceInterfaceServletRpcBindingTest {
       throw new UnsupportedOperationException("getBar method is not implemented");
     }
 
+    CompletableFuture<Par> getAsyncResult() {
+      return asyncResult;
+    }
+
     String getLast() {
       if (messages.isEmpty()) {
         throw new IllegalStateException("Empty messages list");
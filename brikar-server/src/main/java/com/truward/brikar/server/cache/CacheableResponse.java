@@ -0,0 +1,33 @@
+package com.truward.brikar.server.cache;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks controller method or all the methods of the controller, which responses to GET requests can be cached
+ * by {@link ResponseCacheInterceptor}, e.g.:
+ * <pre>
+ *   &#64;CacheableResponse(ttlMillis = 2000L)
+ *   &#64;RequestMapping(value = "/api/catalog/items", method = RequestMethod.GET)
+ *   &#64;ResponseBody
+ *   public ItemList getItems(&#64;RequestParam("category") String category) {
+ *     return catalogService.getItems(category);
+ *   }
+ * </pre>
+ * <p>
+ * Cached responses are shared by all the callers and keyed by request path, query string and <code>Accept</code>
+ * header, so this annotation should be put only to the methods, which responses don't depend on the caller
+ * identity, cookies or any other request headers.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheableResponse {
+
+  /**
+   * @return Time in milliseconds, during which cached response is served to the callers
+   */
+  long ttlMillis() default 5000L;
+}
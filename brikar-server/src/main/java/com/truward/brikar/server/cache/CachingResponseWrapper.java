@@ -0,0 +1,216 @@
+package com.truward.brikar.server.cache;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Response wrapper, that passes everything through to the wrapped response unless capturing has been started
+ * by {@link ResponseCacheInterceptor}. Once capturing is started, response body is buffered, so that it can be
+ * put to the cache once request processing completes.
+ *
+ * @author Alexander Shabanov
+ */
+final class CachingResponseWrapper extends HttpServletResponseWrapper {
+  private static final Set<String> EXCLUDED_HEADERS = new HashSet<>(Arrays.asList(
+      "date", "content-type", "content-length", "transfer-encoding", "connection"));
+
+  private final ResponseCache cache;
+  private ResponseCache.Lookup lookup;
+  private long ttlMillis;
+  private ByteArrayOutputStream buffer;
+  private ServletOutputStream outputStream;
+  private PrintWriter writer;
+
+  CachingResponseWrapper(HttpServletResponse response, ResponseCache cache) {
+    super(response);
+    this.cache = cache;
+  }
+
+  ResponseCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Starts buffering of the response body, should be called before anything has been written to the response.
+   *
+   * @param lookup Lookup, which should be completed once response is ready
+   * @param ttlMillis Time to live of the cached response
+   */
+  void startCapture(ResponseCache.Lookup lookup, long ttlMillis) {
+    this.lookup = lookup;
+    this.ttlMillis = ttlMillis;
+    this.buffer = new ByteArrayOutputStream(1024);
+  }
+
+  boolean isCapturing() {
+    return buffer != null;
+  }
+
+  /**
+   * Completes capturing: caches buffered response if it is cacheable and writes it to the wrapped response.
+   *
+   * @throws IOException On I/O error
+   */
+  void finishCapture() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    final byte[] body = buffer.toByteArray();
+    final HttpServletResponse response = (HttpServletResponse) getResponse();
+    lookup.complete(isCacheable(response) ? createEntry(response, body) : null);
+    stopCapture();
+
+    if (!response.isCommitted()) {
+      response.setContentLength(body.length);
+    }
+    response.getOutputStream().write(body);
+  }
+
+  /**
+   * Stops capturing without caching the response, buffered content is written to the wrapped response.
+   *
+   * @param flush Tells whether buffered content should be written to the wrapped response
+   * @throws IOException On I/O error
+   */
+  void abandonCapture(boolean flush) throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    final byte[] body = buffer.toByteArray();
+    lookup.complete(null);
+    stopCapture();
+
+    if (flush && body.length > 0) {
+      getResponse().getOutputStream().write(body);
+    }
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (outputStream == null) {
+      outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          if (buffer != null) {
+            buffer.write(b);
+          } else {
+            getResponse().getOutputStream().write(b);
+          }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          if (buffer != null) {
+            buffer.write(b, off, len);
+          } else {
+            getResponse().getOutputStream().write(b, off, len);
+          }
+        }
+
+        @Override
+        public void flush() throws IOException {
+          if (buffer == null) {
+            getResponse().getOutputStream().flush();
+          }
+        }
+      };
+    }
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (buffer == null) {
+      return super.getWriter();
+    }
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    if (buffer == null) {
+      super.flushBuffer();
+    }
+  }
+
+  @Override
+  public void resetBuffer() {
+    if (buffer != null) {
+      buffer.reset();
+    }
+    super.resetBuffer();
+  }
+
+  @Override
+  public void reset() {
+    if (buffer != null) {
+      buffer.reset();
+    }
+    super.reset();
+  }
+
+  @Override
+  public void sendError(int sc, String msg) throws IOException {
+    if (buffer != null) {
+      abandonCapture(false);
+    }
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendError(int sc) throws IOException {
+    if (buffer != null) {
+      abandonCapture(false);
+    }
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendRedirect(String location) throws IOException {
+    if (buffer != null) {
+      abandonCapture(false);
+    }
+    super.sendRedirect(location);
+  }
+
+  //
+  // Private
+  //
+
+  private void stopCapture() {
+    buffer = null;
+    lookup = null;
+    writer = null;
+  }
+
+  private static boolean isCacheable(HttpServletResponse response) {
+    if (response.getStatus() != HttpServletResponse.SC_OK || response.containsHeader("Set-Cookie")) {
+      return false;
+    }
+    final String cacheControl = response.getHeader("Cache-Control");
+    return cacheControl == null || !(cacheControl.contains("no-store") || cacheControl.contains("private"));
+  }
+
+  private ResponseCache.Entry createEntry(HttpServletResponse response, byte[] body) {
+    final Map<String, List<String>> headers = new LinkedHashMap<>();
+    for (final String name : response.getHeaderNames()) {
+      if (!EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+        headers.put(name, new ArrayList<>(response.getHeaders(name)));
+      }
+    }
+    return new ResponseCache.Entry(response.getStatus(), response.getContentType(), headers, body,
+        System.currentTimeMillis() + ttlMillis);
+  }
+}
@@ -0,0 +1,318 @@
+package com.truward.brikar.server.cache;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of responses to idempotent requests with per-entry TTL, LRU eviction and total size budget.
+ * <p>
+ * Concurrent misses of the same key are coalesced: only the first caller, the loader, computes the response,
+ * other callers wait for its result, but no longer than the given amount of time, after which they compute
+ * the response on their own.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class ResponseCache {
+
+  /**
+   * Operation name, under which cache metrics are reported.
+   */
+  public static final String OPERATION = "ResponseCache";
+
+  public static final String SIZE = "size";
+  public static final String MAX_SIZE = "maxSize";
+  public static final String ENTRIES = "entries";
+  public static final String HITS = "hits";
+  public static final String MISSES = "misses";
+  public static final String COALESCED = "coalesced";
+  public static final String EVICTIONS = "evictions";
+
+  private final long maxCacheSize;
+  private final long maxWaitMillis;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long cacheSize; // guarded by entries
+
+  private final ConcurrentMap<String, CompletableFuture<Entry>> loads = new ConcurrentHashMap<>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Creates response cache.
+   *
+   * @param maxCacheSize Maximum total size of cached responses in bytes
+   * @param maxWaitMillis Maximum time in milliseconds, during which caller waits for the response, that is being
+   *                      computed by another caller
+   */
+  public ResponseCache(long maxCacheSize, long maxWaitMillis) {
+    this.maxCacheSize = maxCacheSize;
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  public long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  /**
+   * Creates cache key, that consists of request path, query string and <code>Accept</code> header.
+   *
+   * @param request Request
+   * @return Cache key
+   */
+  @Nonnull
+  public static String createKey(@Nonnull HttpServletRequest request) {
+    final StringBuilder builder = new StringBuilder(128).append(request.getRequestURI());
+    final String query = request.getQueryString();
+    if (query != null) {
+      builder.append('?').append(query);
+    }
+    final String accept = request.getHeader("Accept");
+    if (accept != null) {
+      builder.append('\n').append(accept);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Looks up cached response. If there is no cached response and nobody else computes it, caller becomes
+   * the loader, otherwise caller waits until the loader completes.
+   *
+   * @param key Cache key
+   * @return Lookup result, which should be completed by the caller if caller is the loader
+   * @throws InterruptedException If current thread has been interrupted while waiting for the loader
+   */
+  @Nonnull
+  public Lookup lookup(@Nonnull String key) throws InterruptedException {
+    Entry entry = get(key);
+    if (entry != null) {
+      hitCount.incrementAndGet();
+      return new Lookup(key, entry, null);
+    }
+
+    final CompletableFuture<Entry> load = new CompletableFuture<>();
+    final CompletableFuture<Entry> existingLoad = loads.putIfAbsent(key, load);
+    if (existingLoad == null) {
+      // other loader might have completed right before this one has been registered
+      entry = get(key);
+      if (entry != null) {
+        loads.remove(key, load);
+        load.complete(entry);
+        hitCount.incrementAndGet();
+        return new Lookup(key, entry, null);
+      }
+
+      missCount.incrementAndGet();
+      return new Lookup(key, null, load);
+    }
+
+    coalescedCount.incrementAndGet();
+    try {
+      entry = existingLoad.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException | TimeoutException ignored) {
+      // loader is too slow, compute response without caching it
+      entry = null;
+    }
+    return new Lookup(key, entry, null);
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      cacheSize = 0L;
+    }
+  }
+
+  /**
+   * Returns cache state as a metrics entry. Hits, misses, coalesced requests and evictions are reported as deltas
+   * since the previous call to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    final long size;
+    final int entryCount;
+    synchronized (entries) {
+      size = cacheSize;
+      entryCount = entries.size();
+    }
+
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(SIZE, size)
+        .setProperty(MAX_SIZE, maxCacheSize)
+        .setProperty(ENTRIES, entryCount)
+        .setProperty(HITS, hitCount.getAndSet(0L))
+        .setProperty(MISSES, missCount.getAndSet(0L))
+        .setProperty(COALESCED, coalescedCount.getAndSet(0L))
+        .setProperty(EVICTIONS, evictionCount.getAndSet(0L));
+  }
+
+  /**
+   * Result of the cache lookup.
+   */
+  public final class Lookup {
+    private final String key;
+    private final Entry entry;
+    private final CompletableFuture<Entry> load;
+
+    private Lookup(String key, Entry entry, CompletableFuture<Entry> load) {
+      this.key = key;
+      this.entry = entry;
+      this.load = load;
+    }
+
+    /**
+     * @return Cached response or null if response should be computed by the caller
+     */
+    @Nullable
+    public Entry getEntry() {
+      return entry;
+    }
+
+    /**
+     * @return True, if caller is responsible for computing response and completing this lookup
+     */
+    public boolean isLoader() {
+      return load != null;
+    }
+
+    /**
+     * Completes this lookup: puts computed response to the cache and passes it to the callers, waiting for it.
+     * Does nothing if caller is not the loader.
+     *
+     * @param result Computed response or null if response can't be cached
+     */
+    public void complete(@Nullable Entry result) {
+      if (load == null) {
+        return;
+      }
+
+      if (result != null && result.getSize() <= maxCacheSize) {
+        put(key, result);
+      }
+      loads.remove(key, load);
+      load.complete(result);
+    }
+  }
+
+  /**
+   * Cached response.
+   */
+  public static final class Entry {
+    private final int status;
+    private final String contentType;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final long expirationTime;
+    private final long size;
+
+    public Entry(int status,
+                 @Nullable String contentType,
+                 @Nonnull Map<String, List<String>> headers,
+                 @Nonnull byte[] body,
+                 long expirationTime) {
+      this.status = status;
+      this.contentType = contentType;
+      this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+      this.body = Objects.requireNonNull(body, "body");
+      this.expirationTime = expirationTime;
+
+      long entrySize = body.length;
+      for (final Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+        entrySize += header.getKey().length();
+        for (final String value : header.getValue()) {
+          entrySize += value.length();
+        }
+      }
+      this.size = entrySize;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    @Nullable
+    public String getContentType() {
+      return contentType;
+    }
+
+    @Nonnull
+    public Map<String, List<String>> getHeaders() {
+      return headers;
+    }
+
+    /**
+     * @return Response body, which should not be modified
+     */
+    @Nonnull
+    public byte[] getBody() {
+      return body;
+    }
+
+    public long getExpirationTime() {
+      return expirationTime;
+    }
+
+    /**
+     * @return Approximate size of this entry in bytes
+     */
+    public long getSize() {
+      return size;
+    }
+  }
+
+  //
+  // Private
+  //
+
+  @Nullable
+  private Entry get(String key) {
+    synchronized (entries) {
+      final Entry entry = entries.get(key);
+      if (entry != null && entry.expirationTime <= System.currentTimeMillis()) {
+        entries.remove(key);
+        cacheSize -= entry.getSize();
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  private void put(String key, Entry entry) {
+    synchronized (entries) {
+      final Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        cacheSize -= previous.getSize();
+      }
+      cacheSize += entry.getSize();
+
+      // evict least recently used entries
+      final Iterator<Entry> it = entries.values().iterator();
+      while (cacheSize > maxCacheSize && it.hasNext()) {
+        final Entry candidate = it.next();
+        if (candidate == entry) {
+          continue;
+        }
+        cacheSize -= candidate.getSize();
+        it.remove();
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+}
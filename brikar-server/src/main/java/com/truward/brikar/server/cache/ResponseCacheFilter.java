@@ -0,0 +1,75 @@
+package com.truward.brikar.server.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A filter, that wraps responses to GET requests, so that {@link ResponseCacheInterceptor} can capture and cache
+ * responses of the handlers, marked with {@link CacheableResponse}. Responses of other handlers are passed through
+ * without buffering.
+ * <p>
+ * Responses of the asynchronous handlers are not cached, callers, waiting for such responses, compute them
+ * on their own.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class ResponseCacheFilter implements Filter {
+  private final Logger log = LoggerFactory.getLogger(ResponseCacheFilter.class);
+  private final ResponseCache cache;
+
+  public ResponseCacheFilter(ResponseCache cache) {
+    this.cache = Objects.requireNonNull(cache, "cache");
+  }
+
+  public ResponseCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    log.debug("init");
+  }
+
+  @Override
+  public void doFilter(ServletRequest req,
+                       ServletResponse resp,
+                       FilterChain filterChain) throws IOException, ServletException {
+    final HttpServletRequest request = (HttpServletRequest) req;
+    final HttpServletResponse response = (HttpServletResponse) resp;
+
+    if (!"GET".equals(request.getMethod())) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    final CachingResponseWrapper wrappedResponse = new CachingResponseWrapper(response, cache);
+    boolean exceptional = true;
+    try {
+      filterChain.doFilter(request, wrappedResponse);
+      exceptional = false;
+    } finally {
+      if (wrappedResponse.isCapturing()) {
+        if (exceptional) {
+          // let waiting callers proceed, buffered content is discarded, so that error response can be sent
+          wrappedResponse.abandonCapture(false);
+        } else if (request.isAsyncStarted()) {
+          wrappedResponse.abandonCapture(true);
+        } else {
+          wrappedResponse.finishCapture();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    log.debug("destroy");
+  }
+}
@@ -0,0 +1,88 @@
+package com.truward.brikar.server.cache;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interceptor, that serves cached responses of the handlers, marked with {@link CacheableResponse}, and coalesces
+ * concurrent identical requests, so that only one of them reaches the handler while others wait for its result.
+ * <p>
+ * Requires {@link ResponseCacheFilter} to be installed, which is done by the standard launcher, and should be
+ * registered in the dispatcher servlet context, e.g.:
+ * </p>
+ * <pre>
+ *   &lt;mvc:interceptors&gt;
+ *     &lt;bean class="com.truward.brikar.server.cache.ResponseCacheInterceptor"/&gt;
+ *   &lt;/mvc:interceptors&gt;
+ * </pre>
+ *
+ * @author Alexander Shabanov
+ */
+public class ResponseCacheInterceptor extends HandlerInterceptorAdapter {
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+      throws Exception {
+    // async dispatches are skipped as they complete requests, that have already been looked up
+    if (!(handler instanceof HandlerMethod) || request.getDispatcherType() != DispatcherType.REQUEST ||
+        !"GET".equals(request.getMethod())) {
+      return true;
+    }
+
+    final CacheableResponse cacheable = findAnnotation((HandlerMethod) handler);
+    if (cacheable == null) {
+      return true;
+    }
+
+    final CachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, CachingResponseWrapper.class);
+    if (wrapper == null || wrapper.isCapturing()) {
+      return true;
+    }
+
+    final ResponseCache.Lookup lookup = wrapper.getCache().lookup(ResponseCache.createKey(request));
+    final ResponseCache.Entry entry = lookup.getEntry();
+    if (entry != null) {
+      writeEntry(entry, response);
+      return false;
+    }
+
+    if (lookup.isLoader()) {
+      wrapper.startCapture(lookup, cacheable.ttlMillis());
+    }
+    return true;
+  }
+
+  //
+  // Private
+  //
+
+  private static CacheableResponse findAnnotation(HandlerMethod handlerMethod) {
+    final CacheableResponse result = handlerMethod.getMethodAnnotation(CacheableResponse.class);
+    if (result != null) {
+      return result;
+    }
+    return AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), CacheableResponse.class);
+  }
+
+  private static void writeEntry(ResponseCache.Entry entry, HttpServletResponse response) throws Exception {
+    response.setStatus(entry.getStatus());
+    if (entry.getContentType() != null) {
+      response.setContentType(entry.getContentType());
+    }
+    for (final Map.Entry<String, List<String>> header : entry.getHeaders().entrySet()) {
+      for (final String value : header.getValue()) {
+        response.addHeader(header.getKey(), value);
+      }
+    }
+    response.setContentLength(entry.getBody().length);
+    response.getOutputStream().write(entry.getBody());
+  }
+}
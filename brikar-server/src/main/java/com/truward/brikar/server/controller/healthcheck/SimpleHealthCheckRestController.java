@@ -1,22 +1,53 @@
 package com.truward.brikar.server.controller.healthcheck;
 
 import com.truward.brikar.common.healthcheck.HealthCheckRestService;
+import com.truward.brikar.server.tracking.InFlightRequestTracker;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
 
 /**
  * Simple implementation of health check that does nothing. It can be extended by overriding
  * {@link #doCheckHealth()} method.
+ * <p>
+ * Once server starts draining, health check responds with {@link HealthCheckRestService#DRAINING} and
+ * <code>503 Service Unavailable</code> status code, so that load balancers stop sending new requests to it.
+ * </p>
  *
  * @author Alexander Shabanov
  */
 @Controller
 @RequestMapping("/api")
-public class SimpleHealthCheckRestController implements HealthCheckRestService {
+public class SimpleHealthCheckRestController implements HealthCheckRestService, ServletContextAware {
+  private InFlightRequestTracker inFlightRequestTracker;
 
+  @Override
+  public void setServletContext(ServletContext servletContext) {
+    final Object tracker = servletContext.getAttribute(InFlightRequestTracker.ATTRIBUTE);
+    if (tracker instanceof InFlightRequestTracker) {
+      this.inFlightRequestTracker = (InFlightRequestTracker) tracker;
+    }
+  }
 
   @Override
   public final String checkHealth() {
+    if (inFlightRequestTracker != null && inFlightRequestTracker.isDraining()) {
+      final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+      if (attributes instanceof ServletRequestAttributes) {
+        final HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+        if (response != null) {
+          response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+      }
+      return HealthCheckRestService.DRAINING;
+    }
+
     return doCheckHealth();
   }
 
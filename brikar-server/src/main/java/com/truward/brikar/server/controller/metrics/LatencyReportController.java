@@ -0,0 +1,89 @@
+package com.truward.brikar.server.controller.metrics;
+
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Controller, for reporting latency percentiles of the operations, measured by this server within the last
+ * 1, 5 and 15 minutes, see also {@link LatencyHistogramRegistry}.
+ * <p>
+ * This controller should be protected from external access.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@Controller
+@RequestMapping("/g/admin")
+public class LatencyReportController {
+  private static final int[] WINDOWS = { 1, 5, 15 };
+
+  private LatencyHistogramRegistry registry;
+
+  /**
+   * Sets registry to report, {@link LatencyHistogramRegistry#getDefault()} is reported if registry is not set.
+   *
+   * @param registry Latency histogram registry or null
+   */
+  public void setRegistry(@Nullable LatencyHistogramRegistry registry) {
+    this.registry = registry;
+  }
+
+  @RequestMapping(value = "/latency", produces = MediaType.TEXT_PLAIN_VALUE)
+  public void reportLatency(@RequestParam(value = "window", required = false) @Nullable Integer window,
+                            @Nonnull HttpServletResponse response) throws IOException {
+    final PrintWriter writer = response.getWriter();
+    writer.append("Generated at ").append(new Date().toString()).append('\n').append('\n');
+
+    if (window != null) {
+      if (window <= 0 || window > LatencyHistogram.MAX_WINDOW_MINUTES) {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        writer.append("Window should be from 1 to ").append(Integer.toString(LatencyHistogram.MAX_WINDOW_MINUTES))
+            .append(" minutes\n");
+        return;
+      }
+      writeSnapshots(writer, window);
+      return;
+    }
+
+    for (final int windowMinutes : WINDOWS) {
+      writeSnapshots(writer, windowMinutes);
+    }
+  }
+
+  //
+  // Protected
+  //
+
+  protected void writeSnapshots(@Nonnull PrintWriter writer, int windowMinutes) {
+    writer.append("Latency within the last ").append(Integer.toString(windowMinutes))
+        .append(" minute(s), ms:\n");
+    writer.append("kind\top\tcount\tmean\tp50\tp90\tp99\tp999\tmax\n");
+    final LatencyHistogramRegistry currentRegistry = registry != null ? registry :
+        LatencyHistogramRegistry.getDefault();
+    for (final LatencyHistogram.Snapshot snapshot : currentRegistry.getSnapshots(windowMinutes)) {
+      writer.append(snapshot.getKind().name())
+          .append('\t').append(snapshot.getOperation())
+          .append('\t').append(Long.toString(snapshot.getCount()))
+          .append('\t').append(String.format(Locale.ROOT, "%.1f", snapshot.getMean()))
+          .append('\t').append(Long.toString(snapshot.getValueAtPercentile(50.0)))
+          .append('\t').append(Long.toString(snapshot.getValueAtPercentile(90.0)))
+          .append('\t').append(Long.toString(snapshot.getValueAtPercentile(99.0)))
+          .append('\t').append(Long.toString(snapshot.getValueAtPercentile(99.9)))
+          .append('\t').append(Long.toString(snapshot.getMax()))
+          .append('\n');
+    }
+    writer.append('\n');
+  }
+}
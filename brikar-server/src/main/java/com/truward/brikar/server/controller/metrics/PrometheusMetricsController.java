@@ -0,0 +1,141 @@
+package com.truward.brikar.server.controller.metrics;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.metric.AsyncMetricsSink;
+import com.truward.brikar.common.log.metric.PrometheusTextWriter;
+import com.truward.brikar.server.jetty.MeteredThreadPool;
+import com.truward.brikar.server.tracking.InFlightRequestTracker;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.ServletContextAware;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Controller, that exposes server metrics in Prometheus text format: counters and latency histograms of the served
+ * requests, calls to the other services and methods, annotated with
+ * {@link com.truward.brikar.common.log.LogLapse}, as well as thread pool and in-flight request gauges.
+ * <p>
+ * Counters are cumulative since the server start, so that scrapes don't interfere with the periodic metric
+ * reports. This controller should be protected from external access.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@Controller
+@RequestMapping("/g/admin")
+public class PrometheusMetricsController implements ServletContextAware {
+  private static final String OPERATION_LABEL = "op";
+  private static final String URI_LABEL = "uri";
+  private static final String POOL_LABEL = "pool";
+
+  private LatencyHistogramRegistry registry;
+  private InFlightRequestTracker inFlightRequestTracker;
+  private Collection<MeteredThreadPool> threadPools = Collections.emptyList();
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void setServletContext(ServletContext servletContext) {
+    final Object tracker = servletContext.getAttribute(InFlightRequestTracker.ATTRIBUTE);
+    if (tracker instanceof InFlightRequestTracker) {
+      this.inFlightRequestTracker = (InFlightRequestTracker) tracker;
+    }
+
+    final Object pools = servletContext.getAttribute(MeteredThreadPool.ATTRIBUTE);
+    if (pools instanceof Collection) {
+      this.threadPools = (Collection<MeteredThreadPool>) pools;
+    }
+  }
+
+  /**
+   * Sets registry to expose, {@link LatencyHistogramRegistry#getDefault()} is exposed if registry is not set.
+   *
+   * @param registry Latency histogram registry or null
+   */
+  public void setRegistry(@Nullable LatencyHistogramRegistry registry) {
+    this.registry = registry;
+  }
+
+  @RequestMapping("/prometheus")
+  public void reportMetrics(@Nonnull HttpServletResponse response) throws IOException {
+    response.setContentType(PrometheusTextWriter.CONTENT_TYPE);
+    final PrometheusTextWriter writer = new PrometheusTextWriter(response.getWriter());
+    writeHistograms(writer);
+    writeGauges(writer);
+    writer.flush();
+  }
+
+  //
+  // Protected
+  //
+
+  protected void writeHistograms(@Nonnull PrometheusTextWriter writer) throws IOException {
+    final LatencyHistogramRegistry currentRegistry = registry != null ? registry :
+        LatencyHistogramRegistry.getDefault();
+
+    final Collection<LatencyHistogram> requests = currentRegistry.getHistograms(LatencyHistogram.Kind.REQUEST);
+    writer.writeResponseCodeCounts(requests, "brikar_requests_total",
+        "Number of the served requests by operation and response code.", OPERATION_LABEL);
+    writer.writeLatencyHistograms(requests, "brikar_request_duration_seconds",
+        "Time to process the request.", OPERATION_LABEL);
+
+    final Collection<LatencyHistogram> clientCalls =
+        currentRegistry.getHistograms(LatencyHistogram.Kind.CLIENT_CALL);
+    writer.writeResponseCodeCounts(clientCalls, "brikar_client_calls_total",
+        "Number of the calls to the other services by URI and response code.", URI_LABEL);
+    writer.writeLatencyHistograms(clientCalls, "brikar_client_call_duration_seconds",
+        "Time to get response from the other service.", URI_LABEL);
+
+    final Collection<LatencyHistogram> methods = currentRegistry.getHistograms(LatencyHistogram.Kind.METHOD);
+    writer.writeFailedCounts(methods, "brikar_method_failures_total",
+        "Number of the failed method calls.", OPERATION_LABEL);
+    writer.writeLatencyHistograms(methods, "brikar_method_duration_seconds",
+        "Time to execute the method.", OPERATION_LABEL);
+  }
+
+  protected void writeGauges(@Nonnull PrometheusTextWriter writer) throws IOException {
+    if (!threadPools.isEmpty()) {
+      writer.writeHeader("brikar_thread_pool_threads", PrometheusTextWriter.TYPE_GAUGE,
+          "Number of threads in the pool.");
+      for (final MeteredThreadPool pool : threadPools) {
+        writer.writeSample("brikar_thread_pool_threads", POOL_LABEL, pool.getName(), pool.getThreads());
+      }
+      writer.writeHeader("brikar_thread_pool_idle_threads", PrometheusTextWriter.TYPE_GAUGE,
+          "Number of idle threads in the pool.");
+      for (final MeteredThreadPool pool : threadPools) {
+        writer.writeSample("brikar_thread_pool_idle_threads", POOL_LABEL, pool.getName(), pool.getIdleThreads());
+      }
+      writer.writeHeader("brikar_thread_pool_max_threads", PrometheusTextWriter.TYPE_GAUGE,
+          "Maximum number of threads in the pool.");
+      for (final MeteredThreadPool pool : threadPools) {
+        writer.writeSample("brikar_thread_pool_max_threads", POOL_LABEL, pool.getName(), pool.getMaxThreads());
+      }
+      writer.writeHeader("brikar_thread_pool_queued_jobs", PrometheusTextWriter.TYPE_GAUGE,
+          "Number of jobs, waiting for a free thread.");
+      for (final MeteredThreadPool pool : threadPools) {
+        writer.writeSample("brikar_thread_pool_queued_jobs", POOL_LABEL, pool.getName(), pool.getQueueSize());
+      }
+    }
+
+    if (inFlightRequestTracker != null) {
+      writer.writeHeader("brikar_in_flight_requests", PrometheusTextWriter.TYPE_GAUGE,
+          "Number of requests, being processed.");
+      writer.writeSample("brikar_in_flight_requests", null, null, inFlightRequestTracker.getInFlight());
+    }
+
+    final AsyncMetricsSink metricsSink = LogUtil.getMetricsSink();
+    if (metricsSink != null) {
+      writer.writeHeader("brikar_metrics_sink_queued", PrometheusTextWriter.TYPE_GAUGE,
+          "Number of metric entries, waiting to be written to the logs.");
+      writer.writeSample("brikar_metrics_sink_queued", null, null, metricsSink.getQueueSize());
+    }
+  }
+}
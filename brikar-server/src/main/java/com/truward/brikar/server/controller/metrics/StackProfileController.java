@@ -0,0 +1,78 @@
+package com.truward.brikar.server.controller.metrics;
+
+import com.truward.brikar.server.profile.StackSamplingProfiler;
+import com.truward.brikar.server.tracking.RequestThreadTracker;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.ServletContextAware;
+
+import javax.annotation.Nonnull;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Controller, that profiles the server threads, that process requests, for the given number of seconds and returns
+ * collapsed stacks, which can be turned into a flame graph, e.g. with <code>flamegraph.pl</code>, see also
+ * {@link StackSamplingProfiler}.
+ * <p>
+ * Profiling requires request thread tracking, see {@link RequestThreadTracker}. This controller should be protected
+ * from external access.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@Controller
+@RequestMapping("/g/admin")
+public class StackProfileController implements ServletContextAware {
+  private static final int MAX_SECONDS = 300;
+  private static final int MAX_INTERVAL_MILLIS = 1000;
+  private static final int MAX_DEPTH = 4096;
+
+  private StackSamplingProfiler profiler;
+
+  @Override
+  public void setServletContext(ServletContext servletContext) {
+    final Object tracker = servletContext.getAttribute(RequestThreadTracker.ATTRIBUTE);
+    if (tracker instanceof RequestThreadTracker) {
+      this.profiler = new StackSamplingProfiler((RequestThreadTracker) tracker);
+    }
+  }
+
+  @RequestMapping(value = "/profile", produces = MediaType.TEXT_PLAIN_VALUE)
+  public void profile(@RequestParam(value = "seconds", defaultValue = "10") int seconds,
+                      @RequestParam(value = "intervalMillis", defaultValue = "10") int intervalMillis,
+                      @RequestParam(value = "maxDepth", defaultValue = "256") int maxDepth,
+                      @RequestParam(value = "requestVectors", defaultValue = "true") boolean requestVectors,
+                      @Nonnull HttpServletResponse response) throws IOException, InterruptedException {
+    final PrintWriter writer = response.getWriter();
+    if (profiler == null) {
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      writer.append("Request thread tracking is disabled\n");
+      return;
+    }
+    if (seconds <= 0 || seconds > MAX_SECONDS || intervalMillis <= 0 || intervalMillis > MAX_INTERVAL_MILLIS ||
+        maxDepth <= 0 || maxDepth > MAX_DEPTH) {
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      writer.append("Seconds should be from 1 to ").append(Integer.toString(MAX_SECONDS))
+          .append(", intervalMillis - from 1 to ").append(Integer.toString(MAX_INTERVAL_MILLIS))
+          .append(", maxDepth - from 1 to ").append(Integer.toString(MAX_DEPTH)).append('\n');
+      return;
+    }
+
+    final StackSamplingProfiler.Profile profile = profiler.profile(seconds * 1000L, intervalMillis, maxDepth,
+        requestVectors);
+    if (profile == null) {
+      response.setStatus(HttpServletResponse.SC_CONFLICT);
+      writer.append("Another profile is being taken\n");
+      return;
+    }
+
+    for (final String stack : profile.getCollapsedStacks()) {
+      writer.append(stack).append('\n');
+    }
+  }
+}
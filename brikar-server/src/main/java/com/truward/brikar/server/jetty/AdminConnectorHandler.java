@@ -0,0 +1,87 @@
+package com.truward.brikar.server.jetty;
+
+import com.truward.brikar.server.util.PathUtil;
+import org.eclipse.jetty.server.AbstractHttpConnection;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Handler, that restricts requests received by the dedicated admin connector to the admin paths, such as
+ * <code>/g/admin</code> or <code>/api/health</code>. Other requests received by the admin connector are
+ * rejected with <code>404 Not Found</code> status code, so that business traffic can't occupy admin threads.
+ * <p>
+ * If this handler is exclusive, admin paths are also rejected when requested through any other connector.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class AdminConnectorHandler extends HandlerWrapper {
+  private final Connector adminConnector;
+  private final List<String> adminPaths;
+  private final boolean exclusive;
+
+  /**
+   * Creates admin connector handler.
+   *
+   * @param adminConnector Dedicated admin connector
+   * @param adminPaths Path prefixes, that should be served by admin connector, e.g. <code>/g/admin</code>
+   * @param exclusive Whether admin paths should be served by admin connector only
+   */
+  public AdminConnectorHandler(Connector adminConnector, List<String> adminPaths, boolean exclusive) {
+    this.adminConnector = Objects.requireNonNull(adminConnector, "adminConnector");
+    this.adminPaths = Collections.unmodifiableList(new ArrayList<>(adminPaths));
+    this.exclusive = exclusive;
+  }
+
+  public List<String> getAdminPaths() {
+    return adminPaths;
+  }
+
+  public boolean isExclusive() {
+    return exclusive;
+  }
+
+  /**
+   * Checks whether given path matches any of admin path prefixes.
+   *
+   * @param path Request path
+   * @return True, if given path is an admin path
+   */
+  public boolean isAdminPath(@Nullable String path) {
+    for (final String adminPath : adminPaths) {
+      if (PathUtil.hasPathPrefix(path, adminPath)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  public void handle(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    final AbstractHttpConnection connection = baseRequest.getConnection();
+    final boolean isAdminConnector = connection != null && connection.getConnector() == adminConnector;
+    if (isAdminConnector != isAdminPath(target) && (isAdminConnector || exclusive)) {
+      baseRequest.setHandled(true);
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      response.setContentLength(0);
+      return;
+    }
+
+    super.handle(target, baseRequest, request, response);
+  }
+}
@@ -0,0 +1,189 @@
+package com.truward.brikar.server.jetty;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+import com.truward.brikar.server.util.PathUtil;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits number of concurrently processed requests, which paths start with the given prefix, so that one slow
+ * family of endpoints can't occupy all the worker threads.
+ * <p>
+ * Requests, that exceed concurrency limit, wait in the bulkhead queue for up to <code>maxWaitMillis</code>
+ * milliseconds. Requests, that don't fit into the queue or don't get a permit in time, are rejected using
+ * bulkhead's rejection status code.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class Bulkhead {
+
+  /**
+   * Operation name, under which bulkhead metrics are reported.
+   */
+  public static final String OPERATION = "Bulkhead";
+
+  public static final String NAME = "name";
+  public static final String ACTIVE = "active";
+  public static final String MAX_CONCURRENT = "maxConcurrent";
+  public static final String QUEUED = "queued";
+  public static final String MAX_QUEUED = "maxQueued";
+  public static final String ACCEPTED = "accepted";
+  public static final String REJECTED = "rejected";
+
+  private final String name;
+  private final String pathPrefix;
+  private final int maxConcurrent;
+  private final int maxQueued;
+  private final long maxWaitMillis;
+  private final int rejectionStatus;
+
+  private final Semaphore permits;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong acceptedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * Creates bulkhead.
+   *
+   * @param name Bulkhead name, used in metrics
+   * @param pathPrefix Path prefix, e.g. <code>/api/reports</code>
+   * @param maxConcurrent Maximum number of concurrently processed requests
+   * @param maxQueued Maximum number of requests, waiting for a permit, zero means requests are rejected immediately
+   * @param maxWaitMillis Maximum time, request may wait for a permit
+   * @param rejectionStatus HTTP status code, that should be returned for rejected requests
+   */
+  public Bulkhead(String name, String pathPrefix, int maxConcurrent, int maxQueued, long maxWaitMillis,
+                  int rejectionStatus) {
+    if (maxConcurrent <= 0) {
+      throw new IllegalArgumentException("maxConcurrent should be positive in bulkhead=" + name);
+    }
+
+    this.name = Objects.requireNonNull(name, "name");
+    this.pathPrefix = Objects.requireNonNull(pathPrefix, "pathPrefix");
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = Math.max(0, maxQueued);
+    this.maxWaitMillis = Math.max(0L, maxWaitMillis);
+    this.rejectionStatus = rejectionStatus;
+    this.permits = new Semaphore(maxConcurrent);
+  }
+
+  @Nonnull
+  public String getName() {
+    return name;
+  }
+
+  @Nonnull
+  public String getPathPrefix() {
+    return pathPrefix;
+  }
+
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  public int getMaxQueued() {
+    return maxQueued;
+  }
+
+  public long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  public int getRejectionStatus() {
+    return rejectionStatus;
+  }
+
+  /**
+   * @return Number of requests, currently processed within this bulkhead
+   */
+  public int getActive() {
+    return maxConcurrent - permits.availablePermits();
+  }
+
+  /**
+   * @return Number of requests, currently waiting for a permit
+   */
+  public int getQueued() {
+    return queued.get();
+  }
+
+  public boolean matches(String path) {
+    return PathUtil.hasPathPrefix(path, pathPrefix);
+  }
+
+  /**
+   * Tries to acquire a permit for processing a request. Each successful call must be followed by {@link #exit()}.
+   *
+   * @return True, if permit has been acquired, false if request should be rejected
+   * @throws InterruptedException If current thread has been interrupted while waiting for a permit
+   */
+  public boolean tryEnter() throws InterruptedException {
+    if (permits.tryAcquire()) {
+      acceptedCount.incrementAndGet();
+      return true;
+    }
+
+    if (queued.incrementAndGet() > maxQueued) {
+      queued.decrementAndGet();
+      rejectedCount.incrementAndGet();
+      return false;
+    }
+
+    try {
+      if (permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+        acceptedCount.incrementAndGet();
+        return true;
+      }
+    } finally {
+      queued.decrementAndGet();
+    }
+
+    rejectedCount.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Releases permit, acquired by {@link #tryEnter()}.
+   */
+  public void exit() {
+    permits.release();
+  }
+
+  /**
+   * Returns current bulkhead state as a metrics entry. Accepted and rejected counters are reported as deltas since
+   * the previous call to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(NAME, name)
+        .setProperty(ACTIVE, getActive())
+        .setProperty(MAX_CONCURRENT, maxConcurrent)
+        .setProperty(QUEUED, getQueued())
+        .setProperty(MAX_QUEUED, maxQueued)
+        .setProperty(ACCEPTED, acceptedCount.getAndSet(0L))
+        .setProperty(REJECTED, rejectedCount.getAndSet(0L));
+  }
+
+  @Override
+  public String toString() {
+    return "Bulkhead{" +
+        "name='" + name + '\'' +
+        ", pathPrefix='" + pathPrefix + '\'' +
+        ", maxConcurrent=" + maxConcurrent +
+        ", maxQueued=" + maxQueued +
+        ", maxWaitMillis=" + maxWaitMillis +
+        ", rejectionStatus=" + rejectionStatus +
+        '}';
+  }
+}
@@ -0,0 +1,80 @@
+package com.truward.brikar.server.jetty;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.annotation.Nullable;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Handler, that processes requests within the bulkheads, matched by request path.
+ * If several bulkheads match the same path, the one with the longest path prefix is used.
+ *
+ * @author Alexander Shabanov
+ */
+public class BulkheadHandler extends HandlerWrapper {
+  private final List<Bulkhead> bulkheads;
+
+  public BulkheadHandler(List<Bulkhead> bulkheads) {
+    final List<Bulkhead> sortedBulkheads = new ArrayList<>(bulkheads);
+    sortedBulkheads.sort(Comparator.comparingInt((Bulkhead b) -> b.getPathPrefix().length()).reversed());
+    this.bulkheads = Collections.unmodifiableList(sortedBulkheads);
+  }
+
+  public List<Bulkhead> getBulkheads() {
+    return bulkheads;
+  }
+
+  @Nullable
+  public Bulkhead getBulkhead(@Nullable String path) {
+    for (final Bulkhead bulkhead : bulkheads) {
+      if (bulkhead.matches(path)) {
+        return bulkhead;
+      }
+    }
+
+    return null;
+  }
+
+  @Override
+  public void handle(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    final Bulkhead bulkhead = getBulkhead(target);
+    if (bulkhead == null || baseRequest.getDispatcherType() == DispatcherType.ASYNC) {
+      // async dispatches belong to already admitted requests
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+
+    final boolean entered;
+    try {
+      entered = bulkhead.tryEnter();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServletException("Interrupted while waiting for bulkhead=" + bulkhead.getName(), e);
+    }
+
+    if (!entered) {
+      baseRequest.setHandled(true);
+      response.setStatus(bulkhead.getRejectionStatus());
+      response.setContentLength(0);
+      return;
+    }
+
+    try {
+      super.handle(target, baseRequest, request, response);
+    } finally {
+      bulkhead.exit();
+    }
+  }
+}
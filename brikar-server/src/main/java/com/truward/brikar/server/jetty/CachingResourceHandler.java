@@ -0,0 +1,291 @@
+package com.truward.brikar.server.jetty;
+
+import org.eclipse.jetty.http.HttpHeaders;
+import org.eclipse.jetty.http.HttpMethods;
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.server.AbstractHttpConnection;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.resource.Resource;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resource handler, that serves static content from {@link StaticContentCache} and handles conditional requests
+ * using strong ETags and modification dates.
+ * <p>
+ * If client accepts <code>br</code> or <code>gzip</code> encoding and precompressed sibling of the requested
+ * resource exists, e.g. <code>app.js.br</code> or <code>app.js.gz</code>, it is served instead of the original
+ * resource with the corresponding content encoding.
+ * </p>
+ * <p>
+ * Requests for resources, that can't be cached, such as directory listings, are handled by the base class.
+ * </p>
+ * <p>
+ * Request paths, resolved to the cached resources, along with the presence of their precompressed siblings, are
+ * remembered for the revalidation interval of the cache, so that cached content is served without touching the file
+ * system.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class CachingResourceHandler extends ResourceHandler {
+  private static final String[][] PRECOMPRESSED_VARIANTS = {{"br", ".br"}, {"gzip", ".gz"}};
+
+  private final StaticContentCache cache;
+  private final Map<String, Resolution> resolutions = new ConcurrentHashMap<>();
+  private String cacheControl;
+
+  public CachingResourceHandler(StaticContentCache cache) {
+    this.cache = Objects.requireNonNull(cache, "cache");
+  }
+
+  public StaticContentCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public String getCacheControl() {
+    // base class fails with NPE if cache control has not been set
+    return cacheControl;
+  }
+
+  @Override
+  public void setCacheControl(String cacheControl) {
+    super.setCacheControl(cacheControl);
+    this.cacheControl = cacheControl;
+  }
+
+  @Override
+  public void handle(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    if (baseRequest.isHandled()) {
+      return;
+    }
+
+    final boolean head = HttpMethods.HEAD.equals(request.getMethod());
+    if (!head && !HttpMethods.GET.equals(request.getMethod())) {
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+
+    final String requestPath = URIUtil.addPaths(request.getServletPath(), request.getPathInfo());
+    if (requestPath == null) {
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+
+    // serve content without touching the file system if the path has been resolved recently
+    final String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    final long now = System.currentTimeMillis();
+    Resolution resolution = resolutions.get(requestPath);
+    Selection selection = null;
+    if (resolution != null && now - resolution.checkedTime < cache.getRevalidateMillis()) {
+      selection = select(resolution, acceptEncoding, true);
+    }
+
+    if (selection == null) {
+      resolution = resolve(requestPath, now);
+      if (resolution == null) {
+        resolutions.remove(requestPath);
+        super.handle(target, baseRequest, request, response);
+        return;
+      }
+      resolutions.put(requestPath, resolution);
+
+      selection = select(resolution, acceptEncoding, false);
+      if (selection == null) {
+        // too large to be cached
+        super.handle(target, baseRequest, request, response);
+        return;
+      }
+    }
+
+    final StaticContentCache.Content content = selection.content;
+    final String contentEncoding = selection.contentEncoding;
+    baseRequest.setHandled(true);
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (cacheControl != null) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+
+    if (isNotModified(request, content)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      response.setHeader(HttpHeaders.ETAG, content.getETag());
+      return;
+    }
+
+    final Buffer mimeType = getMimeTypes().getMimeByExtension(resolution.path);
+    if (mimeType != null) {
+      response.setContentType(mimeType.toString());
+    }
+    if (contentEncoding != null) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+    }
+    response.setHeader(HttpHeaders.ETAG, content.getETag());
+    if (content.getLastModified() > 0) {
+      response.setDateHeader(HttpHeaders.LAST_MODIFIED, content.getLastModified());
+    }
+    response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(content.getLength()));
+
+    if (!head) {
+      writeContent(response, content);
+    }
+  }
+
+  //
+  // Private
+  //
+
+  /**
+   * Resolves request path to the resource and its precompressed siblings, missing siblings are remembered too, so
+   * that resolved paths are served without touching the file system until revalidation interval expires.
+   */
+  @Nullable
+  private Resolution resolve(String requestPath, long now) throws IOException {
+    String path = requestPath;
+    Resource resource = getResource(path);
+    if (resource != null && resource.isDirectory() && path.endsWith(URIUtil.SLASH)) {
+      path = getWelcomePath(path);
+      resource = path != null ? getResource(path) : null;
+    }
+
+    if (resource == null || !resource.exists() || resource.isDirectory() ||
+        (!isAliases() && resource.getAlias() != null)) {
+      return null;
+    }
+
+    final Resource[] variantResources = new Resource[PRECOMPRESSED_VARIANTS.length];
+    for (int i = 0; i < PRECOMPRESSED_VARIANTS.length; ++i) {
+      final Resource variantResource = getResource(path + PRECOMPRESSED_VARIANTS[i][1]);
+      if (variantResource != null && variantResource.exists() && !variantResource.isDirectory()) {
+        variantResources[i] = variantResource;
+      }
+    }
+
+    return new Resolution(path, resource, variantResources, now);
+  }
+
+  /**
+   * Selects content to be served, precompressed variant goes first if client accepts it.
+   *
+   * @param fresh Whether only the content, that doesn't need revalidation, should be selected
+   * @return Selected content or null if there is no cached content (fresh selection) or content is too large
+   *         to be cached
+   */
+  @Nullable
+  private Selection select(Resolution resolution, @Nullable String acceptEncoding, boolean fresh) throws IOException {
+    if (acceptEncoding != null) {
+      for (int i = 0; i < PRECOMPRESSED_VARIANTS.length; ++i) {
+        final Resource variantResource = resolution.variantResources[i];
+        if (variantResource == null || !CompressionHandler.isAccepted(acceptEncoding, PRECOMPRESSED_VARIANTS[i][0])) {
+          continue;
+        }
+
+        final String key = resolution.path + PRECOMPRESSED_VARIANTS[i][1];
+        final StaticContentCache.Content content = fresh ? cache.getFreshContent(key) :
+            cache.getContent(key, variantResource);
+        if (content != null) {
+          return new Selection(content, PRECOMPRESSED_VARIANTS[i][0]);
+        }
+        if (fresh) {
+          return null;
+        }
+      }
+    }
+
+    final StaticContentCache.Content content = fresh ? cache.getFreshContent(resolution.path) :
+        cache.getContent(resolution.path, resolution.resource);
+    return content != null ? new Selection(content, null) : null;
+  }
+
+  @Nullable
+  private String getWelcomePath(String directoryPath) throws IOException {
+    final String[] welcomeFiles = getWelcomeFiles();
+    if (welcomeFiles == null) {
+      return null;
+    }
+
+    for (final String welcomeFile : welcomeFiles) {
+      final String welcomePath = URIUtil.addPaths(directoryPath, welcomeFile);
+      final Resource welcome = getResource(welcomePath);
+      if (welcome != null && welcome.exists() && !welcome.isDirectory()) {
+        return welcomePath;
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean isNotModified(HttpServletRequest request, StaticContentCache.Content content) {
+    final String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      for (final String etag : ifNoneMatch.split(",")) {
+        final String trimmedETag = etag.trim();
+        if (trimmedETag.equals("*") || trimmedETag.equals(content.getETag())) {
+          return true;
+        }
+      }
+      // If-Modified-Since must be ignored if If-None-Match is present
+      return false;
+    }
+
+    final long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+    return ifModifiedSince > 0 && content.getLastModified() > 0 &&
+        content.getLastModified() / 1000 <= ifModifiedSince / 1000;
+  }
+
+  private static void writeContent(HttpServletResponse response, StaticContentCache.Content content)
+      throws IOException {
+    final OutputStream out = response.getOutputStream();
+    if (out instanceof AbstractHttpConnection.Output) {
+      // hand buffer over to jetty without copying it, memory-mapped content is written directly to the socket
+      ((AbstractHttpConnection.Output) out).sendContent(content.toJettyBuffer());
+      return;
+    }
+
+    final ByteBuffer buffer = content.getBuffer();
+    final byte[] chunk = new byte[(int) Math.min(8192L, content.getLength())];
+    while (buffer.hasRemaining()) {
+      final int length = Math.min(chunk.length, buffer.remaining());
+      buffer.get(chunk, 0, length);
+      out.write(chunk, 0, length);
+    }
+  }
+
+  private static final class Resolution {
+    final String path;
+    final Resource resource;
+    final Resource[] variantResources; // null elements stand for missing precompressed variants
+    final long checkedTime;
+
+    Resolution(String path, Resource resource, Resource[] variantResources, long checkedTime) {
+      this.path = path;
+      this.resource = resource;
+      this.variantResources = variantResources;
+      this.checkedTime = checkedTime;
+    }
+  }
+
+  private static final class Selection {
+    final StaticContentCache.Content content;
+    final String contentEncoding;
+
+    Selection(StaticContentCache.Content content, @Nullable String contentEncoding) {
+      this.content = content;
+      this.contentEncoding = contentEncoding;
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package com.truward.brikar.server.jetty;
+
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationListener;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+import org.eclipse.jetty.http.HttpMethods;
+import org.eclipse.jetty.http.gzip.AbstractCompressedStream;
+import org.eclipse.jetty.http.gzip.CompressedResponseWrapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Handler, that compresses responses using <code>gzip</code> or <code>deflate</code> encoding, whichever is
+ * accepted by the client (<code>gzip</code> is preferred), and decompresses requests, sent with one of these
+ * encodings.
+ * <p>
+ * Responses are compressed only if their content type is in the given set of MIME types and their size is
+ * not less than the given threshold. Unlike jetty's <code>GzipHandler</code> this handler supports deflate
+ * encoding and allows to set compression level.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class CompressionHandler extends HandlerWrapper {
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+
+  /**
+   * Default maximum size of the decompressed request body in bytes.
+   */
+  public static final long DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE = 8L * 1024L * 1024L;
+
+  private final Logger log = LoggerFactory.getLogger(CompressionHandler.class);
+
+  private Set<String> mimeTypes = Collections.emptySet();
+  private int minCompressSize = CompressedResponseWrapper.DEFAULT_MIN_COMPRESS_SIZE;
+  private int bufferSize = CompressedResponseWrapper.DEFAULT_BUFFER_SIZE;
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  private boolean requestDecompressionEnabled = true;
+  private long maxDecompressedRequestSize = DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE;
+
+  public Set<String> getMimeTypes() {
+    return mimeTypes;
+  }
+
+  /**
+   * Sets MIME types of the responses, that should be compressed.
+   *
+   * @param mimeTypes Set of MIME types, e.g. <code>application/json</code>
+   */
+  public void setMimeTypes(Set<String> mimeTypes) {
+    final Set<String> result = new HashSet<>();
+    for (final String mimeType : mimeTypes) {
+      result.add(mimeType.trim().toLowerCase(Locale.ROOT));
+    }
+    this.mimeTypes = Collections.unmodifiableSet(result);
+  }
+
+  public int getMinCompressSize() {
+    return minCompressSize;
+  }
+
+  /**
+   * Sets minimum size of the response, that should be compressed. Responses without known content length
+   * are compressed once they exceed this size.
+   *
+   * @param minCompressSize Size in bytes
+   */
+  public void setMinCompressSize(int minCompressSize) {
+    this.minCompressSize = minCompressSize;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Sets compression level.
+   *
+   * @param compressionLevel Compression level from 1 to 9 or -1 for default compression level
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    if (compressionLevel != Deflater.DEFAULT_COMPRESSION &&
+        (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Illegal compressionLevel=" + compressionLevel);
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
+  public boolean isRequestDecompressionEnabled() {
+    return requestDecompressionEnabled;
+  }
+
+  public void setRequestDecompressionEnabled(boolean requestDecompressionEnabled) {
+    this.requestDecompressionEnabled = requestDecompressionEnabled;
+  }
+
+  public long getMaxDecompressedRequestSize() {
+    return maxDecompressedRequestSize;
+  }
+
+  /**
+   * Sets maximum size of the decompressed request body, that protects server from decompression bombs,
+   * see also {@link #DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE}.
+   *
+   * @param maxDecompressedRequestSize Size in bytes, zero or negative value, e.g. <code>-1</code>, means no limit
+   */
+  public void setMaxDecompressedRequestSize(long maxDecompressedRequestSize) {
+    this.maxDecompressedRequestSize = maxDecompressedRequestSize;
+  }
+
+  /**
+   * Selects response encoding, based on the given <code>Accept-Encoding</code> header value.
+   *
+   * @param acceptEncoding Value of <code>Accept-Encoding</code> header
+   * @return Selected encoding or null, if client doesn't accept any of supported encodings
+   */
+  @Nullable
+  public static String selectEncoding(@Nullable String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    boolean deflateAccepted = false;
+    for (final String element : acceptEncoding.split(",")) {
+      final String[] parts = element.split(";");
+      final String encoding = parts[0].trim().toLowerCase(Locale.ROOT);
+      if (isRejected(parts)) {
+        continue;
+      }
+
+      if (GZIP.equals(encoding) || "x-gzip".equals(encoding)) {
+        return GZIP;
+      }
+      if (DEFLATE.equals(encoding)) {
+        deflateAccepted = true;
+      }
+    }
+
+    return deflateAccepted ? DEFLATE : null;
+  }
+
+  /**
+   * Checks whether given encoding is accepted according to the given <code>Accept-Encoding</code> header value.
+   *
+   * @param acceptEncoding Value of <code>Accept-Encoding</code> header
+   * @param encoding Encoding name, e.g. <code>br</code>
+   * @return True, if encoding is accepted
+   */
+  public static boolean isAccepted(@Nullable String acceptEncoding, String encoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (final String element : acceptEncoding.split(",")) {
+      final String[] parts = element.split(";");
+      if (encoding.equalsIgnoreCase(parts[0].trim())) {
+        return !isRejected(parts);
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  public void handle(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    if (baseRequest.getDispatcherType() == DispatcherType.ASYNC) {
+      // response has been wrapped and request has been decompressed when request has been dispatched initially
+      super.handle(target, baseRequest, request, response);
+      return;
+    }
+
+    HttpServletRequest handledRequest = request;
+    final String contentEncoding = request.getHeader("Content-Encoding");
+    if (requestDecompressionEnabled && DecompressingRequestWrapper.isSupportedEncoding(contentEncoding)) {
+      handledRequest = new DecompressingRequestWrapper(request, contentEncoding, maxDecompressedRequestSize);
+    }
+
+    final String encoding = selectEncoding(request.getHeader("Accept-Encoding"));
+    if (encoding == null || response.containsHeader("Content-Encoding") ||
+        HttpMethods.HEAD.equalsIgnoreCase(request.getMethod())) {
+      super.handle(target, baseRequest, handledRequest, response);
+      return;
+    }
+
+    final CompressedResponseWrapper wrappedResponse = newResponseWrapper(encoding, handledRequest, response);
+    boolean exceptional = true;
+    try {
+      super.handle(target, baseRequest, handledRequest, wrappedResponse);
+      exceptional = false;
+    } finally {
+      final Continuation continuation = ContinuationSupport.getContinuation(request);
+      if (continuation.isSuspended() && continuation.isResponseWrapped()) {
+        continuation.addContinuationListener(new ContinuationListener() {
+          @Override
+          public void onComplete(Continuation continuation) {
+            try {
+              wrappedResponse.finish();
+            } catch (IOException e) {
+              log.warn("Unable to finish compressed response", e);
+            }
+          }
+
+          @Override
+          public void onTimeout(Continuation continuation) {
+            // do nothing
+          }
+        });
+      } else if (exceptional && !response.isCommitted()) {
+        wrappedResponse.resetBuffer();
+        wrappedResponse.noCompression();
+      } else {
+        wrappedResponse.finish();
+      }
+    }
+  }
+
+  //
+  // Protected
+  //
+
+  protected CompressedResponseWrapper newResponseWrapper(final String encoding,
+                                                         HttpServletRequest request,
+                                                         HttpServletResponse response) {
+    final CompressedResponseWrapper wrapper = new CompressedResponseWrapper(request, response) {
+      @Override
+      protected AbstractCompressedStream newCompressedStream(HttpServletRequest request,
+                                                             HttpServletResponse response) throws IOException {
+        return new AbstractCompressedStream(encoding, request, this, "Accept-Encoding") {
+          @Override
+          protected DeflaterOutputStream createStream() throws IOException {
+            return createCompressedStream(encoding, _response.getOutputStream());
+          }
+        };
+      }
+    };
+    wrapper.setMimeTypes(mimeTypes.isEmpty() ? null : mimeTypes);
+    wrapper.setBufferSize(bufferSize);
+    wrapper.setMinCompressSize(minCompressSize);
+    return wrapper;
+  }
+
+  protected DeflaterOutputStream createCompressedStream(String encoding, OutputStream out) throws IOException {
+    if (GZIP.equals(encoding)) {
+      return new GZIPOutputStream(out, bufferSize) {
+        {
+          def.setLevel(compressionLevel);
+        }
+      };
+    }
+
+    return new DeflaterOutputStream(out, new Deflater(compressionLevel), bufferSize) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          // deflater, passed to the constructor, is not released by the stream itself
+          def.end();
+        }
+      }
+    };
+  }
+
+  //
+  // Private
+  //
+
+  private static boolean isRejected(String[] encodingParts) {
+    for (int i = 1; i < encodingParts.length; ++i) {
+      final String param = encodingParts[i].trim();
+      if (param.startsWith("q=")) {
+        try {
+          return Double.parseDouble(param.substring(2)) <= 0.0;
+        } catch (NumberFormatException ignored) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+}
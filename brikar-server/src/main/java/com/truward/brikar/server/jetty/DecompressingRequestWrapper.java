@@ -0,0 +1,187 @@
+package com.truward.brikar.server.jetty;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Request wrapper, that transparently decompresses request body, sent with <code>gzip</code> or
+ * <code>deflate</code> content encoding. Content encoding and content length headers are hidden from the
+ * wrapped request, since they don't describe decompressed body.
+ *
+ * @author Alexander Shabanov
+ */
+public class DecompressingRequestWrapper extends HttpServletRequestWrapper {
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final String CONTENT_LENGTH = "Content-Length";
+
+  private final String contentEncoding;
+  private final long maxDecompressedSize;
+  private ServletInputStream inputStream;
+  private BufferedReader reader;
+
+  /**
+   * Creates request wrapper.
+   *
+   * @param request Request to wrap
+   * @param contentEncoding Content encoding, either <code>gzip</code> or <code>deflate</code>
+   * @param maxDecompressedSize Maximum size of decompressed body, zero or negative value means no limit
+   */
+  public DecompressingRequestWrapper(HttpServletRequest request, String contentEncoding, long maxDecompressedSize) {
+    super(request);
+    this.contentEncoding = contentEncoding;
+    this.maxDecompressedSize = maxDecompressedSize;
+  }
+
+  /**
+   * Checks whether given content encoding is supported by this wrapper.
+   *
+   * @param contentEncoding Content encoding
+   * @return True, if this wrapper is able to decompress given encoding
+   */
+  public static boolean isSupportedEncoding(String contentEncoding) {
+    return "gzip".equalsIgnoreCase(contentEncoding) || "deflate".equalsIgnoreCase(contentEncoding);
+  }
+
+  @Override
+  public ServletInputStream getInputStream() throws IOException {
+    if (reader != null) {
+      throw new IllegalStateException("getReader() has already been called");
+    }
+
+    if (inputStream == null) {
+      inputStream = createInputStream();
+    }
+    return inputStream;
+  }
+
+  @Override
+  public BufferedReader getReader() throws IOException {
+    if (reader == null) {
+      if (inputStream != null) {
+        throw new IllegalStateException("getInputStream() has already been called");
+      }
+
+      final String encoding = getCharacterEncoding();
+      reader = new BufferedReader(new InputStreamReader(createInputStream(),
+          encoding != null ? encoding : "ISO-8859-1"));
+    }
+    return reader;
+  }
+
+  @Override
+  public int getContentLength() {
+    return -1;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    if (isHiddenHeader(name)) {
+      return null;
+    }
+    return super.getHeader(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaders(String name) {
+    if (isHiddenHeader(name)) {
+      return Collections.emptyEnumeration();
+    }
+    return super.getHeaders(name);
+  }
+
+  @Override
+  public Enumeration<String> getHeaderNames() {
+    final Enumeration<String> names = super.getHeaderNames();
+    if (names == null) {
+      return null;
+    }
+
+    final List<String> result = new ArrayList<>();
+    while (names.hasMoreElements()) {
+      final String name = names.nextElement();
+      if (!isHiddenHeader(name)) {
+        result.add(name);
+      }
+    }
+    return Collections.enumeration(result);
+  }
+
+  @Override
+  public int getIntHeader(String name) {
+    if (isHiddenHeader(name)) {
+      return -1;
+    }
+    return super.getIntHeader(name);
+  }
+
+  //
+  // Private
+  //
+
+  private ServletInputStream createInputStream() throws IOException {
+    final InputStream source = super.getInputStream();
+    return new DecompressingInputStream("gzip".equalsIgnoreCase(contentEncoding) ?
+        new GZIPInputStream(source) : new InflaterInputStream(source), maxDecompressedSize);
+  }
+
+  private static boolean isHiddenHeader(String name) {
+    return CONTENT_ENCODING.equalsIgnoreCase(name) || CONTENT_LENGTH.equalsIgnoreCase(name);
+  }
+
+  private static final class DecompressingInputStream extends ServletInputStream {
+    private final InputStream delegate;
+    private final long maxSize;
+    private long size;
+
+    DecompressingInputStream(InputStream delegate, long maxSize) {
+      this.delegate = delegate;
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int result = delegate.read();
+      if (result >= 0) {
+        count(1);
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      final int result = delegate.read(b, off, len);
+      if (result > 0) {
+        count(result);
+      }
+      return result;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return delegate.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    private void count(int bytes) throws IOException {
+      size += bytes;
+      if (maxSize > 0 && size > maxSize) {
+        throw new IOException("Decompressed request body exceeds maxSize=" + maxSize);
+      }
+    }
+  }
+}
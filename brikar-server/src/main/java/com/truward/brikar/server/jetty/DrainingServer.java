@@ -0,0 +1,167 @@
+package com.truward.brikar.server.jetty;
+
+import com.truward.brikar.server.tracking.InFlightRequestTracker;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server, that drains in-flight requests on shutdown instead of waiting for a fixed amount of time.
+ * <p>
+ * Shutdown sequence is as follows:
+ * </p>
+ * <ol>
+ *   <li>Server is marked as draining, so that health check reports it as unhealthy and load balancers stop
+ *   sending new requests to it. Server keeps accepting connections for the given drain delay.</li>
+ *   <li>Connectors stop accepting new connections and contexts start rejecting new requests.</li>
+ *   <li>Server waits until in-flight requests complete or shutdown timeout elapses.</li>
+ *   <li>Server stops, number of requests, that were still in flight, is logged.</li>
+ * </ol>
+ * <p>
+ * Draining happens while server is still running, so it is performed by the shutdown hook of this server
+ * (see {@link #setStopAtShutdown(boolean)}) or by explicit call to {@link #drain()} before stopping the server.
+ * If in-flight request tracker is not set, this server behaves as the base class.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class DrainingServer extends Server {
+  private final Logger log = LoggerFactory.getLogger(DrainingServer.class);
+
+  private InFlightRequestTracker inFlightRequestTracker;
+  private long drainDelay;
+  private long shutdownTimeout;
+  private boolean stopAtShutdown;
+  private final AtomicBoolean drained = new AtomicBoolean();
+  private Thread shutdownHook;
+
+  @Nullable
+  public InFlightRequestTracker getInFlightRequestTracker() {
+    return inFlightRequestTracker;
+  }
+
+  public void setInFlightRequestTracker(@Nullable InFlightRequestTracker inFlightRequestTracker) {
+    this.inFlightRequestTracker = inFlightRequestTracker;
+  }
+
+  public long getDrainDelay() {
+    return drainDelay;
+  }
+
+  /**
+   * Sets time, during which server is reported as draining while still accepting new connections.
+   * It should be greater than health check interval of the load balancer.
+   *
+   * @param drainDelay Time in milliseconds
+   */
+  public void setDrainDelay(long drainDelay) {
+    this.drainDelay = drainDelay;
+  }
+
+  public long getShutdownTimeout() {
+    return shutdownTimeout;
+  }
+
+  /**
+   * Sets maximum time to wait for in-flight requests, once server stopped accepting new connections.
+   *
+   * @param shutdownTimeout Time in milliseconds
+   */
+  public void setShutdownTimeout(long shutdownTimeout) {
+    this.shutdownTimeout = shutdownTimeout;
+  }
+
+  /**
+   * Tells whether server should be drained and stopped when JVM shuts down. Unlike the base class this server
+   * uses its own shutdown hook instead of jetty's shutdown thread, which stops server without draining it.
+   *
+   * @param stop True, if server should be stopped on JVM shutdown
+   */
+  @Override
+  public void setStopAtShutdown(boolean stop) {
+    this.stopAtShutdown = stop;
+  }
+
+  /**
+   * Drains server: marks it as draining, waits for drain delay, stops accepting new connections and waits for
+   * in-flight requests to complete or shutdown timeout to elapse. Does nothing if server has already been drained
+   * or in-flight request tracker is not set.
+   *
+   * @throws Exception On error
+   */
+  public void drain() throws Exception {
+    final InFlightRequestTracker tracker = inFlightRequestTracker;
+    if (tracker != null && isStarted() && drained.compareAndSet(false, true)) {
+      drain(tracker);
+    }
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    super.doStart();
+
+    if (stopAtShutdown) {
+      shutdownHook = new Thread(this::drainAndStop, "DrainingServerShutdown");
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+
+    final Thread hook = shutdownHook;
+    if (hook != null && hook != Thread.currentThread()) {
+      shutdownHook = null;
+      try {
+        Runtime.getRuntime().removeShutdownHook(hook);
+      } catch (IllegalStateException ignored) {
+        // JVM is shutting down
+      }
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void drainAndStop() {
+    try {
+      drain();
+      stop();
+    } catch (Exception e) {
+      log.error("Unable to stop server", e);
+    }
+  }
+
+  private void drain(InFlightRequestTracker tracker) throws Exception {
+    tracker.startDraining();
+    log.info("Draining server, inFlight={}, drainDelay={}", tracker.getInFlight(), drainDelay);
+    if (drainDelay > 0L) {
+      Thread.sleep(drainDelay);
+    }
+
+    // stop accepting new connections and reject new requests on the existing ones
+    final Connector[] connectors = getConnectors();
+    if (connectors != null) {
+      for (final Connector connector : connectors) {
+        connector.close();
+      }
+    }
+    for (final Handler context : getChildHandlersByClass(Graceful.class)) {
+      ((Graceful) context).setShutdown(true);
+    }
+
+    final int remaining = tracker.awaitDrained(shutdownTimeout);
+    if (remaining > 0) {
+      log.warn("Shutting down with inFlight={} requests, shutdownTimeout={} elapsed", remaining, shutdownTimeout);
+    } else {
+      log.info("Server drained, shutting down with inFlight=0 requests");
+    }
+  }
+}
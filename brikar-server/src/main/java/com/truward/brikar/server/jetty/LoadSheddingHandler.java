@@ -0,0 +1,45 @@
+package com.truward.brikar.server.jetty;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Handler, that immediately rejects requests with <code>503 Service Unavailable</code> status code if
+ * associated thread pool has no more room for the new jobs.
+ * This prevents server from piling up requests that would most likely time out on the caller side anyway.
+ * Requests received by connectors, that use their own thread pools (e.g. admin connector), are never rejected.
+ *
+ * @author Alexander Shabanov
+ */
+public class LoadSheddingHandler extends HandlerWrapper {
+  private final MeteredThreadPool threadPool;
+
+  public LoadSheddingHandler(MeteredThreadPool threadPool) {
+    this.threadPool = Objects.requireNonNull(threadPool, "threadPool");
+  }
+
+  @Override
+  public void handle(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    // async dispatches belong to already admitted requests
+    if (threadPool.isSaturated() && baseRequest.getDispatcherType() != DispatcherType.ASYNC &&
+        threadPool.isServing(baseRequest)) {
+      threadPool.recordShedRequest();
+      baseRequest.setHandled(true);
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      response.setContentLength(0);
+      return;
+    }
+
+    super.handle(target, baseRequest, request, response);
+  }
+}
@@ -0,0 +1,239 @@
+package com.truward.brikar.server.jetty;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.AbstractHttpConnection;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Jetty thread pool, that optionally limits size of the job queue and keeps track of its utilization.
+ * <p>
+ * If queue is bounded and full, jetty won't be able to dispatch new jobs to this pool and each such attempt is
+ * counted as rejected dispatch. Requests, that were accepted while pool was saturated may be rejected by
+ * {@link LoadSheddingHandler}, such requests are also counted by this pool.
+ * </p>
+ * <p>
+ * Each job remembers the time it has been dispatched at, so that time, that the job spent in the queue
+ * waiting for a free thread, is available to the thread executing it, see {@link #takeQueueTime()}.
+ * For the connection jobs it is the time between the moment connector noticed request data and the moment
+ * worker thread started processing it.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class MeteredThreadPool extends QueuedThreadPool {
+
+  /**
+   * Name of the servlet context attribute, that holds collection of the metered thread pools of the server.
+   */
+  public static final String ATTRIBUTE = MeteredThreadPool.class.getName();
+
+  /**
+   * Operation name, under which thread pool metrics are reported.
+   */
+  public static final String OPERATION = "JettyThreadPool";
+
+  public static final String POOL = "pool";
+  public static final String THREADS = "threads";
+  public static final String IDLE_THREADS = "idleThreads";
+  public static final String MAX_THREADS = "maxThreads";
+  public static final String QUEUED = "queued";
+  public static final String MAX_QUEUED = "maxQueued";
+  public static final String UTILIZATION = "utilization";
+  public static final String DISPATCH_REJECTED = "dispatchRejected";
+  public static final String SHED = "shed";
+  public static final String EXPIRED = "expired";
+  public static final String MAX_QUEUE_TIME = "maxQueueTime";
+
+  private static final ThreadLocal<long[]> CURRENT_QUEUE_TIME = ThreadLocal.withInitial(() -> new long[] { -1L });
+
+  private final BlockingQueue<Runnable> jobs;
+  private final int maxQueuedJobs;
+  private final AtomicLong dispatchRejectedCount = new AtomicLong();
+  private final AtomicLong shedCount = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+  private final AtomicLong maxQueueTime = new AtomicLong();
+
+  /**
+   * Creates thread pool.
+   *
+   * @param minThreads Minimum number of threads
+   * @param maxThreads Maximum number of threads
+   * @param maxQueued Maximum number of queued jobs, zero or negative value means unbounded queue
+   */
+  public MeteredThreadPool(int minThreads, int maxThreads, int maxQueued) {
+    this(createQueue(minThreads, maxQueued), maxQueued);
+    setMinThreads(minThreads);
+    setMaxThreads(maxThreads);
+  }
+
+  private MeteredThreadPool(BlockingQueue<Runnable> jobs, int maxQueued) {
+    super(jobs);
+    this.jobs = jobs;
+    this.maxQueuedJobs = maxQueued > 0 ? maxQueued : -1;
+  }
+
+  @Override
+  public boolean dispatch(Runnable job) {
+    final boolean dispatched = super.dispatch(new TimedJob(job));
+    if (!dispatched && isRunning()) {
+      dispatchRejectedCount.incrementAndGet();
+    }
+    return dispatched;
+  }
+
+  /**
+   * @return Number of jobs, waiting for a free thread
+   */
+  public int getQueueSize() {
+    return jobs.size();
+  }
+
+  /**
+   * @return Maximum number of queued jobs or negative value if queue is unbounded
+   */
+  public int getMaxQueueSize() {
+    return maxQueuedJobs;
+  }
+
+  /**
+   * @return True, if queue is bounded and has no more room for new jobs
+   */
+  public boolean isSaturated() {
+    return maxQueuedJobs > 0 && jobs.remainingCapacity() == 0;
+  }
+
+  /**
+   * Records the fact that request has been rejected because this pool was saturated.
+   */
+  public void recordShedRequest() {
+    shedCount.incrementAndGet();
+  }
+
+  /**
+   * Records the fact that request has been rejected because it has been waiting in the queue for too long.
+   */
+  public void recordExpiredRequest() {
+    expiredCount.incrementAndGet();
+  }
+
+  /**
+   * Returns time, that the job, executed by the current thread, spent in the queue of the metered thread pool.
+   * Only the first call within the job returns queue time, subsequent calls return zero, so that requests,
+   * processed one after another within the same connection job, are not accounted for the same wait.
+   *
+   * @return Queue time in milliseconds or negative value if current thread doesn't belong to metered thread pool
+   */
+  public static long takeQueueTime() {
+    final long[] queueTime = CURRENT_QUEUE_TIME.get();
+    final long result = queueTime[0];
+    if (result > 0L) {
+      queueTime[0] = 0L;
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether given request is served by this thread pool, requests received by connectors, that use their own
+   * thread pools (e.g. admin connector), are served by other pools.
+   *
+   * @param baseRequest Request
+   * @return True, if request is served by this thread pool
+   */
+  public boolean isServing(@Nonnull Request baseRequest) {
+    final AbstractHttpConnection connection = baseRequest.getConnection();
+    if (connection == null) {
+      return true;
+    }
+
+    final Connector connector = connection.getConnector();
+    return !(connector instanceof AbstractConnector) || ((AbstractConnector) connector).getThreadPool() == this;
+  }
+
+  /**
+   * Returns current pool state as a metrics entry. Rejection counters and maximum queue time are reported as deltas
+   * since the previous call to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    final int threads = getThreads();
+    final int idleThreads = getIdleThreads();
+    final int maxThreads = getMaxThreads();
+
+    final SimpleLapse lapse = new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(POOL, getName())
+        .setProperty(THREADS, threads)
+        .setProperty(IDLE_THREADS, idleThreads)
+        .setProperty(MAX_THREADS, maxThreads)
+        .setProperty(QUEUED, getQueueSize())
+        .setProperty(UTILIZATION, maxThreads > 0 ? ((threads - idleThreads) * 100) / maxThreads : 0)
+        .setProperty(DISPATCH_REJECTED, dispatchRejectedCount.getAndSet(0L))
+        .setProperty(SHED, shedCount.getAndSet(0L))
+        .setProperty(EXPIRED, expiredCount.getAndSet(0L))
+        .setProperty(MAX_QUEUE_TIME, maxQueueTime.getAndSet(0L));
+    if (maxQueuedJobs > 0) {
+      lapse.setProperty(MAX_QUEUED, maxQueuedJobs);
+    }
+    return lapse;
+  }
+
+  //
+  // Private
+  //
+
+  /**
+   * Job, that makes its queue time available to the thread executing it.
+   */
+  private final class TimedJob implements Runnable {
+    private final Runnable job;
+    private final long dispatchTime = System.nanoTime();
+
+    TimedJob(Runnable job) {
+      this.job = job;
+    }
+
+    @Override
+    public void run() {
+      final long queueTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dispatchTime);
+      if (queueTime > maxQueueTime.get()) {
+        maxQueueTime.accumulateAndGet(queueTime, Math::max);
+      }
+
+      final long[] currentQueueTime = CURRENT_QUEUE_TIME.get();
+      currentQueueTime[0] = queueTime;
+      try {
+        job.run();
+      } finally {
+        currentQueueTime[0] = -1L;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return job.toString();
+    }
+  }
+
+  private static BlockingQueue<Runnable> createQueue(int minThreads, int maxQueued) {
+    if (maxQueued > 0) {
+      return new ArrayBlockingQueue<>(maxQueued);
+    }
+
+    // same as jetty's default
+    final int capacity = Math.max(minThreads, 8);
+    return new BlockingArrayQueue<>(capacity, capacity);
+  }
+}
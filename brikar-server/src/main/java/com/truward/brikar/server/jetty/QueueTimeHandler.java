@@ -0,0 +1,71 @@
+package com.truward.brikar.server.jetty;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Handler, that exposes time, that request spent in the queue of the {@link MeteredThreadPool} waiting for
+ * a free worker thread, as request attribute, see {@link #QUEUE_TIME_ATTRIBUTE}.
+ * <p>
+ * Optionally rejects requests with <code>503 Service Unavailable</code> status code if they have been waiting
+ * in the queue for longer than the given amount of time, as callers most likely gave up on them already.
+ * Requests received by connectors, that use their own thread pools (e.g. admin connector), are never rejected.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class QueueTimeHandler extends HandlerWrapper {
+
+  /**
+   * Name of the request attribute, that holds queue time in milliseconds as {@link Long}.
+   */
+  public static final String QUEUE_TIME_ATTRIBUTE = QueueTimeHandler.class.getName() + ".QUEUE_TIME";
+
+  private final MeteredThreadPool threadPool;
+  private final long maxQueueTime;
+
+  /**
+   * Creates queue time handler.
+   *
+   * @param threadPool Thread pool, which requests should be rejected if they have been waiting for too long
+   * @param maxQueueTime Maximum queue time in milliseconds, zero or negative value means no limit
+   */
+  public QueueTimeHandler(MeteredThreadPool threadPool, long maxQueueTime) {
+    this.threadPool = Objects.requireNonNull(threadPool, "threadPool");
+    this.maxQueueTime = maxQueueTime;
+  }
+
+  public long getMaxQueueTime() {
+    return maxQueueTime;
+  }
+
+  @Override
+  public void handle(String target,
+                     Request baseRequest,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, ServletException {
+    final long queueTime = MeteredThreadPool.takeQueueTime();
+
+    // async dispatches belong to already admitted requests
+    if (queueTime >= 0L && baseRequest.getDispatcherType() != DispatcherType.ASYNC) {
+      request.setAttribute(QUEUE_TIME_ATTRIBUTE, queueTime);
+
+      if (maxQueueTime > 0L && queueTime > maxQueueTime && threadPool.isServing(baseRequest)) {
+        threadPool.recordExpiredRequest();
+        baseRequest.setHandled(true);
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentLength(0);
+        return;
+      }
+    }
+
+    super.handle(target, baseRequest, request, response);
+  }
+}
@@ -0,0 +1,295 @@
+package com.truward.brikar.server.jetty;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.eclipse.jetty.io.nio.DirectNIOBuffer;
+import org.eclipse.jetty.util.resource.Resource;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * In-memory cache of static content with LRU eviction and total size budget.
+ * <p>
+ * Small files are held in the heap, files, that are larger than the given threshold and reside in the file
+ * system, are memory-mapped, so that their content is served directly from the OS page cache.
+ * Each cached entry has a strong ETag, derived from its content. Entries are revalidated against underlying
+ * resource not more often than once in the given interval.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class StaticContentCache {
+
+  /**
+   * Operation name, under which cache metrics are reported.
+   */
+  public static final String OPERATION = "StaticContentCache";
+
+  public static final String SIZE = "size";
+  public static final String MAX_SIZE = "maxSize";
+  public static final String ENTRIES = "entries";
+  public static final String HITS = "hits";
+  public static final String MISSES = "misses";
+
+  private final long maxCacheSize;
+  private final long mappedThreshold;
+  private final long revalidateMillis;
+
+  private final Map<String, Content> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long cacheSize; // guarded by entries
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * Creates static content cache.
+   *
+   * @param maxCacheSize Maximum total size of cached content in bytes
+   * @param mappedThreshold Size in bytes, starting from which files are memory-mapped instead of being loaded
+   *                        to the heap
+   * @param revalidateMillis Interval, after which cached content should be checked for modifications
+   */
+  public StaticContentCache(long maxCacheSize, long mappedThreshold, long revalidateMillis) {
+    this.maxCacheSize = maxCacheSize;
+    this.mappedThreshold = mappedThreshold;
+    this.revalidateMillis = revalidateMillis;
+  }
+
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  public long getRevalidateMillis() {
+    return revalidateMillis;
+  }
+
+  /**
+   * Returns cached content without touching the underlying resource, provided that it has been checked for
+   * modifications within revalidation interval.
+   *
+   * @param key Cache key, e.g. request path
+   * @return Cached content or null if there is no such content or it should be revalidated
+   */
+  @Nullable
+  public Content getFreshContent(String key) {
+    final Content content;
+    synchronized (entries) {
+      content = entries.get(key);
+    }
+
+    if (content == null || System.currentTimeMillis() - content.checkedTime >= revalidateMillis) {
+      return null;
+    }
+
+    hitCount.incrementAndGet();
+    return content;
+  }
+
+  /**
+   * Returns cached content of the given resource, loading it if necessary.
+   *
+   * @param key Cache key, e.g. request path
+   * @param resource Resource, which content should be cached
+   * @return Cached content or null if given resource is too large to be cached
+   * @throws IOException On I/O error
+   */
+  @Nullable
+  public Content getContent(String key, Resource resource) throws IOException {
+    final long now = System.currentTimeMillis();
+    Content content;
+    synchronized (entries) {
+      content = entries.get(key);
+    }
+
+    if (content != null) {
+      if (now - content.checkedTime < revalidateMillis) {
+        hitCount.incrementAndGet();
+        return content;
+      }
+
+      if (content.lastModified == resource.lastModified() && content.length == resource.length()) {
+        content.checkedTime = now;
+        hitCount.incrementAndGet();
+        return content;
+      }
+    }
+
+    missCount.incrementAndGet();
+    final long length = resource.length();
+    if (length < 0 || length > maxCacheSize) {
+      remove(key);
+      return null;
+    }
+
+    content = load(resource, now);
+    put(key, content);
+    return content;
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      cacheSize = 0L;
+    }
+  }
+
+  /**
+   * Returns cache state as a metrics entry. Hits and misses are reported as deltas since the previous call to
+   * this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    final long size;
+    final int entryCount;
+    synchronized (entries) {
+      size = cacheSize;
+      entryCount = entries.size();
+    }
+
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(SIZE, size)
+        .setProperty(MAX_SIZE, maxCacheSize)
+        .setProperty(ENTRIES, entryCount)
+        .setProperty(HITS, hitCount.getAndSet(0L))
+        .setProperty(MISSES, missCount.getAndSet(0L));
+  }
+
+  /**
+   * Cached content of a static resource.
+   */
+  public static final class Content {
+    private final ByteBuffer buffer;
+    private final long length;
+    private final long lastModified;
+    private final String etag;
+    private volatile long checkedTime;
+
+    Content(ByteBuffer buffer, long lastModified, String etag, long checkedTime) {
+      this.buffer = buffer;
+      this.length = buffer.remaining();
+      this.lastModified = lastModified;
+      this.etag = etag;
+      this.checkedTime = checkedTime;
+    }
+
+    /**
+     * @return Read-only view of the content, heap or memory-mapped, each call returns a new view
+     */
+    @Nonnull
+    public ByteBuffer getBuffer() {
+      return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Jetty buffer, that wraps the content without copying it, each call returns a new buffer
+     */
+    @Nonnull
+    public Buffer toJettyBuffer() {
+      if (buffer.isDirect()) {
+        return new DirectNIOBuffer(buffer.duplicate(), true);
+      }
+      return new ByteArrayBuffer(buffer.array(), buffer.arrayOffset(), buffer.remaining(), Buffer.IMMUTABLE);
+    }
+
+    public boolean isMapped() {
+      return buffer.isDirect();
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    /**
+     * @return Strong entity tag, including quotes
+     */
+    @Nonnull
+    public String getETag() {
+      return etag;
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private Content load(Resource resource, long now) throws IOException {
+    final long lastModified = resource.lastModified();
+    final File file = resource.getFile();
+    final ByteBuffer buffer;
+    if (file != null && file.length() >= mappedThreshold) {
+      try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    } else {
+      final ByteArrayOutputStream os = new ByteArrayOutputStream((int) Math.max(0L, resource.length()));
+      try (final InputStream is = resource.getInputStream()) {
+        final byte[] chunk = new byte[8192];
+        int read;
+        while ((read = is.read(chunk)) >= 0) {
+          os.write(chunk, 0, read);
+        }
+      }
+      buffer = ByteBuffer.wrap(os.toByteArray());
+    }
+
+    return new Content(buffer, lastModified, createETag(buffer.duplicate()), now);
+  }
+
+  private void put(String key, Content content) {
+    synchronized (entries) {
+      final Content previous = entries.put(key, content);
+      if (previous != null) {
+        cacheSize -= previous.length;
+      }
+      cacheSize += content.length;
+
+      // evict least recently used entries
+      final Iterator<Map.Entry<String, Content>> it = entries.entrySet().iterator();
+      while (cacheSize > maxCacheSize && it.hasNext()) {
+        final Map.Entry<String, Content> entry = it.next();
+        if (entry.getValue() == content) {
+          continue;
+        }
+        cacheSize -= entry.getValue().length;
+        it.remove();
+      }
+    }
+  }
+
+  private void remove(String key) {
+    synchronized (entries) {
+      final Content previous = entries.remove(key);
+      if (previous != null) {
+        cacheSize -= previous.length;
+      }
+    }
+  }
+
+  private static String createETag(ByteBuffer buffer) {
+    final CRC32 crc = new CRC32();
+    crc.update(buffer);
+    return "\"" + Long.toHexString(buffer.limit()) + '-' + Long.toHexString(crc.getValue()) + '"';
+  }
+}
@@ -0,0 +1,59 @@
+package com.truward.brikar.server.jetty;
+
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * NIO connector, that additionally allows to set socket buffer sizes for accepted connections.
+ * <p>
+ * Note, that in jetty 8 each acceptor thread runs its own selector set, so number of acceptors defined
+ * by {@link #setAcceptors(int)} is also a number of selectors used by this connector.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class TunedSelectChannelConnector extends SelectChannelConnector {
+  private int receiveBufferSize = -1;
+  private int sendBufferSize = -1;
+
+  public int getReceiveBufferSize() {
+    return receiveBufferSize;
+  }
+
+  /**
+   * Sets receive buffer size for accepted sockets, zero or negative value means system default.
+   *
+   * @param receiveBufferSize Buffer size in bytes
+   */
+  public void setReceiveBufferSize(int receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
+  public int getSendBufferSize() {
+    return sendBufferSize;
+  }
+
+  /**
+   * Sets send buffer size for accepted sockets, zero or negative value means system default.
+   *
+   * @param sendBufferSize Buffer size in bytes
+   */
+  public void setSendBufferSize(int sendBufferSize) {
+    this.sendBufferSize = sendBufferSize;
+  }
+
+  @Override
+  protected void configure(Socket socket) throws IOException {
+    super.configure(socket);
+
+    if (receiveBufferSize > 0) {
+      socket.setReceiveBufferSize(receiveBufferSize);
+    }
+
+    if (sendBufferSize > 0) {
+      socket.setSendBufferSize(sendBufferSize);
+    }
+  }
+}
@@ -1,10 +1,40 @@
 package com.truward.brikar.server.launcher;
 
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.metric.AsyncMetricsSink;
+import com.truward.brikar.common.log.metric.JvmRuntimeMetrics;
+import com.truward.brikar.common.log.metric.MappedMetricsSink;
+import com.truward.brikar.common.log.metric.PeriodicMetricsReporter;
+import com.truward.brikar.common.log.watchdog.SlowCallWatchdog;
 import com.truward.brikar.server.auth.SimpleAuthenticatorUtil;
 import com.truward.brikar.server.auth.SimpleServiceUser;
+import com.truward.brikar.server.cache.ResponseCache;
+import com.truward.brikar.server.cache.ResponseCacheFilter;
 import com.truward.brikar.server.context.StandardWebApplicationContextInitializer;
+import com.truward.brikar.server.jetty.AdminConnectorHandler;
+import com.truward.brikar.server.jetty.Bulkhead;
+import com.truward.brikar.server.jetty.BulkheadHandler;
+import com.truward.brikar.server.jetty.CachingResourceHandler;
+import com.truward.brikar.server.jetty.CompressionHandler;
+import com.truward.brikar.server.jetty.DrainingServer;
+import com.truward.brikar.server.jetty.LoadSheddingHandler;
+import com.truward.brikar.server.jetty.MeteredThreadPool;
+import com.truward.brikar.server.jetty.QueueTimeHandler;
+import com.truward.brikar.server.jetty.StaticContentCache;
+import com.truward.brikar.server.jetty.TunedSelectChannelConnector;
+import com.truward.brikar.server.limit.AdaptiveConcurrencyLimit;
+import com.truward.brikar.server.limit.ConcurrencyLimitFilter;
+import com.truward.brikar.server.limit.RateLimitFilter;
+import com.truward.brikar.server.limit.RateLimitRule;
+import com.truward.brikar.server.tracking.InFlightRequestFilter;
+import com.truward.brikar.server.tracking.InFlightRequestTracker;
+import com.truward.brikar.server.tracking.RequestLogSampler;
+import com.truward.brikar.server.tracking.RequestThreadTracker;
 import com.truward.brikar.server.tracking.RequestVectorAwareFilter;
 import com.truward.brikar.server.util.JettyResourceUtil;
+import com.truward.time.support.StandardTimeSource;
+import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.HandlerCollection;
@@ -12,18 +42,24 @@ import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.LifeCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.*;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.context.ContextLoaderListener;
 import org.springframework.web.filter.DelegatingFilterProxy;
 import org.springframework.web.servlet.DispatcherServlet;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.*;
@@ -59,8 +95,70 @@ public class StandardLauncher implements AutoCloseable {
   public static final int DEFAULT_PORT = 8080;
 
   /**
-   * A name of a property that should hold a numerical value that represents a time in milliseconds that server
-   * should wait to handle incoming connections before shutting down.
+   * A name of an optional property that should hold a host name or an address, server should listen on.
+   * If omitted, server listens on all the interfaces.
+   */
+  public static final String CONFIG_KEY_HOST = "brikar.settings.host";
+
+  /**
+   * A name of an optional property that should hold comma separated list of additional addresses server should
+   * listen on, each address should be given in a form of <code>[host:]port</code>, for example:
+   * <code>8081,127.0.0.1:8082</code>.
+   */
+  public static final String CONFIG_KEY_EXTRA_CONNECTORS = "brikar.settings.extraConnectors";
+
+  /**
+   * A name of a property that should hold number of acceptor threads per connector.
+   * In jetty 8 each acceptor comes with its own selector, so this is also a number of selectors, and each connector
+   * permanently takes two threads per acceptor from the worker thread pool: one for the acceptor and one for the
+   * selector. Default value is defined by {@link #getDefaultAcceptors()}.
+   */
+  public static final String CONFIG_KEY_ACCEPTORS = "brikar.settings.connector.acceptors";
+
+  /**
+   * A name of a property that should hold size of the queue of pending connections (listen backlog).
+   */
+  public static final String CONFIG_KEY_ACCEPT_QUEUE_SIZE = "brikar.settings.connector.acceptQueueSize";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_ACCEPT_QUEUE_SIZE} does not exist.
+   */
+  public static final int DEFAULT_ACCEPT_QUEUE_SIZE = 256;
+
+  /**
+   * A name of a property that should hold a time in milliseconds after which idle connection is closed.
+   */
+  public static final String CONFIG_KEY_CONNECTOR_IDLE_TIMEOUT = "brikar.settings.connector.idleTimeoutMillis";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_CONNECTOR_IDLE_TIMEOUT} does not exist.
+   * It is intentionally greater than default connection TTL used by brikar clients, so that clients close
+   * keep-alive connections before server does.
+   */
+  public static final int DEFAULT_CONNECTOR_IDLE_TIMEOUT = 90000;
+
+  /**
+   * A name of a property that should hold a time in milliseconds after which idle connection is closed if
+   * server is low on worker threads. Negative value means the same value as {@link #CONFIG_KEY_CONNECTOR_IDLE_TIMEOUT}.
+   */
+  public static final String CONFIG_KEY_CONNECTOR_LOW_RESOURCES_IDLE_TIMEOUT =
+      "brikar.settings.connector.lowResourcesIdleTimeoutMillis";
+
+  /**
+   * A name of a property that should hold receive buffer size for accepted sockets, negative value means
+   * system default.
+   */
+  public static final String CONFIG_KEY_RECEIVE_BUFFER_SIZE = "brikar.settings.connector.receiveBufferSize";
+
+  /**
+   * A name of a property that should hold send buffer size for accepted sockets, negative value means
+   * system default.
+   */
+  public static final String CONFIG_KEY_SEND_BUFFER_SIZE = "brikar.settings.connector.sendBufferSize";
+
+  /**
+   * A name of a property that should hold a numerical value that represents maximum time in milliseconds that server
+   * should wait for in-flight requests to complete before shutting down.
    */
   public static final String CONFIG_KEY_SHUTDOWN_DELAY = "brikar.settings.gracefulShutdownMillis";
 
@@ -69,6 +167,421 @@ public class StandardLauncher implements AutoCloseable {
    */
   public static final int DEFAULT_SHUTDOWN_DELAY = 5000;
 
+  /**
+   * A name of a property that should hold a time in milliseconds, during which server, that is shutting down,
+   * reports itself as draining via health check while still accepting new connections, so that load balancers
+   * can stop sending new requests to it. Afterwards server stops accepting connections and waits for in-flight
+   * requests, but no longer than {@link #CONFIG_KEY_SHUTDOWN_DELAY}.
+   */
+  public static final String CONFIG_KEY_DRAIN_DELAY = "brikar.settings.drainDelayMillis";
+
+  /**
+   * A name of a property that should hold minimum number of threads in jetty's worker thread pool.
+   */
+  public static final String CONFIG_KEY_MIN_THREADS = "brikar.settings.threadPool.minThreads";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_MIN_THREADS} does not exist.
+   */
+  public static final int DEFAULT_MIN_THREADS = 8;
+
+  /**
+   * A name of a property that should hold maximum number of threads in jetty's worker thread pool.
+   * It includes threads, permanently taken by the connectors, see {@link #CONFIG_KEY_ACCEPTORS}.
+   */
+  public static final String CONFIG_KEY_MAX_THREADS = "brikar.settings.threadPool.maxThreads";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_MAX_THREADS} does not exist.
+   */
+  public static final int DEFAULT_MAX_THREADS = 200;
+
+  /**
+   * A name of a property that should hold a time in milliseconds after which idle worker thread is stopped
+   * unless number of threads in the pool is equal to {@link #CONFIG_KEY_MIN_THREADS}.
+   */
+  public static final String CONFIG_KEY_THREAD_IDLE_TIMEOUT = "brikar.settings.threadPool.idleTimeoutMillis";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_THREAD_IDLE_TIMEOUT} does not exist.
+   */
+  public static final int DEFAULT_THREAD_IDLE_TIMEOUT = 60000;
+
+  /**
+   * A name of a property that should hold maximum number of requests waiting for a free worker thread.
+   * Zero or negative value means unbounded queue.
+   */
+  public static final String CONFIG_KEY_MAX_QUEUED = "brikar.settings.threadPool.maxQueued";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_MAX_QUEUED} does not exist.
+   */
+  public static final int DEFAULT_MAX_QUEUED = -1;
+
+  /**
+   * A name of a boolean property that tells whether or not server should immediately reject requests with
+   * <code>503</code> status code once worker queue is full. Has no effect if queue is unbounded.
+   */
+  public static final String CONFIG_KEY_LOAD_SHEDDING = "brikar.settings.threadPool.loadShedding";
+
+  /**
+   * A name of a property that should hold maximum time in milliseconds, that request may wait in the worker queue.
+   * Requests, that waited longer, are rejected with <code>503</code> status code. Zero value means no limit.
+   * Queue time is always logged as <code>tQueue</code> attribute of the request lapse.
+   */
+  public static final String CONFIG_KEY_MAX_QUEUE_TIME = "brikar.settings.threadPool.maxQueueTimeMillis";
+
+  /**
+   * A name of a property that should hold a time in milliseconds between two subsequent reports of server
+   * metrics, such as thread pool utilization. Zero or negative value disables reporting.
+   */
+  public static final String CONFIG_KEY_METRICS_REPORT_INTERVAL = "brikar.settings.metrics.reportIntervalMillis";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_METRICS_REPORT_INTERVAL} does not exist.
+   */
+  public static final long DEFAULT_METRICS_REPORT_INTERVAL = 60000L;
+
+  /**
+   * A name of a property that should hold interval in milliseconds, with which JVM runtime metrics, such as heap
+   * usage and garbage collections, are written to the logs, see also {@link JvmRuntimeMetrics}.
+   * Zero or negative value disables JVM runtime metrics.
+   */
+  public static final String CONFIG_KEY_METRICS_JVM_RUNTIME_INTERVAL =
+      "brikar.settings.metrics.jvmRuntimeIntervalMillis";
+
+  /**
+   * A name of a property that should hold size of the buffer of metrics, that are written to the logs by
+   * a background thread, see also {@link AsyncMetricsSink}. Zero means, that metrics are written synchronously
+   * by the threads, that record them.
+   */
+  public static final String CONFIG_KEY_METRICS_ASYNC_BUFFER_SIZE = "brikar.settings.metrics.asyncBufferSize";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_METRICS_ASYNC_BUFFER_SIZE} does not exist,
+   * metrics are written synchronously unless services opt in.
+   */
+  public static final int DEFAULT_METRICS_ASYNC_BUFFER_SIZE = 0;
+
+  /**
+   * A name of a property that should hold maximum number of metric entries, written by the background thread
+   * in one batch.
+   */
+  public static final String CONFIG_KEY_METRICS_ASYNC_BATCH_SIZE = "brikar.settings.metrics.asyncBatchSize";
+
+  /**
+   * A name of a property that tells what to do with metrics, that don't fit into the buffer: <code>DROP</code>
+   * (default) drops and counts them, <code>BLOCK</code> makes recording thread wait for the free space.
+   */
+  public static final String CONFIG_KEY_METRICS_ASYNC_OVERFLOW_POLICY = "brikar.settings.metrics.asyncOverflowPolicy";
+
+  /**
+   * A name of a property that should hold maximum number of operations, which latency histograms are kept in memory
+   * and reported by <code>/g/admin/latency</code>, see also {@link LatencyHistogramRegistry}.
+   * Zero disables latency histograms.
+   */
+  public static final String CONFIG_KEY_METRICS_LATENCY_MAX_OPERATIONS = "brikar.settings.metrics.latencyMaxOperations";
+
+  /**
+   * A name of a property that should hold path to the memory-mapped file, where latency histograms and server gauges
+   * are periodically published for sidecar processes, see also {@link MappedMetricsSink}.
+   * Empty or missing value disables memory-mapped metrics.
+   */
+  public static final String CONFIG_KEY_METRICS_MAPPED_FILE = "brikar.settings.metrics.mappedFile";
+
+  /**
+   * A name of a property that should hold maximum number of histograms and gauges in the memory-mapped metrics file,
+   * see {@link #CONFIG_KEY_METRICS_MAPPED_FILE}.
+   */
+  public static final String CONFIG_KEY_METRICS_MAPPED_FILE_SLOTS = "brikar.settings.metrics.mappedFileSlots";
+
+  /**
+   * A name of a property that should hold period in milliseconds, with which memory-mapped metrics file is updated,
+   * see {@link #CONFIG_KEY_METRICS_MAPPED_FILE}.
+   */
+  public static final String CONFIG_KEY_METRICS_MAPPED_FILE_PERIOD = "brikar.settings.metrics.mappedFilePeriodMillis";
+
+  /**
+   * A name of a boolean property that tells whether CPU time and allocated bytes of each request should be logged
+   * along with the request lapse, see also {@link com.truward.brikar.common.log.metric.ResourceUsage}.
+   */
+  public static final String CONFIG_KEY_RESOURCE_USAGE_ENABLED = "brikar.settings.metrics.resourceUsage";
+
+  /**
+   * A name of a property that should hold a share of successful requests in <code>[0, 1]</code> range, which
+   * metrics should be logged. Failed, slow and debug requests are always logged, see also {@link RequestLogSampler}.
+   */
+  public static final String CONFIG_KEY_REQUEST_LOG_SAMPLE_RATE = "brikar.settings.requestLog.sampleRate";
+
+  /**
+   * A name of a property that should hold default slow request threshold in milliseconds, metrics of the requests,
+   * that take longer, are always logged. Zero or negative value means no threshold.
+   */
+  public static final String CONFIG_KEY_REQUEST_LOG_SLOW_THRESHOLD = "brikar.settings.requestLog.slowThresholdMillis";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_REQUEST_LOG_SLOW_THRESHOLD} does not exist.
+   */
+  public static final long DEFAULT_REQUEST_LOG_SLOW_THRESHOLD = 1000L;
+
+  /**
+   * A name of an optional property that should hold comma separated list of per-operation slow request thresholds
+   * in milliseconds, for example:
+   * <pre>
+   * brikar.settings.requestLog.slowThresholds=GET_/api/reports/{id}=5000,POST_/api/reports=10000
+   * </pre>
+   */
+  public static final String CONFIG_KEY_REQUEST_LOG_SLOW_THRESHOLDS = "brikar.settings.requestLog.slowThresholds";
+
+  /**
+   * A name of a property that should hold name of the request header, which presence tells that request metrics
+   * should always be logged, default value is {@link RequestLogSampler#DEFAULT_DEBUG_HEADER}.
+   */
+  public static final String CONFIG_KEY_REQUEST_LOG_DEBUG_HEADER = "brikar.settings.requestLog.debugHeader";
+
+  /**
+   * A name of a property that should hold default slow call threshold in milliseconds, stacks of the requests and
+   * {@link com.truward.brikar.common.log.LogLapse} calls, that take longer, are sampled and logged along with their
+   * lapses, see also {@link SlowCallWatchdog}. Zero or negative value means no threshold, slow calls are not tracked
+   * if neither this property nor {@link #CONFIG_KEY_SLOW_CALLS_THRESHOLDS} is set.
+   */
+  public static final String CONFIG_KEY_SLOW_CALLS_THRESHOLD = "brikar.settings.slowCalls.thresholdMillis";
+
+  /**
+   * A name of an optional property that should hold comma separated list of slow call thresholds in milliseconds
+   * by operation name prefix, for example:
+   * <pre>
+   * brikar.settings.slowCalls.thresholds=GET_/api/reports=5000,ReportDao.=500
+   * </pre>
+   */
+  public static final String CONFIG_KEY_SLOW_CALLS_THRESHOLDS = "brikar.settings.slowCalls.thresholds";
+
+  /**
+   * A name of a property that should hold period in milliseconds, with which slow calls are checked and their stacks
+   * are sampled, see {@link #CONFIG_KEY_SLOW_CALLS_THRESHOLD}.
+   */
+  public static final String CONFIG_KEY_SLOW_CALLS_PERIOD = "brikar.settings.slowCalls.periodMillis";
+
+  /**
+   * A name of a property that should hold maximum number of stack samples of a slow call.
+   */
+  public static final String CONFIG_KEY_SLOW_CALLS_MAX_SAMPLES = "brikar.settings.slowCalls.maxSamples";
+
+  /**
+   * A name of a property that should hold maximum number of the innermost frames of a stack sample.
+   */
+  public static final String CONFIG_KEY_SLOW_CALLS_MAX_DEPTH = "brikar.settings.slowCalls.maxDepth";
+
+  /**
+   * A name of an optional property that should hold a port number of dedicated admin connector.
+   * Admin connector uses its own small thread pool, so that admin and health check endpoints stay responsive
+   * even if worker thread pool is fully saturated. Admin connector is disabled if this property is omitted.
+   */
+  public static final String CONFIG_KEY_ADMIN_PORT = "brikar.settings.admin.port";
+
+  /**
+   * A name of an optional property that should hold a host name or an address, admin connector should listen on.
+   */
+  public static final String CONFIG_KEY_ADMIN_HOST = "brikar.settings.admin.host";
+
+  /**
+   * A name of a property that should hold maximum number of threads, that process requests in the admin connector
+   * thread pool. Two more threads, permanently taken by the acceptor and the selector of the admin connector,
+   * are added on top of it, see also {@link #ADMIN_CONNECTOR_RESERVED_THREADS}.
+   */
+  public static final String CONFIG_KEY_ADMIN_MAX_THREADS = "brikar.settings.admin.maxThreads";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_ADMIN_MAX_THREADS} does not exist.
+   */
+  public static final int DEFAULT_ADMIN_MAX_THREADS = 4;
+
+  /**
+   * Number of threads of the admin connector thread pool, permanently taken by its only acceptor and selector.
+   */
+  public static final int ADMIN_CONNECTOR_RESERVED_THREADS = 2;
+
+  /**
+   * A name of a property that should hold comma separated list of path prefixes, served by admin connector.
+   * Applications, that use RPC explorer, may add its servlet path here.
+   */
+  public static final String CONFIG_KEY_ADMIN_PATHS = "brikar.settings.admin.paths";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_ADMIN_PATHS} does not exist.
+   */
+  public static final String DEFAULT_ADMIN_PATHS = "/g/admin,/api/health";
+
+  /**
+   * A name of a boolean property that tells whether admin paths should be served by admin connector only.
+   */
+  public static final String CONFIG_KEY_ADMIN_EXCLUSIVE = "brikar.settings.admin.exclusive";
+
+  /**
+   * A name of an optional property that should hold comma separated list of bulkhead names. Each bulkhead limits
+   * number of concurrently processed requests for a certain path prefix and should be configured using properties,
+   * starting with {@link #CONFIG_KEY_BULKHEAD_PREFIX} followed by bulkhead name, for example:
+   * <pre>
+   * brikar.settings.bulkheads=reports
+   * brikar.settings.bulkhead.reports.pathPrefix=/api/reports
+   * brikar.settings.bulkhead.reports.maxConcurrent=10
+   * brikar.settings.bulkhead.reports.maxQueued=20
+   * brikar.settings.bulkhead.reports.maxWaitMillis=500
+   * brikar.settings.bulkhead.reports.rejectionStatus=503
+   * </pre>
+   */
+  public static final String CONFIG_KEY_BULKHEADS = "brikar.settings.bulkheads";
+
+  /**
+   * Prefix for the individual bulkhead properties, see also {@link #CONFIG_KEY_BULKHEADS}.
+   */
+  public static final String CONFIG_KEY_BULKHEAD_PREFIX = "brikar.settings.bulkhead.";
+
+  /**
+   * Default maximum number of concurrently processed requests within a bulkhead.
+   */
+  public static final int DEFAULT_BULKHEAD_MAX_CONCURRENT = 10;
+
+  /**
+   * A name of a boolean property that tells whether adaptive concurrency limit should be used.
+   * Adaptive concurrency limit adjusts allowed number of concurrently processed requests based on observed latency
+   * and rejects requests, that exceed the limit, see also {@link AdaptiveConcurrencyLimit}.
+   * Requests to admin paths, see {@link #CONFIG_KEY_ADMIN_PATHS}, are never limited.
+   */
+  public static final String CONFIG_KEY_CONCURRENCY_LIMIT_ENABLED = "brikar.settings.concurrencyLimit.enabled";
+
+  /**
+   * A name of a property that should hold initial adaptive concurrency limit.
+   */
+  public static final String CONFIG_KEY_CONCURRENCY_LIMIT_INITIAL = "brikar.settings.concurrencyLimit.initialLimit";
+
+  /**
+   * A name of a property that should hold minimum adaptive concurrency limit.
+   */
+  public static final String CONFIG_KEY_CONCURRENCY_LIMIT_MIN = "brikar.settings.concurrencyLimit.minLimit";
+
+  /**
+   * A name of a property that should hold maximum adaptive concurrency limit, default value is equal to
+   * the maximum number of worker threads.
+   */
+  public static final String CONFIG_KEY_CONCURRENCY_LIMIT_MAX = "brikar.settings.concurrencyLimit.maxLimit";
+
+  /**
+   * A name of a property that should hold number of latency samples, after which concurrency limit is recalculated.
+   */
+  public static final String CONFIG_KEY_CONCURRENCY_LIMIT_WINDOW = "brikar.settings.concurrencyLimit.windowSize";
+
+  /**
+   * A name of a property that should hold a factor in <code>(0, 1]</code> range, which defines how fast
+   * concurrency limit changes.
+   */
+  public static final String CONFIG_KEY_CONCURRENCY_LIMIT_SMOOTHING = "brikar.settings.concurrencyLimit.smoothing";
+
+  /**
+   * A name of an optional property that should hold comma separated list of per-caller rate limit names. Each rate
+   * limit applies to the requests matching ant-style path pattern and should be configured using properties,
+   * starting with {@link #CONFIG_KEY_RATE_LIMIT_PREFIX} followed by rate limit name, for example:
+   * <pre>
+   * brikar.settings.rateLimits=reports,api
+   * brikar.settings.rateLimit.reports.pathPattern=/api/reports/**
+   * brikar.settings.rateLimit.reports.permitsPerSecond=5
+   * brikar.settings.rateLimit.reports.burst=10
+   * brikar.settings.rateLimit.api.pathPattern=/api/**
+   * brikar.settings.rateLimit.api.permitsPerSecond=100
+   * </pre>
+   * The first matching rate limit is applied, callers are identified by authenticated principal or client address.
+   */
+  public static final String CONFIG_KEY_RATE_LIMITS = "brikar.settings.rateLimits";
+
+  /**
+   * Prefix for the individual rate limit properties, see also {@link #CONFIG_KEY_RATE_LIMITS}.
+   */
+  public static final String CONFIG_KEY_RATE_LIMIT_PREFIX = "brikar.settings.rateLimit.";
+
+  /**
+   * A name of a boolean property that tells whether responses should be compressed and compressed requests should
+   * be decompressed, see also {@link CompressionHandler}.
+   */
+  public static final String CONFIG_KEY_COMPRESSION_ENABLED = "brikar.settings.compression.enabled";
+
+  /**
+   * A name of a property that should hold minimum size of the response in bytes, that should be compressed.
+   */
+  public static final String CONFIG_KEY_COMPRESSION_MIN_SIZE = "brikar.settings.compression.minSize";
+
+  /**
+   * A name of a property that should hold comma separated list of MIME types of the responses,
+   * that should be compressed.
+   */
+  public static final String CONFIG_KEY_COMPRESSION_MIME_TYPES = "brikar.settings.compression.mimeTypes";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_COMPRESSION_MIME_TYPES} does not exist.
+   */
+  public static final String DEFAULT_COMPRESSION_MIME_TYPES = "application/json,application/x-protobuf," +
+      "application/javascript,application/xml,text/plain,text/html,text/css,text/xml";
+
+  /**
+   * A name of a property that should hold compression level from 1 (fastest) to 9 (best compression),
+   * default compression level is used if this property does not exist.
+   */
+  public static final String CONFIG_KEY_COMPRESSION_LEVEL = "brikar.settings.compression.level";
+
+  /**
+   * A name of a boolean property that tells whether requests, sent with gzip or deflate content encoding,
+   * should be decompressed, enabled by default if compression is enabled.
+   */
+  public static final String CONFIG_KEY_REQUEST_DECOMPRESSION_ENABLED =
+      "brikar.settings.compression.requestDecompression";
+
+  /**
+   * A name of a property that should hold maximum size of the decompressed request body in bytes, 8 megabytes
+   * by default, <code>-1</code> disables the limit.
+   */
+  public static final String CONFIG_KEY_MAX_DECOMPRESSED_REQUEST_SIZE =
+      "brikar.settings.compression.maxDecompressedRequestSize";
+
+  /**
+   * A name of a property that should hold maximum total size of the static content, cached in memory, in bytes.
+   * Zero value disables static content cache.
+   */
+  public static final String CONFIG_KEY_STATIC_CACHE_MAX_SIZE = "brikar.settings.staticCache.maxSize";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_STATIC_CACHE_MAX_SIZE} does not exist.
+   */
+  public static final long DEFAULT_STATIC_CACHE_MAX_SIZE = 32L * 1024L * 1024L;
+
+  /**
+   * A name of a property that should hold size of static files in bytes, starting from which they are
+   * memory-mapped instead of being loaded to the heap.
+   */
+  public static final String CONFIG_KEY_STATIC_CACHE_MAPPED_THRESHOLD = "brikar.settings.staticCache.mappedThreshold";
+
+  /**
+   * A name of a property that should hold interval in milliseconds, after which cached static content is checked
+   * for modifications.
+   */
+  public static final String CONFIG_KEY_STATIC_CACHE_REVALIDATE_MILLIS =
+      "brikar.settings.staticCache.revalidateMillis";
+
+  /**
+   * A name of a property that should hold maximum total size of the cached responses of the handlers, marked with
+   * {@link com.truward.brikar.server.cache.CacheableResponse}, in bytes. Zero value disables response cache.
+   */
+  public static final String CONFIG_KEY_RESPONSE_CACHE_MAX_SIZE = "brikar.settings.responseCache.maxSize";
+
+  /**
+   * Default value, which will be used if property {@link #CONFIG_KEY_RESPONSE_CACHE_MAX_SIZE} does not exist.
+   */
+  public static final long DEFAULT_RESPONSE_CACHE_MAX_SIZE = 16L * 1024L * 1024L;
+
+  /**
+   * A name of a property that should hold maximum time in milliseconds, during which request waits for
+   * the identical request, that is being processed, to reuse its response.
+   */
+  public static final String CONFIG_KEY_RESPONSE_CACHE_MAX_WAIT = "brikar.settings.responseCache.maxWaitMillis";
+
   /**
    * An optional system property that should contain a path to the comma separated property files that should override
    * default properties.
@@ -153,8 +666,21 @@ public class StandardLauncher implements AutoCloseable {
   private final PropertyResolver propertyResolver;
   private final PropertySource<?> propertySource;
   private final String defaultDirPrefix;
+  private final InFlightRequestTracker inFlightRequestTracker = new InFlightRequestTracker();
+  private final RequestThreadTracker requestThreadTracker = new RequestThreadTracker();
   private AutoCloseable propertySourceCloseableRegistration;
   private ServletContextHandler contextHandler;
+  private MeteredThreadPool threadPool;
+  private TunedSelectChannelConnector adminConnector;
+  private List<Bulkhead> bulkheads = Collections.emptyList();
+  private AdaptiveConcurrencyLimit concurrencyLimit;
+  private List<RateLimitRule> rateLimitRules = Collections.emptyList();
+  private StaticContentCache staticContentCache;
+  private ResponseCache responseCache;
+  private RequestLogSampler requestLogSampler;
+  private AsyncMetricsSink metricsSink;
+  private MappedMetricsSink mappedMetricsSink;
+  private SlowCallWatchdog slowCallWatchdog;
   private boolean simpleSecurityEnabled;
   private boolean requestVectorOperationsEnabled;
   private String authPropertiesPrefix = "auth";
@@ -292,23 +818,67 @@ public class StandardLauncher implements AutoCloseable {
     final int port = propertyResolver.getProperty(CONFIG_KEY_PORT, Integer.class, DEFAULT_PORT);
     getLogger().info("About to start server. Use port={}", port);
 
-    final Server server = new Server(port);
+    final Server server = new DrainingServer();
+    threadPool = createThreadPool();
+    server.setThreadPool(threadPool);
     setServerSettings(server);
 
     contextHandler = new ServletContextHandler(servletContextOptions);
     contextHandler.setContextPath("/");
     //contextHandler.setSessionHandler();
+    contextHandler.setAttribute(MeteredThreadPool.ATTRIBUTE, getMeteredThreadPools());
     initSpringContext();
 
     final HandlerCollection handlerList = new HandlerCollection();
     final List<Handler> handlers = getHandlers();
     handlerList.setHandlers(handlers.toArray(new Handler[handlers.size()]));
-    server.setHandler(handlerList);
+    server.setHandler(wrapRootHandler(handlerList));
 
     setShutdownStrategy(server);
 
-    server.start();
-    server.join();
+    initLatencyHistograms();
+
+    metricsSink = createMetricsSink();
+    if (metricsSink != null) {
+      LogUtil.setMetricsSink(metricsSink);
+    }
+
+    mappedMetricsSink = createMappedMetricsSink();
+
+    slowCallWatchdog = createSlowCallWatchdog();
+    if (slowCallWatchdog != null) {
+      SlowCallWatchdog.setDefault(slowCallWatchdog);
+    }
+
+    // flush metrics once server stops, when server is stopped by the shutdown hook JVM may halt before
+    // server.join() returns
+    server.addLifeCycleListener(new AbstractLifeCycle.AbstractLifeCycleListener() {
+      @Override
+      public void lifeCycleStopped(LifeCycle event) {
+        closeMetricsSinks();
+      }
+    });
+
+    try (final PeriodicMetricsReporter metricsReporter = createMetricsReporter();
+         final PeriodicMetricsReporter jvmRuntimeReporter = createJvmRuntimeReporter()) {
+      server.start();
+      if (metricsReporter != null) {
+        metricsReporter.start();
+      }
+      if (jvmRuntimeReporter != null) {
+        jvmRuntimeReporter.start();
+      }
+      if (mappedMetricsSink != null) {
+        mappedMetricsSink.start(propertyResolver.getProperty(CONFIG_KEY_METRICS_MAPPED_FILE_PERIOD, Long.class,
+            1000L));
+      }
+      if (slowCallWatchdog != null) {
+        slowCallWatchdog.start(propertyResolver.getProperty(CONFIG_KEY_SLOW_CALLS_PERIOD, Long.class, 100L));
+      }
+      server.join();
+    } finally {
+      closeMetricsSinks();
+    }
     return this;
   }
 
@@ -371,6 +941,10 @@ public class StandardLauncher implements AutoCloseable {
    * </code>
    * However this is usually not something
    * </p>
+   * <p>
+   * Filters, added by overrides, should be marked as async supported, otherwise requests, that pass through them,
+   * can't be processed asynchronously.
+   * </p>
    *
    * @param contextHandler Servlet context handler
    */
@@ -382,24 +956,184 @@ public class StandardLauncher implements AutoCloseable {
     if (requestVectorOperationsEnabled) {
       initRequestVectorOperations(contextHandler);
     }
+
+    rateLimitRules = createRateLimitRules();
+    if (!rateLimitRules.isEmpty()) {
+      initRateLimit(contextHandler);
+    }
+
+    if (propertyResolver.getProperty(CONFIG_KEY_CONCURRENCY_LIMIT_ENABLED, Boolean.class, false)) {
+      initConcurrencyLimit(contextHandler);
+    }
+
+    responseCache = createResponseCache();
+    if (responseCache != null) {
+      initResponseCache(contextHandler);
+    }
+  }
+
+  /**
+   * Adds filter, that counts in-flight requests, and exposes in-flight request tracker to the health check via
+   * servlet context attribute.
+   *
+   * @param contextHandler Servlet context handler
+   */
+  protected void initInFlightRequestTracking(@Nonnull ServletContextHandler contextHandler) {
+    contextHandler.setAttribute(InFlightRequestTracker.ATTRIBUTE, inFlightRequestTracker);
+
+    final FilterHolder holder = new FilterHolder(new InFlightRequestFilter(inFlightRequestTracker));
+    holder.setName("inFlightRequests");
+    holder.setAsyncSupported(true);
+    contextHandler.addFilter(holder, "/*", EnumSet.of(DispatcherType.REQUEST));
   }
 
   protected void initSpringSecurity(@Nonnull ServletContextHandler contextHandler) {
     final FilterHolder holder = new FilterHolder(DelegatingFilterProxy.class);
     holder.setName("springSecurityFilterChain");
+    holder.setAsyncSupported(true);
     contextHandler.addFilter(holder, "/*", EnumSet.allOf(DispatcherType.class));
   }
 
   protected void initRequestVectorOperations(@Nonnull ServletContextHandler contextHandler) {
-    final FilterHolder holder = new FilterHolder(RequestVectorAwareFilter.class);
+    requestLogSampler = createRequestLogSampler();
+    final RequestVectorAwareFilter filter = new RequestVectorAwareFilter();
+    filter.setSampler(requestLogSampler);
+    filter.setRequestThreadTracker(requestThreadTracker);
+    contextHandler.setAttribute(RequestThreadTracker.ATTRIBUTE, requestThreadTracker);
+
+    final FilterHolder holder = new FilterHolder(filter);
     holder.setName("requestVectorAware");
+    holder.setAsyncSupported(true);
+    holder.setInitParameter(RequestVectorAwareFilter.RESOURCE_USAGE_ENABLED_PARAMETER,
+        propertyResolver.getProperty(CONFIG_KEY_RESOURCE_USAGE_ENABLED, "false"));
     contextHandler.addFilter(holder, "/*", EnumSet.allOf(DispatcherType.class));
   }
 
+  /**
+   * Creates sampler of request metrics, see {@link #CONFIG_KEY_REQUEST_LOG_SAMPLE_RATE}.
+   *
+   * @return Request log sampler or null, if metrics of each request should be logged without accounting
+   */
+  @Nullable
+  protected RequestLogSampler createRequestLogSampler() {
+    final RequestLogSampler result = new RequestLogSampler(
+        propertyResolver.getProperty(CONFIG_KEY_REQUEST_LOG_SAMPLE_RATE, Double.class, 1.0),
+        propertyResolver.getProperty(CONFIG_KEY_REQUEST_LOG_SLOW_THRESHOLD, Long.class,
+            DEFAULT_REQUEST_LOG_SLOW_THRESHOLD),
+        getOperationThresholds(CONFIG_KEY_REQUEST_LOG_SLOW_THRESHOLDS),
+        propertyResolver.getProperty(CONFIG_KEY_REQUEST_LOG_DEBUG_HEADER, RequestLogSampler.DEFAULT_DEBUG_HEADER));
+    getLogger().info("Using {}", result);
+    return result;
+  }
+
+  /**
+   * Creates watchdog, that samples stacks of the slow requests and {@link com.truward.brikar.common.log.LogLapse}
+   * calls, see {@link #CONFIG_KEY_SLOW_CALLS_THRESHOLD}.
+   *
+   * @return Slow call watchdog or null, if slow calls should not be tracked
+   */
+  @Nullable
+  protected SlowCallWatchdog createSlowCallWatchdog() {
+    final long threshold = propertyResolver.getProperty(CONFIG_KEY_SLOW_CALLS_THRESHOLD, Long.class, 0L);
+    final Map<String, Long> operationThresholds = getOperationThresholds(CONFIG_KEY_SLOW_CALLS_THRESHOLDS);
+    if (threshold <= 0L && operationThresholds.isEmpty()) {
+      return null;
+    }
+
+    final SlowCallWatchdog result = new SlowCallWatchdog(threshold, operationThresholds,
+        propertyResolver.getProperty(CONFIG_KEY_SLOW_CALLS_MAX_SAMPLES, Integer.class,
+            SlowCallWatchdog.DEFAULT_MAX_SAMPLES),
+        propertyResolver.getProperty(CONFIG_KEY_SLOW_CALLS_MAX_DEPTH, Integer.class,
+            SlowCallWatchdog.DEFAULT_MAX_DEPTH));
+    getLogger().info("Using {}", result);
+    return result;
+  }
+
+  protected void initRateLimit(@Nonnull ServletContextHandler contextHandler) {
+    final FilterHolder holder = new FilterHolder(new RateLimitFilter(rateLimitRules));
+    holder.setName("rateLimit");
+    holder.setAsyncSupported(true);
+    contextHandler.addFilter(holder, "/*", EnumSet.of(DispatcherType.REQUEST));
+  }
+
+  /**
+   * Creates per-caller rate limits, defined by {@link #CONFIG_KEY_RATE_LIMITS} property.
+   *
+   * @return List of rate limit rules
+   */
+  @Nonnull
+  protected List<RateLimitRule> createRateLimitRules() {
+    final List<RateLimitRule> result = new ArrayList<>();
+    for (final String name : StringUtils.commaDelimitedListToStringArray(
+        propertyResolver.getProperty(CONFIG_KEY_RATE_LIMITS, ""))) {
+      final String trimmedName = name.trim();
+      if (trimmedName.isEmpty()) {
+        continue;
+      }
+
+      final String prefix = CONFIG_KEY_RATE_LIMIT_PREFIX + trimmedName + '.';
+      final double permitsPerSecond = propertyResolver.getRequiredProperty(prefix + "permitsPerSecond", Double.class);
+      final RateLimitRule rule = new RateLimitRule(
+          trimmedName,
+          propertyResolver.getRequiredProperty(prefix + "pathPattern"),
+          permitsPerSecond,
+          propertyResolver.getProperty(prefix + "burst", Integer.class, (int) Math.ceil(permitsPerSecond)));
+      getLogger().info("Using {}", rule);
+      result.add(rule);
+    }
+
+    return result;
+  }
+
+  protected void initConcurrencyLimit(@Nonnull ServletContextHandler contextHandler) {
+    concurrencyLimit = new AdaptiveConcurrencyLimit(
+        LoggerFactory.getLogger("BrikarRequestLogger"),
+        propertyResolver.getProperty(CONFIG_KEY_CONCURRENCY_LIMIT_INITIAL, Integer.class, 20),
+        propertyResolver.getProperty(CONFIG_KEY_CONCURRENCY_LIMIT_MIN, Integer.class, 4),
+        propertyResolver.getProperty(CONFIG_KEY_CONCURRENCY_LIMIT_MAX, Integer.class,
+            propertyResolver.getProperty(CONFIG_KEY_MAX_THREADS, Integer.class, DEFAULT_MAX_THREADS)),
+        propertyResolver.getProperty(CONFIG_KEY_CONCURRENCY_LIMIT_WINDOW, Integer.class, 100),
+        propertyResolver.getProperty(CONFIG_KEY_CONCURRENCY_LIMIT_SMOOTHING, Double.class, 0.2));
+    getLogger().info("Using {}", concurrencyLimit);
+
+    final FilterHolder holder = new FilterHolder(new ConcurrencyLimitFilter(concurrencyLimit, getAdminPaths()));
+    holder.setName("concurrencyLimit");
+    holder.setAsyncSupported(true);
+    contextHandler.addFilter(holder, "/*", EnumSet.of(DispatcherType.REQUEST));
+  }
+
+  /**
+   * Adds filter, that allows {@link com.truward.brikar.server.cache.ResponseCacheInterceptor} to cache responses,
+   * see also {@link #CONFIG_KEY_RESPONSE_CACHE_MAX_SIZE}.
+   *
+   * @param contextHandler Servlet context handler
+   */
+  protected void initResponseCache(@Nonnull ServletContextHandler contextHandler) {
+    final FilterHolder holder = new FilterHolder(new ResponseCacheFilter(responseCache));
+    holder.setName("responseCache");
+    holder.setAsyncSupported(true);
+    contextHandler.addFilter(holder, "/*", EnumSet.of(DispatcherType.REQUEST));
+  }
+
+  @Nullable
+  protected ResponseCache createResponseCache() {
+    final long maxSize = propertyResolver.getProperty(CONFIG_KEY_RESPONSE_CACHE_MAX_SIZE, Long.class,
+        DEFAULT_RESPONSE_CACHE_MAX_SIZE);
+    if (maxSize <= 0L) {
+      return null;
+    }
+
+    final long maxWaitMillis = propertyResolver.getProperty(CONFIG_KEY_RESPONSE_CACHE_MAX_WAIT, Long.class, 5000L);
+    getLogger().info("Using response cache with maxSize={}, maxWaitMillis={}", maxSize, maxWaitMillis);
+    return new ResponseCache(maxSize, maxWaitMillis);
+  }
+
   protected void initServlets(@Nonnull ServletContextHandler contextHandler) {
     final ServletHolder dispatcherServlet = contextHandler.addServlet(DispatcherServlet.class,
         getDispatcherServletMapping());
     dispatcherServlet.setInitParameter("contextConfigLocation", getDispatcherServletConfigLocations());
+    // allows controllers to return CompletableFuture, DeferredResult or Callable and release worker thread
+    dispatcherServlet.setAsyncSupported(true);
 
     if (simpleSecurityEnabled) {
       initSimpleSecurity(contextHandler);
@@ -436,9 +1170,22 @@ public class StandardLauncher implements AutoCloseable {
     return Collections.singletonList(new SimpleServiceUser(username, password));
   }
 
+  /**
+   * Creates handler for static resources. Static content is cached in memory unless
+   * {@link #CONFIG_KEY_STATIC_CACHE_MAX_SIZE} is set to zero.
+   *
+   * @return Static resource handler
+   * @throws IOException On I/O error
+   */
   @Nonnull
   protected ResourceHandler createStaticHandler() throws IOException {
-    final ResourceHandler resourceHandler = new ResourceHandler();
+    final ResourceHandler resourceHandler;
+    staticContentCache = createStaticContentCache();
+    if (staticContentCache != null) {
+      resourceHandler = new CachingResourceHandler(staticContentCache);
+    } else {
+      resourceHandler = new ResourceHandler();
+    }
 
     String staticPath = getPropertyResolver().getProperty(CONFIG_KEY_OVERRIDE_STATIC_PATH);
     if (staticPath == null) {
@@ -455,6 +1202,23 @@ public class StandardLauncher implements AutoCloseable {
     return resourceHandler;
   }
 
+  @Nullable
+  protected StaticContentCache createStaticContentCache() {
+    final long maxSize = propertyResolver.getProperty(CONFIG_KEY_STATIC_CACHE_MAX_SIZE, Long.class,
+        DEFAULT_STATIC_CACHE_MAX_SIZE);
+    if (maxSize <= 0L) {
+      return null;
+    }
+
+    final long mappedThreshold = propertyResolver.getProperty(CONFIG_KEY_STATIC_CACHE_MAPPED_THRESHOLD, Long.class,
+        64L * 1024L);
+    final long revalidateMillis = propertyResolver.getProperty(CONFIG_KEY_STATIC_CACHE_REVALIDATE_MILLIS, Long.class,
+        2000L);
+    getLogger().info("Using static content cache with maxSize={}, mappedThreshold={}, revalidateMillis={}",
+        maxSize, mappedThreshold, revalidateMillis);
+    return new StaticContentCache(maxSize, mappedThreshold, revalidateMillis);
+  }
+
   @Nonnull
   protected org.eclipse.jetty.util.resource.Resource getDefaultStaticResource() throws IOException {
     return JettyResourceUtil.createResource(defaultDirPrefix + DEFAULT_STATIC_WEB_FOLDER);
@@ -462,15 +1226,396 @@ public class StandardLauncher implements AutoCloseable {
 
   protected void setServerSettings(@Nonnull Server server) {
     server.setSendServerVersion(false);
+
+    final List<Connector> connectors = createConnectors();
+    server.setConnectors(connectors.toArray(new Connector[connectors.size()]));
+
+    adminConnector = createAdminConnector();
+    if (adminConnector != null) {
+      server.addConnector(adminConnector);
+    }
+  }
+
+  /**
+   * Creates dedicated admin connector, that uses its own thread pool, see also {@link #CONFIG_KEY_ADMIN_PORT}.
+   *
+   * @return Admin connector or null, if admin connector has not been configured
+   */
+  @Nullable
+  protected TunedSelectChannelConnector createAdminConnector() {
+    final int port = propertyResolver.getProperty(CONFIG_KEY_ADMIN_PORT, Integer.class, -1);
+    if (port < 0) {
+      return null;
+    }
+
+    // configured threads process requests, acceptor and selector permanently take two more threads of the pool
+    final int maxThreads = Math.max(1, propertyResolver.getProperty(CONFIG_KEY_ADMIN_MAX_THREADS, Integer.class,
+        DEFAULT_ADMIN_MAX_THREADS));
+    final String host = propertyResolver.getProperty(CONFIG_KEY_ADMIN_HOST);
+    getLogger().info("Using admin connector host={}, port={}, maxThreads={}", host, port, maxThreads);
+
+    final MeteredThreadPool adminThreadPool = new MeteredThreadPool(1,
+        maxThreads + ADMIN_CONNECTOR_RESERVED_THREADS, 0);
+    adminThreadPool.setName("BrikarAdmin");
+
+    final TunedSelectChannelConnector connector = new TunedSelectChannelConnector();
+    connector.setHost(host);
+    connector.setPort(port);
+    connector.setAcceptors(1);
+    connector.setMaxIdleTime(propertyResolver.getProperty(CONFIG_KEY_CONNECTOR_IDLE_TIMEOUT, Integer.class,
+        DEFAULT_CONNECTOR_IDLE_TIMEOUT));
+    connector.setThreadPool(adminThreadPool);
+    return connector;
+  }
+
+  /**
+   * Creates connectors for the primary address defined by {@link #CONFIG_KEY_HOST} and {@link #CONFIG_KEY_PORT}
+   * as well as for the additional addresses defined by {@link #CONFIG_KEY_EXTRA_CONNECTORS}.
+   *
+   * @return List of server connectors
+   */
+  @Nonnull
+  protected List<Connector> createConnectors() {
+    final List<Connector> result = new ArrayList<>();
+    result.add(createConnector(propertyResolver.getProperty(CONFIG_KEY_HOST),
+        propertyResolver.getProperty(CONFIG_KEY_PORT, Integer.class, DEFAULT_PORT)));
+
+    final String extraConnectors = propertyResolver.getProperty(CONFIG_KEY_EXTRA_CONNECTORS, "");
+    for (final String address : StringUtils.commaDelimitedListToSet(extraConnectors)) {
+      final String trimmedAddress = address.trim();
+      if (trimmedAddress.isEmpty()) {
+        continue;
+      }
+
+      final int portSeparator = trimmedAddress.lastIndexOf(':');
+      final String host = portSeparator > 0 ? trimmedAddress.substring(0, portSeparator) : null;
+      try {
+        result.add(createConnector(host, Integer.parseInt(trimmedAddress.substring(portSeparator + 1))));
+      } catch (NumberFormatException e) {
+        throw new IllegalStateException("Malformed connector address=" + trimmedAddress, e);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates NIO connector, configured using connector settings from the properties,
+   * such as {@link #CONFIG_KEY_ACCEPTORS}.
+   *
+   * @param host Host to listen on or null to listen on all the interfaces
+   * @param port Port to listen on
+   * @return Connector instance
+   */
+  @Nonnull
+  protected Connector createConnector(@Nullable String host, int port) {
+    final int acceptors = propertyResolver.getProperty(CONFIG_KEY_ACCEPTORS, Integer.class, getDefaultAcceptors());
+    final int acceptQueueSize = propertyResolver.getProperty(CONFIG_KEY_ACCEPT_QUEUE_SIZE, Integer.class,
+        DEFAULT_ACCEPT_QUEUE_SIZE);
+    final int idleTimeout = propertyResolver.getProperty(CONFIG_KEY_CONNECTOR_IDLE_TIMEOUT, Integer.class,
+        DEFAULT_CONNECTOR_IDLE_TIMEOUT);
+    final int lowResourcesIdleTimeout = propertyResolver.getProperty(CONFIG_KEY_CONNECTOR_LOW_RESOURCES_IDLE_TIMEOUT,
+        Integer.class, -1);
+    getLogger().info("Using connector host={}, port={}, acceptors={}, acceptQueueSize={}, idleTimeoutMillis={}",
+        host, port, acceptors, acceptQueueSize, idleTimeout);
+
+    final TunedSelectChannelConnector connector = new TunedSelectChannelConnector();
+    connector.setHost(host);
+    connector.setPort(port);
+    connector.setAcceptors(acceptors);
+    connector.setAcceptQueueSize(acceptQueueSize);
+    connector.setMaxIdleTime(idleTimeout);
+    connector.setLowResourcesMaxIdleTime(lowResourcesIdleTimeout);
+    connector.setReceiveBufferSize(propertyResolver.getProperty(CONFIG_KEY_RECEIVE_BUFFER_SIZE, Integer.class, -1));
+    connector.setSendBufferSize(propertyResolver.getProperty(CONFIG_KEY_SEND_BUFFER_SIZE, Integer.class, -1));
+    return connector;
+  }
+
+  /**
+   * Returns default number of acceptors, which is derived from the number of available processors: one acceptor
+   * per two cores, but no more than four since in jetty 8 each acceptor permanently occupies two worker threads,
+   * one for the acceptor itself and one for its selector. Thus each connector reserves <code>2 * acceptors</code>
+   * threads of the pool and {@link #CONFIG_KEY_MAX_THREADS} should exceed the sum of these reservations over all
+   * the connectors by the desired number of request processing threads.
+   *
+   * @return Default number of acceptors
+   */
+  protected int getDefaultAcceptors() {
+    return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  /**
+   * Creates worker thread pool, that will be used by the server.
+   * Default implementation reads pool settings from the properties, such as {@link #CONFIG_KEY_MAX_THREADS}.
+   *
+   * @return Thread pool instance
+   */
+  @Nonnull
+  protected MeteredThreadPool createThreadPool() {
+    final int minThreads = propertyResolver.getProperty(CONFIG_KEY_MIN_THREADS, Integer.class, DEFAULT_MIN_THREADS);
+    final int maxThreads = propertyResolver.getProperty(CONFIG_KEY_MAX_THREADS, Integer.class, DEFAULT_MAX_THREADS);
+    final int idleTimeout = propertyResolver.getProperty(CONFIG_KEY_THREAD_IDLE_TIMEOUT, Integer.class,
+        DEFAULT_THREAD_IDLE_TIMEOUT);
+    final int maxQueued = propertyResolver.getProperty(CONFIG_KEY_MAX_QUEUED, Integer.class, DEFAULT_MAX_QUEUED);
+    getLogger().info("Using minThreads={}, maxThreads={}, idleTimeoutMillis={}, maxQueued={}",
+        minThreads, maxThreads, idleTimeout, maxQueued);
+
+    final MeteredThreadPool result = new MeteredThreadPool(minThreads, maxThreads, maxQueued);
+    result.setName("BrikarWorker");
+    result.setMaxIdleTimeMs(idleTimeout);
+    return result;
+  }
+
+  /**
+   * Wraps handler, that contains all the handlers returned by {@link #getHandlers()}.
+   * Default implementation adds load shedding handler if it has been enabled in properties,
+   * see also {@link #CONFIG_KEY_LOAD_SHEDDING}, adds handler, that measures queue time of the requests,
+   * see also {@link #CONFIG_KEY_MAX_QUEUE_TIME}, adds compression handler if it has been enabled,
+   * see also {@link #CONFIG_KEY_COMPRESSION_ENABLED}, adds bulkheads if they have been configured,
+   * see also {@link #CONFIG_KEY_BULKHEADS}, and restricts admin connector to admin paths if admin connector
+   * has been configured, see also {@link #CONFIG_KEY_ADMIN_PORT}.
+   *
+   * @param handler Handler to wrap
+   * @return Root server handler
+   */
+  @Nonnull
+  protected Handler wrapRootHandler(@Nonnull Handler handler) {
+    Handler result = handler;
+    if (propertyResolver.getProperty(CONFIG_KEY_COMPRESSION_ENABLED, Boolean.class, false)) {
+      final CompressionHandler compressionHandler = createCompressionHandler();
+      compressionHandler.setHandler(result);
+      result = compressionHandler;
+    }
+
+    bulkheads = createBulkheads();
+    if (!bulkheads.isEmpty()) {
+      final BulkheadHandler bulkheadHandler = new BulkheadHandler(bulkheads);
+      bulkheadHandler.setHandler(result);
+      result = bulkheadHandler;
+    }
+
+    if (threadPool.getMaxQueueSize() > 0 &&
+        propertyResolver.getProperty(CONFIG_KEY_LOAD_SHEDDING, Boolean.class, false)) {
+      getLogger().info("Using load shedding for maxQueued={}", threadPool.getMaxQueueSize());
+      final LoadSheddingHandler loadSheddingHandler = new LoadSheddingHandler(threadPool);
+      loadSheddingHandler.setHandler(result);
+      result = loadSheddingHandler;
+    }
+
+    final long maxQueueTime = propertyResolver.getProperty(CONFIG_KEY_MAX_QUEUE_TIME, Long.class, 0L);
+    if (maxQueueTime > 0L) {
+      getLogger().info("Using maxQueueTimeMillis={}", maxQueueTime);
+    }
+    final QueueTimeHandler queueTimeHandler = new QueueTimeHandler(threadPool, maxQueueTime);
+    queueTimeHandler.setHandler(result);
+    result = queueTimeHandler;
+
+    if (adminConnector != null) {
+      final List<String> adminPaths = getAdminPaths();
+      final boolean exclusive = propertyResolver.getProperty(CONFIG_KEY_ADMIN_EXCLUSIVE, Boolean.class, false);
+      getLogger().info("Using adminPaths={}, exclusive={}", adminPaths, exclusive);
+
+      final AdminConnectorHandler adminConnectorHandler = new AdminConnectorHandler(adminConnector, adminPaths,
+          exclusive);
+      adminConnectorHandler.setHandler(result);
+      result = adminConnectorHandler;
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates handler, that compresses responses and decompresses requests, see also
+   * {@link #CONFIG_KEY_COMPRESSION_ENABLED}.
+   *
+   * @return Compression handler
+   */
+  @Nonnull
+  protected CompressionHandler createCompressionHandler() {
+    final CompressionHandler result = new CompressionHandler();
+    result.setMinCompressSize(propertyResolver.getProperty(CONFIG_KEY_COMPRESSION_MIN_SIZE, Integer.class,
+        result.getMinCompressSize()));
+    result.setMimeTypes(StringUtils.commaDelimitedListToSet(propertyResolver.getProperty(
+        CONFIG_KEY_COMPRESSION_MIME_TYPES, DEFAULT_COMPRESSION_MIME_TYPES)));
+    result.setCompressionLevel(propertyResolver.getProperty(CONFIG_KEY_COMPRESSION_LEVEL, Integer.class,
+        result.getCompressionLevel()));
+    result.setRequestDecompressionEnabled(propertyResolver.getProperty(CONFIG_KEY_REQUEST_DECOMPRESSION_ENABLED,
+        Boolean.class, true));
+    result.setMaxDecompressedRequestSize(propertyResolver.getProperty(CONFIG_KEY_MAX_DECOMPRESSED_REQUEST_SIZE,
+        Long.class, result.getMaxDecompressedRequestSize()));
+    getLogger().info("Using compression minSize={}, mimeTypes={}, level={}, requestDecompression={}, " +
+        "maxDecompressedRequestSize={}", result.getMinCompressSize(), result.getMimeTypes(),
+        result.getCompressionLevel(), result.isRequestDecompressionEnabled(), result.getMaxDecompressedRequestSize());
+    return result;
+  }
+
+  /**
+   * @return Path prefixes of admin endpoints, see also {@link #CONFIG_KEY_ADMIN_PATHS}
+   */
+  @Nonnull
+  protected List<String> getAdminPaths() {
+    final List<String> result = new ArrayList<>();
+    for (final String path : StringUtils.commaDelimitedListToSet(
+        propertyResolver.getProperty(CONFIG_KEY_ADMIN_PATHS, DEFAULT_ADMIN_PATHS))) {
+      if (!path.trim().isEmpty()) {
+        result.add(path.trim());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates bulkheads, defined by {@link #CONFIG_KEY_BULKHEADS} property.
+   *
+   * @return List of bulkheads
+   */
+  @Nonnull
+  protected List<Bulkhead> createBulkheads() {
+    final List<Bulkhead> result = new ArrayList<>();
+    for (final String name : StringUtils.commaDelimitedListToSet(propertyResolver.getProperty(CONFIG_KEY_BULKHEADS,
+        ""))) {
+      final String trimmedName = name.trim();
+      if (trimmedName.isEmpty()) {
+        continue;
+      }
+
+      final String prefix = CONFIG_KEY_BULKHEAD_PREFIX + trimmedName + '.';
+      final Bulkhead bulkhead = new Bulkhead(
+          trimmedName,
+          propertyResolver.getRequiredProperty(prefix + "pathPrefix"),
+          propertyResolver.getProperty(prefix + "maxConcurrent", Integer.class, DEFAULT_BULKHEAD_MAX_CONCURRENT),
+          propertyResolver.getProperty(prefix + "maxQueued", Integer.class, 0),
+          propertyResolver.getProperty(prefix + "maxWaitMillis", Long.class, 0L),
+          propertyResolver.getProperty(prefix + "rejectionStatus", Integer.class,
+              HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+      getLogger().info("Using {}", bulkhead);
+      result.add(bulkhead);
+    }
+
+    return result;
+  }
+
+  /**
+   * Registers sources of server metrics that should be periodically written to the logs.
+   *
+   * @param metricsReporter Reporter, that writes metrics
+   */
+  protected void initMetricsSources(@Nonnull PeriodicMetricsReporter metricsReporter) {
+    metricsReporter.addSource(threadPool::getMetrics);
+    metricsReporter.addSource(inFlightRequestTracker::getMetrics);
+    for (final Bulkhead bulkhead : bulkheads) {
+      metricsReporter.addSource(bulkhead::getMetrics);
+    }
+    if (concurrencyLimit != null) {
+      metricsReporter.addSource(concurrencyLimit::getMetrics);
+    }
+    for (final RateLimitRule rule : rateLimitRules) {
+      metricsReporter.addSource(rule::getMetrics);
+    }
+    if (staticContentCache != null) {
+      metricsReporter.addSource(staticContentCache::getMetrics);
+    }
+    if (responseCache != null) {
+      metricsReporter.addSource(responseCache::getMetrics);
+    }
+    if (requestLogSampler != null) {
+      metricsReporter.addSource(requestLogSampler::getMetrics);
+    }
+    if (metricsSink != null) {
+      metricsReporter.addSource(metricsSink::getMetrics);
+    }
+    if (slowCallWatchdog != null) {
+      metricsReporter.addSource(slowCallWatchdog::getMetrics);
+    }
+    if (adminConnector != null && adminConnector.getThreadPool() instanceof MeteredThreadPool) {
+      metricsReporter.addSource(((MeteredThreadPool) adminConnector.getThreadPool())::getMetrics);
+    }
+  }
+
+  /**
+   * Installs default latency histogram registry, that is fed by the request lapses, client call lapses and
+   * <code>@LogLapse</code> lapses, see {@link #CONFIG_KEY_METRICS_LATENCY_MAX_OPERATIONS}.
+   */
+  protected void initLatencyHistograms() {
+    final int maxOperations = propertyResolver.getProperty(CONFIG_KEY_METRICS_LATENCY_MAX_OPERATIONS, Integer.class,
+        LatencyHistogramRegistry.DEFAULT_MAX_OPERATIONS);
+    final LatencyHistogramRegistry registry;
+    if (maxOperations > 0) {
+      registry = new LatencyHistogramRegistry(maxOperations, StandardTimeSource.INSTANCE);
+    } else {
+      registry = new LatencyHistogramRegistry(1, StandardTimeSource.INSTANCE);
+      registry.setEnabled(false);
+    }
+
+    LatencyHistogramRegistry.setDefault(registry);
+    getLogger().info("Using {}", registry);
+  }
+
+  /**
+   * Creates sink, that writes metrics to the logs asynchronously,
+   * see {@link #CONFIG_KEY_METRICS_ASYNC_BUFFER_SIZE}.
+   *
+   * @return Metrics sink or null, if metrics should be written synchronously
+   */
+  @Nullable
+  protected AsyncMetricsSink createMetricsSink() {
+    final int bufferSize = propertyResolver.getProperty(CONFIG_KEY_METRICS_ASYNC_BUFFER_SIZE, Integer.class,
+        DEFAULT_METRICS_ASYNC_BUFFER_SIZE);
+    if (bufferSize <= 0) {
+      return null;
+    }
+
+    final AsyncMetricsSink result = new AsyncMetricsSink(
+        bufferSize,
+        propertyResolver.getProperty(CONFIG_KEY_METRICS_ASYNC_BATCH_SIZE, Integer.class, 256),
+        propertyResolver.getProperty(CONFIG_KEY_METRICS_ASYNC_OVERFLOW_POLICY, AsyncMetricsSink.OverflowPolicy.class,
+            AsyncMetricsSink.OverflowPolicy.DROP));
+    getLogger().info("Using {}", result);
+    return result;
+  }
+
+  /**
+   * Creates sink, that publishes latency histograms, thread pool and in-flight request gauges to the memory-mapped
+   * file, see {@link #CONFIG_KEY_METRICS_MAPPED_FILE}.
+   *
+   * @return Memory-mapped metrics sink or null, if it is not configured
+   * @throws IOException On failure to create the file
+   */
+  @Nullable
+  protected MappedMetricsSink createMappedMetricsSink() throws IOException {
+    final String path = propertyResolver.getProperty(CONFIG_KEY_METRICS_MAPPED_FILE, "");
+    if (!StringUtils.hasText(path)) {
+      return null;
+    }
+
+    final MappedMetricsSink result = new MappedMetricsSink(new File(path),
+        propertyResolver.getProperty(CONFIG_KEY_METRICS_MAPPED_FILE_SLOTS, Integer.class, 1024),
+        LatencyHistogramRegistry.getDefault());
+    for (final MeteredThreadPool pool : getMeteredThreadPools()) {
+      result.addGauge("threadPool." + pool.getName() + ".threads", pool::getThreads);
+      result.addGauge("threadPool." + pool.getName() + ".idleThreads", pool::getIdleThreads);
+      result.addGauge("threadPool." + pool.getName() + ".queuedJobs", pool::getQueueSize);
+    }
+    result.addGauge("inFlightRequests", inFlightRequestTracker::getInFlight);
+    getLogger().info("Using {}", result);
+    return result;
   }
 
   protected void setShutdownStrategy(@Nonnull Server server) {
-    // stop receiving connections after given amount of milliseconds
+    // wait for in-flight requests no longer than given amount of milliseconds
     final int shutdownDelay = propertyResolver
         .getProperty(CONFIG_KEY_SHUTDOWN_DELAY, Integer.class, DEFAULT_SHUTDOWN_DELAY);
-    getLogger().info("Using shutdownDelay={}", shutdownDelay);
-
-    server.setGracefulShutdown(shutdownDelay);
+    final int drainDelay = propertyResolver.getProperty(CONFIG_KEY_DRAIN_DELAY, Integer.class, 0);
+    getLogger().info("Using shutdownDelay={}, drainDelay={}", shutdownDelay, drainDelay);
+
+    if (server instanceof DrainingServer) {
+      final DrainingServer drainingServer = (DrainingServer) server;
+      drainingServer.setInFlightRequestTracker(inFlightRequestTracker);
+      drainingServer.setDrainDelay(drainDelay);
+      drainingServer.setShutdownTimeout(shutdownDelay);
+    } else {
+      server.setGracefulShutdown(shutdownDelay);
+    }
 
     // stop server if SIGINT received
     server.setStopAtShutdown(true);
@@ -485,6 +1630,7 @@ public class StandardLauncher implements AutoCloseable {
     contextHandler.setInitParameter("contextInitializerClasses",
         StandardWebApplicationContextInitializer.class.getName());
 
+    initInFlightRequestTracking(contextHandler);
     initContextFilters(contextHandler);
 
     // add spring context load listener
@@ -497,6 +1643,81 @@ public class StandardLauncher implements AutoCloseable {
   // Private
   //
 
+  private List<MeteredThreadPool> getMeteredThreadPools() {
+    final List<MeteredThreadPool> result = new ArrayList<>(2);
+    result.add(threadPool);
+    if (adminConnector != null && adminConnector.getThreadPool() instanceof MeteredThreadPool) {
+      result.add((MeteredThreadPool) adminConnector.getThreadPool());
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  private Map<String, Long> getOperationThresholds(String key) {
+    final Map<String, Long> result = new HashMap<>();
+    for (final String entry : StringUtils.commaDelimitedListToStringArray(propertyResolver.getProperty(key, ""))) {
+      final String trimmedEntry = entry.trim();
+      if (trimmedEntry.isEmpty()) {
+        continue;
+      }
+
+      final int separator = trimmedEntry.lastIndexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Malformed operation threshold=" + trimmedEntry + " in " + key);
+      }
+      result.put(trimmedEntry.substring(0, separator).trim(),
+          Long.parseLong(trimmedEntry.substring(separator + 1).trim()));
+    }
+    return result;
+  }
+
+  @Nullable
+  private PeriodicMetricsReporter createMetricsReporter() {
+    final long reportInterval = propertyResolver.getProperty(CONFIG_KEY_METRICS_REPORT_INTERVAL, Long.class,
+        DEFAULT_METRICS_REPORT_INTERVAL);
+    if (reportInterval <= 0) {
+      return null;
+    }
+
+    final PeriodicMetricsReporter result = new PeriodicMetricsReporter(
+        LoggerFactory.getLogger("BrikarMetricsLogger"), reportInterval);
+    initMetricsSources(result);
+    return result;
+  }
+
+  @Nullable
+  private PeriodicMetricsReporter createJvmRuntimeReporter() {
+    final long reportInterval = propertyResolver.getProperty(CONFIG_KEY_METRICS_JVM_RUNTIME_INTERVAL, Long.class, 0L);
+    if (reportInterval <= 0) {
+      return null;
+    }
+
+    final JvmRuntimeMetrics jvmRuntimeMetrics = new JvmRuntimeMetrics();
+    return new PeriodicMetricsReporter(LoggerFactory.getLogger("BrikarMetricsLogger"), reportInterval)
+        .addSource(jvmRuntimeMetrics::getMetrics);
+  }
+
+  /**
+   * Stops slow call watchdog and writes out metrics, buffered by the sinks. Called either by the thread, that stops
+   * server, or once server has been stopped, whichever comes first, subsequent calls do nothing.
+   */
+  private synchronized void closeMetricsSinks() {
+    if (slowCallWatchdog != null) {
+      SlowCallWatchdog.setDefault(null);
+      slowCallWatchdog.close();
+      slowCallWatchdog = null;
+    }
+    if (mappedMetricsSink != null) {
+      mappedMetricsSink.close();
+      mappedMetricsSink = null;
+    }
+    if (metricsSink != null) {
+      // write metrics, that are still in the buffer
+      LogUtil.setMetricsSink(null);
+      metricsSink.close();
+      metricsSink = null;
+    }
+  }
+
   private void toggleServletContextHandlerParameter(boolean enabled, int param) {
     if (enabled) {
       this.servletContextOptions |= param;
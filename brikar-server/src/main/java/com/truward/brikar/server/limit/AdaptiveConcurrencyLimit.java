@@ -0,0 +1,213 @@
+package com.truward.brikar.server.limit;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+import org.slf4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit, that adjusts itself based on the observed request latency, using gradient algorithm:
+ * <ul>
+ *   <li>Latencies are collected in windows of fixed number of samples</li>
+ *   <li>Long-term latency is an exponentially smoothed average of window latencies, which represents
+ *   latency of the service when it is not overloaded</li>
+ *   <li>Once window is complete, new limit is computed as <code>limit * gradient + sqrt(limit)</code>,
+ *   where gradient is a ratio of long-term latency to the window latency in <code>[0.5, 1]</code> range.
+ *   So limit grows while latency stays the same and goes down once latency starts growing</li>
+ *   <li>Limit isn't increased if less than a half of it is used</li>
+ * </ul>
+ * Limit changes are logged as metrics under {@link #OPERATION_CHANGE} operation name.
+ *
+ * @author Alexander Shabanov
+ */
+public final class AdaptiveConcurrencyLimit {
+
+  /**
+   * Operation name, under which limiter state is reported.
+   */
+  public static final String OPERATION = "ConcurrencyLimit";
+
+  /**
+   * Operation name, under which limit changes are reported.
+   */
+  public static final String OPERATION_CHANGE = "ConcurrencyLimitChange";
+
+  public static final String LIMIT = "limit";
+  public static final String PREVIOUS_LIMIT = "previousLimit";
+  public static final String IN_FLIGHT = "inFlight";
+  public static final String REJECTED = "rejected";
+  public static final String RTT_MICROS = "rttMicros";
+  public static final String LONG_RTT_MICROS = "longRttMicros";
+
+  private final Logger log;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int windowSize;
+  private final double smoothing;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private volatile double limit;
+
+  // guarded by this
+  private int windowSamples;
+  private long windowRttSum;
+  private double longRtt;
+
+  /**
+   * Creates concurrency limit.
+   *
+   * @param log Logger, that should be used for reporting limit changes
+   * @param initialLimit Initial limit
+   * @param minLimit Minimum limit
+   * @param maxLimit Maximum limit
+   * @param windowSize Number of latency samples, after which limit is recalculated
+   * @param smoothing Factor in <code>(0, 1]</code> range, that defines how fast limit changes
+   */
+  public AdaptiveConcurrencyLimit(Logger log, int initialLimit, int minLimit, int maxLimit, int windowSize,
+                                  double smoothing) {
+    if (minLimit <= 0 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Illegal limit bounds: minLimit=" + minLimit + ", maxLimit=" + maxLimit);
+    }
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("windowSize should be positive");
+    }
+    if (smoothing <= 0.0 || smoothing > 1.0) {
+      throw new IllegalArgumentException("smoothing should be in (0, 1] range");
+    }
+
+    this.log = Objects.requireNonNull(log, "log");
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.windowSize = windowSize;
+    this.smoothing = smoothing;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Tries to acquire a permit for processing a request. Each successful call must be followed by
+   * {@link #release(long)}.
+   *
+   * @return True, if request can be processed, false if request should be rejected
+   */
+  public boolean tryAcquire() {
+    for (;;) {
+      final int current = inFlight.get();
+      if (current >= getLimit()) {
+        rejectedCount.incrementAndGet();
+        return false;
+      }
+
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases permit, acquired by {@link #tryAcquire()} and records request latency.
+   *
+   * @param rttNanos Request processing time in nanoseconds
+   */
+  public void release(long rttNanos) {
+    final int current = inFlight.getAndDecrement();
+    onSample(rttNanos, current);
+  }
+
+  /**
+   * Records latency sample.
+   *
+   * @param rttNanos Request processing time in nanoseconds
+   * @param inFlightRequests Number of requests, that were processed concurrently with the sampled one
+   */
+  public void onSample(long rttNanos, int inFlightRequests) {
+    final double previousLimit;
+    final double newLimit;
+    final double rtt;
+    final double currentLongRtt;
+    synchronized (this) {
+      windowRttSum += Math.max(1L, rttNanos);
+      if (++windowSamples < windowSize) {
+        return;
+      }
+
+      rtt = ((double) windowRttSum) / windowSamples;
+      windowSamples = 0;
+      windowRttSum = 0L;
+
+      previousLimit = limit;
+      if (longRtt == 0.0) {
+        longRtt = rtt;
+      } else {
+        longRtt = longRtt * 0.95 + rtt * 0.05;
+      }
+
+      // let long-term latency recover faster, when window latency goes down
+      if (rtt < longRtt) {
+        longRtt = rtt;
+      }
+      currentLongRtt = longRtt;
+
+      // don't grow limit if it is not used
+      if (inFlightRequests < previousLimit / 2) {
+        return;
+      }
+
+      final double gradient = Math.max(0.5, Math.min(1.0, longRtt / rtt));
+      final double queueSize = Math.sqrt(previousLimit);
+      final double estimatedLimit = previousLimit * gradient + queueSize;
+      newLimit = Math.max(minLimit, Math.min(maxLimit,
+          previousLimit * (1.0 - smoothing) + estimatedLimit * smoothing));
+      limit = newLimit;
+    }
+
+    if ((int) newLimit != (int) previousLimit) {
+      LogUtil.logInfo(new SimpleLapse()
+          .setOperation(OPERATION_CHANGE)
+          .setProperty(LIMIT, (int) newLimit)
+          .setProperty(PREVIOUS_LIMIT, (int) previousLimit)
+          .setProperty(RTT_MICROS, TimeUnit.NANOSECONDS.toMicros((long) rtt))
+          .setProperty(LONG_RTT_MICROS, TimeUnit.NANOSECONDS.toMicros((long) currentLongRtt)), log);
+    }
+  }
+
+  /**
+   * Returns current limiter state as a metrics entry. Rejections are reported as deltas since the previous call
+   * to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(LIMIT, getLimit())
+        .setProperty(IN_FLIGHT, getInFlight())
+        .setProperty(REJECTED, rejectedCount.getAndSet(0L));
+  }
+
+  @Override
+  public String toString() {
+    return "AdaptiveConcurrencyLimit{" +
+        "limit=" + getLimit() +
+        ", minLimit=" + minLimit +
+        ", maxLimit=" + maxLimit +
+        ", windowSize=" + windowSize +
+        ", smoothing=" + smoothing +
+        '}';
+  }
+}
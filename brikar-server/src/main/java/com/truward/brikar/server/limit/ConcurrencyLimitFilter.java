@@ -0,0 +1,131 @@
+package com.truward.brikar.server.limit;
+
+import com.truward.brikar.server.util.ErrorResponseUtil;
+import com.truward.brikar.server.util.PathUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A filter, that limits number of concurrently processed requests using {@link AdaptiveConcurrencyLimit}.
+ * Requests, that exceed the limit, are immediately rejected with <code>503 Service Unavailable</code> status code
+ * and standard error response body.
+ * <p>
+ * Requests, that match excluded path prefixes (e.g. health checks), are never limited.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class ConcurrencyLimitFilter implements Filter {
+  private final Logger log = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+  private final AdaptiveConcurrencyLimit concurrencyLimit;
+  private final List<String> excludedPaths;
+
+  public ConcurrencyLimitFilter(AdaptiveConcurrencyLimit concurrencyLimit, List<String> excludedPaths) {
+    this.concurrencyLimit = Objects.requireNonNull(concurrencyLimit, "concurrencyLimit");
+    this.excludedPaths = Collections.unmodifiableList(new ArrayList<>(excludedPaths));
+  }
+
+  public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    log.debug("init");
+  }
+
+  @Override
+  public void doFilter(ServletRequest req,
+                       ServletResponse resp,
+                       FilterChain filterChain) throws IOException, ServletException {
+    final HttpServletRequest request = (HttpServletRequest) req;
+    final HttpServletResponse response = (HttpServletResponse) resp;
+
+    if (isExcluded(request)) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    if (!concurrencyLimit.tryAcquire()) {
+      ErrorResponseUtil.sendError(request, response, HttpStatus.SERVICE_UNAVAILABLE,
+          "Concurrency limit exceeded");
+      return;
+    }
+
+    final long startTime = System.nanoTime();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (request.isAsyncStarted()) {
+        // request is still in flight, so release limit once async processing completes
+        request.getAsyncContext().addListener(new ReleasingAsyncListener(startTime));
+      } else {
+        concurrencyLimit.release(System.nanoTime() - startTime);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    log.debug("destroy");
+  }
+
+  //
+  // Private
+  //
+
+  private boolean isExcluded(HttpServletRequest request) {
+    if (excludedPaths.isEmpty()) {
+      return false;
+    }
+
+    final String pathInfo = request.getPathInfo();
+    final String path = pathInfo != null ? request.getServletPath() + pathInfo : request.getServletPath();
+    for (final String excludedPath : excludedPaths) {
+      if (PathUtil.hasPathPrefix(path, excludedPath)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private final class ReleasingAsyncListener implements AsyncListener {
+    private final long startTime;
+
+    ReleasingAsyncListener(long startTime) {
+      this.startTime = startTime;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+      concurrencyLimit.release(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+      // do nothing, limit is released by onComplete
+    }
+
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+      // do nothing, limit is released by onComplete
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) throws IOException {
+      // listeners are dropped when async processing restarts, so register this listener again
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
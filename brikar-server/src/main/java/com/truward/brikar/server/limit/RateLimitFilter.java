@@ -0,0 +1,108 @@
+package com.truward.brikar.server.limit;
+
+import com.truward.brikar.server.util.ErrorResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A filter, that limits request rate per caller using {@link RateLimitRule}s. The first rule, which path pattern
+ * matches request path, is applied. Requests, that exceed the rate, are rejected with
+ * <code>429 Too Many Requests</code> status code, standard error response body and <code>Retry-After</code> header.
+ * <p>
+ * Caller is identified by the name of authenticated principal, if any, otherwise by the client address.
+ * This filter should be installed after authentication filters, so that principal is available.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class RateLimitFilter implements Filter {
+  private final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+  private final PathMatcher pathMatcher = new AntPathMatcher();
+  private final List<RateLimitRule> rules;
+
+  public RateLimitFilter(List<RateLimitRule> rules) {
+    this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+  }
+
+  public List<RateLimitRule> getRules() {
+    return rules;
+  }
+
+  @Nullable
+  public RateLimitRule getRule(String path) {
+    for (final RateLimitRule rule : rules) {
+      if (pathMatcher.match(rule.getPathPattern(), path)) {
+        return rule;
+      }
+    }
+
+    return null;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    log.debug("init");
+  }
+
+  @Override
+  public void doFilter(ServletRequest req,
+                       ServletResponse resp,
+                       FilterChain filterChain) throws IOException, ServletException {
+    final HttpServletRequest request = (HttpServletRequest) req;
+    final HttpServletResponse response = (HttpServletResponse) resp;
+
+    final String pathInfo = request.getPathInfo();
+    final RateLimitRule rule = getRule(pathInfo != null ? request.getServletPath() + pathInfo :
+        request.getServletPath());
+    if (rule != null) {
+      final long waitNanos = rule.tryAcquire(getCaller(request), System.nanoTime());
+      if (waitNanos > 0L) {
+        response.setHeader("Retry-After", Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1L));
+        ErrorResponseUtil.sendError(request, response, HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded");
+        return;
+      }
+    }
+
+    filterChain.doFilter(request, response);
+  }
+
+  @Override
+  public void destroy() {
+    log.debug("destroy");
+  }
+
+  //
+  // Protected
+  //
+
+  /**
+   * Returns caller identity, that is used as a rate limit key.
+   *
+   * @param request Current request
+   * @return Caller identity
+   */
+  @Nonnull
+  protected String getCaller(HttpServletRequest request) {
+    final Principal principal = request.getUserPrincipal();
+    if (principal != null && principal.getName() != null) {
+      return "user:" + principal.getName();
+    }
+
+    return "addr:" + request.getRemoteAddr();
+  }
+}
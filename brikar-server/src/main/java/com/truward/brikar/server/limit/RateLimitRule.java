@@ -0,0 +1,192 @@
+package com.truward.brikar.server.limit;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limit, that applies to the requests matching certain path pattern. Each caller gets its own token bucket,
+ * so that one noisy caller can't starve the others.
+ * <p>
+ * Token buckets are lock-free: each bucket is represented by a single atomic "theoretical arrival time",
+ * as defined by generic cell rate algorithm, which is equivalent to a token bucket with the given rate and burst.
+ * Buckets of callers, that have been idle long enough to fully refill their buckets, are evicted once number of
+ * tracked callers reaches the given limit, not more often than once in the time, needed to refill a bucket.
+ * If there are still too many callers, new callers share a single overflow bucket until the idle ones are evicted,
+ * so that the number of tracked callers stays bounded.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class RateLimitRule {
+
+  /**
+   * Operation name, under which rate limit metrics are reported.
+   */
+  public static final String OPERATION = "RateLimit";
+
+  public static final String NAME = "name";
+  public static final String CALLERS = "callers";
+  public static final String ACCEPTED = "accepted";
+  public static final String REJECTED = "rejected";
+  public static final String OVERFLOWED = "overflowed";
+
+  private static final int DEFAULT_MAX_TRACKED_CALLERS = 10000;
+  private static final long NEVER = Long.MIN_VALUE;
+
+  private final String name;
+  private final String pathPattern;
+  private final double permitsPerSecond;
+  private final int burst;
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final int maxTrackedCallers;
+
+  private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+  private final AtomicLong overflowBucket = new AtomicLong(NEVER);
+  private final AtomicLong lastEvictionTime = new AtomicLong(NEVER);
+  private final AtomicLong acceptedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong overflowedCount = new AtomicLong();
+
+  public RateLimitRule(String name, String pathPattern, double permitsPerSecond, int burst) {
+    this(name, pathPattern, permitsPerSecond, burst, DEFAULT_MAX_TRACKED_CALLERS);
+  }
+
+  /**
+   * Creates rate limit rule.
+   *
+   * @param name Rule name, used in metrics
+   * @param pathPattern Ant-style path pattern, e.g. <code>/api/reports/**</code>
+   * @param permitsPerSecond Number of requests per second, allowed for each caller
+   * @param burst Maximum number of requests, each caller can make at once
+   * @param maxTrackedCallers Maximum number of tracked callers, once it is reached idle callers are evicted and
+   *                          new callers share a single bucket
+   */
+  public RateLimitRule(String name, String pathPattern, double permitsPerSecond, int burst, int maxTrackedCallers) {
+    if (permitsPerSecond <= 0.0) {
+      throw new IllegalArgumentException("permitsPerSecond should be positive in rateLimit=" + name);
+    }
+
+    this.name = Objects.requireNonNull(name, "name");
+    this.pathPattern = Objects.requireNonNull(pathPattern, "pathPattern");
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = Math.max(1, burst);
+    this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1L) / permitsPerSecond));
+    this.toleranceNanos = intervalNanos * this.burst;
+    this.maxTrackedCallers = maxTrackedCallers;
+  }
+
+  @Nonnull
+  public String getName() {
+    return name;
+  }
+
+  @Nonnull
+  public String getPathPattern() {
+    return pathPattern;
+  }
+
+  public double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  /**
+   * Tries to take a token from the caller's bucket.
+   *
+   * @param caller Caller identity
+   * @param nowNanos Current time in nanoseconds, as returned by {@link System#nanoTime()}
+   * @return Zero if request is allowed, otherwise number of nanoseconds after which next request will be allowed
+   */
+  public long tryAcquire(String caller, long nowNanos) {
+    AtomicLong bucket = buckets.get(caller);
+    if (bucket == null) {
+      bucket = getNewBucket(caller, nowNanos);
+    }
+
+    for (;;) {
+      final long arrivalTime = bucket.get();
+      final long newArrivalTime = Math.max(arrivalTime, nowNanos - toleranceNanos) + intervalNanos;
+      final long waitTime = newArrivalTime - nowNanos;
+      if (waitTime > 0L) {
+        rejectedCount.incrementAndGet();
+        return waitTime;
+      }
+
+      if (bucket.compareAndSet(arrivalTime, newArrivalTime)) {
+        acceptedCount.incrementAndGet();
+        return 0L;
+      }
+    }
+  }
+
+  /**
+   * Returns rate limit state as a metrics entry. Counters are reported as deltas since the previous call
+   * to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(NAME, name)
+        .setProperty(CALLERS, buckets.size())
+        .setProperty(ACCEPTED, acceptedCount.getAndSet(0L))
+        .setProperty(REJECTED, rejectedCount.getAndSet(0L))
+        .setProperty(OVERFLOWED, overflowedCount.getAndSet(0L));
+  }
+
+  @Override
+  public String toString() {
+    return "RateLimitRule{" +
+        "name='" + name + '\'' +
+        ", pathPattern='" + pathPattern + '\'' +
+        ", permitsPerSecond=" + permitsPerSecond +
+        ", burst=" + burst +
+        '}';
+  }
+
+  //
+  // Private
+  //
+
+  private AtomicLong getNewBucket(String caller, long nowNanos) {
+    if (buckets.size() >= maxTrackedCallers) {
+      // scan buckets not more often than once in the time, needed to refill a bucket, only one thread does that
+      final long evictionTime = lastEvictionTime.get();
+      if ((evictionTime == NEVER || nowNanos - evictionTime >= toleranceNanos) &&
+          lastEvictionTime.compareAndSet(evictionTime, nowNanos)) {
+        evictIdleCallers(nowNanos);
+      }
+
+      if (buckets.size() >= maxTrackedCallers) {
+        overflowedCount.incrementAndGet();
+        return overflowBucket;
+      }
+    }
+
+    return buckets.computeIfAbsent(caller, k -> new AtomicLong(nowNanos - toleranceNanos));
+  }
+
+  private void evictIdleCallers(long nowNanos) {
+    // bucket with arrival time in the past is full and thus is the same as the new one
+    final Iterator<AtomicLong> it = buckets.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().get() - nowNanos <= -toleranceNanos) {
+        it.remove();
+      }
+    }
+  }
+}
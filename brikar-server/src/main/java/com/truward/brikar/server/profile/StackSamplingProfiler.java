@@ -0,0 +1,200 @@
+package com.truward.brikar.server.profile;
+
+import com.truward.brikar.server.tracking.RequestThreadTracker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Timer-based sampling profiler of the server threads, that process requests, see {@link RequestThreadTracker}.
+ * <p>
+ * Profiler takes stacks of all the threads, that process requests, at once with the given interval and counts
+ * identical stacks. Stacks are collapsed as expected by the flame graph tools: frames are written from the outermost
+ * one to the innermost one and separated by <code>;</code>. First frames of each stack are the operation
+ * of the request and, optionally, its request vector, so that flame graph can be split by operation or request.
+ * Threads, that don't process requests, e.g. idle workers, acceptors and selectors, are not sampled, sampling
+ * thread, that runs the profiler, is excluded as well.
+ * </p>
+ * <p>
+ * Only one profile can be taken at a time.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class StackSamplingProfiler {
+  private final RequestThreadTracker requestThreadTracker;
+  private final ThreadMXBean threadMXBean;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  public StackSamplingProfiler(@Nonnull RequestThreadTracker requestThreadTracker) {
+    this(requestThreadTracker, ManagementFactory.getThreadMXBean());
+  }
+
+  public StackSamplingProfiler(@Nonnull RequestThreadTracker requestThreadTracker,
+                               @Nonnull ThreadMXBean threadMXBean) {
+    this.requestThreadTracker = Objects.requireNonNull(requestThreadTracker, "requestThreadTracker");
+    this.threadMXBean = Objects.requireNonNull(threadMXBean, "threadMXBean");
+  }
+
+  /**
+   * Samples stacks of the request threads for the given time, blocks the calling thread until profile is taken.
+   *
+   * @param durationMillis Profiling time in milliseconds
+   * @param intervalMillis Time between two subsequent samples in milliseconds
+   * @param maxDepth Maximum number of the innermost frames of a stack
+   * @param includeRequestVectors True, if request vector should be a part of the collapsed stack
+   * @return Profile or null, if another profile is being taken
+   * @throws InterruptedException If calling thread has been interrupted
+   */
+  @Nullable
+  public Profile profile(long durationMillis,
+                         long intervalMillis,
+                         int maxDepth,
+                         boolean includeRequestVectors) throws InterruptedException {
+    if (durationMillis <= 0L) {
+      throw new IllegalArgumentException("durationMillis");
+    }
+    if (intervalMillis <= 0L) {
+      throw new IllegalArgumentException("intervalMillis");
+    }
+    if (maxDepth <= 0) {
+      throw new IllegalArgumentException("maxDepth");
+    }
+    if (!running.compareAndSet(false, true)) {
+      return null;
+    }
+
+    try {
+      final Profile result = new Profile();
+      final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+      final long startTime = System.nanoTime();
+      final long endTime = startTime + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+      for (long sampleTime = startTime; sampleTime < endTime; sampleTime += intervalNanos) {
+        final long delay = sampleTime - System.nanoTime();
+        if (delay > 0L) {
+          TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        sample(result, maxDepth, includeRequestVectors);
+      }
+      return result;
+    } finally {
+      running.set(false);
+    }
+  }
+
+  /**
+   * Collapsed stacks with their sample counts.
+   */
+  public static final class Profile {
+    private final Map<String, Integer> stacks = new HashMap<>();
+    private int sampleCount;
+    private int threadSampleCount;
+
+    /**
+     * @return Number of samples taken
+     */
+    public int getSampleCount() {
+      return sampleCount;
+    }
+
+    /**
+     * @return Number of stacks, sampled across all the threads
+     */
+    public int getThreadSampleCount() {
+      return threadSampleCount;
+    }
+
+    /**
+     * @return Collapsed stacks in descending order of their sample counts, e.g.
+     *         <code>GET_/api/reports/12;java.lang.Thread.run;...;com.example.ReportDao.query 12</code>
+     */
+    @Nonnull
+    public List<String> getCollapsedStacks() {
+      final List<Map.Entry<String, Integer>> entries = new ArrayList<>(stacks.entrySet());
+      entries.sort((left, right) -> {
+        final int result = Integer.compare(right.getValue(), left.getValue());
+        return result != 0 ? result : left.getKey().compareTo(right.getKey());
+      });
+
+      final List<String> result = new ArrayList<>(entries.size());
+      for (final Map.Entry<String, Integer> entry : entries) {
+        result.add(entry.getKey() + ' ' + entry.getValue());
+      }
+      return result;
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void sample(Profile profile, int maxDepth, boolean includeRequestVectors) {
+    ++profile.sampleCount;
+
+    final Thread currentThread = Thread.currentThread();
+    final List<RequestThreadTracker.ActiveRequest> requests = new ArrayList<>();
+    for (final RequestThreadTracker.ActiveRequest request : requestThreadTracker.getActiveRequests()) {
+      if (request.getThread() != currentThread) {
+        requests.add(request);
+      }
+    }
+    if (requests.isEmpty()) {
+      return;
+    }
+
+    // stacks of all the threads are taken at once
+    final long[] threadIds = new long[requests.size()];
+    for (int i = 0; i < threadIds.length; ++i) {
+      threadIds[i] = requests.get(i).getThread().getId();
+    }
+    final ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds, maxDepth);
+
+    final StringBuilder builder = new StringBuilder(1024);
+    for (int i = 0; i < threadInfos.length; ++i) {
+      final RequestThreadTracker.ActiveRequest request = requests.get(i);
+      final ThreadInfo threadInfo = threadInfos[i];
+      if (threadInfo == null || !requestThreadTracker.isActive(request)) {
+        continue; // thread terminated or moved on to another request
+      }
+
+      final StackTraceElement[] stack = threadInfo.getStackTrace();
+      if (stack.length == 0) {
+        continue;
+      }
+
+      builder.setLength(0);
+      appendFrameName(builder, request.getOperation());
+      if (includeRequestVectors && request.getRequestVector() != null) {
+        builder.append(';');
+        appendFrameName(builder, request.getRequestVector());
+      }
+      for (int j = stack.length - 1; j >= 0; --j) {
+        builder.append(';');
+        appendFrameName(builder, stack[j].getClassName());
+        builder.append('.');
+        appendFrameName(builder, stack[j].getMethodName());
+      }
+
+      ++profile.threadSampleCount;
+      profile.stacks.merge(builder.toString(), 1, Integer::sum);
+    }
+  }
+
+  private static void appendFrameName(StringBuilder builder, String name) {
+    for (int i = 0; i < name.length(); ++i) {
+      final char ch = name.charAt(i);
+      // frame and count separators of the collapsed stacks
+      builder.append(ch == ';' || ch <= ' ' ? '_' : ch);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.truward.brikar.server.tracking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A filter, that counts in-flight requests using {@link InFlightRequestTracker}. Async requests are counted
+ * until async processing completes.
+ * <p>
+ * Once server is draining, responses are sent with <code>Connection: close</code> header, so that clients
+ * don't reuse connections to the server, that is about to shut down.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public class InFlightRequestFilter implements Filter {
+  private final Logger log = LoggerFactory.getLogger(InFlightRequestFilter.class);
+  private final InFlightRequestTracker tracker;
+
+  public InFlightRequestFilter(InFlightRequestTracker tracker) {
+    this.tracker = Objects.requireNonNull(tracker, "tracker");
+  }
+
+  public InFlightRequestTracker getTracker() {
+    return tracker;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    log.debug("init");
+  }
+
+  @Override
+  public void doFilter(ServletRequest req,
+                       ServletResponse resp,
+                       FilterChain filterChain) throws IOException, ServletException {
+    final HttpServletRequest request = (HttpServletRequest) req;
+    final HttpServletResponse response = (HttpServletResponse) resp;
+
+    if (tracker.isDraining()) {
+      response.setHeader("Connection", "close");
+    }
+
+    tracker.enter();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new ExitingAsyncListener());
+      } else {
+        tracker.exit();
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    log.debug("destroy");
+  }
+
+  //
+  // Private
+  //
+
+  private final class ExitingAsyncListener implements AsyncListener {
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+      tracker.exit();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+      // do nothing, request is counted until onComplete
+    }
+
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+      // do nothing, request is counted until onComplete
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) throws IOException {
+      // listeners are dropped when async processing restarts, so register this listener again
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
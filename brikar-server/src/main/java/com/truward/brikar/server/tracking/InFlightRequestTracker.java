@@ -0,0 +1,97 @@
+package com.truward.brikar.server.tracking;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks number of requests, that are being processed by the server, and whether server is draining, i.e.
+ * preparing to shut down. Draining server should be reported as unhealthy, so that load balancers stop
+ * sending new requests to it.
+ *
+ * @author Alexander Shabanov
+ */
+public final class InFlightRequestTracker {
+
+  /**
+   * Name of the servlet context attribute, that holds the tracker.
+   */
+  public static final String ATTRIBUTE = InFlightRequestTracker.class.getName();
+
+  /**
+   * Operation name, under which tracker metrics are reported.
+   */
+  public static final String OPERATION = "InFlightRequests";
+
+  public static final String IN_FLIGHT = "inFlight";
+  public static final String DRAINING = "draining";
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Object drainLock = new Object();
+  private volatile boolean draining;
+
+  public void enter() {
+    inFlight.incrementAndGet();
+  }
+
+  public void exit() {
+    if (inFlight.decrementAndGet() == 0 && draining) {
+      synchronized (drainLock) {
+        drainLock.notifyAll();
+      }
+    }
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public boolean isDraining() {
+    return draining;
+  }
+
+  /**
+   * Marks server as draining.
+   */
+  public void startDraining() {
+    draining = true;
+  }
+
+  /**
+   * Waits until all in-flight requests complete or given timeout elapses. Should be called once server is draining.
+   *
+   * @param timeoutMillis Maximum time to wait in milliseconds
+   * @return Number of requests, that are still in flight
+   * @throws InterruptedException If current thread has been interrupted
+   */
+  public int awaitDrained(long timeoutMillis) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    synchronized (drainLock) {
+      int count;
+      while ((count = inFlight.get()) > 0) {
+        final long waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (waitMillis <= 0L) {
+          return count;
+        }
+        drainLock.wait(waitMillis);
+      }
+      return 0;
+    }
+  }
+
+  @Nonnull
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(IN_FLIGHT, inFlight.get())
+        .setProperty(DRAINING, draining);
+  }
+
+  @Override
+  public String toString() {
+    return "InFlightRequestTracker{inFlight=" + inFlight.get() + ", draining=" + draining + '}';
+  }
+}
@@ -0,0 +1,159 @@
+package com.truward.brikar.server.tracking;
+
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.Metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether request metrics should be written to the log once request completes.
+ * <p>
+ * Failed requests, requests, that took longer than the slow request threshold of their operation, and requests,
+ * that carry debug header, are always logged. The rest are logged with the given probability.
+ * Sampler counts every request it sees, so that totals, reported by {@link #getMetrics()}, stay accurate
+ * regardless of the sample rate.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class RequestLogSampler {
+
+  /**
+   * Operation name, under which sampler metrics are reported.
+   */
+  public static final String OPERATION = "RequestLog";
+
+  public static final String REQUESTS = "requests";
+  public static final String ERRORS = "errors";
+  public static final String SLOW = "slow";
+  public static final String LOGGED = "logged";
+  public static final String TOTAL_TIME = "totalTime";
+
+  /**
+   * Default name of the request header, which presence tells that request metrics should always be logged.
+   */
+  public static final String DEFAULT_DEBUG_HEADER = "X-Debug-Log";
+
+  private final double sampleRate;
+  private final long slowThreshold;
+  private final Map<String, Long> operationSlowThresholds;
+  private final String debugHeader;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong slowCount = new AtomicLong();
+  private final AtomicLong loggedCount = new AtomicLong();
+  private final AtomicLong totalTime = new AtomicLong();
+
+  /**
+   * Creates request log sampler.
+   *
+   * @param sampleRate Share of the ordinary requests in <code>[0, 1]</code> range, that should be logged
+   * @param slowThreshold Default slow request threshold in milliseconds, zero or negative value means no threshold
+   * @param operationSlowThresholds Slow request thresholds in milliseconds by operation name,
+   *                                e.g. <code>GET_/api/reports/{id}</code>
+   * @param debugHeader Name of the request header, which presence tells that request should be logged, or null
+   */
+  public RequestLogSampler(double sampleRate,
+                           long slowThreshold,
+                           @Nonnull Map<String, Long> operationSlowThresholds,
+                           @Nullable String debugHeader) {
+    if (sampleRate < 0.0 || sampleRate > 1.0) {
+      throw new IllegalArgumentException("sampleRate should be in [0, 1] range");
+    }
+
+    this.sampleRate = sampleRate;
+    this.slowThreshold = slowThreshold;
+    this.operationSlowThresholds = Collections.unmodifiableMap(new HashMap<>(
+        Objects.requireNonNull(operationSlowThresholds, "operationSlowThresholds")));
+    this.debugHeader = debugHeader;
+  }
+
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  public long getSlowThreshold(@Nonnull String operation) {
+    final Long result = operationSlowThresholds.get(operation);
+    return result != null ? result : slowThreshold;
+  }
+
+  @Nullable
+  public String getDebugHeader() {
+    return debugHeader;
+  }
+
+  /**
+   * Accounts completed request and tells whether its metrics should be logged.
+   *
+   * @param request Completed request
+   * @param operation Request operation name
+   * @param timeDelta Request processing time in milliseconds
+   * @param failed True, if request failed
+   * @return True, if request metrics should be logged
+   */
+  public boolean shouldLog(@Nonnull HttpServletRequest request,
+                           @Nonnull String operation,
+                           long timeDelta,
+                           boolean failed) {
+    requestCount.incrementAndGet();
+    totalTime.addAndGet(timeDelta);
+
+    boolean result = false;
+    if (failed) {
+      failedCount.incrementAndGet();
+      result = true;
+    }
+
+    final long threshold = getSlowThreshold(operation);
+    if (threshold > 0L && timeDelta >= threshold) {
+      slowCount.incrementAndGet();
+      result = true;
+    }
+
+    if (!result) {
+      result = (debugHeader != null && request.getHeader(debugHeader) != null) ||
+          (sampleRate > 0.0 && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate));
+    }
+
+    if (result) {
+      loggedCount.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Returns request counters as a metrics entry. Counters are reported as deltas since the previous call
+   * to this method.
+   *
+   * @return Metrics entry
+   */
+  @Nonnull
+  public Metrics getMetrics() {
+    return new SimpleLapse()
+        .setOperation(OPERATION)
+        .setProperty(REQUESTS, requestCount.getAndSet(0L))
+        .setProperty(ERRORS, failedCount.getAndSet(0L))
+        .setProperty(SLOW, slowCount.getAndSet(0L))
+        .setProperty(LOGGED, loggedCount.getAndSet(0L))
+        .setProperty(TOTAL_TIME, totalTime.getAndSet(0L));
+  }
+
+  @Override
+  public String toString() {
+    return "RequestLogSampler{" +
+        "sampleRate=" + sampleRate +
+        ", slowThreshold=" + slowThreshold +
+        ", operationSlowThresholds=" + operationSlowThresholds +
+        ", debugHeader='" + debugHeader + '\'' +
+        '}';
+  }
+}
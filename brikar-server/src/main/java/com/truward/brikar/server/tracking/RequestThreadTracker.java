@@ -0,0 +1,142 @@
+package com.truward.brikar.server.tracking;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tracks requests, that are being processed by the server threads, so that other threads, e.g. the one that
+ * samples stacks of the server threads, could find out which request the given thread processes.
+ * MDC of the thread can't be used for that, as it is only visible to the thread itself.
+ * <p>
+ * Each thread publishes its current request in its own thread-local slot, which is registered once per thread,
+ * so that starting and completing a request costs one small allocation and a volatile write.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+public final class RequestThreadTracker {
+
+  /**
+   * Name of the servlet context attribute, that holds the tracker.
+   */
+  public static final String ATTRIBUTE = RequestThreadTracker.class.getName();
+
+  private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Slot> localSlot = ThreadLocal.withInitial(this::createSlot);
+
+  /**
+   * Records that current thread started processing the request.
+   *
+   * @param operation Operation name, e.g. <code>GET_/api/reports/12</code>
+   * @param requestVector Request vector or null
+   */
+  public void enter(@Nonnull String operation, @Nullable String requestVector) {
+    final Slot slot = localSlot.get();
+    slot.request = new ActiveRequest(slot, Thread.currentThread(), operation, requestVector);
+  }
+
+  /**
+   * Records that current thread completed processing of the request.
+   */
+  public void exit() {
+    localSlot.get().request = null;
+  }
+
+  /**
+   * @return Requests, that are being processed at the moment
+   */
+  @Nonnull
+  public List<ActiveRequest> getActiveRequests() {
+    final List<ActiveRequest> result = new ArrayList<>();
+    for (final Iterator<Slot> it = slots.iterator(); it.hasNext();) {
+      final Slot slot = it.next();
+      final Thread thread = slot.thread.get();
+      if (thread == null || !thread.isAlive()) {
+        it.remove();
+        continue;
+      }
+
+      final ActiveRequest request = slot.request;
+      if (request != null) {
+        result.add(request);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tells whether the given request is still being processed, i.e. its thread hasn't moved on to another request.
+   *
+   * @param request Request, returned by {@link #getActiveRequests()}
+   * @return True, if request is still being processed
+   */
+  public boolean isActive(@Nonnull ActiveRequest request) {
+    return request.slot.request == request;
+  }
+
+  /**
+   * Request, that is being processed by a server thread.
+   */
+  public static final class ActiveRequest {
+    private final Slot slot;
+    private final Thread thread;
+    private final String operation;
+    private final String requestVector;
+
+    ActiveRequest(Slot slot, Thread thread, String operation, @Nullable String requestVector) {
+      this.slot = slot;
+      this.thread = thread;
+      this.operation = operation;
+      this.requestVector = requestVector;
+    }
+
+    @Nonnull
+    public Thread getThread() {
+      return thread;
+    }
+
+    @Nonnull
+    public String getOperation() {
+      return operation;
+    }
+
+    @Nullable
+    public String getRequestVector() {
+      return requestVector;
+    }
+
+    @Override
+    public String toString() {
+      return "ActiveRequest{" +
+          "thread=" + thread.getName() +
+          ", operation='" + operation + '\'' +
+          ", requestVector='" + requestVector + '\'' +
+          '}';
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private Slot createSlot() {
+    final Slot result = new Slot(Thread.currentThread());
+    slots.add(result);
+    return result;
+  }
+
+  private static final class Slot {
+    final WeakReference<Thread> thread;
+    volatile ActiveRequest request;
+
+    Slot(Thread thread) {
+      this.thread = new WeakReference<>(thread);
+    }
+  }
+}
@@ -1,18 +1,28 @@
 package com.truward.brikar.server.tracking;
 
 import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
 import com.truward.brikar.common.log.lapse.SimpleLapse;
 import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.ResourceUsage;
+import com.truward.brikar.common.log.watchdog.SlowCallWatchdog;
 import com.truward.brikar.common.tracking.TrackingHttpHeaderNames;
+import com.truward.brikar.server.jetty.QueueTimeHandler;
 import com.truward.brikar.server.util.IdUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptorAdapter;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
+import javax.annotation.Nullable;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * A filter which performs processing of request ID and originating reqiest ID, such as
@@ -20,16 +30,101 @@ import java.io.IOException;
  *
  * This filter is associated with logger, which produces results under <code>BrikarRequestLogger</code> name.
  *
+ * Async requests are supported: request vector and local metrics collection are restored on async dispatches and
+ * request lapse is logged once async processing completes, see also {@link TrackingContext}.
+ *
+ * Time, that request spent in the server queue, is logged as <code>tQueue</code> attribute of the request lapse
+ * if it has been measured by {@link QueueTimeHandler}.
+ *
+ * CPU time and number of bytes, allocated while processing the request, are logged if resource usage accounting
+ * has been enabled, see {@link #RESOURCE_USAGE_ENABLED_PARAMETER} and {@link ResourceUsage}.
+ *
+ * Metrics of completed requests can be sampled, so that only a share of successful requests is logged,
+ * see {@link #setSampler(RequestLogSampler)}.
+ *
+ * Requests are tracked by the default {@link SlowCallWatchdog} under <code>VERB_path</code> operation name,
+ * e.g. <code>GET_/api/reports/12</code>, while the servlet thread processes them.
+ *
+ * Latency of completed requests is recorded in the {@link LatencyHistogramRegistry} under <code>VERB_pattern</code>
+ * name, where pattern is the URL pattern of the handler, that served the request. Requests without such a pattern,
+ * e.g. ones, that resulted in 404, share a single <code>VERB_&lt;unmatched&gt;</code> histogram, see
+ * {@link #UNMATCHED_OPERATION}, so that arbitrary paths don't exhaust the limit of the tracked operations.
+ *
+ * Request, processed by the current thread, and its request vector are made visible to the other threads,
+ * e.g. to the sampling profiler, if request thread tracker has been set,
+ * see {@link #setRequestThreadTracker(RequestThreadTracker)}.
+ *
  * See also {@link LogUtil} and {@link TrackingHttpHeaderNames}.
  *
  * @author Alexander Shabanov
  */
 public class RequestVectorAwareFilter implements Filter {
+
+  /**
+   * Name of the request attribute, that holds {@link TrackingContext} of the request.
+   */
+  public static final String TRACKING_CONTEXT_ATTRIBUTE = RequestVectorAwareFilter.class.getName() +
+      ".TRACKING_CONTEXT";
+
+  /**
+   * Name of the boolean filter init parameter, that enables accounting of CPU time and allocated bytes of requests.
+   */
+  public static final String RESOURCE_USAGE_ENABLED_PARAMETER = "resourceUsageEnabled";
+
+  /**
+   * Operation name, appended to the request method, under which latency of requests without matching handler
+   * URL pattern is recorded.
+   */
+  public static final String UNMATCHED_OPERATION = "<unmatched>";
+
   private final Logger log = LoggerFactory.getLogger("BrikarRequestLogger");
+  private boolean resourceUsageEnabled;
+  private RequestLogSampler sampler;
+  private RequestThreadTracker requestThreadTracker;
+
+  public boolean isResourceUsageEnabled() {
+    return resourceUsageEnabled;
+  }
+
+  public void setResourceUsageEnabled(boolean resourceUsageEnabled) {
+    this.resourceUsageEnabled = resourceUsageEnabled;
+  }
+
+  @Nullable
+  public RequestLogSampler getSampler() {
+    return sampler;
+  }
+
+  /**
+   * Sets sampler, that decides whether metrics of the completed request should be logged.
+   *
+   * @param sampler Request log sampler or null, if metrics of each request should be logged
+   */
+  public void setSampler(@Nullable RequestLogSampler sampler) {
+    this.sampler = sampler;
+  }
+
+  @Nullable
+  public RequestThreadTracker getRequestThreadTracker() {
+    return requestThreadTracker;
+  }
+
+  /**
+   * Sets tracker, that makes request, processed by the current thread, visible to the other threads.
+   *
+   * @param requestThreadTracker Request thread tracker or null, if requests should not be tracked
+   */
+  public void setRequestThreadTracker(@Nullable RequestThreadTracker requestThreadTracker) {
+    this.requestThreadTracker = requestThreadTracker;
+  }
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
     log.debug("init");
+    final String resourceUsageEnabledParameter = filterConfig.getInitParameter(RESOURCE_USAGE_ENABLED_PARAMETER);
+    if (resourceUsageEnabledParameter != null) {
+      setResourceUsageEnabled(Boolean.parseBoolean(resourceUsageEnabledParameter));
+    }
   }
 
   @Override
@@ -39,6 +134,20 @@ public class RequestVectorAwareFilter implements Filter {
     final HttpServletRequest request = (HttpServletRequest) req;
     final HttpServletResponse response = (HttpServletResponse) resp;
 
+    if (request.getDispatcherType() == DispatcherType.ASYNC) {
+      final TrackingContext trackingContext = (TrackingContext) request.getAttribute(TRACKING_CONTEXT_ATTRIBUTE);
+      if (trackingContext != null) {
+        // async dispatch of the request, that has already been tracked: restore tracking state
+        enterRequestThread(request, trackingContext.getRequestVector());
+        try (final TrackingContext.Scope ignored = trackingContext.attach()) {
+          filterChain.doFilter(request, response);
+        } finally {
+          exitRequestThread();
+        }
+        return;
+      }
+    }
+
     // get originating request ID and propagate it to the logging context
     String originatingRequestVector = request.getHeader(TrackingHttpHeaderNames.REQUEST_VECTOR);
     if (!LogUtil.isValidRequestVector(originatingRequestVector)) {
@@ -53,8 +162,30 @@ public class RequestVectorAwareFilter implements Filter {
 
     // set headers containing request ID
     response.setHeader(TrackingHttpHeaderNames.REQUEST_VECTOR, originatingRequestVector);
+    enterRequestThread(request, originatingRequestVector);
+    try {
+      processRequest(request, response, filterChain, originatingRequestVector);
+    } finally {
+      exitRequestThread();
+    }
+
+    // remove MDC variables
+    MDC.remove(LogUtil.REQUEST_VECTOR);
+  }
 
-    // process request
+  @Override
+  public void destroy() {
+    log.debug("destroy");
+  }
+
+  //
+  // Private
+  //
+
+  private void processRequest(HttpServletRequest request,
+                              HttpServletResponse response,
+                              FilterChain filterChain,
+                              String originatingRequestVector) throws IOException, ServletException {
     if (log.isInfoEnabled()) {
       String pathInfo = request.getPathInfo(); // can be null if request doesn't have path info
       if (pathInfo != null) {
@@ -66,37 +197,192 @@ public class RequestVectorAwareFilter implements Filter {
       final SimpleLapse lapse = new SimpleLapse();
       lapse.setStartTime(System.currentTimeMillis());
       final MetricsCollection metricsCollection = LogUtil.getOrCreateLocalMetricsCollection();
+      metricsCollection.openSpan(lapse); // request is the root of all the spans, recorded while processing it
+      final ResourceUsage resourceUsage = resourceUsageEnabled ? new ResourceUsage() : null;
+      final TrackingContext trackingContext = new TrackingContext(originatingRequestVector, metricsCollection,
+          resourceUsage);
+      initAsyncTracking(request, trackingContext);
+      if (resourceUsage != null) {
+        resourceUsage.attach();
+      }
+      final SlowCallWatchdog watchdog = SlowCallWatchdog.getDefault();
+      if (watchdog.isEnabled()) {
+        watchdog.enter(request.getMethod() + '_' + pathInfo, lapse);
+      }
+      boolean failed = true;
       try {
         filterChain.doFilter(request, response);
+        failed = false;
       } finally {
-        lapse.setEndTime(System.currentTimeMillis());
-
-        // This code gets URL pattern associated with the method that handled request
-        Object urlPattern = request.getAttribute("org.springframework.web.servlet.HandlerMapping.bestMatchingPattern");
-        final String urlOperation = urlPattern != null ? urlPattern.toString() : pathInfo;
-        final int operationSizeEstimate = request.getMethod().length() + 1 + urlOperation.length();
-        @SuppressWarnings("StringBufferReplaceableByString")
-        final StringBuilder operation = new StringBuilder(operationSizeEstimate);
-        operation.append(request.getMethod()).append('_').append(urlOperation);
-
-        lapse.setOperation(operation.toString());
-        lapse.setProperty(LogUtil.VERB, request.getMethod());
-        lapse.setProperty(LogUtil.RESPONSE_CODE, response.getStatus());
-        lapse.setProperty(LogUtil.URL, pathInfo);
-        metricsCollection.add(lapse);
-
-        LogUtil.logAndResetLocalMetricsCollection(log);
+        watchdog.exit(lapse);
+        if (resourceUsage != null) {
+          resourceUsage.detach();
+        }
+
+        if (request.isAsyncStarted()) {
+          // request lapse is logged once async processing completes
+          request.getAsyncContext().addListener(new LapseAsyncListener(request, response, trackingContext,
+              lapse, pathInfo));
+          LogUtil.setLocalMetricsCollection(null);
+        } else {
+          logLapse(request, response, metricsCollection, resourceUsage, lapse, pathInfo);
+          if (shouldLog(request, response, lapse, failed)) {
+            LogUtil.logAndResetLocalMetricsCollection(log);
+          } else {
+            LogUtil.setLocalMetricsCollection(null);
+          }
+        }
       }
     } else {
+      initAsyncTracking(request, new TrackingContext(originatingRequestVector, null));
       filterChain.doFilter(request, response);
     }
+  }
+
+  private void enterRequestThread(HttpServletRequest request, @Nullable String requestVector) {
+    final RequestThreadTracker tracker = requestThreadTracker;
+    if (tracker != null) {
+      final String pathInfo = request.getPathInfo();
+      tracker.enter(request.getMethod() + '_' + (pathInfo != null ? pathInfo : ""), requestVector);
+    }
+  }
 
-    // remove MDC variables
-    MDC.remove(LogUtil.REQUEST_VECTOR);
+  private void exitRequestThread() {
+    final RequestThreadTracker tracker = requestThreadTracker;
+    if (tracker != null) {
+      tracker.exit();
+    }
   }
 
-  @Override
-  public void destroy() {
-    log.debug("destroy");
+  private static void initAsyncTracking(HttpServletRequest request, TrackingContext trackingContext) {
+    request.setAttribute(TRACKING_CONTEXT_ATTRIBUTE, trackingContext);
+
+    // carry tracking state over to the threads, that execute callables, returned from spring MVC controllers
+    WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(TRACKING_CONTEXT_ATTRIBUTE,
+        new TrackingCallableInterceptor(trackingContext));
+  }
+
+  private boolean shouldLog(HttpServletRequest request,
+                            HttpServletResponse response,
+                            SimpleLapse lapse,
+                            boolean failed) {
+    final RequestLogSampler currentSampler = sampler;
+    return currentSampler == null || currentSampler.shouldLog(request, lapse.getOperation(),
+        lapse.getEndTime() - lapse.getStartTime(),
+        failed || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+  }
+
+  private static void logLapse(HttpServletRequest request,
+                               HttpServletResponse response,
+                               MetricsCollection metricsCollection,
+                               ResourceUsage resourceUsage,
+                               SimpleLapse lapse,
+                               String pathInfo) {
+    lapse.setEndTime(System.currentTimeMillis());
+
+    // This code gets URL pattern associated with the method that handled request
+    Object urlPattern = request.getAttribute("org.springframework.web.servlet.HandlerMapping.bestMatchingPattern");
+    final String urlOperation = urlPattern != null ? urlPattern.toString() : pathInfo;
+    final int operationSizeEstimate = request.getMethod().length() + 1 + urlOperation.length();
+    @SuppressWarnings("StringBufferReplaceableByString")
+    final StringBuilder operation = new StringBuilder(operationSizeEstimate);
+    operation.append(request.getMethod()).append('_').append(urlOperation);
+
+    lapse.setOperation(operation.toString());
+    lapse.setProperty(LogUtil.VERB, request.getMethod());
+    lapse.setProperty(LogUtil.RESPONSE_CODE, response.getStatus());
+    lapse.setProperty(LogUtil.URL, pathInfo);
+    final Object queueTime = request.getAttribute(QueueTimeHandler.QUEUE_TIME_ATTRIBUTE);
+    if (queueTime instanceof Long) {
+      lapse.setProperty(LogUtil.QUEUE_TIME, (Long) queueTime);
+    }
+    if (resourceUsage != null) {
+      resourceUsage.setProperties(lapse);
+    }
+    // paths without handler pattern are unbounded, so they share a single histogram
+    LatencyHistogramRegistry.getDefault().record(LatencyHistogram.Kind.REQUEST,
+        urlPattern != null ? lapse.getOperation() : request.getMethod() + '_' + UNMATCHED_OPERATION,
+        lapse.getEndTime() - lapse.getStartTime(), response.getStatus(), lapse.isFailed());
+    metricsCollection.closeSpan(lapse);
+  }
+
+  /**
+   * Logs request lapse once async request processing completes.
+   */
+  private final class LapseAsyncListener implements AsyncListener {
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private final TrackingContext trackingContext;
+    private final SimpleLapse lapse;
+    private final String pathInfo;
+
+    LapseAsyncListener(HttpServletRequest request,
+                       HttpServletResponse response,
+                       TrackingContext trackingContext,
+                       SimpleLapse lapse,
+                       String pathInfo) {
+      this.request = request;
+      this.response = response;
+      this.trackingContext = trackingContext;
+      this.lapse = lapse;
+      this.pathInfo = pathInfo;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+      final MetricsCollection metricsCollection = trackingContext.getMetricsCollection();
+      if (metricsCollection == null) {
+        return;
+      }
+
+      try (final TrackingContext.Scope ignored = trackingContext.attach()) {
+        logLapse(request, response, metricsCollection, trackingContext.getResourceUsage(), lapse, pathInfo);
+        if (shouldLog(request, response, lapse, false)) {
+          LogUtil.logInfo(metricsCollection, log);
+        }
+      }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+      // do nothing, completion is reported by onComplete
+    }
+
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+      // do nothing, completion is reported by onComplete
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) throws IOException {
+      // listeners are dropped when async processing restarts, so register this listener again
+      event.getAsyncContext().addListener(this);
+    }
+  }
+
+  /**
+   * Binds tracking state to the threads, that execute callables, returned from spring MVC controllers.
+   */
+  private static final class TrackingCallableInterceptor extends CallableProcessingInterceptorAdapter {
+    private final TrackingContext trackingContext;
+    private volatile TrackingContext.Scope scope;
+
+    TrackingCallableInterceptor(TrackingContext trackingContext) {
+      this.trackingContext = trackingContext;
+    }
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+      scope = trackingContext.attach();
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+      final TrackingContext.Scope currentScope = scope;
+      if (currentScope != null) {
+        scope = null;
+        currentScope.close();
+      }
+    }
   }
 }
@@ -0,0 +1,169 @@
+package com.truward.brikar.server.tracking;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.ResourceUsage;
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Snapshot of the request tracking state: request vector, put to the MDC context, local metrics collection,
+ * see also {@link LogUtil}, and resource usage of the request, if it is accounted, see {@link ResourceUsage}.
+ * <p>
+ * Tracking state is bound to the thread, that processes the request, so it needs to be carried over to the
+ * threads, that complete asynchronous requests, e.g.:
+ * </p>
+ * <pre>
+ *   &#64;RequestMapping("/api/user/{id}")
+ *   public CompletableFuture&lt;User&gt; getUser(&#64;PathVariable("id") long id) {
+ *     return CompletableFuture.supplyAsync(() -&gt; userDao.getUser(id), TrackingContext.wrap(executor));
+ *   }
+ * </pre>
+ *
+ * @author Alexander Shabanov
+ */
+public final class TrackingContext {
+
+  /**
+   * Task decorator, that carries tracking state of the submitting thread over to the executing thread,
+   * can be set to spring's <code>ThreadPoolTaskExecutor</code>.
+   */
+  public static final TaskDecorator TASK_DECORATOR = runnable -> capture().wrap(runnable);
+
+  private final String requestVector;
+  private final MetricsCollection metricsCollection;
+  private final ResourceUsage resourceUsage;
+
+  public TrackingContext(@Nullable String requestVector,
+                         @Nullable MetricsCollection metricsCollection,
+                         @Nullable ResourceUsage resourceUsage) {
+    this.requestVector = requestVector;
+    this.metricsCollection = metricsCollection;
+    this.resourceUsage = resourceUsage;
+  }
+
+  public TrackingContext(@Nullable String requestVector, @Nullable MetricsCollection metricsCollection) {
+    this(requestVector, metricsCollection, null);
+  }
+
+  /**
+   * @return Tracking state of the current thread
+   */
+  @Nonnull
+  public static TrackingContext capture() {
+    return new TrackingContext(MDC.get(LogUtil.REQUEST_VECTOR), LogUtil.getLocalMetricsCollection(),
+        ResourceUsage.getLocal());
+  }
+
+  /**
+   * Wraps given executor, so that each submitted task is executed with tracking state of the submitting thread.
+   *
+   * @param executor Executor to wrap
+   * @return Wrapped executor
+   */
+  @Nonnull
+  public static Executor wrap(@Nonnull Executor executor) {
+    Objects.requireNonNull(executor, "executor");
+    return command -> executor.execute(capture().wrap(command));
+  }
+
+  @Nullable
+  public String getRequestVector() {
+    return requestVector;
+  }
+
+  @Nullable
+  public MetricsCollection getMetricsCollection() {
+    return metricsCollection;
+  }
+
+  @Nullable
+  public ResourceUsage getResourceUsage() {
+    return resourceUsage;
+  }
+
+  /**
+   * Binds this tracking state to the current thread.
+   *
+   * @return Scope, which restores previous tracking state of the current thread once closed
+   */
+  @Nonnull
+  public Scope attach() {
+    final Scope scope = new Scope(MDC.get(LogUtil.REQUEST_VECTOR), LogUtil.getLocalMetricsCollection(),
+        resourceUsage);
+    setState(requestVector, metricsCollection);
+    if (resourceUsage != null) {
+      resourceUsage.attach();
+    }
+    return scope;
+  }
+
+  @Nonnull
+  public Runnable wrap(@Nonnull Runnable runnable) {
+    Objects.requireNonNull(runnable, "runnable");
+    return () -> {
+      try (final Scope ignored = attach()) {
+        runnable.run();
+      }
+    };
+  }
+
+  @Nonnull
+  public <T> Callable<T> wrap(@Nonnull Callable<T> callable) {
+    Objects.requireNonNull(callable, "callable");
+    return () -> {
+      try (final Scope ignored = attach()) {
+        return callable.call();
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "TrackingContext{requestVector=" + requestVector + '}';
+  }
+
+  /**
+   * Scope of the tracking state, bound to the current thread.
+   */
+  public static final class Scope implements AutoCloseable {
+    private final String previousRequestVector;
+    private final MetricsCollection previousMetricsCollection;
+    private final ResourceUsage resourceUsage;
+
+    private Scope(String previousRequestVector,
+                  MetricsCollection previousMetricsCollection,
+                  ResourceUsage resourceUsage) {
+      this.previousRequestVector = previousRequestVector;
+      this.previousMetricsCollection = previousMetricsCollection;
+      this.resourceUsage = resourceUsage;
+    }
+
+    @Override
+    public void close() {
+      if (resourceUsage != null) {
+        resourceUsage.detach();
+      }
+      setState(previousRequestVector, previousMetricsCollection);
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private static void setState(@Nullable String requestVector, @Nullable MetricsCollection metricsCollection) {
+    if (requestVector != null) {
+      MDC.put(LogUtil.REQUEST_VECTOR, requestVector);
+    } else {
+      MDC.remove(LogUtil.REQUEST_VECTOR);
+    }
+    LogUtil.setLocalMetricsCollection(metricsCollection);
+  }
+}
@@ -0,0 +1,127 @@
+package com.truward.brikar.server.util;
+
+import com.truward.brikar.error.model.ErrorV1;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helper class for writing standard error responses outside of spring MVC, e.g. from servlet filters, where
+ * message converters are not available.
+ * <p>
+ * Error is written as binary protobuf message if client accepts <code>application/x-protobuf</code> content,
+ * otherwise JSON representation of {@link ErrorV1.ErrorResponse} is written.
+ * </p>
+ *
+ * @author Alexander Shabanov
+ */
+@ParametersAreNonnullByDefault
+public final class ErrorResponseUtil {
+  private ErrorResponseUtil() {}
+
+  public static final MediaType PROTOBUF_MEDIA_TYPE = new MediaType("application", "x-protobuf");
+
+  @Nonnull
+  public static ErrorV1.ErrorResponse errorResponse(HttpStatus status, String message) {
+    return ErrorV1.ErrorResponse.newBuilder()
+        .setError(ErrorV1.Error.newBuilder()
+            .setCode(status.name())
+            .setMessage(message)
+            .build())
+        .build();
+  }
+
+  /**
+   * Writes error response with the given status code.
+   *
+   * @param request Current request
+   * @param response Current response
+   * @param status HTTP status
+   * @param message Error message
+   * @throws IOException On I/O error
+   */
+  public static void sendError(HttpServletRequest request,
+                               HttpServletResponse response,
+                               HttpStatus status,
+                               String message) throws IOException {
+    final ErrorV1.ErrorResponse errorResponse = errorResponse(status, message);
+    response.setStatus(status.value());
+
+    final String accept = request.getHeader("Accept");
+    if (accept != null && accept.contains(PROTOBUF_MEDIA_TYPE.toString())) {
+      final byte[] body = errorResponse.toByteArray();
+      response.setContentType(PROTOBUF_MEDIA_TYPE.toString());
+      response.setContentLength(body.length);
+      try (final OutputStream os = response.getOutputStream()) {
+        os.write(body);
+      }
+      return;
+    }
+
+    final byte[] body = toJson(errorResponse).getBytes(StandardCharsets.UTF_8);
+    response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+    response.setContentLength(body.length);
+    try (final OutputStream os = response.getOutputStream()) {
+      os.write(body);
+    }
+  }
+
+  @Nonnull
+  public static String toJson(ErrorV1.ErrorResponse errorResponse) {
+    final ErrorV1.Error error = errorResponse.getError();
+    final StringBuilder builder = new StringBuilder(64 + error.getMessage().length());
+    builder.append("{\"error\":{\"code\":");
+    appendJsonString(builder, error.getCode());
+    if (!error.getMessage().isEmpty()) {
+      builder.append(",\"message\":");
+      appendJsonString(builder, error.getMessage());
+    }
+    if (!error.getTarget().isEmpty()) {
+      builder.append(",\"target\":");
+      appendJsonString(builder, error.getTarget());
+    }
+    return builder.append("}}").toString();
+  }
+
+  //
+  // Private
+  //
+
+  private static void appendJsonString(StringBuilder builder, String value) {
+    builder.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      final char ch = value.charAt(i);
+      switch (ch) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\r':
+          builder.append("\\r");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        default:
+          if (ch < 0x20) {
+            builder.append(String.format("\\u%04x", (int) ch));
+          } else {
+            builder.append(ch);
+          }
+      }
+    }
+    builder.append('"');
+  }
+}
@@ -0,0 +1,30 @@
+package com.truward.brikar.server.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Helper class for matching request paths.
+ *
+ * @author Alexander Shabanov
+ */
+public final class PathUtil {
+  private PathUtil() {}
+
+  /**
+   * Checks whether given path starts with the given path prefix, prefix is matched by whole path segments only,
+   * so that <code>/api/user</code> matches <code>/api/user</code> and <code>/api/user/1</code>,
+   * but not <code>/api/users</code>.
+   *
+   * @param path Request path
+   * @param prefix Path prefix
+   * @return True, if given path matches given prefix
+   */
+  public static boolean hasPathPrefix(@Nullable String path, @Nonnull String prefix) {
+    if (path == null || !path.startsWith(prefix)) {
+      return false;
+    }
+
+    return path.length() == prefix.length() || prefix.endsWith("/") || path.charAt(prefix.length()) == '/';
+  }
+}
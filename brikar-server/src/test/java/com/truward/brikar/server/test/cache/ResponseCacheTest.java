@@ -0,0 +1,210 @@
+package com.truward.brikar.server.test.cache;
+
+import com.truward.brikar.server.cache.CacheableResponse;
+import com.truward.brikar.server.cache.ResponseCache;
+import com.truward.brikar.server.cache.ResponseCacheFilter;
+import com.truward.brikar.server.cache.ResponseCacheInterceptor;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ResponseCache}, {@link ResponseCacheFilter} and {@link ResponseCacheInterceptor}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class ResponseCacheTest {
+
+  @Test
+  public void shouldCacheEntry() throws Exception {
+    // Given:
+    final ResponseCache cache = new ResponseCache(1024L, 1000L);
+    final ResponseCache.Lookup first = cache.lookup("/a");
+
+    // When:
+    first.complete(newEntry("Hello", 60000L));
+    final ResponseCache.Lookup second = cache.lookup("/a");
+
+    // Then:
+    assertTrue(first.isLoader());
+    assertNull(first.getEntry());
+    assertFalse(second.isLoader());
+    assertNotNull(second.getEntry());
+    assertEquals("Hello", new String(second.getEntry().getBody(), StandardCharsets.UTF_8));
+    final String metrics = toString(cache);
+    assertTrue(metrics, metrics.contains("hits=1"));
+    assertTrue(metrics, metrics.contains("misses=1"));
+  }
+
+  @Test
+  public void shouldExpireEntry() throws InterruptedException {
+    // Given:
+    final ResponseCache cache = new ResponseCache(1024L, 1000L);
+    cache.lookup("/a").complete(newEntry("Hello", -1L));
+
+    // When:
+    final ResponseCache.Lookup lookup = cache.lookup("/a");
+
+    // Then:
+    assertTrue(lookup.isLoader());
+    assertNull(lookup.getEntry());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntry() throws Exception {
+    // Given:
+    final ResponseCache cache = new ResponseCache(10L, 1000L);
+    cache.lookup("/a").complete(newEntry("12345", 60000L));
+    cache.lookup("/b").complete(newEntry("12345", 60000L));
+    assertNotNull(cache.lookup("/a").getEntry()); // touch first entry
+
+    // When:
+    cache.lookup("/c").complete(newEntry("12345", 60000L));
+
+    // Then:
+    assertNotNull(cache.lookup("/a").getEntry());
+    assertNull(cache.lookup("/b").getEntry());
+    assertTrue(toString(cache).contains("evictions=1"));
+  }
+
+  @Test
+  public void shouldCoalesceConcurrentMisses() throws Exception {
+    // Given:
+    final ResponseCache cache = new ResponseCache(1024L, 10000L);
+    final ResponseCache.Lookup loader = cache.lookup("/a");
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      // When:
+      final Future<ResponseCache.Lookup> first = executor.submit(() -> cache.lookup("/a"));
+      final Future<ResponseCache.Lookup> second = executor.submit(() -> cache.lookup("/a"));
+      Thread.sleep(50L);
+      loader.complete(newEntry("Hello", 60000L));
+
+      // Then:
+      assertTrue(loader.isLoader());
+      assertFalse(first.get(1L, TimeUnit.SECONDS).isLoader());
+      assertNotNull(first.get().getEntry());
+      assertNotNull(second.get(1L, TimeUnit.SECONDS).getEntry());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldStopWaitingForSlowLoader() throws InterruptedException {
+    // Given:
+    final ResponseCache cache = new ResponseCache(1024L, 10L);
+    final ResponseCache.Lookup loader = cache.lookup("/a");
+
+    // When:
+    final ResponseCache.Lookup lookup = cache.lookup("/a");
+
+    // Then:
+    assertTrue(loader.isLoader());
+    assertFalse(lookup.isLoader());
+    assertNull(lookup.getEntry());
+  }
+
+  @Test
+  public void shouldServeCachedResponse() throws Exception {
+    // Given:
+    final ResponseCacheFilter filter = new ResponseCacheFilter(new ResponseCache(1024L, 1000L));
+    final TestController controller = new TestController();
+
+    // When:
+    final MockHttpServletResponse first = doGet(filter, controller, "getItems");
+    final MockHttpServletResponse second = doGet(filter, controller, "getItems");
+
+    // Then:
+    assertEquals(1, controller.invocations.get());
+    assertEquals("items", first.getContentAsString());
+    assertEquals("items", second.getContentAsString());
+    assertEquals("application/json", second.getContentType());
+    assertEquals("v1", second.getHeader("X-Version"));
+  }
+
+  @Test
+  public void shouldNotCacheResponseOfNotAnnotatedHandler() throws Exception {
+    // Given:
+    final ResponseCacheFilter filter = new ResponseCacheFilter(new ResponseCache(1024L, 1000L));
+    final TestController controller = new TestController();
+
+    // When:
+    doGet(filter, controller, "getUser");
+    final MockHttpServletResponse response = doGet(filter, controller, "getUser");
+
+    // Then:
+    assertEquals(2, controller.invocations.get());
+    assertEquals("user", response.getContentAsString());
+  }
+
+  //
+  // Private
+  //
+
+  private static ResponseCache.Entry newEntry(String body, long ttlMillis) {
+    return new ResponseCache.Entry(200, "text/plain", Collections.emptyMap(),
+        body.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis() + ttlMillis);
+  }
+
+  private static String toString(ResponseCache cache) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    cache.getMetrics().appendTo(builder);
+    return builder.toString();
+  }
+
+  private static MockHttpServletResponse doGet(ResponseCacheFilter filter,
+                                               TestController controller,
+                                               String methodName) throws Exception {
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/" + methodName);
+    request.addHeader("Accept", "application/json");
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    final HandlerMethod handlerMethod = new HandlerMethod(controller, methodName, HttpServletResponse.class);
+    final ResponseCacheInterceptor interceptor = new ResponseCacheInterceptor();
+
+    filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        try {
+          if (interceptor.preHandle(req, resp, handlerMethod)) {
+            handlerMethod.getMethod().invoke(controller, resp);
+          }
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+    }));
+    return response;
+  }
+
+  public static final class TestController {
+    final AtomicInteger invocations = new AtomicInteger();
+
+    @CacheableResponse(ttlMillis = 60000L)
+    public void getItems(HttpServletResponse response) throws IOException {
+      invocations.incrementAndGet();
+      response.setContentType("application/json");
+      response.setHeader("X-Version", "v1");
+      response.getWriter().write("items");
+    }
+
+    public void getUser(HttpServletResponse response) throws IOException {
+      invocations.incrementAndGet();
+      response.getWriter().write("user");
+    }
+  }
+}
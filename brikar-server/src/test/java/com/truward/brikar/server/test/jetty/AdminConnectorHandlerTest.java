@@ -0,0 +1,38 @@
+package com.truward.brikar.server.test.jetty;
+
+import com.truward.brikar.server.jetty.AdminConnectorHandler;
+import com.truward.brikar.server.jetty.TunedSelectChannelConnector;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AdminConnectorHandler}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class AdminConnectorHandlerTest {
+  private final AdminConnectorHandler handler = new AdminConnectorHandler(new TunedSelectChannelConnector(),
+      Arrays.asList("/g/admin", "/api/health", "/rpc/"), false);
+
+  @Test
+  public void shouldMatchAdminPaths() {
+    assertTrue(handler.isAdminPath("/g/admin"));
+    assertTrue(handler.isAdminPath("/g/admin/config"));
+    assertTrue(handler.isAdminPath("/api/health"));
+    assertTrue(handler.isAdminPath("/rpc/api/explorer/Service"));
+  }
+
+  @Test
+  public void shouldNotMatchOtherPaths() {
+    assertFalse(handler.isAdminPath(null));
+    assertFalse(handler.isAdminPath("/"));
+    assertFalse(handler.isAdminPath("/g/administrator"));
+    assertFalse(handler.isAdminPath("/api/healthy"));
+    assertFalse(handler.isAdminPath("/api/user"));
+    assertFalse(handler.isAdminPath("/rpc"));
+  }
+}
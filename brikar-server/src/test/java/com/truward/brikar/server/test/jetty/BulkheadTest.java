@@ -0,0 +1,100 @@
+package com.truward.brikar.server.test.jetty;
+
+import com.truward.brikar.server.jetty.Bulkhead;
+import com.truward.brikar.server.jetty.BulkheadHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Bulkhead} and {@link BulkheadHandler}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class BulkheadTest {
+
+  @Test
+  public void shouldRejectWhenConcurrencyLimitExceeded() throws Exception {
+    // Given:
+    final Bulkhead bulkhead = new Bulkhead("reports", "/api/reports", 2, 0, 0L, 503);
+
+    // When:
+    final boolean first = bulkhead.tryEnter();
+    final boolean second = bulkhead.tryEnter();
+    final boolean third = bulkhead.tryEnter();
+
+    // Then:
+    assertTrue(first);
+    assertTrue(second);
+    assertFalse(third);
+    assertEquals(2, bulkhead.getActive());
+
+    final String metrics = toString(bulkhead);
+    assertTrue(metrics, metrics.contains("op=Bulkhead"));
+    assertTrue(metrics, metrics.contains("name=reports"));
+    assertTrue(metrics, metrics.contains("active=2"));
+    assertTrue(metrics, metrics.contains("accepted=2"));
+    assertTrue(metrics, metrics.contains("rejected=1"));
+
+    // permit becomes available once request is completed
+    bulkhead.exit();
+    assertTrue(bulkhead.tryEnter());
+  }
+
+  @Test
+  public void shouldWaitForPermitInQueue() throws Exception {
+    // Given:
+    final Bulkhead bulkhead = new Bulkhead("orders", "/api/orders", 1, 1, 5000L, 429);
+    assertTrue(bulkhead.tryEnter());
+    final Thread releaser = new Thread(() -> {
+      while (bulkhead.getQueued() == 0) {
+        Thread.yield();
+      }
+      bulkhead.exit();
+    });
+    releaser.start();
+
+    // When:
+    final boolean entered = bulkhead.tryEnter();
+
+    // Then:
+    releaser.join();
+    assertTrue(entered);
+    assertEquals(0, bulkhead.getQueued());
+  }
+
+  @Test
+  public void shouldRejectOnWaitTimeout() throws Exception {
+    final Bulkhead bulkhead = new Bulkhead("orders", "/api/orders", 1, 1, 1L, 429);
+    assertTrue(bulkhead.tryEnter());
+    assertFalse(bulkhead.tryEnter());
+    assertTrue(toString(bulkhead).contains("rejected=1"));
+  }
+
+  @Test
+  public void shouldMatchLongestPathPrefix() {
+    // Given:
+    final Bulkhead api = new Bulkhead("api", "/api", 10, 0, 0L, 503);
+    final Bulkhead reports = new Bulkhead("reports", "/api/reports", 1, 0, 0L, 503);
+    final BulkheadHandler handler = new BulkheadHandler(Arrays.asList(api, reports));
+
+    // Then:
+    assertSame(reports, handler.getBulkhead("/api/reports/1"));
+    assertSame(api, handler.getBulkhead("/api/reportsSummary"));
+    assertSame(api, handler.getBulkhead("/api/orders"));
+    assertNull(handler.getBulkhead("/g/admin/config"));
+  }
+
+  //
+  // Private
+  //
+
+  private static String toString(Bulkhead bulkhead) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    bulkhead.getMetrics().appendTo(builder);
+    return builder.toString();
+  }
+}
@@ -0,0 +1,88 @@
+package com.truward.brikar.server.test.jetty;
+
+import com.truward.brikar.server.jetty.CompressionHandler;
+import com.truward.brikar.server.jetty.DecompressingRequestWrapper;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CompressionHandler} and {@link DecompressingRequestWrapper}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class CompressionHandlerTest {
+
+  @Test
+  public void shouldSelectEncoding() {
+    assertNull(CompressionHandler.selectEncoding(null));
+    assertNull(CompressionHandler.selectEncoding("identity"));
+    assertEquals("gzip", CompressionHandler.selectEncoding("gzip, deflate"));
+    assertEquals("gzip", CompressionHandler.selectEncoding("deflate, gzip;q=0.5"));
+    assertEquals("deflate", CompressionHandler.selectEncoding("deflate"));
+    assertEquals("deflate", CompressionHandler.selectEncoding("gzip;q=0, deflate"));
+    assertNull(CompressionHandler.selectEncoding("gzip;q=0"));
+  }
+
+  @Test
+  public void shouldCheckAcceptedEncoding() {
+    assertFalse(CompressionHandler.isAccepted(null, "br"));
+    assertTrue(CompressionHandler.isAccepted("gzip, br", "br"));
+    assertFalse(CompressionHandler.isAccepted("gzip, br;q=0", "br"));
+    assertFalse(CompressionHandler.isAccepted("brotli", "br"));
+  }
+
+  @Test
+  public void shouldLimitDecompressedRequestSizeByDefault() {
+    assertEquals(CompressionHandler.DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE,
+        new CompressionHandler().getMaxDecompressedRequestSize());
+    assertTrue(CompressionHandler.DEFAULT_MAX_DECOMPRESSED_REQUEST_SIZE > 0L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectIllegalCompressionLevel() {
+    new CompressionHandler().setCompressionLevel(10);
+  }
+
+  @Test
+  public void shouldDecompressGzipRequest() throws Exception {
+    // Given:
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (final GZIPOutputStream os = new GZIPOutputStream(body)) {
+      os.write("{\"name\":\"test\"}".getBytes(StandardCharsets.UTF_8));
+    }
+    final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/test");
+    request.addHeader("Content-Encoding", "gzip");
+    request.setContent(body.toByteArray());
+
+    // When:
+    final DecompressingRequestWrapper wrapper = new DecompressingRequestWrapper(request, "gzip", -1L);
+
+    // Then:
+    assertNull(wrapper.getHeader("Content-Encoding"));
+    assertEquals(-1, wrapper.getContentLength());
+    assertEquals("{\"name\":\"test\"}", StreamUtils.copyToString(wrapper.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldLimitDecompressedRequestSize() throws Exception {
+    // Given:
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (final DeflaterOutputStream os = new DeflaterOutputStream(body)) {
+      os.write(new byte[10000]);
+    }
+    final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/test");
+    request.setContent(body.toByteArray());
+
+    // When:
+    StreamUtils.copyToByteArray(new DecompressingRequestWrapper(request, "deflate", 1000L).getInputStream());
+  }
+}
@@ -0,0 +1,126 @@
+package com.truward.brikar.server.test.jetty;
+
+import com.truward.brikar.server.jetty.MeteredThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link MeteredThreadPool}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class MeteredThreadPoolTest {
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private MeteredThreadPool threadPool;
+
+  @Before
+  public void startPool() throws Exception {
+    threadPool = new MeteredThreadPool(1, 1, 1);
+    threadPool.start();
+  }
+
+  @After
+  public void stopPool() throws Exception {
+    release.countDown();
+    threadPool.stop();
+  }
+
+  @Test
+  public void shouldRejectDispatchOnceQueueIsFull() throws Exception {
+    // Given:
+    assertTrue(threadPool.dispatch(this::blockWorker));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // When:
+    final boolean queued = threadPool.dispatch(() -> {});
+    final boolean rejected = !threadPool.dispatch(() -> {});
+
+    // Then:
+    assertTrue(queued);
+    assertTrue(rejected);
+    assertTrue(threadPool.isSaturated());
+    assertEquals(1, threadPool.getQueueSize());
+
+    threadPool.recordShedRequest();
+    final String metrics = toString(threadPool);
+    assertTrue(metrics, metrics.contains("op=JettyThreadPool"));
+    assertTrue(metrics, metrics.contains("dispatchRejected=1"));
+    assertTrue(metrics, metrics.contains("shed=1"));
+    assertTrue(metrics, metrics.contains("queued=1"));
+    assertTrue(metrics, metrics.contains("maxQueued=1"));
+    assertTrue(metrics, metrics.contains("utilization=100"));
+
+    // counters should be reset after reporting
+    final String nextMetrics = toString(threadPool);
+    assertTrue(nextMetrics, nextMetrics.contains("dispatchRejected=0"));
+    assertTrue(nextMetrics, nextMetrics.contains("shed=0"));
+  }
+
+  @Test
+  public void shouldMeasureQueueTime() throws Exception {
+    // Given:
+    final AtomicLong queueTime = new AtomicLong();
+    final AtomicLong nextQueueTime = new AtomicLong();
+    final CountDownLatch completed = new CountDownLatch(1);
+    assertTrue(threadPool.dispatch(this::blockWorker));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // When:
+    assertTrue(threadPool.dispatch(() -> {
+      queueTime.set(MeteredThreadPool.takeQueueTime());
+      nextQueueTime.set(MeteredThreadPool.takeQueueTime());
+      completed.countDown();
+    }));
+    Thread.sleep(50L);
+    release.countDown();
+
+    // Then:
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+    assertTrue("queueTime=" + queueTime.get(), queueTime.get() >= 40L);
+    assertEquals(0L, nextQueueTime.get());
+    assertTrue(MeteredThreadPool.takeQueueTime() < 0L);
+    final String metrics = toString(threadPool);
+    assertTrue(metrics, metrics.contains("maxQueueTime=" + queueTime.get()));
+  }
+
+  @Test
+  public void shouldNeverSaturateUnboundedPool() throws Exception {
+    final MeteredThreadPool unboundedPool = new MeteredThreadPool(1, 1, 0);
+    unboundedPool.start();
+    try {
+      assertEquals(-1, unboundedPool.getMaxQueueSize());
+      assertFalse(unboundedPool.isSaturated());
+      assertFalse(toString(unboundedPool).contains("maxQueued"));
+    } finally {
+      unboundedPool.stop();
+    }
+  }
+
+  //
+  // Private
+  //
+
+  private void blockWorker() {
+    started.countDown();
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String toString(MeteredThreadPool threadPool) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    threadPool.getMetrics().appendTo(builder);
+    return builder.toString();
+  }
+}
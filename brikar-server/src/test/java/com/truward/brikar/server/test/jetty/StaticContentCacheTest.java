@@ -0,0 +1,158 @@
+package com.truward.brikar.server.test.jetty;
+
+import com.truward.brikar.server.jetty.StaticContentCache;
+import org.eclipse.jetty.util.resource.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link StaticContentCache}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class StaticContentCacheTest {
+  private File dir;
+
+  @Before
+  public void init() throws IOException {
+    dir = Files.createTempDirectory("brikar-static").toFile();
+  }
+
+  @After
+  public void cleanup() {
+    final File[] files = dir.listFiles();
+    if (files != null) {
+      for (final File file : files) {
+        assertTrue(file.delete());
+      }
+    }
+    assertTrue(dir.delete());
+  }
+
+  @Test
+  public void shouldCacheContent() throws IOException {
+    // Given:
+    final StaticContentCache cache = new StaticContentCache(1024L, 1024L, 60000L);
+    final Resource resource = createResource("a.txt", "Hello");
+
+    // When:
+    final StaticContentCache.Content first = cache.getContent("/a.txt", resource);
+    final StaticContentCache.Content second = cache.getContent("/a.txt", resource);
+
+    // Then:
+    assertNotNull(first);
+    assertSame(first, second);
+    assertFalse(first.isMapped());
+    assertEquals(5L, first.getLength());
+    assertEquals("Hello", toString(first.getBuffer()));
+    assertTrue(first.getETag().startsWith("\"5-"));
+    final String metrics = toString(cache);
+    assertTrue(metrics, metrics.contains("hits=1"));
+    assertTrue(metrics, metrics.contains("misses=1"));
+  }
+
+  @Test
+  public void shouldMapLargeFiles() throws IOException {
+    // Given:
+    final StaticContentCache cache = new StaticContentCache(1024L, 4L, 60000L);
+
+    // When:
+    final StaticContentCache.Content content = cache.getContent("/b.txt", createResource("b.txt", "Mapped"));
+
+    // Then:
+    assertNotNull(content);
+    assertTrue(content.isMapped());
+    assertEquals("Mapped", toString(content.getBuffer()));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedContent() throws IOException {
+    // Given:
+    final StaticContentCache cache = new StaticContentCache(10L, 1024L, 60000L);
+    final Resource a = createResource("a.txt", "1234");
+    final Resource b = createResource("b.txt", "5678");
+    final Resource c = createResource("c.txt", "90ab");
+
+    // When:
+    final StaticContentCache.Content contentA = cache.getContent("/a.txt", a);
+    cache.getContent("/b.txt", b);
+    cache.getContent("/a.txt", a); // touch a, so that b is evicted first
+    cache.getContent("/c.txt", c);
+
+    // Then:
+    final String metrics = toString(cache);
+    assertTrue(metrics, metrics.contains("size=8"));
+    assertTrue(metrics, metrics.contains("entries=2"));
+    assertSame(contentA, cache.getContent("/a.txt", a));
+    assertNull(cache.getContent("/d.txt", createResource("d.txt", "too large content")));
+  }
+
+  @Test
+  public void shouldReloadModifiedContent() throws IOException {
+    // Given:
+    final StaticContentCache cache = new StaticContentCache(1024L, 1024L, 0L);
+    final Resource resource = createResource("a.txt", "Hello");
+    final StaticContentCache.Content first = cache.getContent("/a.txt", resource);
+    assertNotNull(first);
+
+    // When:
+    final File file = new File(dir, "a.txt");
+    Files.write(file.toPath(), "Hello, world".getBytes(StandardCharsets.UTF_8));
+    assertTrue(file.setLastModified(first.getLastModified() + 2000L));
+    final StaticContentCache.Content second = cache.getContent("/a.txt", resource);
+
+    // Then:
+    assertNotNull(second);
+    assertEquals("Hello, world", toString(second.getBuffer()));
+    assertNotEquals(first.getETag(), second.getETag());
+  }
+
+  @Test
+  public void shouldReturnFreshContentWithoutResource() throws IOException {
+    // Given:
+    final StaticContentCache freshCache = new StaticContentCache(1024L, 1024L, 60000L);
+    final StaticContentCache staleCache = new StaticContentCache(1024L, 1024L, 0L);
+    final Resource resource = createResource("a.txt", "Hello");
+
+    // When:
+    final StaticContentCache.Content missing = freshCache.getFreshContent("/a.txt");
+    final StaticContentCache.Content loaded = freshCache.getContent("/a.txt", resource);
+    staleCache.getContent("/a.txt", resource);
+
+    // Then:
+    assertNull(missing);
+    assertSame(loaded, freshCache.getFreshContent("/a.txt"));
+    assertNull(staleCache.getFreshContent("/a.txt"));
+  }
+
+  //
+  // Private
+  //
+
+  private Resource createResource(String name, String content) throws IOException {
+    final File file = new File(dir, name);
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return Resource.newResource(file);
+  }
+
+  private static String toString(StaticContentCache cache) throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    cache.getMetrics().appendTo(builder);
+    return builder.toString();
+  }
+
+  private static String toString(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -1,13 +1,29 @@
 package com.truward.brikar.server.test.launcher;
 
+import com.truward.brikar.common.log.metric.AsyncMetricsSink;
+import com.truward.brikar.server.jetty.MeteredThreadPool;
+import com.truward.brikar.server.jetty.TunedSelectChannelConnector;
 import com.truward.brikar.server.launcher.StandardLauncher;
 import com.truward.brikar.server.test.auth.SimpleAuthenticatorUtilTest;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.junit.Test;
 import org.springframework.core.env.PropertySource;
+import org.springframework.util.StreamUtils;
 
+import javax.annotation.Nonnull;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.Callable;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * Tests for {@link StandardLauncher}.
@@ -28,4 +44,152 @@ public final class StandardLauncherTest {
         "classpath:/");
     assertEquals("test", launcher.getPropertyResolver().getProperty("app"));
   }
+
+  @Test
+  public void shouldCreateConfiguredConnectors() throws Exception {
+    // Given:
+    final TestLauncher launcher = new TestLauncher(StandardLauncher.CONFIG_KEY_PORT + "=9090\n" +
+        StandardLauncher.CONFIG_KEY_EXTRA_CONNECTORS + "=9091, 127.0.0.1:9092\n" +
+        StandardLauncher.CONFIG_KEY_ACCEPTORS + "=3\n" +
+        StandardLauncher.CONFIG_KEY_CONNECTOR_IDLE_TIMEOUT + "=5000\n" +
+        StandardLauncher.CONFIG_KEY_RECEIVE_BUFFER_SIZE + "=65536");
+
+    // When:
+    final List<Connector> connectors = launcher.createConnectors();
+
+    // Then:
+    assertEquals(3, connectors.size());
+    assertEquals(9090, connectors.get(0).getPort());
+    assertNull(connectors.get(0).getHost());
+    assertEquals(9091, connectors.get(1).getPort());
+    assertNull(connectors.get(1).getHost());
+    assertEquals(9092, connectors.get(2).getPort());
+    assertEquals("127.0.0.1", connectors.get(2).getHost());
+
+    final TunedSelectChannelConnector connector = (TunedSelectChannelConnector) connectors.get(0);
+    assertEquals(3, connector.getAcceptors());
+    assertEquals(5000, connector.getMaxIdleTime());
+    assertEquals(StandardLauncher.DEFAULT_ACCEPT_QUEUE_SIZE, connector.getAcceptQueueSize());
+    assertEquals(65536, connector.getReceiveBufferSize());
+    assertEquals(-1, connector.getSendBufferSize());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRejectMalformedConnectorAddress() throws Exception {
+    new TestLauncher(StandardLauncher.CONFIG_KEY_EXTRA_CONNECTORS + "=localhost:port").createConnectors();
+  }
+
+  @Test
+  public void shouldCreateAdminConnectorWithOwnThreadPool() throws Exception {
+    // Given:
+    final TestLauncher launcher = new TestLauncher(StandardLauncher.CONFIG_KEY_ADMIN_PORT + "=9095\n" +
+        StandardLauncher.CONFIG_KEY_ADMIN_HOST + "=127.0.0.1");
+
+    // When:
+    final TunedSelectChannelConnector connector = launcher.createAdminConnector();
+
+    // Then:
+    assertNotNull(connector);
+    assertEquals(9095, connector.getPort());
+    assertEquals("127.0.0.1", connector.getHost());
+    assertEquals(1, connector.getAcceptors());
+    assertTrue(connector.getThreadPool() instanceof MeteredThreadPool);
+    assertEquals(StandardLauncher.DEFAULT_ADMIN_MAX_THREADS + StandardLauncher.ADMIN_CONNECTOR_RESERVED_THREADS,
+        ((MeteredThreadPool) connector.getThreadPool()).getMaxThreads());
+  }
+
+  @Test
+  public void shouldServeRequestsOnAdminConnectorWithTwoThreads() throws Exception {
+    // Given:
+    final TestLauncher launcher = new TestLauncher(StandardLauncher.CONFIG_KEY_ADMIN_PORT + "=0\n" +
+        StandardLauncher.CONFIG_KEY_ADMIN_HOST + "=127.0.0.1\n" +
+        StandardLauncher.CONFIG_KEY_ADMIN_MAX_THREADS + "=2");
+    final TunedSelectChannelConnector connector = launcher.createAdminConnector();
+    assertNotNull(connector);
+    final Server server = new Server();
+    server.addConnector(connector);
+    server.setHandler(new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        baseRequest.setHandled(true);
+        response.getWriter().write("OK");
+      }
+    });
+    server.start();
+
+    try {
+      // When:
+      final HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" +
+          connector.getLocalPort() + "/g/admin/health").openConnection();
+      connection.setConnectTimeout(5000);
+      connection.setReadTimeout(5000);
+
+      // Then:
+      assertEquals(HttpServletResponse.SC_OK, connection.getResponseCode());
+      assertEquals("OK", StreamUtils.copyToString(connection.getInputStream(), StandardCharsets.UTF_8));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void shouldNotCreateAdminConnectorByDefault() throws Exception {
+    assertNull(new TestLauncher("app=test").createAdminConnector());
+  }
+
+  //
+  // Private
+  //
+
+  @Test
+  public void shouldWriteMetricsSynchronouslyByDefault() throws Exception {
+    // Given:
+    final TestLauncher launcher = new TestLauncher("");
+
+    // When:
+    final AsyncMetricsSink sink = launcher.createMetricsSink();
+
+    // Then:
+    assertNull(sink);
+  }
+
+  @Test
+  public void shouldCreateAsyncMetricsSinkIfBufferSizeSet() throws Exception {
+    // Given:
+    final TestLauncher launcher = new TestLauncher(StandardLauncher.CONFIG_KEY_METRICS_ASYNC_BUFFER_SIZE + "=1024");
+
+    // When:
+    final AsyncMetricsSink sink = launcher.createMetricsSink();
+
+    // Then:
+    assertNotNull(sink);
+    try {
+      assertEquals(1024, sink.getCapacity());
+    } finally {
+      sink.close();
+    }
+  }
+
+  private static final class TestLauncher extends StandardLauncher {
+    TestLauncher(String properties) throws Exception {
+      super(() -> SimpleAuthenticatorUtilTest.createPropertySource(properties), "classpath:/");
+    }
+
+    @Nonnull
+    @Override
+    protected List<Connector> createConnectors() {
+      return super.createConnectors();
+    }
+
+    @Override
+    protected TunedSelectChannelConnector createAdminConnector() {
+      return super.createAdminConnector();
+    }
+
+    @Override
+    protected AsyncMetricsSink createMetricsSink() {
+      return super.createMetricsSink();
+    }
+  }
 }
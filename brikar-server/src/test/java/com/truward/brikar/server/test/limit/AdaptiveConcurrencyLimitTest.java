@@ -0,0 +1,82 @@
+package com.truward.brikar.server.test.limit;
+
+import com.truward.brikar.server.limit.AdaptiveConcurrencyLimit;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AdaptiveConcurrencyLimit}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class AdaptiveConcurrencyLimitTest {
+  private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+      LoggerFactory.getLogger(AdaptiveConcurrencyLimitTest.class), 10, 2, 100, 10, 1.0);
+
+  @Test
+  public void shouldRejectRequestsOverLimit() throws IOException {
+    // Given:
+    for (int i = 0; i < 10; ++i) {
+      assertTrue(limit.tryAcquire());
+    }
+
+    // When:
+    final boolean acquired = limit.tryAcquire();
+
+    // Then:
+    assertFalse(acquired);
+    assertEquals(10, limit.getInFlight());
+
+    final StringBuilder metrics = new StringBuilder();
+    limit.getMetrics().appendTo(metrics);
+    assertTrue(metrics.toString(), metrics.toString().contains("rejected=1"));
+  }
+
+  @Test
+  public void shouldGrowLimitWhileLatencyIsStable() {
+    // When:
+    sampleWindows(5, 1000000L);
+
+    // Then:
+    assertTrue("limit=" + limit.getLimit(), limit.getLimit() > 10);
+  }
+
+  @Test
+  public void shouldDecreaseLimitWhenLatencyGrows() {
+    // Given:
+    sampleWindows(2, 1000000L);
+    final int limitBefore = limit.getLimit();
+
+    // When:
+    sampleWindows(5, 10000000L);
+
+    // Then:
+    assertTrue("limit=" + limit.getLimit(), limit.getLimit() < limitBefore);
+    assertTrue(limit.getLimit() >= 2);
+  }
+
+  @Test
+  public void shouldNotGrowUnusedLimit() {
+    // When:
+    for (int i = 0; i < 50; ++i) {
+      limit.onSample(1000000L, 1);
+    }
+
+    // Then:
+    assertEquals(10, limit.getLimit());
+  }
+
+  //
+  // Private
+  //
+
+  private void sampleWindows(int windows, long rttNanos) {
+    for (int i = 0; i < windows * 10; ++i) {
+      limit.onSample(rttNanos, limit.getLimit());
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.truward.brikar.server.test.limit;
+
+import com.truward.brikar.server.limit.RateLimitFilter;
+import com.truward.brikar.server.limit.RateLimitRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link RateLimitRule} and {@link RateLimitFilter}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class RateLimitRuleTest {
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+  private final RateLimitRule rule = new RateLimitRule("reports", "/api/reports/**", 2.0, 3, 2);
+
+  @Test
+  public void shouldAllowBurstAndThenLimitRate() {
+    // Given:
+    final long now = 1000L * SECOND;
+
+    // When/Then:
+    assertEquals(0L, rule.tryAcquire("alice", now));
+    assertEquals(0L, rule.tryAcquire("alice", now));
+    assertEquals(0L, rule.tryAcquire("alice", now));
+    assertEquals(SECOND / 2, rule.tryAcquire("alice", now));
+
+    // bucket refills with the given rate
+    assertEquals(0L, rule.tryAcquire("alice", now + SECOND / 2));
+    assertTrue(rule.tryAcquire("alice", now + SECOND / 2) > 0L);
+  }
+
+  @Test
+  public void shouldLimitCallersIndependently() throws IOException {
+    // Given:
+    final long now = 1000L * SECOND;
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(0L, rule.tryAcquire("alice", now));
+    }
+
+    // When:
+    final long bobWait = rule.tryAcquire("bob", now);
+    final long aliceWait = rule.tryAcquire("alice", now);
+
+    // Then:
+    assertEquals(0L, bobWait);
+    assertTrue(aliceWait > 0L);
+
+    final StringBuilder metrics = new StringBuilder();
+    rule.getMetrics().appendTo(metrics);
+    assertTrue(metrics.toString(), metrics.toString().contains("callers=2"));
+    assertTrue(metrics.toString(), metrics.toString().contains("accepted=4"));
+    assertTrue(metrics.toString(), metrics.toString().contains("rejected=1"));
+  }
+
+  @Test
+  public void shouldEvictIdleCallers() throws IOException {
+    // Given:
+    final long now = 1000L * SECOND;
+    rule.tryAcquire("alice", now);
+    rule.tryAcquire("bob", now);
+
+    // When:
+    rule.tryAcquire("carol", now + 10L * SECOND);
+
+    // Then:
+    final StringBuilder metrics = new StringBuilder();
+    rule.getMetrics().appendTo(metrics);
+    assertTrue(metrics.toString(), metrics.toString().contains("callers=1"));
+  }
+
+  @Test
+  public void shouldShareOverflowBucketWhenTooManyCallers() throws IOException {
+    // Given:
+    final long now = 1000L * SECOND;
+    rule.tryAcquire("alice", now);
+    rule.tryAcquire("bob", now);
+
+    // When:
+    final long carolWait1 = rule.tryAcquire("carol", now);
+    final long carolWait2 = rule.tryAcquire("carol", now);
+    final long daveWait1 = rule.tryAcquire("dave", now);
+    final long daveWait2 = rule.tryAcquire("dave", now);
+
+    // Then:
+    assertEquals(0L, carolWait1);
+    assertEquals(0L, carolWait2);
+    assertEquals(0L, daveWait1);
+    assertTrue(daveWait2 > 0L);
+
+    final StringBuilder metrics = new StringBuilder();
+    rule.getMetrics().appendTo(metrics);
+    assertTrue(metrics.toString(), metrics.toString().contains("callers=2"));
+    assertTrue(metrics.toString(), metrics.toString().contains("overflowed=4"));
+  }
+
+  @Test
+  public void shouldEvictIdleCallersNotMoreOftenThanBucketRefills() throws IOException {
+    // Given:
+    final long now = 1000L * SECOND;
+    rule.tryAcquire("alice", now);
+    rule.tryAcquire("bob", now);
+    rule.tryAcquire("carol", now + SECOND / 10); // nothing to evict
+
+    // When:
+    rule.tryAcquire("dave", now + SECOND * 155 / 100); // alice and bob are idle, but eviction is not due yet
+    final StringBuilder metricsBeforeEviction = new StringBuilder();
+    rule.getMetrics().appendTo(metricsBeforeEviction);
+    rule.tryAcquire("eve", now + SECOND * 165 / 100);
+    final StringBuilder metricsAfterEviction = new StringBuilder();
+    rule.getMetrics().appendTo(metricsAfterEviction);
+
+    // Then:
+    assertTrue(metricsBeforeEviction.toString(), metricsBeforeEviction.toString().contains("callers=2"));
+    assertTrue(metricsAfterEviction.toString(), metricsAfterEviction.toString().contains("callers=1"));
+  }
+
+  @Test
+  public void shouldMatchFirstRule() {
+    // Given:
+    final RateLimitRule api = new RateLimitRule("api", "/api/**", 100.0, 100);
+    final RateLimitFilter filter = new RateLimitFilter(Arrays.asList(rule, api));
+
+    // Then:
+    assertSame(rule, filter.getRule("/api/reports/1"));
+    assertSame(api, filter.getRule("/api/orders"));
+    assertNull(filter.getRule("/g/admin/config"));
+  }
+}
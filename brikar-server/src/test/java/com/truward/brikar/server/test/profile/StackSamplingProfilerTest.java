@@ -0,0 +1,129 @@
+package com.truward.brikar.server.test.profile;
+
+import com.truward.brikar.server.profile.StackSamplingProfiler;
+import com.truward.brikar.server.tracking.RequestThreadTracker;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link StackSamplingProfiler}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class StackSamplingProfilerTest {
+  private final RequestThreadTracker tracker = new RequestThreadTracker();
+  private final StackSamplingProfiler profiler = new StackSamplingProfiler(tracker);
+  private final CountDownLatch released = new CountDownLatch(1);
+
+  @After
+  public void release() {
+    released.countDown();
+  }
+
+  @Test
+  public void shouldSampleRequestThreads() throws Exception {
+    // Given:
+    startRequest("GET_/api/reports/12", "rv1");
+
+    // When:
+    final StackSamplingProfiler.Profile profile = profiler.profile(50L, 5L, 256, true);
+
+    // Then:
+    assertNotNull(profile);
+    assertTrue(profile.getSampleCount() > 0);
+    assertEquals(profile.getSampleCount(), profile.getThreadSampleCount());
+    final List<String> stacks = profile.getCollapsedStacks();
+    assertEquals(stacks.toString(), 1, stacks.size());
+    final String stack = stacks.get(0);
+    assertTrue(stack, stack.startsWith("GET_/api/reports/12;rv1;java.lang.Thread.run;"));
+    assertTrue(stack, stack.contains(StackSamplingProfilerTest.class.getName() + ".blockingCall;"));
+    assertTrue(stack, stack.endsWith(" " + profile.getThreadSampleCount()));
+  }
+
+  @Test
+  public void shouldOmitRequestVectors() throws Exception {
+    // Given:
+    startRequest("GET_/api/reports/12", "rv1");
+
+    // When:
+    final StackSamplingProfiler.Profile profile = profiler.profile(20L, 5L, 256, false);
+
+    // Then:
+    assertNotNull(profile);
+    final String stack = profile.getCollapsedStacks().get(0);
+    assertTrue(stack, stack.startsWith("GET_/api/reports/12;java.lang.Thread.run;"));
+  }
+
+  @Test
+  public void shouldNotSampleThreadsWithoutRequests() throws Exception {
+    // Given:
+    tracker.enter("GET_/api/reports/12", "rv1");
+    tracker.exit();
+
+    // When:
+    final StackSamplingProfiler.Profile profile = profiler.profile(20L, 5L, 256, true);
+
+    // Then:
+    assertNotNull(profile);
+    assertTrue(profile.getSampleCount() > 0);
+    assertEquals(0, profile.getThreadSampleCount());
+    assertTrue(profile.getCollapsedStacks().isEmpty());
+    assertTrue(tracker.getActiveRequests().isEmpty());
+  }
+
+  @Test
+  public void shouldExcludeProfilingThread() throws Exception {
+    // Given:
+    tracker.enter("GET_/g/admin/profile", "rv2");
+
+    // When:
+    final StackSamplingProfiler.Profile profile;
+    try {
+      profile = profiler.profile(20L, 5L, 256, true);
+    } finally {
+      tracker.exit();
+    }
+
+    // Then:
+    assertNotNull(profile);
+    assertFalse(profile.getCollapsedStacks().toString(), profile.getThreadSampleCount() > 0);
+  }
+
+  //
+  // Private
+  //
+
+  private void startRequest(String operation, String requestVector) throws InterruptedException {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final Thread thread = new Thread(() -> {
+      tracker.enter(operation, requestVector);
+      try {
+        entered.countDown();
+        blockingCall();
+      } finally {
+        tracker.exit();
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    assertTrue(entered.await(10L, TimeUnit.SECONDS));
+    Thread.sleep(10L); // let thread block on the latch
+  }
+
+  private void blockingCall() {
+    try {
+      released.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.truward.brikar.server.test.tracking;
+
+import com.truward.brikar.server.tracking.InFlightRequestFilter;
+import com.truward.brikar.server.tracking.InFlightRequestTracker;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link InFlightRequestTracker} and {@link InFlightRequestFilter}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class InFlightRequestTrackerTest {
+  private final InFlightRequestTracker tracker = new InFlightRequestTracker();
+
+  @Test
+  public void shouldReturnRemainingRequestsOnTimeout() throws Exception {
+    // Given:
+    tracker.enter();
+    tracker.enter();
+    tracker.exit();
+
+    // When:
+    tracker.startDraining();
+    final int remaining = tracker.awaitDrained(10L);
+
+    // Then:
+    assertTrue(tracker.isDraining());
+    assertEquals(1, remaining);
+  }
+
+  @Test
+  public void shouldAwaitDrainedRequests() throws Exception {
+    // Given:
+    tracker.enter();
+    tracker.startDraining();
+    final Thread thread = new Thread(() -> {
+      try {
+        Thread.sleep(50L);
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+      tracker.exit();
+    });
+
+    // When:
+    thread.start();
+    final int remaining = tracker.awaitDrained(10000L);
+    thread.join();
+
+    // Then:
+    assertEquals(0, remaining);
+  }
+
+  @Test
+  public void shouldCountAsyncRequestUntilCompletion() throws Exception {
+    // Given:
+    final InFlightRequestFilter filter = new InFlightRequestFilter(tracker);
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/test");
+    request.setAsyncSupported(true);
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    // When:
+    filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+        req.startAsync();
+      }
+    }));
+    final int inFlight = tracker.getInFlight();
+    request.getAsyncContext().complete();
+
+    // Then:
+    assertEquals(1, inFlight);
+    assertEquals(0, tracker.getInFlight());
+  }
+
+  @Test
+  public void shouldCloseConnectionsWhenDraining() throws Exception {
+    // Given:
+    final InFlightRequestFilter filter = new InFlightRequestFilter(tracker);
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    tracker.startDraining();
+
+    // When:
+    filter.doFilter(new MockHttpServletRequest("GET", "/api/test"), response, new MockFilterChain());
+
+    // Then:
+    assertEquals("close", response.getHeader("Connection"));
+    assertEquals(0, tracker.getInFlight());
+  }
+}
@@ -0,0 +1,72 @@
+package com.truward.brikar.server.test.tracking;
+
+import com.truward.brikar.server.tracking.RequestLogSampler;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link RequestLogSampler}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class RequestLogSamplerTest {
+  private final RequestLogSampler sampler = new RequestLogSampler(0.0, 1000L,
+      Collections.singletonMap("GET_/api/reports", 5000L), RequestLogSampler.DEFAULT_DEBUG_HEADER);
+
+  @Test
+  public void shouldSkipOrdinaryRequests() {
+    assertFalse(sampler.shouldLog(new MockHttpServletRequest("GET", "/api/users"), "GET_/api/users", 10L, false));
+  }
+
+  @Test
+  public void shouldLogFailedSlowAndDebugRequests() {
+    // Given:
+    final MockHttpServletRequest debugRequest = new MockHttpServletRequest("GET", "/api/users");
+    debugRequest.addHeader(RequestLogSampler.DEFAULT_DEBUG_HEADER, "1");
+
+    // When:
+    final boolean failed = sampler.shouldLog(new MockHttpServletRequest(), "GET_/api/users", 10L, true);
+    final boolean slow = sampler.shouldLog(new MockHttpServletRequest(), "GET_/api/users", 1000L, false);
+    final boolean debug = sampler.shouldLog(debugRequest, "GET_/api/users", 10L, false);
+
+    // Then:
+    assertTrue(failed);
+    assertTrue(slow);
+    assertTrue(debug);
+  }
+
+  @Test
+  public void shouldUsePerOperationSlowThreshold() {
+    assertFalse(sampler.shouldLog(new MockHttpServletRequest(), "GET_/api/reports", 4000L, false));
+    assertTrue(sampler.shouldLog(new MockHttpServletRequest(), "GET_/api/reports", 5000L, false));
+  }
+
+  @Test
+  public void shouldCountEveryRequest() throws IOException {
+    // Given:
+    final RequestLogSampler halfSampler = new RequestLogSampler(0.5, 0L, Collections.emptyMap(), null);
+
+    // When:
+    int logged = 0;
+    for (int i = 0; i < 1000; ++i) {
+      if (halfSampler.shouldLog(new MockHttpServletRequest(), "GET_/api/users", 2L, i % 100 == 0)) {
+        ++logged;
+      }
+    }
+
+    // Then:
+    assertTrue("logged=" + logged, logged > 300 && logged < 700);
+    final StringBuilder builder = new StringBuilder();
+    halfSampler.getMetrics().appendTo(builder);
+    final String metrics = builder.toString();
+    assertTrue(metrics, metrics.contains("requests=1000"));
+    assertTrue(metrics, metrics.contains("errors=10"));
+    assertTrue(metrics, metrics.contains("logged=" + logged));
+    assertTrue(metrics, metrics.contains("totalTime=2000"));
+  }
+}
@@ -0,0 +1,161 @@
+package com.truward.brikar.server.test.tracking;
+
+import com.truward.brikar.common.log.LogUtil;
+import com.truward.brikar.common.log.histogram.LatencyHistogram;
+import com.truward.brikar.common.log.histogram.LatencyHistogramRegistry;
+import com.truward.brikar.common.log.lapse.SimpleLapse;
+import com.truward.brikar.common.log.metric.MetricsCollection;
+import com.truward.brikar.common.log.metric.ResourceUsage;
+import com.truward.brikar.common.tracking.TrackingHttpHeaderNames;
+import com.truward.brikar.server.tracking.RequestVectorAwareFilter;
+import com.truward.brikar.server.tracking.TrackingContext;
+import com.truward.time.support.StandardTimeSource;
+import org.junit.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for {@link RequestVectorAwareFilter} and {@link TrackingContext}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class RequestVectorAwareFilterTest {
+  private final RequestVectorAwareFilter filter = new RequestVectorAwareFilter();
+
+  @Test
+  public void shouldCarryTrackingContextOverToAnotherThread() throws Exception {
+    // Given:
+    final MetricsCollection metricsCollection = LogUtil.getOrCreateLocalMetricsCollection();
+    MDC.put(LogUtil.REQUEST_VECTOR, "rv1");
+    final AtomicReference<String> requestVector = new AtomicReference<>();
+    final Runnable task;
+    try {
+      task = TrackingContext.capture().wrap(() -> {
+        requestVector.set(MDC.get(LogUtil.REQUEST_VECTOR));
+        LogUtil.propagate(new SimpleLapse().setOperation("testOp"));
+      });
+    } finally {
+      MDC.remove(LogUtil.REQUEST_VECTOR);
+      LogUtil.setLocalMetricsCollection(null);
+    }
+
+    // When:
+    final Thread thread = new Thread(task);
+    thread.start();
+    thread.join();
+
+    // Then:
+    assertEquals("rv1", requestVector.get());
+    assertTrue(metricsCollection.toString(), metricsCollection.toString().contains("op=testOp"));
+  }
+
+  @Test
+  public void shouldLogLapseOnAsyncCompletion() throws Exception {
+    // Given:
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/test");
+    request.setAsyncSupported(true);
+    request.addHeader(TrackingHttpHeaderNames.REQUEST_VECTOR, "rv2");
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    // When:
+    filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+        req.startAsync();
+      }
+    }));
+    final TrackingContext trackingContext = (TrackingContext) request.getAttribute(
+        RequestVectorAwareFilter.TRACKING_CONTEXT_ATTRIBUTE);
+    final MetricsCollection metricsCollection = trackingContext.getMetricsCollection();
+    final String beforeCompletion = String.valueOf(metricsCollection);
+    request.getAsyncContext().complete();
+
+    // Then:
+    assertNull(MDC.get(LogUtil.REQUEST_VECTOR));
+    assertNull(LogUtil.getLocalMetricsCollection());
+    assertEquals("rv2", trackingContext.getRequestVector());
+    assertNotNull(metricsCollection);
+    assertFalse(beforeCompletion, beforeCompletion.contains("op=GET_"));
+    assertTrue(metricsCollection.toString(), metricsCollection.toString().contains("op=GET_"));
+  }
+
+  @Test
+  public void shouldRecordUnmatchedRequestsUnderSingleOperation() throws Exception {
+    // Given:
+    final LatencyHistogramRegistry previousRegistry = LatencyHistogramRegistry.getDefault();
+    final LatencyHistogramRegistry registry = new LatencyHistogramRegistry(4, StandardTimeSource.INSTANCE);
+    LatencyHistogramRegistry.setDefault(registry);
+    final MockHttpServletRequest matchedRequest = new MockHttpServletRequest("GET", "/api/item/1");
+    matchedRequest.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/item/{id}");
+
+    try {
+      // When:
+      for (int i = 0; i < 100; ++i) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/scan/" + i);
+        request.setPathInfo("/scan/" + i);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        filter.doFilter(request, response, new MockFilterChain());
+      }
+      filter.doFilter(matchedRequest, new MockHttpServletResponse(), new MockFilterChain());
+    } finally {
+      LatencyHistogramRegistry.setDefault(previousRegistry);
+    }
+
+    // Then:
+    final Set<String> operations = new HashSet<>();
+    for (final LatencyHistogram histogram : registry.getHistograms(LatencyHistogram.Kind.REQUEST)) {
+      operations.add(histogram.getOperation());
+    }
+    assertEquals(new HashSet<>(Arrays.asList("GET_" + RequestVectorAwareFilter.UNMATCHED_OPERATION,
+        "GET_/api/item/{id}")), operations);
+  }
+
+  @Test
+  public void shouldLogResourceUsage() throws Exception {
+    // Given:
+    final RequestVectorAwareFilter resourceUsageFilter = new RequestVectorAwareFilter();
+    resourceUsageFilter.setResourceUsageEnabled(true);
+    final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/test");
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    final AtomicReference<ResourceUsage> resourceUsage = new AtomicReference<>();
+    assumeTrue(ResourceUsage.isSupported());
+
+    // When:
+    resourceUsageFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+        resourceUsage.set(ResourceUsage.getLocal());
+        final Thread thread = new Thread(TrackingContext.capture().wrap(() -> {
+          assertSame(resourceUsage.get(), ResourceUsage.getLocal());
+        }));
+        thread.start();
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }));
+
+    // Then:
+    assertNotNull(resourceUsage.get());
+    assertNull(ResourceUsage.getLocal());
+    assertTrue(resourceUsage.get().toString(), resourceUsage.get().getCpuTime() > 0L ||
+        resourceUsage.get().getAllocatedBytes() > 0L);
+  }
+}
@@ -0,0 +1,22 @@
+package com.truward.brikar.server.test.util;
+
+import com.truward.brikar.server.util.ErrorResponseUtil;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ErrorResponseUtil}.
+ *
+ * @author Alexander Shabanov
+ */
+public final class ErrorResponseUtilTest {
+
+  @Test
+  public void shouldWriteJson() {
+    assertEquals("{\"error\":{\"code\":\"SERVICE_UNAVAILABLE\",\"message\":\"Limit \\\"exceeded\\\"\\n\"}}",
+        ErrorResponseUtil.toJson(ErrorResponseUtil.errorResponse(HttpStatus.SERVICE_UNAVAILABLE,
+            "Limit \"exceeded\"\n")));
+  }
+}